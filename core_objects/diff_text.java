@@ -0,0 +1,500 @@
+package core_objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Andrew G. West - diff_text.java - The HTML diff-text of an edit, as
+ * returned by the MediaWiki API. The text is accumulated (by the SAX
+ * handler) directly into a single char buffer, and is never copied again
+ * in full. Instead, the cells of the diff-table which carry added or
+ * deleted content are located in one scan, and recorded as offsets into
+ * that buffer; consumers then read only the (small) cell and span text
+ * they need, with markup already stripped.
+ *
+ * The cells located are exactly those which [feature_language] formerly
+ * found by regular expression, after first deleting all "<div>" tags:
+ *
+ * 		<td class="diff-(addedline|deletedline)">(TEXT|SPAN)*</td>
+ *
+ * where SPAN is a "diffchange" (or "diffchange diffchange-inline") classed
+ * <span>, <del>, or <ins> tag, containing only TEXT. Tag names are
+ * matched without regard to case. Cells of any other form are skipped.
+ * Text is then extracted from cells and spans exactly as was formerly
+ * done by [String.replaceAll()], so results are identical.
+ */
+public class diff_text implements CharSequence{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Opening tags of the cells of interest, and the closing one.
+	 */
+	private static final String TD_ADDED = "<td class=\"diff-addedline\">";
+	private static final String TD_DELETED = "<td class=\"diff-deletedline\">";
+	private static final String TD_CLOSE = "</td>";
+	
+	/**
+	 * Tags which are treated as absent from the text entirely.
+	 */
+	private static final String DIV_OPEN = "<div>";
+	private static final String DIV_CLOSE = "</div>";
+	
+	/**
+	 * Opening and closing tags of change-spans, internal to a cell.
+	 */
+	private static final String[] SPAN_OPEN = {
+		"<span class=\"diffchange\">",
+		"<span class=\"diffchange diffchange-inline\">",
+		"<del class=\"diffchange\">",
+		"<del class=\"diffchange diffchange-inline\">",
+		"<ins class=\"diffchange\">",
+		"<ins class=\"diffchange diffchange-inline\">"};
+	private static final String[] SPAN_CLOSE = {"</span>", "</del>", "</ins>"};
+	
+	/**
+	 * The text; only the first [len] characters of [buf] are in use.
+	 */
+	private char[] buf;
+	private int len;
+	
+	/**
+	 * The text as a String, once one has been requested.
+	 */
+	private String str = null;
+	
+	/**
+	 * Whether the cells have been located (they are, on first request).
+	 */
+	private boolean indexed = false;
+	
+	/**
+	 * Types of cell, per [cell_type]. Cells whose opening tag is not
+	 * exactly (case-sensitively) that of an addition or deletion are OTHER.
+	 */
+	private static final byte CELL_OTHER = 0;
+	private static final byte CELL_ADDED = 1;
+	private static final byte CELL_DELETED = 2;
+	
+	/**
+	 * Cells located. Cell 'i' (including its <td> tags) lies in the range
+	 * [cell_start,cell_end), and has change-spans from [cell_span[i]] to
+	 * [cell_span[i+1]].
+	 */
+	private int num_cells = 0;
+	private byte[] cell_type = new byte[16];
+	private int[] cell_start = new int[16];
+	private int[] cell_end = new int[16];
+	private int[] cell_span = new int[17];
+	
+	/**
+	 * Change-spans located. Span 'j' (including its tags) lies in the range
+	 * [span_start,span_end).
+	 */
+	private int num_spans = 0;
+	private int[] span_start = new int[16];
+	private int[] span_end = new int[16];
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct an empty [diff_text], to be filled by [append()].
+	 */
+	public diff_text(){
+		this.buf = new char[4096];
+		this.len = 0;
+	}
+	
+	/**
+	 * Construct a [diff_text] over diff-text already held as a String.
+	 * @param text Diff-text, as returned by the MediaWiki API
+	 */
+	public diff_text(String text){
+		this.buf = text.toCharArray();
+		this.len = buf.length;
+		this.str = text;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Append text (as provided by SAX's characters() callback).
+	 * @param ch Character array containing the text
+	 * @param start Offset of the text in 'ch'
+	 * @param length Length of the text
+	 */
+	public void append(char[] ch, int start, int length){
+		if(len + length > buf.length){
+			char[] bigger = new char[Math.max(buf.length * 2, len + length)];
+			System.arraycopy(buf, 0, bigger, 0, len);
+			buf = bigger;
+		} // Grow geometrically
+		System.arraycopy(ch, start, buf, len, length);
+		len += length;
+		str = null;
+		indexed = false;
+	}
+	
+	/**
+	 * Overriding: Return the length of the text.
+	 */
+	public int length(){
+		return(len);
+	}
+	
+	/**
+	 * Overriding: Return a single character of the text.
+	 */
+	public char charAt(int index){
+		if(index >= len)
+			throw new IndexOutOfBoundsException("index: " + index);
+		return(buf[index]);
+	}
+	
+	/**
+	 * Overriding: Return a portion of the text (as a new String).
+	 */
+	public CharSequence subSequence(int start, int end){
+		if(end > len)
+			throw new IndexOutOfBoundsException("end: " + end);
+		return(new String(buf, start, end - start));
+	}
+	
+	/**
+	 * Overriding: Return the text as a String. It is built only once.
+	 */
+	public String toString(){
+		if(str == null)
+			str = new String(buf, 0, len);
+		return(str);
+	}
+	
+	/**
+	 * Return the number of added/deleted cells in the diff-table.
+	 * @return the number of added/deleted cells in the diff-table
+	 */
+	public int num_cells(){
+		index();
+		return(num_cells);
+	}
+	
+	/**
+	 * Return whether a cell is an addition.
+	 * @param cell Index of the cell, in document order
+	 * @return TRUE if cell 'cell' is an "addedline"; FALSE, otherwise
+	 */
+	public boolean cell_is_added(int cell){
+		index();
+		return(cell_type[cell] == CELL_ADDED);
+	}
+	
+	/**
+	 * Return whether a cell is a deletion.
+	 * @param cell Index of the cell, in document order
+	 * @return TRUE if cell 'cell' is a "deletedline"; FALSE, otherwise
+	 */
+	public boolean cell_is_deleted(int cell){
+		index();
+		return(cell_type[cell] == CELL_DELETED);
+	}
+	
+	/**
+	 * Return the text of a cell, with all markup removed.
+	 * @param cell Index of the cell, in document order
+	 * @return Text content of cell 'cell'
+	 */
+	public String cell_text(int cell){
+		index();
+		return(strip_tags(cell_start[cell], cell_end[cell]));
+	}
+	
+	/**
+	 * Return the text of each change-span in a cell, in order.
+	 * @param cell Index of the cell, in document order
+	 * @return Text content of each change-span of cell 'cell'
+	 */
+	public List<String> cell_spans(int cell){
+		index();
+		List<String> spans = new ArrayList<String>(
+				cell_span[cell+1] - cell_span[cell]);
+		for(int j=cell_span[cell]; j < cell_span[cell+1]; j++)
+			spans.add(span_text(span_start[j], span_end[j]));
+		return(spans);
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Locate the cells (and their change-spans) of the text, if not done.
+	 */
+	private void index(){
+		if(indexed)
+			return;
+		num_cells = 0;
+		num_spans = 0;
+		cell_span[0] = 0;
+		
+		int pos = 0;
+		while(pos < len){
+			if(buf[pos] != '<'){
+				pos++;
+				continue;
+			} // Cells can only begin at a tag
+			
+			boolean added = matches(pos, TD_ADDED);
+			if(!added && !matches(pos, TD_DELETED)){
+				pos++;
+				continue;
+			} // Not the opening of a cell of interest
+			
+			int content = pos + (added ? TD_ADDED : TD_DELETED).length();
+			int end = scan_cell(content);
+			if(end == -1){
+				num_spans = cell_span[num_cells];
+				pos++;
+				continue;
+			} // Malformed cell; discard any spans, search onwards
+			
+			byte type = CELL_OTHER;
+			if(matches_exact(pos, TD_ADDED))
+				type = CELL_ADDED;
+			else if(matches_exact(pos, TD_DELETED))
+				type = CELL_DELETED;
+			add_cell(type, pos, end + TD_CLOSE.length());
+			pos = end + TD_CLOSE.length();
+		} // Single scan over the text
+		indexed = true;
+	}
+	
+	/**
+	 * Scan the content of a cell, recording its change-spans.
+	 * @param pos Offset at which the cell's content begins
+	 * @return Offset of the cell's closing tag; or -1 if the content is not
+	 * of the required form (in which case spans may have been recorded)
+	 */
+	private int scan_cell(int pos){
+		while(true){
+			pos = skip_text(pos);
+			if(pos >= len)
+				return(-1);
+			if(matches(pos, TD_CLOSE))
+				return(pos);
+			
+			int open = match_any(pos, SPAN_OPEN);
+			if(open == -1)
+				return(-1);
+			int span = pos;
+			pos = skip_text(pos + open);
+			int close = match_any(pos, SPAN_CLOSE);
+			if(close == -1)
+				return(-1);
+			pos += close;
+			add_span(span, pos);
+		} // Alternate TEXT and SPAN, until the cell closes
+	}
+	
+	/**
+	 * Advance past text (anything but a tag; "<div>" tags are skipped).
+	 * @param pos Offset from which to advance
+	 * @return Offset of the first tag at/after 'pos', or [len] if none
+	 */
+	private int skip_text(int pos){
+		while(pos < len){
+			if(buf[pos] != '<')
+				pos++;
+			else if(matches_exact(pos, DIV_OPEN))
+				pos += DIV_OPEN.length();
+			else if(matches_exact(pos, DIV_CLOSE))
+				pos += DIV_CLOSE.length();
+			else break;
+		} // Stop at the first meaningful tag
+		return(pos);
+	}
+	
+	/**
+	 * Copy text out of the buffer, omitting "<div>" tags, and then all
+	 * else matching "<[^<]*>" (i.e., from a '<' to the LAST '>' before the
+	 * next '<'), exactly as [replaceAll()] would.
+	 * @param start Offset at which to begin (inclusive)
+	 * @param end Offset at which to end (exclusive)
+	 * @return Text between 'start' and 'end', sans tags
+	 */
+	private String strip_tags(int start, int end){
+		char[] text = new char[end - start];
+		int n = 0;
+		for(int pos=start; pos < end; pos++){
+			if(matches_exact(pos, DIV_OPEN))
+				pos += DIV_OPEN.length() - 1;
+			else if(matches_exact(pos, DIV_CLOSE))
+				pos += DIV_CLOSE.length() - 1;
+			else text[n++] = buf[pos];
+		} // First, "<div>" tags are treated as absent
+		
+		StringBuilder sb = new StringBuilder(n);
+		int i = 0;
+		while(i < n){
+			if(text[i] == '<'){
+				int next = i + 1;
+				while(next < n && text[next] != '<')
+					next++;
+				int close = next - 1;
+				while(close > i && text[close] != '>')
+					close--;
+				if(close > i){
+					i = close + 1;
+					continue;
+				} // Greedy match, up to the last '>' before the next '<'
+			} // Otherwise, '<' is ordinary text
+			sb.append(text[i]);
+			i++;
+		} // Character-wise copy
+		return(sb.toString());
+	}
+	
+	/**
+	 * Copy the text of a change-span out of the buffer, omitting "<div>"
+	 * tags and the (case-sensitive) opening and closing span tags.
+	 * @param start Offset at which the span begins (inclusive)
+	 * @param end Offset at which the span ends (exclusive)
+	 * @return Text content of the span
+	 */
+	private String span_text(int start, int end){
+		StringBuilder sb = new StringBuilder(end - start);
+		int pos = start;
+		while(pos < end){
+			int tag = 0;
+			if(buf[pos] == '<'){
+				if(matches_exact(pos, DIV_OPEN))
+					tag = DIV_OPEN.length();
+				else if(matches_exact(pos, DIV_CLOSE))
+					tag = DIV_CLOSE.length();
+				else tag = Math.max(0, Math.max(
+						match_any_exact(pos, SPAN_OPEN),
+						match_any_exact(pos, SPAN_CLOSE)));
+			} // Determine if at a tag to be dropped
+			if(tag > 0)
+				pos += tag;
+			else sb.append(buf[pos++]);
+		} // Character-wise copy
+		return(sb.toString());
+	}
+	
+	/**
+	 * Determine whether some (ASCII) tag appears at an offset, ignoring
+	 * case (as did the expression this class replaces).
+	 * @param pos Offset into the text
+	 * @param tag Tag sought
+	 * @return TRUE if 'tag' appears at 'pos'; FALSE, otherwise
+	 */
+	private boolean matches(int pos, String tag){
+		if(pos + tag.length() > len)
+			return(false);
+		for(int i=0; i < tag.length(); i++){
+			char c = buf[pos+i];
+			if(c >= 'A' && c <= 'Z')
+				c += ('a' - 'A');
+			if(c != tag.charAt(i))
+				return(false);
+		} // Tags here are all lower-case
+		return(true);
+	}
+	
+	/**
+	 * Determine whether some tag appears at an offset, case-sensitively.
+	 * @param pos Offset into the text
+	 * @param tag Tag sought
+	 * @return TRUE if 'tag' appears at 'pos'; FALSE, otherwise
+	 */
+	private boolean matches_exact(int pos, String tag){
+		if(pos + tag.length() > len)
+			return(false);
+		for(int i=0; i < tag.length(); i++){
+			if(buf[pos+i] != tag.charAt(i))
+				return(false);
+		} // Character-wise comparison
+		return(true);
+	}
+	
+	/**
+	 * Determine whether any of several tags appears at an offset.
+	 * @param pos Offset into the text
+	 * @param tags Tags sought
+	 * @return Length of the tag appearing at 'pos'; or -1 if none does
+	 */
+	private int match_any(int pos, String[] tags){
+		for(int i=0; i < tags.length; i++){
+			if(matches(pos, tags[i]))
+				return(tags[i].length());
+		} // First match is the only possible match
+		return(-1);
+	}
+	
+	/**
+	 * Determine whether any of several tags appears (case-sensitively) at
+	 * an offset.
+	 * @param pos Offset into the text
+	 * @param tags Tags sought
+	 * @return Length of the tag appearing at 'pos'; or -1 if none does
+	 */
+	private int match_any_exact(int pos, String[] tags){
+		for(int i=0; i < tags.length; i++){
+			if(matches_exact(pos, tags[i]))
+				return(tags[i].length());
+		} // First match is the only possible match
+		return(-1);
+	}
+	
+	/**
+	 * Record a cell (whose spans have already been recorded).
+	 * @param type Type of the cell; one of the CELL_* constants
+	 * @param start Offset at which the cell begins
+	 * @param end Offset at which the cell ends
+	 */
+	private void add_cell(byte type, int start, int end){
+		if(num_cells + 1 == cell_type.length){
+			int size = cell_type.length * 2;
+			byte[] new_type = new byte[size];
+			System.arraycopy(cell_type, 0, new_type, 0, num_cells);
+			cell_type = new_type;
+			cell_start = grow(cell_start, size);
+			cell_end = grow(cell_end, size);
+			cell_span = grow(cell_span, size + 1);
+		} // Grow geometrically
+		cell_type[num_cells] = type;
+		cell_start[num_cells] = start;
+		cell_end[num_cells] = end;
+		num_cells++;
+		cell_span[num_cells] = num_spans;
+	}
+	
+	/**
+	 * Record a change-span, of the cell currently being scanned.
+	 * @param start Offset at which the span begins
+	 * @param end Offset at which the span ends
+	 */
+	private void add_span(int start, int end){
+		if(num_spans == span_start.length){
+			span_start = grow(span_start, num_spans * 2);
+			span_end = grow(span_end, num_spans * 2);
+		} // Grow geometrically
+		span_start[num_spans] = start;
+		span_end[num_spans] = end;
+		num_spans++;
+	}
+	
+	/**
+	 * Copy an array into a larger one.
+	 * @param arr Array to be copied
+	 * @param size Size of the new array
+	 * @return Array of size 'size', with the contents of 'arr' as a prefix
+	 */
+	private static int[] grow(int[] arr, int size){
+		int[] bigger = new int[size];
+		System.arraycopy(arr, 0, bigger, 0, arr.length);
+		return(bigger);
+	}
+
+}
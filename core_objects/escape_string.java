@@ -1,154 +1,173 @@
-
 package core_objects;
 
-import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
-
 /**
  * Andrew G. West - escape_string.java - The purpose of this class is to
  * escape Java strings -- as is required when examining the "comments"
  * field associated with Wikipedia edits (which may include carrriage
  * return escape sequences, regular expression messiness, etc.). This
- * code is just a reduced version of what is found in the Apache Commons.
+ * code began as a reduced version of what is found in the Apache Commons;
+ * it is now table-driven, sizing output in a pre-scan and writing it
+ * directly into a char array. Its output is character-for-character that
+ * of the original (which is stored in the DB; so this must not change).
  */
 public class escape_string{
 
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * For each ASCII character; the length of its escaped form. Either
+	 * 1 (unchanged), 2 (backslash + [ESC_CHAR]), or 6 ("\\uXXXX"). All
+	 * non-ASCII characters take the 6-character form.
+	 */
+	private static final byte[] ESC_LEN = new byte[128];
+	
+	/**
+	 * For ASCII characters whose [ESC_LEN] is 2; the character that
+	 * follows the backslash.
+	 */
+	private static final char[] ESC_CHAR = new char[128];
+	
+	/**
+	 * Upper-case hexadecimal digits.
+	 */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	
+	/**
+	 * For each ASCII character; the character it denotes when following a
+	 * backslash, or zero if it denotes itself ('u' is handled specially).
+	 */
+	private static final char[] UNESC_CHAR = new char[128];
+	
+	static{
+		for(int ch=0; ch < 128; ch++)
+			ESC_LEN[ch] = (byte) ((ch < 32) ? 6 : 1);
+		set_escape('\b', 'b');
+		set_escape('\n', 'n');
+		set_escape('\t', 't');
+		set_escape('\f', 'f');
+		set_escape('\r', 'r');
+		set_escape('"', '"');
+		set_escape('\\', '\\');
+		// set_escape('/', '/');
+		
+		UNESC_CHAR['r'] = '\r';
+		UNESC_CHAR['f'] = '\f';
+		UNESC_CHAR['t'] = '\t';
+		UNESC_CHAR['n'] = '\n';
+		UNESC_CHAR['b'] = '\b';
+	} // Single quotes are not escaped (only needed in JavaScript)
+	
+	
 	// **************************** PUBLIC METHODS ***************************
-
+	
 	/**
 	 * The lone public method. Escape a Java string.
 	 * @param str Input string, the one that should be escaped
 	 * @return Escaped version of 'str'. For example, "/n" becomes "//n"
 	 */
-    public static String escape(String str) throws Exception{
-    	
-        if(str == null) return null; // Don't escape empty string
-     
-        	// Allocate a writer for worst-case, do the escaping
-        StringWriter writer = new StringWriter(str.length() * 2);
-        escape_java_work(writer, str, false);
-        return writer.toString();
-    }
-    
-    /**
-     * Unescape the work done by the escape() function.
-     * @param str The string which is to be un-escaped
-     * @return Un-escaped version of 'str'
-     */
-    public static String unescape(String str) throws Exception{
-    	if(str == null) return null; // Edge-case
-		StringWriter writer = new StringWriter(str.length());
-		unescape_java(writer, str);
-		return writer.toString();	
-    }
-    
-	// *************************** PRIVATE METHODS ***************************
-    
-    /**
-     * Method handling String-level details of escaping a Java string.
-     * @param out Writer to which output will be written
-     * @param str Input string to the method
-     * @param esc_single TRUE if single quotes should be escaped, false
-     * otherwise (not necessary in Java, but needed in JavaScript).
-     */
-    private static void escape_java_work(Writer out, String str, 
-    		boolean esc_single) throws IOException{
-    	
-        int sz = str.length();
-        for(int i = 0; i < sz; i++){
-            char ch = str.charAt(i);
-            if(ch > 0xfff){ // First handle Unicode sequences
-                out.write("\\u" + hex(ch));
-            } else if(ch > 0xff){
-                out.write("\\u0" + hex(ch));
-            } else if(ch > 0x7f){
-                out.write("\\u00" + hex(ch));
-            } else if(ch < 32){
-                switch (ch){
-                    case '\b': out.write('\\'); out.write('b'); break;
-                    case '\n': out.write('\\'); out.write('n'); break;
-                    case '\t': out.write('\\'); out.write('t'); break;
-                    case '\f': out.write('\\'); out.write('f'); break;
-                    case '\r': out.write('\\'); out.write('r'); break;
-                    default :
-                        if (ch > 0xf) out.write("\\u00" + hex(ch));
-                        else out.write("\\u000" + hex(ch));
-                        break;
-                } // Then the non-Unicode escape characters
-            } else{
-                switch(ch){
-                    case '\'':
-                        if (esc_single) out.write('\\');
-                        out.write('\'');
-                        break;
-                    case '"': out.write('\\'); out.write('"'); break;
-                    case '\\': out.write('\\'); out.write('\\'); break;
-                    // case '/': out.write('\\'); out.write('/'); break;
-                    default : out.write(ch); break;
-                } // And finally escape any slashes
-            }
-        } // Step through the input string one character at a time
-    }
-
-    /**
-     * Return the hexadecimal code for a given character.
-     * @param ch Character whose hexadecimal code is required
-     * @return Hexidecimal code of character 'ch'
-     */
-    private static String hex(char ch){
-        return Integer.toHexString(ch).toUpperCase();
-    }
-    
-    /**
-     * Unescape a provided Java String.
-     * @param out Writer to which output will be written
-     * @param str Input string
-     */
-    private static void unescape_java(Writer out, String str) 
-    		throws IOException {
-
+	public static String escape(String str) throws Exception{
+	
+		if(str == null) return null; // Don't escape empty string
+		
+			// Size the output; if nothing needs escaping, we are done
 		int sz = str.length();
-		StringBuffer unicode = new StringBuffer(4);
-		boolean hadSlash = false;
-		boolean inUnicode = false;
-		for(int i = 0; i < sz; i++){
+		int out_sz = 0;
+		for(int i=0; i < sz; i++){
 			char ch = str.charAt(i);
-			if(inUnicode){
-				unicode.append(ch);
-				if(unicode.length() == 4){
-					int value = Integer.parseInt(unicode.toString(), 16);
-					out.write((char) value);
-					unicode.setLength(0);
-					inUnicode = false;
-					hadSlash = false;
-				} // We expect unicode escapes to be 4 characters
-				continue;
-			} // Process a block of hex code (forming a unicode char)
-			if(hadSlash){
-				hadSlash = false;
-				switch(ch){
-					case '\\': out.write('\\');	break;
-					case '\'': out.write('\''); break;
-					case '\"': out.write('"'); break;
-					case 'r': out.write('\r'); break;
-					case 'f': out.write('\f'); break;
-					case 't': out.write('\t'); break;
-					case 'n': out.write('\n'); break;
-					case 'b': out.write('\b'); break;
-					case 'u': inUnicode = true; break;
-					default: out.write(ch); break;
-				} // Iterate over non-unicode escapes
-				continue;
-			} else if(ch == '\\'){
-				hadSlash = true;
+			out_sz += (ch < 128) ? ESC_LEN[ch] : 6;
+		} // Pre-scan
+		if(out_sz == sz)
+			return(str);
+		
+		char[] out = new char[out_sz];
+		int pos = 0;
+		for(int i=0; i < sz; i++){
+			char ch = str.charAt(i);
+			int len = (ch < 128) ? ESC_LEN[ch] : 6;
+			if(len == 1)
+				out[pos++] = ch;
+			else if(len == 2){
+				out[pos++] = '\\';
+				out[pos++] = ESC_CHAR[ch];
+			} else{
+				out[pos++] = '\\';
+				out[pos++] = 'u';
+				out[pos++] = HEX[(ch >> 12) & 0xF];
+				out[pos++] = HEX[(ch >> 8) & 0xF];
+				out[pos++] = HEX[(ch >> 4) & 0xF];
+				out[pos++] = HEX[ch & 0xF];
+			} // Unicode and control characters as 4-digit hex
+		} // Step through the input string one character at a time
+		return(new String(out));
+	}
+	
+	/**
+	 * Unescape the work done by the escape() function.
+	 * @param str The string which is to be un-escaped
+	 * @return Un-escaped version of 'str'
+	 */
+	public static String unescape(String str) throws Exception{
+		if(str == null) return null; // Edge-case
+		if(str.indexOf('\\') == -1)
+			return(str); // Nothing to un-escape
+		
+		int sz = str.length();
+		char[] out = new char[sz]; // Output is never longer than input
+		int pos = 0;
+		for(int i=0; i < sz; i++){
+			char ch = str.charAt(i);
+			if(ch != '\\'){
+				out[pos++] = ch;
 				continue;
-			} // The multiple slash is always tricky
-			out.write(ch);
+			} // Ordinary character
+			
+			if(i + 1 == sz){
+				out[pos++] = '\\';
+				break;
+			} // Tricky case of a slash at the end of string
+			ch = str.charAt(++i);
+			if(ch == 'u'){
+				if(i + 4 >= sz)
+					break; // Truncated unicode escape is dropped
+				out[pos++] = (char) parse_hex(str, i + 1);
+				i += 4;
+			} else if(ch < 128 && UNESC_CHAR[ch] != 0)
+				out[pos++] = UNESC_CHAR[ch];
+			else out[pos++] = ch; // Includes slash and quotes
 		} // Iterate over the entirety of the passed-in String
-		if(hadSlash){
-			out.write('\\');
-		} // Tricky case of a slash at the end of string
-    }
-    
+		return(new String(out, 0, pos));
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Register the two-character escape of an ASCII character.
+	 * @param ch Character to be escaped
+	 * @param esc Character which follows the backslash in its escape
+	 */
+	private static void set_escape(char ch, char esc){
+		ESC_LEN[ch] = 2;
+		ESC_CHAR[ch] = esc;
+	}
+	
+	/**
+	 * Parse 4 hexadecimal digits (a unicode escape) from a String.
+	 * @param str String containing the digits
+	 * @param start Offset of the first digit in 'str'
+	 * @return Value of the digits. Anything other than plain hex digits
+	 * is given to [Integer.parseInt()], so as to behave exactly as the
+	 * original (including its exceptions, and its acceptance of signs).
+	 */
+	private static int parse_hex(String str, int start){
+		int value = 0;
+		for(int i=start; i < start + 4; i++){
+			int digit = Character.digit(str.charAt(i), 16);
+			if(digit == -1)
+				return(Integer.parseInt(str.substring(start, start + 4), 16));
+			value = (value << 4) | digit;
+		} // Accumulate hex digits
+		return(value);
+	}
+
 }
@@ -62,6 +62,18 @@ public class metadata{
 	 */
 	public final boolean user_is_ipv4_or_ipv6;
 	
+	/**
+	 * Assuming [user_is_ipv4], the 32-bit (integer) value of that address,
+	 * as used for geolocation. Otherwise, -1.
+	 */
+	public final long user_ipv4_int;
+	
+	/**
+	 * If 'user' is an IPv6 address, the 128-bit value of that address as 
+	 * {high 64 bits, low 64 bits}. Otherwise, NULL.
+	 */
+	public final long[] user_ipv6;
+	
 	/**
 	 * Revision comment left by 'user'.
 	 */
@@ -129,17 +141,16 @@ public class metadata{
 		
 			// User parse; determine if registered or anonymous (IP address).
 		this.user = str_user;
-		if(this.user.matches("(\\d)+\\.(\\d)+\\.(\\d)+\\.(\\d)+"))
-			user_is_ipv4 = true;
-		else user_is_ipv4 = false;
-		user_is_ipv4_or_ipv6 = stiki_utils.is_v4_v6_ip(this.user);
+		this.user_ipv4_int = stiki_utils.ipv4_to_long(this.user);
+		this.user_ipv6 = parse_ipv6(this.user);
+		this.user_is_ipv4 = (this.user_ipv4_int != -1);
+		this.user_is_ipv4_or_ipv6 = (user_is_ipv4 || user_ipv6 != null);
 		
 			// Determine country of origination for anonymous users
-		if(!this.user_is_ipv4 || db_geo == null)
+		if(db_geo == null)
 			 country = "";
 		else // Only do geolocation-calculation where user is IP address
-			this.country = db_geo.get_country_code(
-					stiki_utils.ip_to_long(this.user));
+			this.country = geo_country(db_geo);
 
 			// Only timestamp requires serious transformation
 		this.timestamp = stiki_utils.wiki_ts_to_unix(str_timestamp);
@@ -174,22 +185,52 @@ public class metadata{
 		
 			// User parse; determine if registered or anonymous (IP address).
 		this.user = str_user;
-		if(this.user.matches("(\\d)+\\.(\\d)+\\.(\\d)+\\.(\\d)+"))
-			user_is_ipv4 = true;
-		else user_is_ipv4 = false;
-		user_is_ipv4_or_ipv6 = stiki_utils.is_v4_v6_ip(this.user);
+		this.user_ipv4_int = stiki_utils.ipv4_to_long(this.user);
+		this.user_ipv6 = parse_ipv6(this.user);
+		this.user_is_ipv4 = (this.user_ipv4_int != -1);
+		this.user_is_ipv4_or_ipv6 = (user_is_ipv4 || user_ipv6 != null);
 		
-			// Determine country of origination for anonymous users
+			// Determine country of origination for anonymous users. The
+			// client procedure handles IPv4 only; IPv6 country is blank.
 		if(!this.user_is_ipv4 || client == null)
 			 country = "";
 		else // Only do geolocation-calculation where user is IP address
-			this.country = client.geo_country(
-					stiki_utils.ip_to_long(this.user));
+			this.country = client.geo_country(this.user_ipv4_int);
 		
 			// Only timestamp requires serious transformation
 		this.timestamp = stiki_utils.wiki_ts_to_unix(str_timestamp);
 	}
-	
+
+	/**
+	 * Copy a metadata object, (re-)determining the "country" field. This
+	 * is useful where metadata was fetched in bulk without geolocation,
+	 * and only a few of those objects later prove to need it.
+	 * @param md Metadata object to be copied
+	 * @param db_geo DB-handler permitting IP->country mappings. If NULL,
+	 * then the country of 'md' is retained.
+	 */
+	public metadata(metadata md, db_geolocation db_geo) throws Exception{
+		this.rid = md.rid;
+		this.pid = md.pid;
+		this.timestamp = md.timestamp;
+		this.namespace = md.namespace;
+		this.title = md.title;
+		this.user = md.user;
+		this.user_is_ipv4 = md.user_is_ipv4;
+		this.user_is_ipv4_or_ipv6 = md.user_is_ipv4_or_ipv6;
+		this.user_ipv4_int = md.user_ipv4_int;
+		this.user_ipv6 = md.user_ipv6;
+		this.comment = md.comment;
+		this.tags = md.tags;
+		this.rb_token = md.rb_token;
+		this.is_rb = md.is_rb;
+
+		if(!this.user_is_ipv4_or_ipv6 || db_geo == null)
+			this.country = md.country;
+		else // Only do geolocation-calculation where user is IP address
+			this.country = geo_country(db_geo);
+	}
+
 	/**
 	 * Construct an empty metadata object. All fields are set to zero, null,
 	 * or un-interesting values. This constructor is useful only where a 
@@ -204,6 +245,8 @@ public class metadata{
 		this.user  = "";
 		this.user_is_ipv4 = false;
 		this.user_is_ipv4_or_ipv6 = false;
+		this.user_ipv4_int = -1;
+		this.user_ipv6 = null;
 		this.comment = "";
 		this.rb_token = "";
 		this.country = "";
@@ -237,5 +280,38 @@ public class metadata{
 	public boolean get_is_rb(){
 		return (this.is_rb);
 	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Parse a user-name as an IPv6 address. The common case (a registered
+	 * user or IPv4 address) is decided without allocation.
+	 * @param user User-name, which may be an IPv6 address
+	 * @return 128-bit value of 'user' (as in [user_ipv6]), or NULL if 'user'
+	 * is not an IPv6 address
+	 */
+	private static long[] parse_ipv6(String user){
+		if(user.indexOf(':') == -1)
+			return(null);
+		long[] ipv6 = new long[2];
+		if(stiki_utils.ipv6_to_longs(user, ipv6))
+			return(ipv6);
+		return(null);
+	}
+	
+	/**
+	 * Determine the country of origin of this edit's (IP address) user.
+	 * @param db_geo DB-handler permitting IP->country mappings
+	 * @return Two letter country-code of the user's address, or the empty
+	 * string if the user is registered or no data is available
+	 */
+	private String geo_country(db_geolocation db_geo) throws Exception{
+		if(user_is_ipv4)
+			return(db_geo.get_country_code(user_ipv4_int));
+		else if(user_ipv6 != null)
+			return(db_geo.get_country_code_v6(user_ipv6));
+		return("");
+	}
 
 }
\ No newline at end of file
@@ -124,6 +124,11 @@ public class stiki_utils{
 	 */
 	public static final String tbl_geo_country = "geo_country";
 	
+	/**
+	 * Table storing IPv6->location mappings at country granularity.
+	 */
+	public static final String tbl_geo_country_v6 = "geo_country_v6";
+	
 	/**
 	 * Table storing IP->location,timezone mappings at city granularity.
 	 */
@@ -176,6 +181,17 @@ public class stiki_utils{
 	 */
 	public static final int HIST_WINDOW = 60*60*24*45;
 	
+	/**
+	 * Seconds in a (UTC) day.
+	 */
+	private static final long SECS_PER_DAY = 60*60*24;
+	
+	/**
+	 * Years up to and including this may precede Gregorian adoption (which
+	 * Calendar observes); arithmetic date handling is only used after it.
+	 */
+	private static final int GREGORIAN_YEAR = 1600;
+	
 	
 	// **************************** PUBLIC METHODS ***************************
 		
@@ -322,6 +338,9 @@ public class stiki_utils{
 	 * @return Long containing decimal representation of the IP
 	 */
 	public static long ip_to_long(String ip){
+		long fast = ipv4_to_long(ip);
+		if(fast != -1)
+			return(fast); // Well-formed address; else historical handling
 		String[] ip_octets = ip.split("\\.");
 		
 			// Integers used because 'byte' type is signed
@@ -534,8 +553,68 @@ public class stiki_utils{
 	 * FALSE otherwise.
 	 */
 	public static boolean is_v4_v6_ip(String addy){
-		return(addy.matches("(\\d)+\\.(\\d)+\\.(\\d)+\\.(\\d)+") || 
-				addy.matches("^(?:[0-9a-fA-F]{1,4}:){7}[0-9a-fA-F]{1,4}$"));
+		return(ipv4_to_long(addy) != -1 || ipv6_to_longs(addy, null));
+	}
+	
+	/**
+	 * Parse an IPv4 address in a single pass, without allocation. Octets
+	 * may have leading zeros (as "(\\d)+" permitted), but must be <= 255.
+	 * @param addy String which may be an address of form "???.???.???.???"
+	 * @return 32-bit value of 'addy' (as in [ip_to_long()]), or -1 if
+	 * 'addy' is not a well-formed IPv4 address
+	 */
+	public static long ipv4_to_long(CharSequence addy){
+		long value = 0;
+		int octet = 0, digits = 0, dots = 0;
+		for(int i=0; i < addy.length(); i++){
+			char ch = addy.charAt(i);
+			if(ch >= '0' && ch <= '9'){
+				octet = (octet * 10) + (ch - '0');
+				if(octet > 255)
+					return(-1);
+				digits++;
+			} else if(ch == '.' && digits > 0 && dots < 3){
+				value = (value << 8) | octet;
+				octet = 0; digits = 0; dots++;
+			} else return(-1);
+		} // Accumulate octets, checking form as we go
+		if(digits == 0 || dots != 3)
+			return(-1);
+		return((value << 8) | octet);
+	}
+	
+	/**
+	 * Parse an IPv6 address in a single pass, without allocation. Only the
+	 * full form of eight groups (as MediaWiki reports editor addresses;
+	 * e.g., "2001:DB8:0:0:0:0:0:1") is recognized, not "::" compression.
+	 * @param addy String which may be an IPv6 address
+	 * @param out If non-NULL, and 'addy' is well-formed, then out[0] is set
+	 * to the high 64 bits of the address, and out[1] to the low 64 bits
+	 * @return TRUE if 'addy' is a well-formed IPv6 address; FALSE otherwise
+	 */
+	public static boolean ipv6_to_longs(CharSequence addy, long[] out){
+		long hi = 0, lo = 0;
+		int group = 0, digits = 0, colons = 0;
+		for(int i=0; i < addy.length(); i++){
+			char ch = addy.charAt(i);
+			int nibble = Character.digit(ch, 16);
+			if(nibble != -1 && ch < 128){
+				if(++digits > 4)
+					return(false);
+				group = (group << 4) | nibble;
+			} else if(ch == ':' && digits > 0 && colons < 7){
+				if(colons < 4) hi = (hi << 16) | group;
+				else lo = (lo << 16) | group;
+				group = 0; digits = 0; colons++;
+			} else return(false);
+		} // Accumulate groups, checking form as we go
+		if(digits == 0 || colons != 7)
+			return(false);
+		if(out != null){
+			out[0] = hi;
+			out[1] = (lo << 16) | group;
+		} // Store the 128-bit form, if wanted
+		return(true);
 	}
 	
 
@@ -568,6 +647,14 @@ public class stiki_utils{
 	 */
 	public static long arg_unix_time(int y, int mon, int d, int h, 
 			int min, int sec){
+		
+		long y_norm = y + floor_div(mon - 1, 12);
+		if(y_norm > GREGORIAN_YEAR && Math.abs((long) d) < 36500){
+			int mon_norm = (int) floor_mod(mon - 1, 12) + 1;
+			long days = days_from_civil(y_norm, mon_norm) + (d - 1);
+			return((days * SECS_PER_DAY) + (h * 3600L) + (min * 60L) + sec);
+		} // Arithmetically; out-of-range fields roll over, as in Calendar
+		
 		Calendar cal = Calendar.getInstance();
 		cal.clear();
 		cal.setTimeZone(TimeZone.getTimeZone("GMT+0000"));
@@ -582,6 +669,10 @@ public class stiki_utils{
 	 */
 	public static long wiki_ts_to_unix(String wiki_ts){
 		
+		long fast = wiki_ts_to_unix_fast(wiki_ts);
+		if(fast != Long.MIN_VALUE)
+			return(fast); // Well-formed; else historical handling
+		
 		int year=0, month=0, day=0, hour=0, min=0, sec=0;
 		
 			// Being a fixed format, we can parse the parts out easily
@@ -671,9 +762,152 @@ public class stiki_utils{
 		return(unix_sec/(60*60*24));	
 	}
 	
+	/**
+	 * Return the time-of-day at a UNIX time, in some locality. Time-of-day
+	 * is represented as a floating point number, [0,24). The integer portion
+	 * is the hour on a 24-hour clock. The decimal portion corresponds to 
+	 * (minute/60) + (second/3600). Computed arithmetically (no Calendar).
+	 * @param unix_ts Unix timestamp of time (GMT) to be interpreted
+	 * @param offset Offset from GMT, in locality, in hours
+	 * @return Time-of-day at 'unix_ts' offset by 'offset' hours
+	 */
+	public static float time_of_day(long unix_ts, double offset){
+		long ms_of_day = floor_mod(local_millis(unix_ts, offset), 
+				SECS_PER_DAY * 1000);
+		int sec_of_day = (int) (ms_of_day / 1000);
+		float time_of_day = sec_of_day / 3600;
+		time_of_day += ((sec_of_day / 60 % 60) / 60.0);
+		time_of_day += ((sec_of_day % 60) / 3600.0);
+		return(time_of_day);
+	}
+	
+	/**
+	 * Return the day-of-week at a UNIX time, in some locality. Computed
+	 * arithmetically (no Calendar).
+	 * @param unix_ts Unix timestamp of time (GMT) to be interpreted
+	 * @param offset Offset from GMT, in locality, in hours
+	 * @return Integer [1,7] describing day-of-week at 'unix_ts' offset by
+	 * 'offset' hours. As with Java's Calendar, SATURDAY=7 and SUNDAY=1.
+	 */
+	public static int day_of_week(long unix_ts, double offset){
+		long day = floor_div(local_millis(unix_ts, offset), 
+				SECS_PER_DAY * 1000);
+		return((int) floor_mod(day + 4, 7) + 1); // 1970-01-01 was Thursday
+	}
+	
 	
 	// ************************** PRIVATE METHODS ***************************
 	
+	/**
+	 * Parse a Wikipedia timestamp, in either "2001-01-21T02:12:21Z" or
+	 * "20010121021221" form, directly from its characters.
+	 * @param wiki_ts Wikipedia timestamp, in string format
+	 * @return The same time as 'wiki_ts' expressed in UNIX format, or
+	 * Long.MIN_VALUE if 'wiki_ts' is not of a well-formed, modern kind
+	 */
+	private static long wiki_ts_to_unix_fast(String wiki_ts){
+		int len = wiki_ts.length();
+		boolean iso = false;
+		for(int i=0; i < len && !iso; i++){
+			char ch = wiki_ts.charAt(i);
+			iso = (ch == 'Z' || ch == '-');
+		} // Format test, as the historical contains("Z") || contains("-")
+		
+		int year, month, day, hour, min, sec;
+		if(iso){
+			if(len < 19)
+				return(Long.MIN_VALUE);
+			year = digits(wiki_ts, 0, 4);
+			month = digits(wiki_ts, 5, 2);
+			day = digits(wiki_ts, 8, 2);
+			hour = digits(wiki_ts, 11, 2);
+			min = digits(wiki_ts, 14, 2);
+			sec = digits(wiki_ts, 17, 2);
+		} else{
+			if(len < 14)
+				return(Long.MIN_VALUE);
+			year = digits(wiki_ts, 0, 4);
+			month = digits(wiki_ts, 4, 2);
+			day = digits(wiki_ts, 6, 2);
+			hour = digits(wiki_ts, 8, 2);
+			min = digits(wiki_ts, 10, 2);
+			sec = digits(wiki_ts, 12, 2);
+		} // Same fixed offsets as the historical parse
+		
+		if(year <= GREGORIAN_YEAR || month < 0 || day < 0 || hour < 0 || 
+				min < 0 || sec < 0)
+			return(Long.MIN_VALUE);
+		return(arg_unix_time(year, month, day, hour, min, sec));
+	}
+	
+	/**
+	 * Parse a run of decimal digits from a String.
+	 * @param str String containing the digits
+	 * @param start Offset of the first digit in 'str'
+	 * @param len Number of digits
+	 * @return Value of the digits, or -1 if any character is not a digit
+	 */
+	private static int digits(String str, int start, int len){
+		int value = 0;
+		for(int i=start; i < start + len; i++){
+			char ch = str.charAt(i);
+			if(ch < '0' || ch > '9')
+				return(-1);
+			value = (value * 10) + (ch - '0');
+		} // Accumulate digits
+		return(value);
+	}
+	
+	/**
+	 * Return the number of days from UNIX epoch to the first day of a month,
+	 * in the proleptic Gregorian calendar.
+	 * @param y Year
+	 * @param mon Month, on [1,12]
+	 * @return Days between 1970/1/1 and 'y'/'mon'/1 (negative if before)
+	 */
+	private static long days_from_civil(long y, int mon){
+		y -= (mon <= 2) ? 1 : 0; // Years run March-February here
+		long era = floor_div(y, 400);
+		long yoe = y - era * 400;
+		long doy = (153 * (mon + ((mon > 2) ? -3 : 9)) + 2) / 5;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return(era * 146097 + doe - 719468);
+	}
+	
+	/**
+	 * Return the local milliseconds of a UNIX time, as Calendar was
+	 * historically set with (including the rounding of fractional offsets).
+	 * @param unix_ts Unix timestamp of time (GMT)
+	 * @param offset Offset from GMT, in locality, in hours
+	 * @return Milliseconds since epoch, shifted by 'offset' hours
+	 */
+	private static long local_millis(long unix_ts, double offset){
+		return((long) ((unix_ts + 60*60*offset) * 1000));
+	}
+	
+	/**
+	 * Floor division (Java 1.5 lacks Math.floorDiv).
+	 * @param a Dividend
+	 * @param b Divisor (positive)
+	 * @return Largest integer less than or equal to (a/b)
+	 */
+	private static long floor_div(long a, long b){
+		long q = a / b;
+		if((a % b) != 0 && a < 0)
+			q--;
+		return(q);
+	}
+	
+	/**
+	 * Floor modulus (Java 1.5 lacks Math.floorMod).
+	 * @param a Dividend
+	 * @param b Divisor (positive)
+	 * @return (a - b*floor_div(a,b)), on [0,b)
+	 */
+	private static long floor_mod(long a, long b){
+		return(a - b * floor_div(a, b));
+	}
+	
 	private static String cal_pad(String str){
 		if(str.length() == 2)
 			return(str);
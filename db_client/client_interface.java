@@ -141,13 +141,33 @@ public class client_interface{
 	 */
 	public synchronized void oe_insert(metadata md, long flag_rid, 
 			RB_TYPE rbtype) throws Exception{
-		cstmt_oe_insert.setLong(1, md.rid);
-		cstmt_oe_insert.setLong(2, md.pid);
-		cstmt_oe_insert.setLong(3, md.timestamp);
-		cstmt_oe_insert.setInt(4, md.namespace);
-		cstmt_oe_insert.setString(5, escape_string.escape(md.user));
+		oe_insert(md.rid, md.pid, md.timestamp, md.namespace, md.user, 
+				flag_rid, md.country, rbtype);
+	}
+	
+	/**
+	 * Insert a row into [offending_edits], indicating a guilty edit. This
+	 * takes the fields of the metadata object individually, for callers
+	 * (i.e., the feedback outbox) which have stored just those.
+	 * @param rid Revision-ID of the GUILTY edit
+	 * @param pid Page-ID on which the GUILTY edit was made
+	 * @param timestamp Timestamp (UNIX) of the GUILTY edit
+	 * @param namespace Namespace of the page of the GUILTY edit
+	 * @param user User who made the GUILTY edit
+	 * @param flag_rid As in the metadata form of this method
+	 * @param country Country-code of the user; possibly NULL
+	 * @param rbtype As in the metadata form of this method
+	 */
+	public synchronized void oe_insert(long rid, long pid, long timestamp, 
+			int namespace, String user, long flag_rid, String country, 
+			RB_TYPE rbtype) throws Exception{
+		cstmt_oe_insert.setLong(1, rid);
+		cstmt_oe_insert.setLong(2, pid);
+		cstmt_oe_insert.setLong(3, timestamp);
+		cstmt_oe_insert.setInt(4, namespace);
+		cstmt_oe_insert.setString(5, escape_string.escape(user));
 		cstmt_oe_insert.setLong(6, flag_rid);
-		cstmt_oe_insert.setString(7, md.country);
+		cstmt_oe_insert.setString(7, country);
 		if(rbtype.equals(RB_TYPE.HUMAN))
 			cstmt_oe_insert.setInt(8, 1);
 		else // if(rbtype.equals(RB_TYPE.BOT))
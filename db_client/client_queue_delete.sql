@@ -26,6 +26,10 @@ BEGIN
   DELETE FROM queue_spam 
     WHERE R_ID=rid;
     
+    /* Passes of a dequeued edit are of no further use */
+  DELETE FROM queue_pass
+    WHERE R_ID=rid;
+    
     /* Log call for debugging and security purposes */
   INSERT INTO log_client 
     VALUES (SUBSTRING(USER(), 1, 128),'queue_delete',UNIX_TIMESTAMP());
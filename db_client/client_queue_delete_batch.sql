@@ -0,0 +1,54 @@
+/**************************************************************************/
+/*                                                                        */
+/* Andrew G. West - client_queue_delete_batch.sql - This is a stored proc */
+/* which deletes several edits from the priority queues, in one call. It  */
+/* is the batched form of [client_queue_delete]; used when a client finds */
+/* many enqueued edits to have been superseded at once.                   */
+/*                                                                        */
+/**************************************************************************/
+
+CREATE PROCEDURE client_queue_delete_batch
+
+(IN rids VARCHAR(4096))  /* IN: CSV of revision IDs to be dequeued */
+
+BEGIN
+
+  DECLARE rid INTEGER UNSIGNED;
+  DECLARE pos INTEGER UNSIGNED;
+  DECLARE next_pos INTEGER UNSIGNED;
+  
+    /* Walk the CSV (a trailing comma is permitted) */
+  SET pos = 1;
+  WHILE pos <= CHAR_LENGTH(rids) DO
+    SET next_pos = LOCATE(',', rids, pos);
+    IF next_pos = 0 THEN
+      SET next_pos = CHAR_LENGTH(rids) + 1;
+    END IF;
+    SET rid = CAST(SUBSTRING(rids, pos, next_pos - pos) AS UNSIGNED);
+    
+      /* Action duplicated across all queues */
+    DELETE FROM queue_stiki 
+      WHERE R_ID=rid;
+    
+    DELETE FROM queue_cbng 
+      WHERE R_ID=rid;
+    
+    DELETE FROM queue_wt 
+      WHERE R_ID=rid;
+  
+    DELETE FROM queue_spam 
+      WHERE R_ID=rid;
+    
+    DELETE FROM queue_pass
+      WHERE R_ID=rid;
+      
+    SET pos = next_pos + 1;
+  END WHILE;
+    
+    /* Log call for debugging and security purposes */
+  INSERT INTO log_client 
+    VALUES (SUBSTRING(USER(), 1, 128),'queue_delete_batch',UNIX_TIMESTAMP());
+ 
+END
+
+/********************************** END ***********************************/
@@ -9,6 +9,10 @@
 /* ALL queues. Since it isn't a great idea to permit a table as an open   */
 /* procedure variable -- each queue has its own fetch procedure.          */
 /*                                                                        */
+/* The size of the block is chosen by the client, per its reviewing pace. */
+/* Both the reservation and its cascade are single set-based UPDATEs;     */
+/* edits a user has passed are found via the indexed [queue_pass] table.  */
+/*                                                                        */
 /* This file handles the "Cluebot-NG" queue (and the [queue_cbng] table)  */
 /*                                                                        */
 /**************************************************************************/
@@ -17,67 +21,65 @@ CREATE PROCEDURE client_queue_fetch_cbng
 
 (IN user VARCHAR(256),      /* IN:  Name of user fetching edits*/
  IN resid INTEGER UNSIGNED, /* IN:  Randomly generated ID known to client */
- OUT d VARCHAR(512))        /* OUT: CSV String of R_ID,P_ID pairs to enqueue */
+ IN block INTEGER UNSIGNED, /* IN:  Number of edits to reserve (1--50) */
+ OUT d VARCHAR(2048))       /* OUT: CSV String of R_ID,P_ID pairs to enqueue */
 
 BEGIN
   
-  DECLARE ignore_sep CHAR(1);
   DECLARE expiry INTEGER UNSIGNED;
   DECLARE ttl INTEGER UNSIGNED;
   
-  DECLARE rev INTEGER UNSIGNED;
-  DECLARE page INTEGER UNSIGNED;
-  DECLARE done INT DEFAULT 0;
-  DECLARE cur CURSOR FOR SELECT R_ID, P_ID FROM queue_cbng WHERE RES_ID=resid;
-  DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = 1;
-  
       /* Check for merged account */
   SET user = client_func_usermap(user);
     
     /* Initialize variables and set constants */
   SET d = '';
-  SET ignore_sep = '|';
   SET ttl = 1200;
   SELECT (UNIX_TIMESTAMP() + ttl) INTO expiry;
+  SET block = GREATEST(1, LEAST(block, 50));
 
-    /* First make the reservation with an UPDATE                */
-    /* Note that empty string users should not use "PASS" field */
-    /* We can also use this block to notify blocked users       */
+    /* We can use this block to notify blocked users */
   IF user = 'blocked_user_xx' THEN /* Blocked users */
     SELECT '412188633,30751023,' INTO d;
     SELECT SLEEP(5);
-  ELSEIF user = '' THEN
-    UPDATE queue_cbng 
-      SET RES_ID=resid,RES_EXP=expiry 
-      WHERE RES_EXP<=UNIX_TIMESTAMP()
-      ORDER BY SCORE DESC
-      LIMIT 10;
   ELSE
-    UPDATE queue_cbng
-      SET RES_ID=resid,RES_EXP=expiry 
-      WHERE RES_EXP<=UNIX_TIMESTAMP() AND 
-        PASS NOT LIKE CONCAT('%',ignore_sep,user,ignore_sep,'%')
-      ORDER BY SCORE DESC
-      LIMIT 10;
-  END IF;  
-   
-    /* Then go back and see what was reserved, compiling pairs into a */
-    /* CSV file (note that there is a trailing comma on this CSV      */
-    /* In this cursor loop, also transfer reservation to other queues */
-  OPEN cur;
-  read_loop: LOOP
-    FETCH cur INTO rev,page;
-    IF done THEN
-      LEAVE read_loop;
-    END IF;
-    UPDATE queue_stiki SET RES_ID=resid,RES_EXP=expiry WHERE R_ID=rev;
-    UPDATE queue_wt SET RES_ID=resid,RES_EXP=expiry WHERE R_ID=rev;
-    UPDATE queue_spam SET RES_ID=resid,RES_EXP=expiry WHERE R_ID=rev;
-    SELECT CONCAT(d,rev,',',page,',') INTO d;
-  END LOOP;
-  CLOSE cur;
   
-      /* Log call for debugging and security purposes */
+      /* First make the reservation with an UPDATE. A variable LIMIT  */
+      /* requires a prepared statement (MySQL 5.1). Passes are looked */
+      /* up by (USER,R_ID); empty string users never have any.        */
+    SET @res_id = resid, @res_exp = expiry, @res_user = user;
+    SET @res_sql = CONCAT(
+      'UPDATE queue_cbng SET RES_ID=?,RES_EXP=? ',
+      'WHERE RES_EXP<=UNIX_TIMESTAMP() AND NOT EXISTS ',
+      '(SELECT 1 FROM queue_pass WHERE queue_pass.USER=? AND ',
+      'queue_pass.R_ID=queue_cbng.R_ID) ',
+      'ORDER BY SCORE DESC LIMIT ', block);
+    PREPARE res_stmt FROM @res_sql;
+    EXECUTE res_stmt USING @res_id, @res_exp, @res_user;
+    DEALLOCATE PREPARE res_stmt;
+    
+      /* Then transfer the reservation to the other queues, at once. */
+      /* An RID need not be in every queue; unmatched are skipped.   */
+    UPDATE queue_cbng q
+      LEFT JOIN queue_stiki q1 ON q1.R_ID=q.R_ID
+      LEFT JOIN queue_wt q2 ON q2.R_ID=q.R_ID
+      LEFT JOIN queue_spam q3 ON q3.R_ID=q.R_ID
+      SET q1.RES_ID=resid,q1.RES_EXP=expiry,
+        q2.RES_ID=resid,q2.RES_EXP=expiry,
+        q3.RES_ID=resid,q3.RES_EXP=expiry
+      WHERE q.RES_ID=resid AND q.RES_EXP=expiry;
+    
+      /* Then see what was reserved, compiling pairs into a CSV file */
+      /* (note that there is a trailing comma on this CSV)           */
+    SET SESSION group_concat_max_len = 4096;
+    SELECT IFNULL(GROUP_CONCAT(R_ID,',',P_ID,',' 
+        ORDER BY SCORE DESC SEPARATOR ''),'') INTO d
+      FROM queue_cbng
+      WHERE RES_ID=resid AND RES_EXP=expiry;
+      
+  END IF;
+  
+    /* Log call for debugging and security purposes */
   INSERT INTO log_client 
     VALUES (SUBSTRING(USER(), 1, 128),'queue_fetch_cbng',UNIX_TIMESTAMP());
  
@@ -4,6 +4,9 @@
 /* which marks an enqueued RID "ignored" by a STiki user. Morover, it     */
 /* releases the reservation on that edit, so some else can review it.     */
 /*                                                                        */
+/* Passes are recorded as rows of [queue_pass], which is indexed for the  */
+/* (USER,R_ID) lookups made by the [client_queue_fetch_*] procedures.     */
+/*                                                                        */
 /**************************************************************************/
 
 CREATE PROCEDURE client_queue_ignore
@@ -12,28 +15,32 @@ CREATE PROCEDURE client_queue_ignore
  IN user VARCHAR(256))     /* IN:  Name of user fetching edits */
 
 BEGIN
-
-  DECLARE ignore_sep CHAR(1);
-  SET ignore_sep = '|';
   
       /* Check for merged account */
   SET user = client_func_usermap(user);
   
+    /* Record the pass (one applies to all queues). Empty string */
+    /* users are not filtered at fetch, so need no record.       */
+  IF user != '' THEN
+    INSERT IGNORE INTO queue_pass
+      VALUES (rev,user);
+  END IF;
+  
     /* Straightforward update, across all queues */
   UPDATE queue_stiki
-    SET PASS=CONCAT(PASS,ignore_sep,user,ignore_sep),RES_EXP=UNIX_TIMESTAMP()
+    SET RES_EXP=UNIX_TIMESTAMP()
     WHERE R_ID=rev;
 
   UPDATE queue_cbng
-    SET PASS=CONCAT(PASS,ignore_sep,user,ignore_sep),RES_EXP=UNIX_TIMESTAMP()
+    SET RES_EXP=UNIX_TIMESTAMP()
     WHERE R_ID=rev; 
     
   UPDATE queue_wt
-    SET PASS=CONCAT(PASS,ignore_sep,user,ignore_sep),RES_EXP=UNIX_TIMESTAMP()
+    SET RES_EXP=UNIX_TIMESTAMP()
     WHERE R_ID=rev; 
 
   UPDATE queue_spam
-    SET PASS=CONCAT(PASS,ignore_sep,user,ignore_sep),RES_EXP=UNIX_TIMESTAMP()
+    SET RES_EXP=UNIX_TIMESTAMP()
     WHERE R_ID=rev; 
     
     /* Log call for debugging and security purposes */
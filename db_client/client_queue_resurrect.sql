@@ -9,7 +9,11 @@
 /* never classified the edit that it is being asked to resurrect -- thus  */
 /* the NULL tests allow such resurrections to be abandoned.               */
 /*                                                                        */
-/* The [feedback] left (and since invalidated) also needs revoked.        */
+/* The [feedback] left (and since invalidated) also needs revoked. As it  */
+/* was when first enqueued, the resurrected RID has no passes recorded.   */
+/*                                                                        */
+/* Queue columns are named in the INSERTs, so this works both before and  */
+/* after [migrate_queue_pass.sql] drops the old PASS columns.             */
 /*                                                                        */
 /**************************************************************************/
 
@@ -25,6 +29,9 @@ BEGIN
     /* Revoke the invalidated feedback left */   
   DELETE FROM feedback 
     WHERE R_ID=rid;
+  
+  DELETE FROM queue_pass
+    WHERE R_ID=rid;
 
   /********** STiki QUEUE ************/
 
@@ -37,8 +44,8 @@ BEGIN
     
       /* Re-insert RID into priority queue. Original feedback should */
       /* have freed space. So ignore on duplicate PRIMARY KEY        */
-    INSERT IGNORE INTO queue_stiki
-      VALUES (rid,pid,score,0,0,"");
+    INSERT IGNORE INTO queue_stiki (R_ID,P_ID,SCORE,RES_EXP,RES_ID)
+      VALUES (rid,pid,score,0,0);
     
   END IF;
   
@@ -50,8 +57,8 @@ BEGIN
   
   IF score IS NOT NULL THEN
     
-    INSERT IGNORE INTO queue_cbng
-      VALUES (rid,pid,score,0,0,"");
+    INSERT IGNORE INTO queue_cbng (R_ID,P_ID,SCORE,RES_EXP,RES_ID)
+      VALUES (rid,pid,score,0,0);
     
   END IF;
   
@@ -63,8 +70,8 @@ BEGIN
   
   IF score IS NOT NULL THEN
     
-    INSERT IGNORE INTO queue_wt
-      VALUES (rid,pid,score,0,0,"");
+    INSERT IGNORE INTO queue_wt (R_ID,P_ID,SCORE,RES_EXP,RES_ID)
+      VALUES (rid,pid,score,0,0);
   
   END IF;
 
@@ -76,8 +83,8 @@ BEGIN
   
   IF score IS NOT NULL THEN
     
-    INSERT IGNORE INTO queue_spam
-      VALUES (rid,pid,score,0,0,"");
+    INSERT IGNORE INTO queue_spam (R_ID,P_ID,SCORE,RES_EXP,RES_ID)
+      VALUES (rid,pid,score,0,0);
   
   END IF;
   
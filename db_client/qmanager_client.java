@@ -2,6 +2,7 @@ package db_client;
 
 import java.sql.CallableStatement;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 import core_objects.pair;
@@ -49,6 +50,17 @@ public class qmanager_client{
 	 */
 	private CallableStatement cstmt_queue_delete;
 	
+	/**
+	 * SQL call removing several edits from the shared revision queues.
+	 */
+	private CallableStatement cstmt_queue_delete_batch;
+	
+	/**
+	 * Longest CSV argument [cstmt_queue_delete_batch] accepts. Longer lists
+	 * of RIDs are split over several calls.
+	 */
+	private static final int DELETE_BATCH_CHARS = 4096;
+	
 	/**
 	 * SQL call indicating a user wants to "ignore" classifying some edit.
 	 */
@@ -102,34 +114,40 @@ public class qmanager_client{
 	 * they will not be queued edits which they have previously passed/ignored
 	 * @param res_id A numerical identifier for the reservation, presumably
 	 * should be randomly generated by the client.
+	 * @param block Number of edits to reserve; the server bounds this
+	 * to [1,50] (see [edit_queue_pacer.reservation_block()])
 	 * @return A queue of edits. Each element in the array is a pair, whose 
 	 * first element is an RID in need of classification,and the second element 
 	 * is the P_ID (article) on which the edit resides.
 	 */
 	public synchronized Queue<pair<Long,Long>> queue_fetch(SCORE_SYS sys,
-			String user, long res_id) throws Exception{
+			String user, long res_id, int block) throws Exception{
 		
 		String csv_queue = "";
 		if(sys.equals(SCORE_SYS.CBNG)){
 			cstmt_queue_fetch_cbng.setString(1, user);
 			cstmt_queue_fetch_cbng.setLong(2, res_id);
+			cstmt_queue_fetch_cbng.setInt(3, block);
 			cstmt_queue_fetch_cbng.execute();
-			csv_queue = cstmt_queue_fetch_cbng.getString(3);
+			csv_queue = cstmt_queue_fetch_cbng.getString(4);
 		} else if(sys.equals(SCORE_SYS.STIKI)){
 			cstmt_queue_fetch_stiki.setString(1, user);
 			cstmt_queue_fetch_stiki.setLong(2, res_id);
+			cstmt_queue_fetch_stiki.setInt(3, block);
 			cstmt_queue_fetch_stiki.execute();
-			csv_queue = cstmt_queue_fetch_stiki.getString(3);
+			csv_queue = cstmt_queue_fetch_stiki.getString(4);
 		} else if(sys.equals(SCORE_SYS.WT)){
 			cstmt_queue_fetch_wt.setString(1, user);
 			cstmt_queue_fetch_wt.setLong(2, res_id);
+			cstmt_queue_fetch_wt.setInt(3, block);
 			cstmt_queue_fetch_wt.execute();
-			csv_queue = cstmt_queue_fetch_wt.getString(3);
+			csv_queue = cstmt_queue_fetch_wt.getString(4);
 		} else if(sys.equals(SCORE_SYS.SPAM)){
 			cstmt_queue_fetch_spam.setString(1, user);
 			cstmt_queue_fetch_spam.setLong(2, res_id);
+			cstmt_queue_fetch_spam.setInt(3, block);
 			cstmt_queue_fetch_spam.execute();
-			csv_queue = cstmt_queue_fetch_spam.getString(3);
+			csv_queue = cstmt_queue_fetch_spam.getString(4);
 		} // Make the stored procedure call (table specific), get output
 			
 			// Trim trailing comma, assume well-formedness of the 
@@ -153,6 +171,31 @@ public class qmanager_client{
 		cstmt_queue_delete.execute();
 	}
 	
+	/**
+	 * Remove several RIDs from all queues, in as few calls as possible.
+	 * @param rids Revision-IDs whose rows should be deleted (if present).
+	 */
+	public synchronized void queue_delete(List<Long> rids) 
+			throws Exception{
+		
+		StringBuilder csv = new StringBuilder();
+		String rid_str;
+		for(int i=0; i < rids.size(); i++){
+			rid_str = rids.get(i) + ",";
+			if(csv.length() + rid_str.length() > DELETE_BATCH_CHARS){
+				cstmt_queue_delete_batch.setString(1, csv.toString());
+				cstmt_queue_delete_batch.execute();
+				csv.setLength(0);
+			} // Flush if the argument would otherwise be too long
+			csv.append(rid_str);
+		} // Same trailing-comma CSV format as [queue_fetch()] parses
+		
+		if(csv.length() > 0){
+			cstmt_queue_delete_batch.setString(1, csv.toString());
+			cstmt_queue_delete_batch.execute();
+		} // Flush the remainder
+	}
+	
 	/**
 	 * "Resurrect" an RID, placing a previously classified RID back in all
 	 * queues, as may be required per use of the "back" button. If necessary,
@@ -196,6 +239,7 @@ public class qmanager_client{
 	 */
 	public void shutdown() throws Exception{
 		cstmt_queue_delete.close();
+		cstmt_queue_delete_batch.close();
 		cstmt_queue_fetch_cbng.close();
 		cstmt_queue_fetch_stiki.close();
 		cstmt_queue_fetch_wt.close();
@@ -214,24 +258,27 @@ public class qmanager_client{
 	private void prep_statements() throws Exception{
 		
 		cstmt_queue_fetch_cbng = con_client.con.prepareCall(
-			"{CALL client_queue_fetch_cbng(?,?,?)}"); // 2 IN, 1 OUT params
-		cstmt_queue_fetch_cbng.registerOutParameter(3, java.sql.Types.VARCHAR);
+			"{CALL client_queue_fetch_cbng(?,?,?,?)}"); // 3 IN, 1 OUT params
+		cstmt_queue_fetch_cbng.registerOutParameter(4, java.sql.Types.VARCHAR);
 		
 		cstmt_queue_fetch_stiki = con_client.con.prepareCall(
-			"{CALL client_queue_fetch_stiki(?,?,?)}"); // 2 IN, 1 OUT params
-		cstmt_queue_fetch_stiki.registerOutParameter(3, java.sql.Types.VARCHAR);
+			"{CALL client_queue_fetch_stiki(?,?,?,?)}"); // 3 IN, 1 OUT params
+		cstmt_queue_fetch_stiki.registerOutParameter(4, java.sql.Types.VARCHAR);
 		
 		cstmt_queue_fetch_wt = con_client.con.prepareCall(
-			"{CALL client_queue_fetch_wt(?,?,?)}"); // 2 IN, 1 OUT params
-		cstmt_queue_fetch_wt.registerOutParameter(3, java.sql.Types.VARCHAR);	
+			"{CALL client_queue_fetch_wt(?,?,?,?)}"); // 3 IN, 1 OUT params
+		cstmt_queue_fetch_wt.registerOutParameter(4, java.sql.Types.VARCHAR);	
 		
 		cstmt_queue_fetch_spam = con_client.con.prepareCall(
-			"{CALL client_queue_fetch_spam(?,?,?)}"); // 2 IN, 1 OUT params
-		cstmt_queue_fetch_spam.registerOutParameter(3, java.sql.Types.VARCHAR);
+			"{CALL client_queue_fetch_spam(?,?,?,?)}"); // 3 IN, 1 OUT params
+		cstmt_queue_fetch_spam.registerOutParameter(4, java.sql.Types.VARCHAR);
 		
 		cstmt_queue_delete = con_client.con.prepareCall(
 			"{CALL client_queue_delete(?)}"); // 1 IN param
 		
+		cstmt_queue_delete_batch = con_client.con.prepareCall(
+			"{CALL client_queue_delete_batch(?)}"); // 1 IN param
+		
 		cstmt_queue_ignore = con_client.con.prepareCall(
 			"{CALL client_queue_ignore(?,?)}"); // 2 IN params
 		
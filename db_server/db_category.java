@@ -21,6 +21,11 @@ public class db_category{
 		
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL returning the categories of which some page is a member.
 	 */
@@ -60,7 +65,7 @@ public class db_category{
 			throws Exception{
 		
 		pstmt_get_pid_memberships.setLong(1, pid);
-		ResultSet rs = pstmt_get_pid_memberships.executeQuery();
+		ResultSet rs = metrics.query(pstmt_get_pid_memberships);
 		List<Long> cat_list = new ArrayList<Long>();
 		
 		while(rs.next()) // Transfer ResultSet to List
@@ -95,7 +100,7 @@ public class db_category{
 			throws Exception{
 		
 		pstmt_get_cat_memberships.setLong(1, cat_id);
-		ResultSet rs = pstmt_get_cat_memberships.executeQuery();
+		ResultSet rs = metrics.query(pstmt_get_cat_memberships);
 		List<Long> pid_list = new ArrayList<Long>();
 		
 		while(rs.next()) // Transfer ResultSet to List
@@ -26,6 +26,11 @@ public class db_country{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL incrementing the 'all edits' counter for some country, on some day.
 	 */
@@ -84,7 +89,7 @@ public class db_country{
 		exists_or_create(country_code, unix_day);
 		pstmt_inc_all.setLong(1, unix_day);
 		pstmt_inc_all.setString(2, country_code);
-		pstmt_inc_all.executeUpdate();
+		metrics.update(pstmt_inc_all);
 	}
 	
 	/**
@@ -100,7 +105,7 @@ public class db_country{
 		exists_or_create(country_code, unix_day);
 		pstmt_inc_bad.setLong(1, unix_day);
 		pstmt_inc_bad.setString(2, country_code);
-		pstmt_inc_bad.executeUpdate();
+		metrics.update(pstmt_inc_bad);
 	}
 	
 	/**
@@ -122,7 +127,7 @@ public class db_country{
 		pstmt_agg_rep.setLong(2, start_day);
 		int all_edits = 0; int bad_edits = 0;
 		
-		ResultSet rs = pstmt_agg_rep.executeQuery();
+		ResultSet rs = metrics.query(pstmt_agg_rep);
 		if(rs.next()){
 			bad_edits = rs.getInt(1);
 			all_edits = rs.getInt(2);
@@ -186,13 +191,13 @@ public class db_country{
 		
 		pstmt_check_country.setLong(1, unix_day);
 		pstmt_check_country.setString(2, country_code);
-		ResultSet rs = pstmt_check_country.executeQuery();
+		ResultSet rs = metrics.query(pstmt_check_country);
 		if(rs.next()){
 			return true; // Any result-row indicates existing summarization
 		} else{
 			pstmt_insert_country.setLong(1, unix_day);
 			pstmt_insert_country.setString(2, country_code);
-			pstmt_insert_country.executeUpdate();
+			metrics.update(pstmt_insert_country);
 			return false; 
 		} // Confirm summary row exists, if not, create one
 	}
@@ -15,6 +15,11 @@ public class db_edits{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into the [main_edits] table. 
 	 */
@@ -66,7 +71,7 @@ public class db_edits{
 		pstmt_insert.setString(9, edit_metadata.country);
 		pstmt_insert.setBoolean(10, edit_metadata.get_is_rb());
 		pstmt_insert.setBoolean(11, false); // OE status unknown
-		pstmt_insert.executeUpdate();
+		metrics.update(pstmt_insert);
 	}
 	
 	/**
@@ -75,7 +80,7 @@ public class db_edits{
 	 */
 	public synchronized void mark_oe(long rid) throws Exception{
 		pstmt_set_oe_flag.setLong(1, rid);
-		pstmt_set_oe_flag.executeUpdate();
+		metrics.update(pstmt_set_oe_flag);
 	}
 	
 	/**
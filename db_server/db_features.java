@@ -3,7 +3,9 @@ package db_server;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import core_objects.feature_set;
 import core_objects.stiki_utils;
@@ -16,6 +18,11 @@ public class db_features{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into the [features] table. 
 	 */
@@ -32,6 +39,11 @@ public class db_features{
 	 */
 	private PreparedStatement pstmt_rids_only_interval;
 	
+	/**
+	 * SQL fetching RIDs labelled guilty in a specified RID interval
+	 */
+	private PreparedStatement pstmt_guilty_interval;
+	
 	/**
 	 * SQL fetching feature-row for a single RID.
 	 */
@@ -47,6 +59,12 @@ public class db_features{
 	 */
 	private stiki_con_server con_server;
 	
+	/**
+	 * Columnar archive to which feature rows are also written, or NULL
+	 * if none is in use. See [set_archive()].
+	 */
+	private feature_archive archive = null;
+	
 	
 	// ***************************** CONSTRUCTORS ****************************
 	
@@ -85,7 +103,16 @@ public class db_features{
 		pstmt_insert.setInt(15, feature_set.NLP_CHAR_REP);
 		pstmt_insert.setDouble(16, feature_set.NLP_UCASE);
 		pstmt_insert.setDouble(17, feature_set.NLP_ALPHA);
-		pstmt_insert.executeUpdate();
+		metrics.update(pstmt_insert);
+		
+		if(archive != null){
+			try{archive.append(feature_set);}
+			catch(Exception e){
+				System.out.println("Error: Feature archive append failed " +
+						"for RID: " + feature_set.R_ID);
+				e.printStackTrace();
+			} // The table is authoritative; archive can be rebuilt
+		} // Mirror the row into the columnar archive
 	}
 	
 	/**
@@ -95,7 +122,26 @@ public class db_features{
 	 */
 	public synchronized void set_guilty_label(long rid) throws Exception{
 		pstmt_set_label.setLong(1, rid);
-		pstmt_set_label.executeUpdate();
+		metrics.update(pstmt_set_label);
+		
+		if(archive != null){
+			try{archive.set_guilty_label(rid);}
+			catch(Exception e){
+				System.out.println("Error: Feature archive label failed " +
+						"for RID: " + rid);
+				e.printStackTrace();
+			} // The table is authoritative; archive can be rebuilt
+		} // Mirror the label into the columnar archive
+	}
+	
+	/**
+	 * Have all feature rows (and labels) written by this instance also be
+	 * written to a columnar archive, in parallel with the [features] table.
+	 * Archive failures are reported, but do not fail the DB write.
+	 * @param archive Archive to be written, or NULL to stop doing so
+	 */
+	public synchronized void set_archive(feature_archive archive){
+		this.archive = archive;
 	}
 	
 	/**
@@ -112,7 +158,7 @@ public class db_features{
 			// First, query to get the ResultSet
 		pstmt_rids_only_interval.setLong(1, start_rid);
 		pstmt_rids_only_interval.setLong(2, end_rid);
-		ResultSet rs = pstmt_rids_only_interval.executeQuery();
+		ResultSet rs = metrics.query(pstmt_rids_only_interval);
 		
 			// Then turn raw ResultSet into Java-list
 		List<Long> rid_list = new ArrayList<Long>();
@@ -122,6 +168,26 @@ public class db_features{
 		return(rid_list);	
 	}
 	
+	/**
+	 * Output the set of RIDs, on some RID interval, labelled as guilty
+	 * (OEs). This includes labels set by client stored procedures.
+	 * @param start_rid Lower bound of RIDs to be included (inclusive)
+	 * @param end_rid Upper bound of RIDs to be included (inclusive)
+	 * @return Set of all RIDs on 'start_rid' <= R_ID <= 'end_rid' whose
+	 * feature row has (LABEL=1)
+	 */
+	public synchronized Set<Long> get_guilty_rids_in_interval(long start_rid,
+			long end_rid) throws Exception{
+		pstmt_guilty_interval.setLong(1, start_rid);
+		pstmt_guilty_interval.setLong(2, end_rid);
+		ResultSet rs = metrics.query(pstmt_guilty_interval);
+		Set<Long> rid_set = new HashSet<Long>();
+		while(rs.next())
+			rid_set.add(rs.getLong(1));
+		rs.close();
+		return(rid_set);
+	}
+	
 	/**
 	 * Return a single feature-set by providing an RID.
 	 * @param rid Revision-ID whose feature set is desired
@@ -132,7 +198,7 @@ public class db_features{
 			throws Exception{
 		
 		pstmt_fetch_rid.setLong(1, rid);
-		ResultSet rs = pstmt_fetch_rid.executeQuery();
+		ResultSet rs = metrics.query(pstmt_fetch_rid);
 		if(rs.next()) // At most one result
 			return(convert_db_row_to_fs(rs));
 		return(null);
@@ -152,7 +218,7 @@ public class db_features{
 			// First, query to get the ResultSet
 		pstmt_fetch_rid_interval.setLong(1, start_rid);
 		pstmt_fetch_rid_interval.setLong(2, end_rid);
-		ResultSet rs = pstmt_fetch_rid_interval.executeQuery();
+		ResultSet rs = metrics.query(pstmt_fetch_rid_interval);
 		
 			// Then turn raw ResultSet into list of Java objects
 		List<feature_set> feature_list = new ArrayList<feature_set>();
@@ -169,6 +235,7 @@ public class db_features{
 		pstmt_insert.close();
 		pstmt_set_label.close();
 		pstmt_rids_only_interval.close();
+		pstmt_guilty_interval.close();
 		pstmt_fetch_rid.close();
 		pstmt_fetch_rid_interval.close();
 	}
@@ -192,6 +259,10 @@ public class db_features{
 		rids_only += " WHERE R_ID>=? AND R_ID<=?";
 		pstmt_rids_only_interval = con_server.con.prepareStatement(rids_only);
 		
+		String guilty = "SELECT R_ID FROM " + stiki_utils.tbl_features;
+		guilty += " WHERE R_ID>=? AND R_ID<=? AND LABEL=1";
+		pstmt_guilty_interval = con_server.con.prepareStatement(guilty);
+		
 		String fetch_rid = "SELECT * FROM " + stiki_utils.tbl_features + " ";
 		fetch_rid += " WHERE R_ID=?";
 		pstmt_fetch_rid = con_server.con.prepareStatement(fetch_rid);
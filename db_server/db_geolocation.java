@@ -2,6 +2,7 @@ package db_server;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import core_objects.stiki_utils;
 
@@ -13,6 +14,11 @@ public class db_geolocation{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL retrieving the GMT offset of some IP address origin.
 	 */
@@ -23,6 +29,18 @@ public class db_geolocation{
 	 */
 	private PreparedStatement pstmt_country_code;
 	
+	/**
+	 * SQL retrieving the two-letter country code associated with some IPv6.
+	 * NULL if the [geo_country_v6] table is not installed.
+	 */
+	private PreparedStatement pstmt_country_code_v6;
+	
+	/**
+	 * Whether IPv6 geolocation is available. The [geo_country_v6] table is
+	 * optional; if it is missing, IPv6 users simply have no country.
+	 */
+	private boolean v6_available = true;
+	
 	/**
 	 * Connection to the PreSTA-STiki database (fully privileged).
 	 */
@@ -50,7 +68,7 @@ public class db_geolocation{
 	 */
 	public synchronized double get_gmt_offset(long int_ip) throws Exception{
 		pstmt_gmt_offset.setLong(1, int_ip);
-		ResultSet rs = pstmt_gmt_offset.executeQuery();
+		ResultSet rs = metrics.query(pstmt_gmt_offset);
 		if(rs.next()){
 			if(rs.getString(1).equals(""))
 				return (Double.NaN);
@@ -67,18 +85,49 @@ public class db_geolocation{
 	 */
 	public synchronized String get_country_code(long int_ip) throws Exception{
 		pstmt_country_code.setLong(1, int_ip);
-		ResultSet rs = pstmt_country_code.executeQuery();
+		ResultSet rs = metrics.query(pstmt_country_code);
 		if(rs.next()) // Result should be guaranteed, but just in case...
 			return(rs.getString(1));
 		else return ("");
 	}
 	
+	/**
+	 * Given an IPv6 address, return the two-letter country-code of its 
+	 * origin. Allocations are far coarser than /64, so only the high 64
+	 * bits are keyed. These are stored with the sign bit flipped, so that
+	 * signed (BIGINT) ordering matches that of the unsigned addresses.
+	 * @param ipv6 IPv6 address, as {high 64 bits, low 64 bits}
+	 * @return Two letter country-code where 'ipv6' resides, or the empty
+	 * string if there was an error or such data was not available
+	 * (including where the [geo_country_v6] table is not installed).
+	 */
+	public synchronized String get_country_code_v6(long[] ipv6) 
+			throws Exception{
+		if(!v6_available)
+			return("");
+		ResultSet rs;
+		try{pstmt_country_code_v6.setLong(1, ipv6[0] ^ Long.MIN_VALUE);
+			rs = metrics.query(pstmt_country_code_v6);
+		} catch(SQLException e){
+			v6_available = false;
+			System.out.println("IPv6 geolocation unavailable; " +
+					"IPv6 users will have no country:");
+			e.printStackTrace();
+			return("");
+		} // Most likely the (optional) table is not installed
+		if(rs.next())
+			return(rs.getString(1));
+		else return ("");
+	}
+	
 	/**
 	 * Shutdown and close all DB objects created by this instance.
 	 */
 	public void shutdown() throws Exception{
 		pstmt_gmt_offset.close();
 		pstmt_country_code.close();
+		if(pstmt_country_code_v6 != null)
+			pstmt_country_code_v6.close();
 	}
 	
 	
@@ -96,6 +145,15 @@ public class db_geolocation{
 		country += stiki_utils.tbl_geo_country + " WHERE ip_start<=? ";
 		country += "ORDER BY ip_start DESC LIMIT 1";
 		pstmt_country_code = con_server.con.prepareStatement(country);
+		
+		String country_v6 = "SELECT country_code FROM ";
+		country_v6 += stiki_utils.tbl_geo_country_v6 + " WHERE ip_start<=? ";
+		country_v6 += "ORDER BY ip_start DESC LIMIT 1";
+		try{pstmt_country_code_v6 = 
+				con_server.con.prepareStatement(country_v6);
+		} catch(SQLException e){
+			v6_available = false;
+		} // Server-side preparation fails if the table is missing
 	}
 
 }
@@ -20,6 +20,11 @@ public class db_hyperlinks{
 
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into the [hyperlinks] table. 
 	 */
@@ -36,7 +41,8 @@ public class db_hyperlinks{
 	private stiki_con_server con_server;
 	
 	/**
-	 * IRC handler. Link additions are written to a public feed.
+	 * IRC handler. Link additions are written to a public feed. If NULL,
+	 * nothing is published (i.e., during a replay).
 	 */
 	private irc_output irc_out;
 	
@@ -58,6 +64,7 @@ public class db_hyperlinks{
 	 * Construct a [db_hyperlinks] object -- connect to DB and prepare SQL.
 	 * @param con_server Connection to the PreSTA-STiki database (full privs.)
 	 * @pararm irc_out IRC handler to which link additions are written.
+	 * If NULL, link additions are not published.
 	 */
 	public db_hyperlinks(stiki_con_server con_server, irc_output irc_out) 
 			throws Exception{
@@ -96,9 +103,10 @@ public class db_hyperlinks{
 				// is immune to any trimming done for DB purposes.
 			url = links.get(i).fst;
 			desc = links.get(i).snd;
-			irc_out.msg(irc_output.CHANNELS.STIKI_LINKS, 
-					rid + " " + pid + " " + links.size() + " " + 
-					url + " " + desc);
+			if(irc_out != null)
+				irc_out.msg(irc_output.CHANNELS.STIKI_LINKS, 
+						rid + " " + pid + " " + links.size() + " " + 
+						url + " " + desc);
 			
 				// Trim if needed and insert to DB
 			if(url.length() > MAX_STR_LENGTH)
@@ -111,7 +119,7 @@ public class db_hyperlinks{
 			pstmt_insert.setString(4, desc);
 			pstmt_insert.setLong(5, ts);
 			pstmt_insert.setString(6, user);
-			pstmt_insert.executeUpdate();
+			metrics.update(pstmt_insert);
 		} // Make an insertion for all links added
 	}
 	
@@ -125,8 +133,9 @@ public class db_hyperlinks{
 	
 			// No need to waste database space with this stuff
 			// However, outputting to IRC can help with queuing considerations
-		irc_out.msg(irc_output.CHANNELS.STIKI_LINKS, 
-				rid + " " + pid + " " + 0);
+		if(irc_out != null)
+			irc_out.msg(irc_output.CHANNELS.STIKI_LINKS, 
+					rid + " " + pid + " " + 0);
 	}
 	
 	/**
@@ -144,7 +153,7 @@ public class db_hyperlinks{
 		else // if rb_type.equals(RB_TYPE.HUMAN)
 			pstmt_flag_oe.setInt(1, 1);
 		pstmt_flag_oe.setLong(2, rid);
-		pstmt_flag_oe.executeUpdate();
+		metrics.update(pstmt_flag_oe);
 	}
 	
 	/**
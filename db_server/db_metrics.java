@@ -0,0 +1,147 @@
+package db_server;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.edit_trace;
+import metrics.metrics_histogram;
+import metrics.metrics_registry;
+
+/**
+ * Andrew G. West - db_metrics.java - Statement execution on behalf of the
+ * DB-handlers of this package, timed into [metrics_registry]. Each handler
+ * holds one of these, so latency and error counts are kept per-handler
+ * (i.e., stiki_db_seconds{handler="db_edits"}). The metrics, and the name
+ * of the [edit_trace] span, are looked up once when the handler is built,
+ * so executing a statement allocates nothing for them. Note that time
+ * spent waiting for a handler's (synchronized) methods is not included;
+ * that appears only in the stage timings of callers.
+ */
+public class db_metrics{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Name of the per-handler statement latency histograms.
+	 */
+	public static final String DB_SECONDS = "stiki_db_seconds";
+	
+	/**
+	 * Name of the per-handler statement error counters.
+	 */
+	public static final String DB_ERRORS = "stiki_db_errors_total";
+	
+	/**
+	 * Name of the per-handler counters of rows written (updates only).
+	 */
+	public static final String DB_WRITES = "stiki_db_writes_total";
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Name of the [edit_trace] span of each statement ("db:[handler]").
+	 */
+	private final String span;
+	
+	/**
+	 * The handler's latency histogram, and error and write counters.
+	 */
+	private final metrics_histogram seconds;
+	private final AtomicLong errors, writes;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [db_metrics], registering a handler's metrics.
+	 * @param handler DB-handler on whose behalf statements are executed
+	 */
+	public db_metrics(Object handler){
+		String name = handler.getClass().getSimpleName();
+		this.span = "db:" + name;
+		this.seconds = metrics_registry.histogram(DB_SECONDS, "handler", name);
+		this.errors = metrics_registry.counter(DB_ERRORS, "handler", name);
+		this.writes = metrics_registry.counter(DB_WRITES, "handler", name);
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Execute (and time) a prepared query.
+	 * @param pstmt Prepared statement, all parameters already set
+	 * @return ResultSet produced by executing 'pstmt'
+	 */
+	public ResultSet query(PreparedStatement pstmt) throws Exception{
+		long start = System.nanoTime();
+		try{return(pstmt.executeQuery());
+		} catch(Exception e){
+			errors.incrementAndGet();
+			throw e;
+		} finally{
+			seconds.record_since(start);
+			edit_trace.span(span, start);
+		}
+	}
+	
+	/**
+	 * Execute (and time) a prepared update.
+	 * @param pstmt Prepared statement, all parameters already set
+	 * @return Row count returned by executing 'pstmt'
+	 */
+	public int update(PreparedStatement pstmt) throws Exception{
+		long start = System.nanoTime();
+		try{int rows = pstmt.executeUpdate();
+			writes.addAndGet(rows);
+			return(rows);
+		} catch(Exception e){
+			errors.incrementAndGet();
+			throw e;
+		} finally{
+			seconds.record_since(start);
+			edit_trace.span(span, start);
+		}
+	}
+	
+	/**
+	 * Execute (and time) a raw SQL query.
+	 * @param stmt Statement over which 'sql' should be executed
+	 * @param sql SQL query to execute
+	 * @return ResultSet produced by executing 'sql'
+	 */
+	public ResultSet query(Statement stmt, String sql) throws Exception{
+		long start = System.nanoTime();
+		try{return(stmt.executeQuery(sql));
+		} catch(Exception e){
+			errors.incrementAndGet();
+			throw e;
+		} finally{
+			seconds.record_since(start);
+			edit_trace.span(span, start);
+		}
+	}
+	
+	/**
+	 * Execute (and time) a raw SQL update.
+	 * @param stmt Statement over which 'sql' should be executed
+	 * @param sql SQL update to execute
+	 * @return Row count returned by executing 'sql'
+	 */
+	public int update(Statement stmt, String sql) throws Exception{
+		long start = System.nanoTime();
+		try{int rows = stmt.executeUpdate(sql);
+			writes.addAndGet(rows);
+			return(rows);
+		} catch(Exception e){
+			errors.incrementAndGet();
+			throw e;
+		} finally{
+			seconds.record_since(start);
+			edit_trace.span(span, start);
+		}
+	}
+
+}
@@ -1,7 +1,7 @@
 package db_server;
 
 import java.sql.PreparedStatement;
-import java.util.Random;
+import java.sql.ResultSet;
 
 import core_objects.stiki_utils;
 
@@ -9,80 +9,225 @@ import core_objects.stiki_utils;
  * Andrew G. West - db_oe_migrate.java - Given the time-decaying nature of
  * feedback, offending-edits that happened long ago are no longer statistically
  * relevant to reputation calculation. In order to keep the [off_edits] table
- * small and efficient, these older rollbacks/feedback are migrated to 
+ * small and efficient, these older rollbacks/feedback are migrated to
  * [oes_archive], using this class/script.
- * 
- * This script should be scheduled to run periodically in order to maintain
- * query efficiency over the [offending_edits] table.
+ *
+ * A migration "pass" moves all rows older than a cutoff. So as not to hold
+ * long table locks (and stall live [db_off_edits] inserts), a pass is done
+ * in chunks of at most [chunk_size] rows, in primary-key (R_ID) order. Each
+ * call to [run()] moves one chunk; the caller should schedule this object
+ * with a fixed delay, which becomes the pause between chunks.
+ *
+ * Progress (the pass cutoff, and the last R_ID migrated) is checkpointed
+ * to [stiki_status] after every chunk, so a pass interrupted by a crash
+ * resumes where it left off. Archive inserts ignore duplicate keys, so a
+ * chunk copied but not deleted before a crash is simply re-done.
  */
 public class db_oe_migrate implements Runnable{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Default maximum number of rows moved by a single chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	
+	/**
+	 * Default pause (in milliseconds) between consecutive chunks.
+	 */
+	public static final long DEFAULT_CHUNK_PAUSE = 2000;
+	
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
 	/**
-	 * SQL finding old entries in [off_edits], moving them to [oes_archive].
+	 * Timing of this handler's statements, into [metrics_registry].
 	 */
-	private static PreparedStatement pstmt_migrate_old;
+	private final db_metrics metrics = new db_metrics(this);
 	
 	/**
-	 * SQL deleting old entries from the [off_edits] table.
+	 * Maximum number of rows moved by a single chunk.
 	 */
-	private static PreparedStatement pstmt_delete_old;
+	private int chunk_size;
+	
+	/**
+	 * Connection to the STiki database; dedicated to migration so that
+	 * chunks do not contend with the back-end's shared connection.
+	 */
+	private stiki_con_server con_server;
+	
+	/**
+	 * DB-handler (over 'con_server') where progress is checkpointed.
+	 */
+	private db_status db_status_vars;
+	
+	/**
+	 * SQL finding the upper R_ID bound of the next chunk to migrate.
+	 */
+	private PreparedStatement pstmt_chunk_bound;
+	
+	/**
+	 * SQL copying a chunk of old entries from [off_edits] to [oes_archive].
+	 */
+	private PreparedStatement pstmt_migrate_old;
+	
+	/**
+	 * SQL deleting a (copied) chunk of old entries from [off_edits].
+	 */
+	private PreparedStatement pstmt_delete_old;
+	
+	/**
+	 * UNIX timestamp; entries at or before this are migrated by the current
+	 * pass. A value of zero indicates that no pass is in progress.
+	 */
+	private long cutoff_ts;
+	
+	/**
+	 * Largest R_ID migrated (or examined) by the current pass.
+	 */
+	private long last_rid;
+	
+	/**
+	 * Number of rows migrated by the current pass.
+	 */
+	private long rows_migrated;
+	
 	
-
 	// ***************************** CONSTRUCTORS ****************************
 	
 	/**
-	 * Construct a [db_oe_migrate], which requires no parameters. Start 
-	 * the new thread, and immediately begin running migration in that thread.
+	 * Construct a [db_oe_migrate]. This opens its own DB connection, and
+	 * resumes any pass which was checkpointed but never completed.
+	 * @param chunk_size Maximum number of rows moved by a single chunk
 	 */
-	public db_oe_migrate(){
-		Thread thread = new Thread(this, new Random().toString());
-		thread.start();	
+	public db_oe_migrate(int chunk_size) throws Exception{
+		this.chunk_size = chunk_size;
+		this.con_server = new stiki_con_server();
+		this.db_status_vars = new db_status(con_server);
+		prep_statements();
+		
+		this.cutoff_ts = db_status_vars.get_status_var(db_status.OE_MIG_CUTOFF);
+		this.last_rid = db_status_vars.get_status_var(db_status.OE_MIG_RID);
+		this.rows_migrated = db_status_vars.get_status_var(
+				db_status.OE_MIG_ROWS);
+		if(cutoff_ts > 0){
+			System.out.println("Resuming OE migration (cutoff=" + cutoff_ts +
+					", last R_ID=" + last_rid + ")");
+		} // Report any resumption
 	}
 	
 	
 	// **************************** PUBLIC METHODS ***************************
 	
 	/**
-	 * Remove all entries in [off_edits] older than [HIST_WINDOW] seconds, 
-	 * and migrate them to [oes_archive].
+	 * Begin a pass migrating all entries in [off_edits] older than
+	 * [HIST_WINDOW] seconds. If a pass is already underway, no change.
+	 */
+	public synchronized void request_pass() throws Exception{
+		if(cutoff_ts > 0)
+			return;
+		this.cutoff_ts = stiki_utils.cur_unix_time() - stiki_utils.HIST_WINDOW;
+		this.last_rid = 0;
+		this.rows_migrated = 0;
+		checkpoint();
+		System.out.println("Starting OE migration (cutoff=" + cutoff_ts + ")");
+	}
+	
+	/**
+	 * Migrate one chunk of the current pass (if any). Exceptions are
+	 * reported but not thrown, so that a scheduled execution continues.
 	 */
 	public synchronized void run(){
-		try{
-			stiki_con_server server_con = new stiki_con_server();
-			prep_statements(server_con);
-			pstmt_migrate_old.executeUpdate(); 	// Migrate
-			pstmt_delete_old.executeUpdate();	// Delete
-			pstmt_migrate_old.close();			// Clean-up
-			pstmt_delete_old.close();
-			server_con.con.close();
+		if(cutoff_ts == 0)
+			return;
+		try{migrate_chunk();
 		} catch(Exception e){
-			System.out.println("");
+			System.out.println("OE migration chunk failed (last R_ID=" +
+					last_rid + "):");
 			e.printStackTrace();
-		}
+		} // Chunk will be re-attempted at next scheduled run
+	}
+	
+	/**
+	 * Shutdown and close all DB objects created by this instance.
+	 */
+	public synchronized void shutdown() throws Exception{
+		pstmt_chunk_bound.close();
+		pstmt_migrate_old.close();
+		pstmt_delete_old.close();
+		db_status_vars.shutdown();
+		con_server.con.close();
 	}
 	
 	
 	// *************************** PRIVATE METHODS ***************************
 	
 	/**
-	 * Prepare all SQL statements required by this class.
-	 * @param con Connection to the PreSTA-STiki database (privileged)
+	 * Move the next chunk of the current pass, updating the checkpoint. If
+	 * no rows remain, the pass is completed.
 	 */
-	private static void prep_statements(stiki_con_server server_con) 
-			throws Exception{
+	private void migrate_chunk() throws Exception{
+	
+			// Determine the R_ID range (last_rid, hi_rid] of this chunk
+		pstmt_chunk_bound.setLong(1, last_rid);
+		pstmt_chunk_bound.setLong(2, cutoff_ts);
+		pstmt_chunk_bound.setInt(3, chunk_size);
+		ResultSet rs = metrics.query(pstmt_chunk_bound);
+		long hi_rid = 0;
+		if(rs.next())
+			hi_rid = rs.getLong(1); // MAX() over nothing gives NULL -> 0
+		rs.close();
 		
-		long old_time = (stiki_utils.cur_unix_time()-stiki_utils.HIST_WINDOW);
+		if(hi_rid == 0){
+			System.out.println("Completed OE migration (cutoff=" + cutoff_ts +
+					", rows=" + rows_migrated + ")");
+			this.cutoff_ts = 0;
+			this.last_rid = 0;
+			checkpoint();
+			return;
+		} // If nothing remains, the pass is done
 		
-		String migrate_old = "INSERT INTO " + stiki_utils.tbl_oes_old + " ";
-		migrate_old += "SELECT * FROM " + stiki_utils.tbl_off_edits + " ";
-		migrate_old += "WHERE TS<=" + old_time;
-		pstmt_migrate_old = server_con.con.prepareStatement(migrate_old);
+		pstmt_migrate_old.setLong(1, last_rid);
+		pstmt_migrate_old.setLong(2, hi_rid);
+		pstmt_migrate_old.setLong(3, cutoff_ts);
+		metrics.update(pstmt_migrate_old);
 		
-		String delete_old = "DELETE FROM " + stiki_utils.tbl_off_edits + " ";
-		delete_old += "WHERE TS<=" + old_time;
-		pstmt_delete_old = server_con.con.prepareStatement(delete_old);
-	}			
+		pstmt_delete_old.setLong(1, last_rid);
+		pstmt_delete_old.setLong(2, hi_rid);
+		pstmt_delete_old.setLong(3, cutoff_ts);
+		this.rows_migrated += metrics.update(pstmt_delete_old);
+		
+		this.last_rid = hi_rid;
+		checkpoint();
+	}
+	
+	/**
+	 * Write the progress of the current pass to [stiki_status].
+	 */
+	private void checkpoint() throws Exception{
+		db_status_vars.update_status_var(db_status.OE_MIG_CUTOFF, cutoff_ts);
+		db_status_vars.update_status_var(db_status.OE_MIG_RID, last_rid);
+		db_status_vars.update_status_var(db_status.OE_MIG_ROWS, rows_migrated);
+	}
 	
+	/**
+	 * Prepare all SQL statements required by this class.
+	 */
+	private void prep_statements() throws Exception{
+	
+		String chunk_bound = "SELECT MAX(R_ID) FROM (SELECT R_ID FROM ";
+		chunk_bound += stiki_utils.tbl_off_edits + " ";
+		chunk_bound += "WHERE R_ID>? AND TS<=? ORDER BY R_ID LIMIT ?) AS c";
+		pstmt_chunk_bound = con_server.con.prepareStatement(chunk_bound);
+		
+		String migrate_old = "INSERT IGNORE INTO " + stiki_utils.tbl_oes_old;
+		migrate_old += " SELECT * FROM " + stiki_utils.tbl_off_edits + " ";
+		migrate_old += "WHERE R_ID>? AND R_ID<=? AND TS<=?";
+		pstmt_migrate_old = con_server.con.prepareStatement(migrate_old);
+		
+		String delete_old = "DELETE FROM " + stiki_utils.tbl_off_edits + " ";
+		delete_old += "WHERE R_ID>? AND R_ID<=? AND TS<=?";
+		pstmt_delete_old = con_server.con.prepareStatement(delete_old);
+	}
+
 }
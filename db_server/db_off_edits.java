@@ -42,6 +42,11 @@ public class db_off_edits{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into the [offending_edits] table. 
 	 */
@@ -116,7 +121,7 @@ public class db_off_edits{
 			pstmt_insert.setString(5, escape_string.escape(off_edit.user));
 			pstmt_insert.setLong(6, flag_rid);
 			pstmt_insert.setInt(7, -1); // Research: Unknown # of views
-			pstmt_insert.executeUpdate();
+			metrics.update(pstmt_insert);
 		} catch(Exception e){return;};
 
 			// New OE's trigger flags and increments in other tables
@@ -136,7 +141,7 @@ public class db_off_edits{
 		
 			// Note that the user-argument is escaped before querying
 		pstmt_ts_last_user_oe.setString(1, escape_string.escape(user));
-		ResultSet rs = pstmt_ts_last_user_oe.executeQuery();
+		ResultSet rs = metrics.query(pstmt_ts_last_user_oe);
 		if(rs.next()){
 			long ts_last_oe = rs.getLong(1);
 			if(ts_last_oe == 0)
@@ -162,7 +167,7 @@ public class db_off_edits{
 			// stmt breaks the ResultSet, whose access may not be synched.
 		List<Long> oes_list = new LinkedList<Long>();
 		pstmt_oes_user.setString(1, escape_string.escape(user)); // Escaped
-		ResultSet rs = pstmt_oes_user.executeQuery();
+		ResultSet rs = metrics.query(pstmt_oes_user);
 		while(rs.next())
 			oes_list.add(rs.getLong(1));
 		return(oes_list);
@@ -184,7 +189,7 @@ public class db_off_edits{
 			// stmt breaks the ResultSet, whose access may not be synched.
 		List<Long> oes_list = new LinkedList<Long>();
 		pstmt_oes_article.setLong(1, pid);
-		ResultSet rs = pstmt_oes_article.executeQuery();
+		ResultSet rs = metrics.query(pstmt_oes_article);
 		while(rs.next())
 			oes_list.add(rs.getLong(1));
 		return(oes_list);
@@ -27,6 +27,11 @@ public class db_queue{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into a queue table. 
 	 */
@@ -91,7 +96,7 @@ public class db_queue{
 			// And re-issue in case of duplicate key
 		pstmt_in_up.setLong(4, rid);
 		pstmt_in_up.setDouble(5, class_score);
-		pstmt_in_up.executeUpdate();
+		metrics.update(pstmt_in_up);
 	}
 	
 	/**
@@ -102,7 +107,7 @@ public class db_queue{
 	 */
 	public synchronized void delete_pid(long pid) throws Exception{
 		pstmt_delete_pid.setLong(1, pid);
-		pstmt_delete_pid.executeUpdate();
+		metrics.update(pstmt_delete_pid);
 	}
 	
 	/**
@@ -124,7 +129,7 @@ public class db_queue{
 		String in_up = "INSERT INTO " + table  + " (R_ID,P_ID,SCORE)";
 		in_up += "VALUES (?,?,?)"; // 3 params
 		in_up += "ON DUPLICATE KEY UPDATE ";
-		in_up += "R_ID=?,SCORE=?,RES_EXP=0,RES_ID=0,PASS=''"; // 2 addl.
+		in_up += "R_ID=?,SCORE=?,RES_EXP=0,RES_ID=0"; // 2 addl.
 		pstmt_in_up = con_server.con.prepareStatement(in_up);
 		
 		String delete_pid = "DELETE FROM " + table + " ";
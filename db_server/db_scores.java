@@ -15,6 +15,11 @@ public class db_scores{
 		
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * SQL inserting a row into a classification table. 
 	 */
@@ -60,7 +65,7 @@ public class db_scores{
 		
 		pstmt_insert.setLong(1, rid);
 		pstmt_insert.setDouble(2, class_score);
-		pstmt_insert.executeUpdate();
+		metrics.update(pstmt_insert);
 	}
 	
 	/**
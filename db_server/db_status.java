@@ -1,14 +1,16 @@
 package db_server;
 
+import java.sql.ResultSet;
 import java.sql.Statement;
 
 import core_objects.stiki_utils;
 
 /**
  * Andrew G. West - db_status.java - DB handler class where STATUS variables
- * of the STiki runtime are handled. Insertions should be handled manually,
- * and viewing will primarily be initatiated manually. Thus, the main purpose
- * of this class is to keep the variables UPDATED.
+ * of the STiki runtime are handled. Viewing will primarily be initatiated
+ * manually. Thus, the main purpose of this class is to keep the variables
+ * UPDATED. A variable not yet present is inserted on first update, so new
+ * variables need no manual seeding (and checkpoints are never lost).
  */
 public class db_status{
 	
@@ -23,10 +25,24 @@ public class db_status{
 	public static final String EDITS_PROC_CBNG =  "EDITS_PROC_CBNG";
 	public static final String OUTPUT_IRC_UP =    "OUTPUT_IRC_UP";
 	public static final String LINK_PARSE_ACC =   "LINK_PARSE_ACC";
+	public static final String RC_FILTERED_NS =   "RC_FILTERED_NS";
+	public static final String RC_FILTERED_BOT =  "RC_FILTERED_BOT";
+	public static final String RID_DELAY_MS =     "RID_DELAY_MS";
+	public static final String RID_ABANDONED =    "RID_ABANDONED";
+	public static final String MD_CACHE_HITS =    "MD_CACHE_HITS";
+	public static final String MD_CACHE_MISSES =  "MD_CACHE_MISSES";
+	public static final String OE_MIG_CUTOFF =    "OE_MIGRATE_CUTOFF";
+	public static final String OE_MIG_RID =       "OE_MIGRATE_LAST_RID";
+	public static final String OE_MIG_ROWS =      "OE_MIGRATE_ROWS";
 	
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Timing of this handler's statements, into [metrics_registry].
+	 */
+	private final db_metrics metrics = new db_metrics(this);
+	
 	/**
 	 * Connection to the PreSTA-STiki database (fully privileged).
 	 */
@@ -47,7 +63,7 @@ public class db_status{
 	// **************************** PUBLIC METHODS ***************************
 	
 	/**
-	 * Update a status variable in the DB.
+	 * Update a status variable in the DB (inserting it, if not present).
 	 * @param key String name of the variable being updated. The available
 	 * variable names are available as public variables to this class.
 	 * @param value Value to which 'key' should be updated.
@@ -55,9 +71,10 @@ public class db_status{
 	public synchronized void update_status_var(String key, long value) 
 			throws Exception{
 		Statement stmt = con_server.con.createStatement();
-		String sql = "UPDATE " + stiki_utils.tbl_status + " SET VALUE=";
-		sql += value + " WHERE NAME='" + key + "'";
-		stmt.executeUpdate(sql);
+		String sql = "INSERT INTO " + stiki_utils.tbl_status + " (NAME,VALUE) ";
+		sql += "VALUES ('" + key + "'," + value + ") ";
+		sql += "ON DUPLICATE KEY UPDATE VALUE=" + value;
+		metrics.update(stmt, sql);
 		stmt.close(); // Critical for memory purposes
 	}
 	
@@ -75,6 +92,25 @@ public class db_status{
 		else update_status_var(key, 0);
 	}
 
+	/**
+	 * Read the current value of a status variable from the DB.
+	 * @param key String name of the variable being read. The available
+	 * variable names are available as public variables to this class.
+	 * @return Value of the variable 'key', or zero if it is not present
+	 */
+	public synchronized long get_status_var(String key) throws Exception{
+		Statement stmt = con_server.con.createStatement();
+		String sql = "SELECT VALUE FROM " + stiki_utils.tbl_status + " ";
+		sql += "WHERE NAME='" + key + "'";
+		ResultSet rs = metrics.query(stmt, sql);
+		long value = 0;
+		if(rs.next())
+			value = rs.getLong(1);
+		rs.close();
+		stmt.close();
+		return(value);
+	}
+	
 	/**
 	 * Shutdown and close all DB objects created by this instance.
 	 */
@@ -0,0 +1,470 @@
+package db_server;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core_objects.feature_set;
+
+/**
+ * Andrew G. West - feature_archive.java - A columnar, on-disk copy of the
+ * [features] table. The back-end appends to it in parallel with that table
+ * (see [db_features.set_archive()]), and training/offline tools may scan
+ * it via [feature_partition], at memory speed rather than through JDBC.
+ *
+ * The archive is a directory holding one sub-directory per partition (a
+ * range of [PARTITION_RIDS] RIDs, named by RID/PARTITION_RIDS). Each of
+ * those holds one file per feature column (see [feature_partition]).
+ *
+ * The [features] table remains authoritative; the archive is not synced
+ * to disk on every append, and can always be rebuilt from the table (see
+ * [feature_archive_build]).
+ */
+public class feature_archive{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Number of RIDs spanned by each partition.
+	 */
+	public static final long PARTITION_RIDS = 1000000;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Maximum number of partitions simultaneously open for appending. Two
+	 * suffice for edits straddling a partition boundary.
+	 */
+	private static final int MAX_OPEN = 2;
+	
+	/**
+	 * Number of RIDs read per block when searching the R_ID column.
+	 */
+	private static final int SEARCH_BLOCK = 8192;
+	
+	/**
+	 * Root directory of the archive.
+	 */
+	private File dir;
+	
+	/**
+	 * Column channels of partitions open for appending, keyed by
+	 * partition-ID. Each array is indexed as [feature_partition.COL_NAMES].
+	 */
+	private Map<Long,FileChannel[]> open_parts;
+	
+	/**
+	 * Buffer through which column entries are written (at most 8 bytes).
+	 */
+	private ByteBuffer entry_buf;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [feature_archive], creating its directory if necessary.
+	 * @param dir Root directory of the archive
+	 */
+	public feature_archive(String dir) throws Exception{
+		this.dir = new File(dir);
+		if(!this.dir.isDirectory() && !this.dir.mkdirs())
+			throw new Exception("Unable to create feature archive: " + dir);
+		this.open_parts = new HashMap<Long,FileChannel[]>();
+		this.entry_buf = ByteBuffer.allocate(8);
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Append a feature set to the archive. Should any column fail to be
+	 * written, the partition is closed; on re-opening, all its columns are
+	 * truncated to the last complete row, so later rows stay aligned.
+	 * @param fs Feature set to be archived
+	 */
+	public synchronized void append(feature_set fs) throws Exception{
+		long part_id = fs.R_ID / PARTITION_RIDS;
+		FileChannel[] cols = partition_for_append(part_id);
+		try{append_row(cols, fs);
+		} catch(Exception e){
+			entry_buf.clear(); // May hold an entry not written
+			abandon_partition(part_id);
+			throw e;
+		} // Columns written before the failure are rolled back at re-open
+	}
+	
+	/**
+	 * Set the label of an archived edit as guilty (an offending-edit),
+	 * mirroring [db_features.set_guilty_label()].
+	 * @param rid Revision-ID of edit identified as an offending edit
+	 * @return TRUE if 'rid' was found in the archive; FALSE otherwise
+	 */
+	public synchronized boolean set_guilty_label(long rid) throws Exception{
+		long part_id = rid / PARTITION_RIDS;
+		if(!partition_dir(part_id).isDirectory())
+			return(false);
+		FileChannel[] cols = partition_for_append(part_id);
+		
+			// Labels arrive shortly after edits; search from the end
+		FileChannel rid_col = cols[feature_partition.COL_R_ID];
+		long rows = rid_col.size() / 8;
+		ByteBuffer block = ByteBuffer.allocate(SEARCH_BLOCK * 8);
+		while(rows > 0){
+			long first = Math.max(0, rows - SEARCH_BLOCK);
+			block.clear();
+			block.limit((int) (rows - first) * 8);
+			while(block.hasRemaining())
+				rid_col.read(block, first * 8 + block.position());
+			for(int i=(int) (rows - first) - 1; i >= 0; i--){
+				if(block.getLong(i * 8) != rid)
+					continue;
+				entry_buf.clear();
+				entry_buf.put((byte) 1).flip();
+				cols[feature_partition.COL_LABEL].write(entry_buf, first + i);
+				return(true);
+			} // Search the block back-to-front
+			rows = first;
+		} // Read R_ID column a block at a time
+		return(false);
+	}
+	
+	/**
+	 * Bring the labels of archived edits on an RID interval into agreement
+	 * with an authoritative set of guilty RIDs. Labels set outside the
+	 * back-end (i.e., by the GUI, via stored procedures) reach the archive
+	 * only this way.
+	 * @param start_rid Lower bound of RIDs (inclusive)
+	 * @param end_rid Upper bound of RIDs (inclusive)
+	 * @param guilty RIDs on the interval which are labelled guilty
+	 * @return Number of archived labels changed
+	 */
+	public synchronized int refresh_labels(long start_rid, long end_rid, 
+			Set<Long> guilty) throws Exception{
+		
+		int changed = 0;
+		ByteBuffer rids = ByteBuffer.allocate(SEARCH_BLOCK * 8);
+		ByteBuffer labels = ByteBuffer.allocate(SEARCH_BLOCK);
+		for(long part_id = start_rid / PARTITION_RIDS; 
+				part_id <= end_rid / PARTITION_RIDS; part_id++){
+			if(!partition_dir(part_id).isDirectory())
+				continue;
+			FileChannel[] cols = partition_for_append(part_id);
+			FileChannel rid_col = cols[feature_partition.COL_R_ID];
+			FileChannel label_col = cols[feature_partition.COL_LABEL];
+			long rows = rid_col.size() / 8;
+			for(long first=0; first < rows; first += SEARCH_BLOCK){
+				int n = (int) Math.min(SEARCH_BLOCK, rows - first);
+				read_fully(rid_col, rids, first * 8, n * 8);
+				read_fully(label_col, labels, first, n);
+				boolean dirty = false;
+				for(int i=0; i < n; i++){
+					long rid = rids.getLong(i * 8);
+					if(rid < start_rid || rid > end_rid)
+						continue;
+					byte want = (byte) (guilty.contains(rid) ? 1 : 0);
+					if(labels.get(i) != want){
+						labels.put(i, want);
+						dirty = true;
+						changed++;
+					} // Only differing labels are rewritten
+				} // Compare each row of the block
+				if(dirty){
+					labels.position(0).limit(n);
+					while(labels.hasRemaining())
+						label_col.write(labels, first + labels.position());
+				} // Positional writes; appends are unaffected
+			} // Read the R_ID and LABEL columns a block at a time
+		} // Over every overlapping partition
+		return(changed);
+	}
+	
+	/**
+	 * Determine whether the archive covers an RID interval: every partition
+	 * the interval spans exists, and the first holds some RID at or before
+	 * the interval start. The archive may have been begun (or rebuilt) only
+	 * recently, in which case it holds just the most recent part of a window.
+	 * @param start_rid Lower bound of RIDs (inclusive)
+	 * @param end_rid Upper bound of RIDs (inclusive)
+	 * @return TRUE if the archive holds all it would of 'start_rid' <= RID
+	 * <= 'end_rid'. Else, FALSE.
+	 */
+	public boolean covers(long start_rid, long end_rid) throws Exception{
+		List<feature_partition> parts = partitions(start_rid, end_rid);
+		if(parts.size() != (end_rid / PARTITION_RIDS) - 
+				(start_rid / PARTITION_RIDS) + 1)
+			return(false); // Some partition is missing
+		feature_partition first = parts.get(0);
+		for(int row=0; row < first.num_rows(); row++){
+			if(first.rid(row) <= start_rid)
+				return(true);
+		} // Rows are appended roughly, not strictly, in RID order
+		return(false);
+	}
+	
+	/**
+	 * Return the partitions overlapping an RID interval, mapped for reading.
+	 * @param start_rid Lower bound of RIDs (inclusive)
+	 * @param end_rid Upper bound of RIDs (inclusive)
+	 * @return Partitions holding any RID on 'start_rid' <= RID <= 'end_rid';
+	 * note they may also hold RIDs outside that interval. In RID order.
+	 */
+	public List<feature_partition> partitions(long start_rid, long end_rid)
+			throws Exception{
+		List<Long> ids = new ArrayList<Long>();
+		String[] names = dir.list();
+		for(int i=0; names != null && i < names.length; i++){
+			if(!names[i].matches("\\d+"))
+				continue;
+			long id = Long.parseLong(names[i]);
+			if(id >= start_rid / PARTITION_RIDS && id <= end_rid / PARTITION_RIDS)
+				ids.add(id);
+		} // Only those partitions which exist, however wide the interval
+		Collections.sort(ids);
+		
+		List<feature_partition> parts = new ArrayList<feature_partition>();
+		for(long id : ids)
+			parts.add(new feature_partition(partition_dir(id)));
+		return(parts);
+	}
+	
+	/**
+	 * Output a list of RIDs that occur internal to some RID interval,
+	 * mirroring [db_features.get_rids_in_interval()].
+	 * @param start_rid Lower bound of RIDs to be included (inclusive)
+	 * @param end_rid Upper bound of RIDs to be included (inclusive)
+	 * @return List of all RIDs on 'start_rid' <= R_ID <= 'end_rid', about
+	 * which the archive has data.
+	 */
+	public List<Long> get_rids_in_interval(long start_rid, long end_rid)
+			throws Exception{
+		List<Long> rid_list = new ArrayList<Long>();
+		for(feature_partition part : partitions(start_rid, end_rid)){
+			ByteBuffer rids = part.column(feature_partition.COL_R_ID);
+			for(int row=0; row < part.num_rows(); row++){
+				long rid = rids.getLong(row * 8);
+				if(rid >= start_rid && rid <= end_rid)
+					rid_list.add(rid);
+			} // Scan the R_ID column only
+		} // Over every overlapping partition
+		return(rid_list);
+	}
+	
+	/**
+	 * Output a list of [feature_set] objects for all archived edits with
+	 * an RID between provided bounds, mirroring
+	 * [db_features.get_features_in_interval()].
+	 * @param start_rid Lower bound of RIDs to be included (inclusive)
+	 * @param end_rid Upper bound of RIDs to be included (inclusive)
+	 * @return List of all archived feature sets where
+	 * 'start_rid' <= R_ID <= 'end_rid'
+	 */
+	public List<feature_set> get_features_in_interval(long start_rid,
+			long end_rid) throws Exception{
+		List<feature_set> feature_list = new ArrayList<feature_set>();
+		for(feature_partition part : partitions(start_rid, end_rid)){
+			ByteBuffer rids = part.column(feature_partition.COL_R_ID);
+			for(int row=0; row < part.num_rows(); row++){
+				long rid = rids.getLong(row * 8);
+				if(rid >= start_rid && rid <= end_rid)
+					feature_list.add(part.row(row));
+			} // Only rows in the interval are materialized
+		} // Over every overlapping partition
+		return(feature_list);
+	}
+	
+	/**
+	 * Force all appended data to disk, and close open partitions.
+	 */
+	public synchronized void close() throws Exception{
+		for(FileChannel[] cols : open_parts.values())
+			close_partition(cols);
+		open_parts.clear();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Return the directory of a partition.
+	 * @param part_id Partition-ID (RID / PARTITION_RIDS)
+	 * @return Directory of partition 'part_id'
+	 */
+	private File partition_dir(long part_id){
+		return(new File(dir, String.valueOf(part_id)));
+	}
+	
+	/**
+	 * Return the column channels of a partition, opening (or creating) it if
+	 * needed. Should too many be open, the lowest-numbered is closed.
+	 * @param part_id Partition-ID (RID / PARTITION_RIDS)
+	 * @return Column channels of partition 'part_id', positioned to append
+	 */
+	private FileChannel[] partition_for_append(long part_id)
+			throws Exception{
+		FileChannel[] cols = open_parts.get(part_id);
+		if(cols != null)
+			return(cols);
+		
+		if(open_parts.size() >= MAX_OPEN){
+			long lowest = Long.MAX_VALUE;
+			for(long id : open_parts.keySet())
+				lowest = Math.min(lowest, id);
+			close_partition(open_parts.remove(lowest));
+		} // Evict; edits arrive in (rough) RID order
+		
+		File part_dir = partition_dir(part_id);
+		if(!part_dir.isDirectory() && !part_dir.mkdirs())
+			throw new Exception("Unable to create partition: " + part_dir);
+			
+			// Partial rows (i.e., from a crash) are truncated, so that
+			// all columns are aligned before anything more is appended
+		long rows = feature_partition.num_complete_rows(part_dir);
+		cols = new FileChannel[feature_partition.COL_NAMES.length];
+		for(int i=0; i < cols.length; i++){
+			cols[i] = new RandomAccessFile(feature_partition.column_file(
+					part_dir, i), "rw").getChannel();
+			cols[i].truncate(rows * feature_partition.COL_WIDTHS[i]);
+			cols[i].position(rows * feature_partition.COL_WIDTHS[i]);
+		} // Open every column
+		open_parts.put(part_id, cols);
+		return(cols);
+	}
+	
+	/**
+	 * Append one row to the columns of a partition.
+	 * @param cols Column channels of the partition
+	 * @param fs Feature set forming the row
+	 */
+	private void append_row(FileChannel[] cols, feature_set fs)
+			throws Exception{
+		write_byte(cols[feature_partition.COL_LABEL], fs.LABEL ? 1 : 0);
+		write_long(cols[feature_partition.COL_R_ID], fs.R_ID);
+		write_byte(cols[feature_partition.COL_IS_IP], fs.IS_IP ? 1 : 0);
+		write_double(cols[feature_partition.COL_REP_USER], fs.REP_USER);
+		write_double(cols[feature_partition.COL_REP_ARTICLE], fs.REP_ARTICLE);
+		write_float(cols[feature_partition.COL_TOD], fs.TOD);
+		write_int(cols[feature_partition.COL_DOW], fs.DOW);
+		write_long(cols[feature_partition.COL_TS_R], fs.TS_R);
+		write_long(cols[feature_partition.COL_TS_LP], fs.TS_LP);
+		write_long(cols[feature_partition.COL_TS_RBU], fs.TS_RBU);
+		write_int(cols[feature_partition.COL_COMM_LENGTH], fs.COMM_LENGTH);
+		write_int(cols[feature_partition.COL_BYTE_CHANGE], fs.BYTE_CHANGE);
+		write_double(cols[feature_partition.COL_REP_COUNTRY], fs.REP_COUNTRY);
+		write_int(cols[feature_partition.COL_NLP_DIRTY], fs.NLP_DIRTY);
+		write_int(cols[feature_partition.COL_NLP_CHAR_REP], fs.NLP_CHAR_REP);
+		write_double(cols[feature_partition.COL_NLP_UCASE], fs.NLP_UCASE);
+		write_double(cols[feature_partition.COL_NLP_ALPHA], fs.NLP_ALPHA);
+	}
+	
+	/**
+	 * Read a region of a column, in full, into a buffer.
+	 * @param col Column channel
+	 * @param buf Buffer to read into (from its start)
+	 * @param offset Byte offset in the column at which to begin
+	 * @param len Number of bytes to read
+	 */
+	private static void read_fully(FileChannel col, ByteBuffer buf, 
+			long offset, int len) throws Exception{
+		buf.clear();
+		buf.limit(len);
+		while(buf.hasRemaining()){
+			if(col.read(buf, offset + buf.position()) < 0)
+				throw new Exception("Feature archive column is short");
+		} // Positional reads, which may return partially
+	}
+	
+	/**
+	 * Close a partition whose columns may be misaligned (i.e., after a
+	 * failed append), without forcing them. Errors are ignored; the next
+	 * [partition_for_append()] truncates the columns to complete rows.
+	 * @param part_id Partition-ID (RID / PARTITION_RIDS)
+	 */
+	private void abandon_partition(long part_id){
+		FileChannel[] cols = open_parts.remove(part_id);
+		for(int i=0; cols != null && i < cols.length; i++){
+			try{cols[i].close();
+			} catch(Exception e){}
+		} // Close every column, as far as possible
+	}
+	
+	/**
+	 * Force a partition's columns to disk, and close them.
+	 * @param cols Column channels of the partition
+	 */
+	private static void close_partition(FileChannel[] cols) throws Exception{
+		for(int i=0; i < cols.length; i++){
+			cols[i].force(false);
+			cols[i].close();
+		} // Close every column
+	}
+	
+	/**
+	 * Append the contents of [entry_buf] to a column.
+	 * @param col Column channel
+	 */
+	private void write_entry(FileChannel col) throws Exception{
+		entry_buf.flip();
+		while(entry_buf.hasRemaining())
+			col.write(entry_buf);
+		entry_buf.clear();
+	}
+	
+	/**
+	 * Append a byte (i.e., boolean) to a column.
+	 * @param col Column channel
+	 * @param value Value to append
+	 */
+	private void write_byte(FileChannel col, int value) throws Exception{
+		entry_buf.put((byte) value);
+		write_entry(col);
+	}
+	
+	/**
+	 * Append an integer to a column.
+	 * @param col Column channel
+	 * @param value Value to append
+	 */
+	private void write_int(FileChannel col, int value) throws Exception{
+		entry_buf.putInt(value);
+		write_entry(col);
+	}
+	
+	/**
+	 * Append a long to a column.
+	 * @param col Column channel
+	 * @param value Value to append
+	 */
+	private void write_long(FileChannel col, long value) throws Exception{
+		entry_buf.putLong(value);
+		write_entry(col);
+	}
+	
+	/**
+	 * Append a float to a column.
+	 * @param col Column channel
+	 * @param value Value to append
+	 */
+	private void write_float(FileChannel col, float value) throws Exception{
+		entry_buf.putFloat(value);
+		write_entry(col);
+	}
+	
+	/**
+	 * Append a double to a column.
+	 * @param col Column channel
+	 * @param value Value to append
+	 */
+	private void write_double(FileChannel col, double value) throws Exception{
+		entry_buf.putDouble(value);
+		write_entry(col);
+	}
+
+}
@@ -0,0 +1,177 @@
+package db_server;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import core_objects.feature_set;
+
+/**
+ * Andrew G. West - feature_partition.java - A read-only view over one
+ * partition (i.e., RID range) of a [feature_archive]. Each feature is a
+ * column file of fixed-width primitives, one entry per row, which is
+ * memory-mapped; so scans run at memory speed and never touch the DB.
+ *
+ * Rows are in the order they were appended (roughly, but not strictly,
+ * RID order). Columns may be read row-wise via [row()], or scanned
+ * directly via [column()] for best speed.
+ */
+public class feature_partition{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Column indices, in the order of the [feature_set] fields.
+	 */
+	public static final int COL_LABEL = 0;
+	public static final int COL_R_ID = 1;
+	public static final int COL_IS_IP = 2;
+	public static final int COL_REP_USER = 3;
+	public static final int COL_REP_ARTICLE = 4;
+	public static final int COL_TOD = 5;
+	public static final int COL_DOW = 6;
+	public static final int COL_TS_R = 7;
+	public static final int COL_TS_LP = 8;
+	public static final int COL_TS_RBU = 9;
+	public static final int COL_COMM_LENGTH = 10;
+	public static final int COL_BYTE_CHANGE = 11;
+	public static final int COL_REP_COUNTRY = 12;
+	public static final int COL_NLP_DIRTY = 13;
+	public static final int COL_NLP_CHAR_REP = 14;
+	public static final int COL_NLP_UCASE = 15;
+	public static final int COL_NLP_ALPHA = 16;
+	
+	/**
+	 * Column names (also their file names, sans ".col"), by index.
+	 */
+	public static final String[] COL_NAMES = {"LABEL", "R_ID", "IS_IP",
+		"REP_USER", "REP_ARTICLE", "TOD", "DOW", "TS_R", "TS_LP", "TS_RBU",
+		"COMM_LENGTH", "BYTE_CHANGE", "REP_COUNTRY", "NLP_DIRTY",
+		"NLP_CHAR_REP", "NLP_UCASE", "NLP_ALPHA"};
+	
+	/**
+	 * Width (bytes) of each column's entries, by index. Booleans are a
+	 * single byte; others are their Java primitive width.
+	 */
+	public static final int[] COL_WIDTHS = {1, 8, 1, 8, 8, 4, 4, 8, 8, 8,
+		4, 4, 8, 4, 4, 8, 8};
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Mapped column buffers, by index.
+	 */
+	private ByteBuffer[] cols;
+	
+	/**
+	 * Number of complete rows (those present in every column).
+	 */
+	private int num_rows;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [feature_partition] by mapping the columns of a
+	 * partition directory. Rows appended after construction are not seen.
+	 * @param dir Directory of the partition
+	 */
+	public feature_partition(File dir) throws Exception{
+		this.num_rows = num_complete_rows(dir);
+		this.cols = new ByteBuffer[COL_NAMES.length];
+		for(int i=0; i < COL_NAMES.length; i++){
+			RandomAccessFile file = new RandomAccessFile(
+					column_file(dir, i), "r");
+			cols[i] = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+					0, (long) num_rows * COL_WIDTHS[i]);
+			file.close(); // Mapping remains valid after close
+		} // Map every column
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Return the number of rows in the partition.
+	 * @return the number of rows in the partition
+	 */
+	public int num_rows(){
+		return(num_rows);
+	}
+	
+	/**
+	 * Return the RID of a row.
+	 * @param row Row index
+	 * @return RID of row 'row'
+	 */
+	public long rid(int row){
+		return(cols[COL_R_ID].getLong(row * 8));
+	}
+	
+	/**
+	 * Return a row, as a [feature_set].
+	 * @param row Row index
+	 * @return Feature set encoded by row 'row'
+	 */
+	public feature_set row(int row){
+		return(new feature_set(
+				cols[COL_LABEL].get(row) != 0,
+				cols[COL_R_ID].getLong(row * 8),
+				cols[COL_IS_IP].get(row) != 0,
+				cols[COL_REP_USER].getDouble(row * 8),
+				cols[COL_REP_ARTICLE].getDouble(row * 8),
+				cols[COL_TOD].getFloat(row * 4),
+				cols[COL_DOW].getInt(row * 4),
+				cols[COL_TS_R].getLong(row * 8),
+				cols[COL_TS_LP].getLong(row * 8),
+				cols[COL_TS_RBU].getLong(row * 8),
+				cols[COL_COMM_LENGTH].getInt(row * 4),
+				cols[COL_BYTE_CHANGE].getInt(row * 4),
+				cols[COL_REP_COUNTRY].getDouble(row * 8),
+				cols[COL_NLP_DIRTY].getInt(row * 4),
+				cols[COL_NLP_CHAR_REP].getInt(row * 4),
+				cols[COL_NLP_UCASE].getDouble(row * 8),
+				cols[COL_NLP_ALPHA].getDouble(row * 8)));
+	}
+	
+	/**
+	 * Return a column for direct scanning. Entry 'row' is at byte offset
+	 * (row * COL_WIDTHS[col]), and is read with the absolute get method
+	 * of the column's type (e.g., getDouble()). Booleans are 0 or 1.
+	 * @param col Column index (one of the COL_* constants)
+	 * @return A read-only buffer over the column (independent position)
+	 */
+	public ByteBuffer column(int col){
+		return(cols[col].duplicate());
+	}
+	
+	
+	// ************************ PUBLIC-STATIC METHODS ***********************
+	
+	/**
+	 * Return the file holding a column of a partition.
+	 * @param dir Directory of the partition
+	 * @param col Column index
+	 * @return File holding column 'col' of partition 'dir'
+	 */
+	public static File column_file(File dir, int col){
+		return(new File(dir, COL_NAMES[col] + ".col"));
+	}
+	
+	/**
+	 * Return the number of complete rows in a partition. Appends write
+	 * columns one-by-one, so after a crash some may be a row longer than
+	 * others; such partial rows are not counted.
+	 * @param dir Directory of the partition
+	 * @return Number of rows present in every column of partition 'dir'
+	 */
+	public static int num_complete_rows(File dir){
+		long rows = Long.MAX_VALUE;
+		for(int i=0; i < COL_NAMES.length; i++)
+			rows = Math.min(rows, column_file(dir, i).length() / COL_WIDTHS[i]);
+		return((int) rows);
+	}
+
+}
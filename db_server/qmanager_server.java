@@ -27,6 +27,7 @@ public class qmanager_server{
 	
 	/**
 	 * IRC handler, via which STiki scores will be written to a public feed.
+	 * If NULL, nothing is published (i.e., during a replay).
 	 */
 	private irc_output irc_out;
 	
@@ -37,7 +38,8 @@ public class qmanager_server{
 	 * Construct a "queue manager" by constructing the handlers over all
 	 * database tables used by the various implemented queues.
 	 * @param con Connection to STiki servers (fully privileged)
-	 * @param irc_out IRC handler, to which STiki scores will be written
+	 * @param irc_out IRC handler, to which STiki scores will be written.
+	 * If NULL, scores are not published.
 	 */
 	public qmanager_server(stiki_con_server con, irc_output irc_out) 
 			throws Exception{
@@ -81,9 +83,10 @@ public class qmanager_server{
 				db_queue_stiki.insert_classification(rid, pid, score);
 			else delete_pid(sys, pid);
 			db_scores_stiki.insert_classification(rid, score);
-			irc_out.msg(irc_output.CHANNELS.STIKI_SCORES, 
-					rid + " " + score + " " + "https://en.wikipedia.org/w/" +
-					"index.php?oldid=" + rid + "&diff=prev");
+			if(irc_out != null)
+				irc_out.msg(irc_output.CHANNELS.STIKI_SCORES, 
+						rid + " " + score + " " + "https://en.wikipedia.org/w/" +
+						"index.php?oldid=" + rid + "&diff=prev");
 		} else if(sys.equals(SCORE_SYS.CBNG)){
 			if(enqueue)
 				db_queue_cbng.insert_classification(rid, pid, score);
@@ -1,6 +1,7 @@
 package edit_processing;
 
 import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import core_objects.feature_set;
 import core_objects.metadata;
@@ -16,7 +17,9 @@ import db_server.qmanager_server;
 import ext_queues.wikitrust_process;
 import learn_frontend.feature_builder;
 import learn_frontend.learn_interface;
-import mediawiki_api.api_retrieve;
+import metrics.edit_trace;
+import metrics.metrics_histogram;
+import metrics.metrics_registry;
 
 /**
  * Andrew G. West - edit_process_thread.java - This class takes a revision,
@@ -38,14 +41,53 @@ public class edit_process_thread implements Runnable{
 	/**
 	 * Number of times to retry querying for new edit data. This is a practical
 	 * requirement given that it takes some time for data to distribute
-	 * across MediaWiki servers and be available for our query. This variable
-	 * is used wherever RID-queue insertions are made (IRC handler).
+	 * across MediaWiki servers and be available for our query. Retries are
+	 * now scheduled by [rid_delay_scheduler], which uses this value to 
+	 * size the window (NEW_RID_ATTEMPTS+1)*ELEMENT_DELAY in which they occur.
 	 */
 	public static final int NEW_RID_ATTEMPTS = 2;
 	
+	/**
+	 * Name of the per-stage latency histograms.
+	 */
+	public static final String STAGE_SECONDS = "stiki_stage_seconds";
+	
+	/**
+	 * Name of the histogram of total (per-edit) processing time.
+	 */
+	public static final String EDIT_SECONDS = "stiki_edit_seconds";
+	
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Per-stage latency histograms (see [metrics_registry]); stages are
+	 * the metadata fetch, rollback handling, feature building,
+	 * classification, and persistence of results.
+	 */
+	private static final metrics_histogram STAGE_FETCH = 
+			metrics_registry.histogram(STAGE_SECONDS, "stage", "fetch");
+	private static final metrics_histogram STAGE_ROLLBACK = 
+			metrics_registry.histogram(STAGE_SECONDS, "stage", "rollback");
+	private static final metrics_histogram STAGE_FEATURES = 
+			metrics_registry.histogram(STAGE_SECONDS, "stage", "features");
+	private static final metrics_histogram STAGE_CLASSIFY = 
+			metrics_registry.histogram(STAGE_SECONDS, "stage", "classify");
+	private static final metrics_histogram STAGE_PERSIST = 
+			metrics_registry.histogram(STAGE_SECONDS, "stage", "persist");
+	
+	/**
+	 * Latency histogram of total processing time, per edit (attempt).
+	 */
+	private static final metrics_histogram EDIT_TOTAL = 
+			metrics_registry.histogram(EDIT_SECONDS);
+	
+	/**
+	 * Number of edits whose processing ended in an exception.
+	 */
+	private static final AtomicLong PROCESS_ERRORS = 
+			metrics_registry.counter("stiki_process_errors_total");
+	
 	/**
 	 * DB handler for all queries/updates pertaining to the [main_edits] table.
 	 */
@@ -91,6 +133,11 @@ public class edit_process_thread implements Runnable{
 	 */
 	private learn_interface learn_module;
 	
+	/**
+	 * Short-lived RID->metadata cache, shared with CBNG processing.
+	 */
+	private rid_metadata_cache md_cache;
+	
 	/**
 	 * RID-queue element (wrapping RID, number of re-attempts, etc.)
 	 */
@@ -113,8 +160,8 @@ public class edit_process_thread implements Runnable{
 			db_geolocation db_geo, db_features db_feat, db_category db_cat, 
 			db_country db_country, db_hyperlinks db_links, 
 			qmanager_server qmanager, learn_interface learn_module, 
-			rid_queue_elem rid_element, DelayQueue<rid_queue_elem> rid_queue)
-			throws Exception{
+			rid_metadata_cache md_cache, rid_queue_elem rid_element, 
+			DelayQueue<rid_queue_elem> rid_queue) throws Exception{
 
 		this.db_edits = db_edits;
 		this.db_oe = db_oe;
@@ -125,6 +172,7 @@ public class edit_process_thread implements Runnable{
 		this.db_links = db_links;
 		this.qmanager = qmanager;
 		this.learn_module = learn_module;
+		this.md_cache = md_cache;
 		this.rid_element = rid_element;
 		this.rid_queue = rid_queue;
 	}
@@ -138,27 +186,39 @@ public class edit_process_thread implements Runnable{
 	 */
 	public void run(){
 		
+		edit_trace.begin(this.rid_element.RID);
+		long t_begin = System.nanoTime();
 		try{
 			metadata meta; // Begin by getting basic edit metadata
-			meta = api_retrieve.process_basic_rid(this.rid_element.RID, db_geo);
+			long t_stage = System.nanoTime();
+			meta = md_cache.get(this.rid_element.RID); // CBNG may have it
+			end_stage(STAGE_FETCH, "stage:fetch", t_stage);
 			if(!safe_to_process_metadata(meta))
 				return; // If metadata problem, do not continue
 			
+			t_stage = System.nanoTime();
 			rollback_handler.new_edit(meta, db_oe, db_geo, db_edits, 
 					db_feat, db_country, db_links); // Handle RBs
+			end_stage(STAGE_ROLLBACK, "stage:rollback", t_stage);
 			
 				// Score the feature-set, determine queue eligibility
+			t_stage = System.nanoTime();
 			feature_set cur_features = feature_builder.score_edit(
 					meta, db_oe, db_geo, db_cat, db_country, db_links);
-			db_feat.insert_feature_row(cur_features);
+			end_stage(STAGE_FEATURES, "stage:features", t_stage);
+			t_stage = System.nanoTime();
 			double score = learn_module.classify(cur_features);
 			boolean should_queue = should_queue(meta);
+			end_stage(STAGE_CLASSIFY, "stage:classify", t_stage);
 			
 				// Historically store the queue, possibly enqueue the
 				// edit, and persistently store the feature set
+			t_stage = System.nanoTime();
+			db_feat.insert_feature_row(cur_features);
 			qmanager.insert_score(SCORE_SYS.STIKI, 
 					meta.rid, meta.pid, score, should_queue);
 			db_edits.insert_edit(meta);
+			end_stage(STAGE_PERSIST, "stage:persist", t_stage);
 			
 				// Here we API out for the WikiTrust score. It would be
 				// nice if this were more high-level, but here we have the
@@ -167,14 +227,31 @@ public class edit_process_thread implements Runnable{
 			new wikitrust_process(qmanager, meta.rid, meta.pid).score();
 			
 		} catch(Exception e){
+			PROCESS_ERRORS.incrementAndGet();
 			System.out.println("Error encountered in RID-process thread:");
 			e.printStackTrace();
+		} finally{
+			EDIT_TOTAL.record_since(t_begin);
+			edit_trace.end(); // Slow edits have their trace logged
 		} // Must try-catch, cannot 'throw' per interface compliance.	
 	}
 	
 	
 	// *************************** PRIVATE METHODS ***************************
 	
+	/**
+	 * Record the completion of a processing stage, both into its latency
+	 * histogram, and as a span of the edit's trace.
+	 * @param hist Latency histogram of the stage
+	 * @param name Name of the stage (as a trace span)
+	 * @param t_start Value of [System.nanoTime()] when the stage began
+	 */
+	private static void end_stage(metrics_histogram hist, String name, 
+			long t_start){
+		hist.record_since(t_start);
+		edit_trace.span(name, t_start);
+	}
+	
 	/**
 	 * Given the metadata returned from a MediaWiki API call, inspect it to
 	 * determine if processing of the edit/metadata should continue.
@@ -188,14 +265,17 @@ public class edit_process_thread implements Runnable{
 			
 				// If new RID metadata is unavailable. Could be due to 
 				// distribution delay, re-query as permitted.
-			int num_reattempts = (this.rid_element.get_decr_reattempts());
-			if(num_reattempts != 0)
-				rid_queue.add(new rid_queue_elem(this.rid_element.RID));
-			else // if(num_reattempts == 0)
+			long retry_delay = rid_delay_scheduler.fetch_failed(rid_element);
+			if(retry_delay >= 0)
+				rid_queue.add(new rid_queue_elem(rid_element, retry_delay));
+			else // if(retry_delay == -1)
 				System.out.println("Failed to obtain new RID metadata");
 			return false;
 			
-		} else if(cur_rev_md.namespace != 0)
+		} // Otherwise, RID was visible; inform the delay scheduler
+		rid_delay_scheduler.fetch_succeeded(rid_element);
+		
+		if(cur_rev_md.namespace != 0)
 			return false; // Only interested in NS0 edits at this time
 		else return true; // If non-null and NS0, enable processing
 	}
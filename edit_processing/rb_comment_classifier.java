@@ -0,0 +1,173 @@
+package edit_processing;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import core_objects.pair;
+import edit_processing.rollback_handler.RB_TYPE;
+
+/**
+ * Andrew G. West - rb_comment_classifier.java - Given the (uppercase)
+ * comment of an edit, determine if it is of rollback (RB) form, of what
+ * [RB_TYPE], and who the offending user is. All regular expressions are
+ * compiled once. The [rollback_handler.RB_REGEX] array is combined into
+ * a single alternation, so classification is a single match (rather than
+ * one per expression); the capture group which matched gives the type.
+ * Offender extraction is likewise a single scan for delimiters.
+ */
+public class rb_comment_classifier{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * All of [rollback_handler.RB_REGEX], each wrapped in a capture group
+	 * and joined in a single alternation (order is preserved, so when
+	 * multiple expressions match, the earliest one wins, as before).
+	 */
+	private static final Pattern RB_COMBINED = combine(
+			rollback_handler.RB_REGEX);
+	
+	/**
+	 * For each expression in [RB_REGEX], the index of the capture group
+	 * in [RB_COMBINED] which wraps it. Expressions may contain groups
+	 * of their own, so these are not simply sequential.
+	 */
+	private static final int[] RB_GROUPS = group_indices(
+			rollback_handler.RB_REGEX);
+	
+	/**
+	 * Words delimiting the offender within an RB comment. The offender is
+	 * the text between the first and second occurrences of these.
+	 */
+	private static final Pattern OFFENDER_DELIM = Pattern.compile(
+			" BY | TO LAST | TO VERSION | IDENTIFIED ");
+	
+	/**
+	 * Patterns used to clean up the offender string. See [parse_offender()].
+	 */
+	private static final Pattern RE_PARENS = Pattern.compile(".*\\(.*\\)");
+	private static final Pattern RE_LINK_PARENS = Pattern.compile(
+			"\\[\\[.*\\]\\].*\\(.*\\)");
+	private static final Pattern RE_SP1 = Pattern.compile("\\[\\[.*\\|.*\\]\\]");
+	private static final Pattern RE_SP2 = Pattern.compile("\\[\\[USER:.*\\]\\]");
+	private static final Pattern RE_SP3 = Pattern.compile("\\[\\[.*\\]\\]");
+	private static final Pattern RE_SP4 = Pattern.compile(".* (TALK)");
+	private static final Pattern RE_PIPE_OR_CLOSE = Pattern.compile(
+			"\\||\\]\\]");
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Classify an edit comment, and if RB, extract the offending user.
+	 * @param uc_comment Full (uppercase) comment of a Wikipedia edit
+	 * @return NULL if 'uc_comment' is not of RB form. Otherwise, a pair
+	 * whose first element is the RB_TYPE of the matching expression, and
+	 * whose second element is the (uppercase) offender. The offender will
+	 * be the empty string if it could not be parsed.
+	 */
+	public static pair<RB_TYPE,String> classify(String uc_comment){
+		Matcher m = RB_COMBINED.matcher(uc_comment);
+		if(!m.matches())
+			return(null);
+		for(int i=0; i < RB_GROUPS.length; i++){
+			if(m.start(RB_GROUPS[i]) != -1)
+				return(new pair<RB_TYPE,String>(
+						rollback_handler.REGEX_TYPE[i],
+						parse_offender(uc_comment)));
+		} // Determine which alternative matched
+		return(null); // Should be unreachable
+	}
+	
+	/**
+	 * Determine if an edit comment is of RB form, without classifying it.
+	 * @param uc_comment Full (uppercase) comment of a Wikipedia edit
+	 * @return TRUE if 'uc_comment' is of RB form; FALSE otherwise
+	 */
+	public static boolean is_rollback(String uc_comment){
+		return(RB_COMBINED.matcher(uc_comment).matches());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Given a comment string of rollback form, return the offending user.
+	 * @param comment Full (escaped, uppercase) comment of a Wikipedia edit
+	 * @return The username/IP of the offending user, or the empty string
+	 * if the process failed for any reason (ill-formed format).
+	 */
+	private static String parse_offender(String comment){
+	
+		try{
+				// Relatively easily to get "offender" portion given
+				// the fixed (starting) structure of the REGEXs
+				// Must be careful not to be to forgiving, else one of these
+				// split-words could appear inside of a user-name
+			Matcher delim = OFFENDER_DELIM.matcher(comment);
+			if(!delim.find())
+				return("");
+			int beg = delim.end();
+			int end = delim.find() ? delim.start() : comment.length();
+			String offend = comment.substring(beg, end).trim();
+			
+				// End of comment may contain misc. parenthetical data; remove
+				// BUT, we don't want to affect those with '(',')' in username
+			if(RE_PARENS.matcher(offend).matches()){
+				if(RE_LINK_PARENS.matcher(offend).matches()){
+					offend = offend.substring(0, offend.indexOf("]]"));
+					offend += "]]";
+				} // The common-case can be explitly handled
+				else offend = offend.substring(0, offend.indexOf('(')).trim();
+			} // If not common-case, make a best guess
+			
+				// Handle specially formed offender strings
+			if(RE_SP1.matcher(offend).matches()) // [[Special:Contributions/bob|bob]]
+				return(RE_PIPE_OR_CLOSE.split(offend)[1].trim());
+			else if(RE_SP2.matcher(offend).matches()) // [[User:bob]]
+				return(offend.substring(7, offend.length()-2));
+			else if(RE_SP3.matcher(offend).matches()) // [[bob]]
+				return(offend.substring(2, offend.length()-2));
+			else if(RE_SP4.matcher(offend).matches()) // bob (talk)
+				return(offend.substring(0, offend.length()-7));
+			
+			return (offend); // If no regex matched, assume simple case
+		
+		} catch(Exception e){
+			System.out.println("Offender-parse failed: " + comment);
+			return ("");
+		} // If reg-ex successful parsing fails, report
+	}
+	
+	/**
+	 * Combine a set of regular expressions into a single alternation.
+	 * @param regexes Regular expressions to be combined
+	 * @return Compiled pattern, "(regex_0)|(regex_1)|...|(regex_n)"
+	 */
+	private static Pattern combine(String[] regexes){
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i < regexes.length; i++){
+			if(i > 0)
+				sb.append("|");
+			sb.append("(" + regexes[i] + ")");
+		} // Wrap each in a capture group
+		return(Pattern.compile(sb.toString()));
+	}
+	
+	/**
+	 * Determine the group index wrapping each expression in [combine()].
+	 * @param regexes Regular expressions, as passed to [combine()]
+	 * @return Array whose i-th element is the group index of 'regexes[i]'
+	 */
+	private static int[] group_indices(String[] regexes){
+		int[] indices = new int[regexes.length];
+		int next_group = 1;
+		for(int i=0; i < regexes.length; i++){
+			indices[i] = next_group;
+			next_group += 1 + Pattern.compile(
+					regexes[i]).matcher("").groupCount();
+		} // Skip past any groups internal to each expression
+		return(indices);
+	}
+
+}
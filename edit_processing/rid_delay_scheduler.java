@@ -0,0 +1,331 @@
+package edit_processing;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.metrics_histogram;
+import metrics.metrics_registry;
+
+/**
+ * Andrew G. West - rid_delay_scheduler.java - New revisions take some time
+ * to become visible via the MediaWiki API (data distribution, replication
+ * lag). Rather than waiting a fixed [rid_queue_elem.ELEMENT_DELAY] before
+ * every first query, this class measures how long RIDs actually take to
+ * become visible, and sets the initial delay to the point by which some
+ * percentile [VIS_PERCENTILE] of RIDs are visible. Failed queries are
+ * retried with exponential backoff, within the same overall window the
+ * fixed-delay scheme permitted (so the failure rate does not change).
+ *
+ * Every first query attempt is an observation: "at [t] msecs after the RID
+ * was seen on IRC, it was (or was not) visible". These are tallied per-second
+ * (retries are excluded, as they are biased towards slow-to-appear RIDs).
+ * Most first attempts are made at the current delay; a small fraction
+ * [PROBE_RATE] probe one second earlier. If probes show the percentile is
+ * met earlier, the delay steps down; if attempts at the current delay
+ * fall short of it, the delay steps up. Tallies decay, so this is rolling.
+ *
+ * All state is static, as a single scheduler serves the whole back-end.
+ * The histograms are also kept in [metrics_registry], so they are served
+ * by the scrape endpoint: first attempts and visible first attempts as
+ * counters per second-bucket (never decayed, so rates can be taken), the
+ * fetch latency as a histogram, the abandoned RIDs as a counter, and the
+ * current delay as a gauge.
+ */
+public class rid_delay_scheduler{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Fraction of RIDs which should be visible by the initial delay.
+	 */
+	public static final double VIS_PERCENTILE = 0.90;
+	
+	/**
+	 * The initial delay will never be set below this value (msecs). Recall
+	 * from [rid_queue_elem] that there are reasons beyond visibility (i.e.,
+	 * link parsing by Wikipedia, anti-vandal bots) not to rush.
+	 */
+	public static final long MIN_DELAY = 3000;
+	
+	/**
+	 * The initial delay will never be set above this value (msecs), which
+	 * is also the delay in effect until sufficient observations are made.
+	 */
+	public static final long MAX_DELAY = rid_queue_elem.ELEMENT_DELAY;
+	
+	/**
+	 * Window (msecs, from the time the RID was seen) in which query attempts
+	 * may be made. This is that of the fixed scheme (initial attempt and
+	 * [NEW_RID_ATTEMPTS] retries, each [ELEMENT_DELAY] apart). The last
+	 * retry is always placed at the end of this window.
+	 */
+	public static final long RETRY_WINDOW = rid_queue_elem.ELEMENT_DELAY *
+			(edit_process_thread.NEW_RID_ATTEMPTS + 1);
+	
+	/**
+	 * Maximum number of query attempts that will be made for any one RID.
+	 */
+	public static final int MAX_ATTEMPTS = 6;
+	
+	/**
+	 * Names under which the scheduler's metrics are registered. The two
+	 * per-bucket counters are labeled by bucket, i.e., {second="4"}.
+	 */
+	public static final String M_ATTEMPTS = "stiki_rid_first_attempts_total";
+	public static final String M_VISIBLE = "stiki_rid_first_visible_total";
+	public static final String M_FETCH = "stiki_rid_fetch_seconds";
+	public static final String M_ABANDONED = "stiki_rid_abandoned_total";
+	public static final String M_DELAY = "stiki_rid_delay_msecs";
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Fraction of first attempts that probe one bucket below current delay.
+	 */
+	private static final double PROBE_RATE = 0.05;
+	
+	/**
+	 * Observations needed in a bucket before a decision can be based on it.
+	 */
+	private static final int MIN_OBSERVATIONS = 100;
+	
+	/**
+	 * When a bucket's observations reach this number, its tallies are
+	 * halved. This is what makes the estimate "rolling".
+	 */
+	private static final int DECAY_LIMIT = 1000;
+	
+	/**
+	 * Width (msecs) of an observation bucket, and the delay step size.
+	 */
+	private static final long BUCKET_MSECS = 1000;
+	
+	/**
+	 * Per-bucket tallies of query attempts, and successful attempts. Index
+	 * [i] covers attempts made [i, i+1) seconds after the RID was seen.
+	 */
+	private static final int NUM_BUCKETS = (int)
+			(RETRY_WINDOW / BUCKET_MSECS) + 2;
+	private static long[] attempts = new long[NUM_BUCKETS];
+	private static long[] successes = new long[NUM_BUCKETS];
+	
+	/**
+	 * Histogram (same buckets as above) of the time at which RIDs were
+	 * successfully fetched; that is, the latency before scoring could begin.
+	 */
+	private static long[] fetch_latency = new long[NUM_BUCKETS];
+	
+	/**
+	 * Number of RIDs whose metadata could not be obtained in the window.
+	 */
+	private static long num_abandoned = 0;
+	
+	/**
+	 * Current initial delay (msecs), applied to new RID-queue elements.
+	 */
+	private static long cur_delay = MAX_DELAY;
+	
+	/**
+	 * Random source for probe selection.
+	 */
+	private static Random rand = new Random();
+	
+	/**
+	 * Registered metrics (see [M_ATTEMPTS] etc.), obtained once.
+	 */
+	private static final AtomicLong[] REG_ATTEMPTS =
+			bucket_counters(M_ATTEMPTS);
+	private static final AtomicLong[] REG_VISIBLE =
+			bucket_counters(M_VISIBLE);
+	private static final metrics_histogram REG_FETCH =
+			metrics_registry.histogram(M_FETCH);
+	private static final AtomicLong REG_ABANDONED =
+			metrics_registry.counter(M_ABANDONED);
+	private static final AtomicLong REG_DELAY =
+			metrics_registry.gauge(M_DELAY);
+	
+	static{
+		REG_DELAY.set(cur_delay);
+	} // Gauge reflects the delay in effect before any observation
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Return the delay (msecs) that should be applied to a newly seen RID.
+	 * @return Delay, in msecs, that should precede the first query attempt
+	 */
+	public static synchronized long initial_delay(){
+		if(cur_delay - BUCKET_MSECS >= MIN_DELAY &&
+				rand.nextDouble() < PROBE_RATE)
+			return(cur_delay - BUCKET_MSECS);
+		return(cur_delay);
+	}
+	
+	/**
+	 * Record that a query for some RID's metadata succeeded.
+	 * @param elem RID-queue element whose query succeeded
+	 */
+	public static synchronized void fetch_succeeded(rid_queue_elem elem){
+		int bucket = bucket(elem.msec_since_seen());
+		if(elem.get_attempts() == 1)
+			observe(bucket, true);
+		fetch_latency[bucket]++;
+		REG_FETCH.record(elem.msec_since_seen() * 1000);
+	}
+	
+	/**
+	 * Record that a query for some RID's metadata failed (not yet visible),
+	 * and determine when (if at all) the next attempt should be made.
+	 * @param elem RID-queue element whose query failed
+	 * @return Delay (msecs) until the next attempt should be made, or -1
+	 * if the RID should be abandoned (attempts or window exhausted).
+	 */
+	public static synchronized long fetch_failed(rid_queue_elem elem){
+	
+		long elapsed = elem.msec_since_seen();
+		if(elem.get_attempts() == 1)
+			observe(bucket(elapsed), false);
+		if(elem.get_attempts() >= MAX_ATTEMPTS || elapsed >= RETRY_WINDOW){
+			num_abandoned++;
+			REG_ABANDONED.incrementAndGet();
+			return(-1);
+		} // If nothing left, RID is abandoned
+		
+			// Exponential backoff, base of the current delay, but always
+			// ensuring the final attempt lands at the end of the window.
+		long backoff = cur_delay * (1L << (elem.get_attempts() - 1));
+		if(elem.get_attempts() == MAX_ATTEMPTS - 1)
+			return(RETRY_WINDOW - elapsed);
+		return(Math.min(backoff, RETRY_WINDOW - elapsed));
+	}
+	
+	/**
+	 * Return the current initial delay (msecs).
+	 * @return the current initial delay (msecs)
+	 */
+	public static synchronized long current_delay(){
+		return(cur_delay);
+	}
+	
+	/**
+	 * Return the number of RIDs abandoned after exhausting their attempts.
+	 * @return the number of RIDs abandoned after exhausting their attempts
+	 */
+	public static synchronized long num_abandoned(){
+		return(num_abandoned);
+	}
+	
+	/**
+	 * Produce the visibility and fetch-latency histograms in a text form
+	 * suitable for logging. One line per bucket (seconds since the RID was
+	 * seen): query attempts, of which visible, and RIDs first fetched.
+	 * @return Multi-line String rendering of the scheduler's histograms
+	 */
+	public static synchronized String histogram_string(){
+		StringBuilder sb = new StringBuilder();
+		sb.append("RID delay: cur=" + cur_delay + "ms abandoned=" +
+				num_abandoned + "\n");
+		for(int i=0; i < NUM_BUCKETS; i++){
+			if(attempts[i] == 0 && fetch_latency[i] == 0)
+				continue;
+			sb.append("  " + i + "s: attempts=" + attempts[i] +
+					" visible=" + successes[i] +
+					" fetched=" + fetch_latency[i] + "\n");
+		} // Only non-empty buckets are written
+		return(sb.toString());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Register one labeled counter per observation bucket.
+	 * @param name Base name of the counters
+	 * @return Counters, indexed by bucket
+	 */
+	private static AtomicLong[] bucket_counters(String name){
+		AtomicLong[] counters = new AtomicLong[NUM_BUCKETS];
+		for(int i=0; i < NUM_BUCKETS; i++)
+			counters[i] = metrics_registry.counter(name, "second", "" + i);
+		return(counters);
+	}
+	
+	/**
+	 * Map an elapsed time onto an observation bucket.
+	 * @param msecs Elapsed time (msecs) since an RID was seen
+	 * @return Index of the bucket into which 'msecs' falls
+	 */
+	private static int bucket(long msecs){
+		int bucket = (int) (msecs / BUCKET_MSECS);
+		if(bucket < 0)
+			return(0);
+		return(Math.min(bucket, NUM_BUCKETS - 1));
+	}
+	
+	/**
+	 * Tally an observation, decay if needed, and revisit the delay.
+	 * @param bucket Bucket in which the observation falls
+	 * @param visible Whether the RID was visible at that time
+	 */
+	private static void observe(int bucket, boolean visible){
+		attempts[bucket]++;
+		REG_ATTEMPTS[bucket].incrementAndGet();
+		if(visible){
+			successes[bucket]++;
+			REG_VISIBLE[bucket].incrementAndGet();
+		} // Registered counters are never decayed
+		if(attempts[bucket] >= DECAY_LIMIT){
+			attempts[bucket] /= 2;
+			successes[bucket] /= 2;
+		} // Halving keeps the estimate weighted to recent behavior
+		adjust_delay();
+	}
+	
+	/**
+	 * Step the current delay down (or up) by one bucket, if the tallies
+	 * at the next-lower (or current) bucket show the target percentile
+	 * would still be met (or is not being met).
+	 */
+	private static void adjust_delay(){
+	
+		int cur = bucket(cur_delay);
+		int lower = cur - 1;
+		if(attempts[cur] >= MIN_OBSERVATIONS &&
+				visible_rate(cur) < VIS_PERCENTILE &&
+				cur_delay + BUCKET_MSECS <= MAX_DELAY){
+			cur_delay += BUCKET_MSECS;
+			clear_bucket(cur + 1); // Judge new delay on fresh tallies
+		} else if(lower >= 0 && attempts[lower] >= MIN_OBSERVATIONS &&
+				visible_rate(lower) >= VIS_PERCENTILE &&
+				cur_delay - BUCKET_MSECS >= MIN_DELAY){
+			cur_delay -= BUCKET_MSECS;
+			clear_bucket(lower - 1);
+		} // Otherwise, delay remains where it is
+		REG_DELAY.set(cur_delay);
+	}
+	
+	/**
+	 * Fraction of attempts in a bucket which found the RID visible.
+	 * @param bucket Bucket of interest
+	 * @return Fraction of attempts in 'bucket' which were successful
+	 */
+	private static double visible_rate(int bucket){
+		if(attempts[bucket] == 0)
+			return(0.0);
+		return((1.0 * successes[bucket]) / attempts[bucket]);
+	}
+	
+	/**
+	 * Reset the visibility tallies of a bucket (if it exists).
+	 * @param bucket Bucket of interest
+	 */
+	private static void clear_bucket(int bucket){
+		if(bucket < 0 || bucket >= NUM_BUCKETS)
+			return;
+		attempts[bucket] = 0;
+		successes[bucket] = 0;
+	}
+
+}
@@ -0,0 +1,172 @@
+package edit_processing;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import core_objects.metadata;
+import db_server.db_geolocation;
+
+/**
+ * Andrew G. West - rid_metadata_cache.java - Both the STiki back-end
+ * ([edit_process_thread]) and the CBNG feed ([cluebotng_process]) fetch
+ * basic metadata for the same RIDs, usually within seconds of each other.
+ * This class is a short-lived RID->metadata cache shared by both, so
+ * whichever pipeline fetches first serves the other. Concurrent lookups
+ * for a RID whose fetch is already in-flight wait on that fetch, rather
+ * than issuing their own API request.
+ *
+ * Fetches always include geolocation, so the result is suitable for
+ * the back-end regardless of which pipeline initiated it. NULL results
+ * (RID not yet visible) and failures are not cached, so re-attempts will
+ * query anew. Note that returned objects are shared; only the back-end
+ * (one thread per RID) should modify them (i.e., [set_is_rb()]).
+ */
+public class rid_metadata_cache{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Time (msecs) for which a completed fetch may be served from cache.
+	 */
+	public static final long TTL_MSECS = 30000;
+	
+	/**
+	 * Maximum number of entries before eviction of completed entries.
+	 */
+	public static final int MAX_ENTRIES = 4096;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * DB-handler so that edit source (country) can be determined.
+	 */
+	private db_geolocation db_geo;
+	
+	/**
+	 * The cache itself. Values are fetches, which may be in-flight.
+	 */
+	private ConcurrentHashMap<Long,rid_metadata_fetch> cache;
+	
+	/**
+	 * Counters: lookups served by a completed entry ("hits"), those which
+	 * waited on an in-flight fetch ("merged"), and those fetching ("misses").
+	 */
+	private AtomicLong num_hits = new AtomicLong(0);
+	private AtomicLong num_merged = new AtomicLong(0);
+	private AtomicLong num_misses = new AtomicLong(0);
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [rid_metadata_cache] object.
+	 * @param db_geo DB-handler so that edit source (country) can be found
+	 */
+	public rid_metadata_cache(db_geolocation db_geo){
+		this.db_geo = db_geo;
+		this.cache = new ConcurrentHashMap<Long,rid_metadata_fetch>();
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Given an RID, retrieve basic edit metadata; from cache if possible.
+	 * @param rid Revision-ID (RID) of the edit of interest
+	 * @return Metadata of edit 'rid', nor null if it could not be found.
+	 * Semantics are those of [api_retrieve.process_basic_rid()].
+	 */
+	public metadata get(long rid) throws Exception{
+	
+		rid_metadata_fetch entry = cache.get(rid);
+		if(entry != null && entry.is_expired(TTL_MSECS)){
+			cache.remove(rid, entry);
+			entry = null;
+		} // Expired entries are treated as absent
+		
+		if(entry == null){
+			rid_metadata_fetch fresh = new rid_metadata_fetch(rid, db_geo);
+			entry = cache.putIfAbsent(rid, fresh);
+			if(entry == null){
+				entry = fresh;
+				num_misses.incrementAndGet();
+				if(cache.size() > MAX_ENTRIES)
+					evict();
+				entry.task.run(); // Fetch in the calling thread
+			} else count_shared(entry);
+		} else count_shared(entry);
+		
+		try{metadata md = entry.task.get();
+			if(md == null) // Not yet visible; do not cache
+				cache.remove(rid, entry);
+			return(md);
+		} catch(ExecutionException e){
+			cache.remove(rid, entry);
+			if(e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		} // Failures are also not cached; re-throw original exception
+	}
+	
+	/**
+	 * Return the number of lookups served by a completed cache entry.
+	 * @return the number of lookups served by a completed cache entry
+	 */
+	public long num_hits(){
+		return(num_hits.get());
+	}
+	
+	/**
+	 * Return the number of lookups merged into an in-flight fetch.
+	 * @return the number of lookups merged into an in-flight fetch
+	 */
+	public long num_merged(){
+		return(num_merged.get());
+	}
+	
+	/**
+	 * Return the number of lookups which required an API fetch.
+	 * @return the number of lookups which required an API fetch
+	 */
+	public long num_misses(){
+		return(num_misses.get());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Tally a lookup which did not itself fetch.
+	 * @param entry Cache entry which served the lookup
+	 */
+	private void count_shared(rid_metadata_fetch entry){
+		if(entry.task.isDone())
+			num_hits.incrementAndGet();
+		else num_merged.incrementAndGet();
+	}
+	
+	/**
+	 * Bring the cache below [MAX_ENTRIES]. Expired entries are removed
+	 * first; then (if still needed) any completed entries. In-flight
+	 * entries are never evicted, as others may be waiting on them.
+	 */
+	private void evict(){
+		Iterator<Map.Entry<Long,rid_metadata_fetch>> iter;
+		iter = cache.entrySet().iterator();
+		while(iter.hasNext()){
+			if(iter.next().getValue().is_expired(TTL_MSECS))
+				iter.remove();
+		} // First pass removes expired entries
+		
+		iter = cache.entrySet().iterator();
+		while(cache.size() > MAX_ENTRIES && iter.hasNext()){
+			if(iter.next().getValue().task.isDone())
+				iter.remove();
+		} // Second pass removes completed ones, as needed
+	}
+
+}
@@ -0,0 +1,79 @@
+package edit_processing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import core_objects.metadata;
+import db_server.db_geolocation;
+import mediawiki_api.api_retrieve;
+
+/**
+ * Andrew G. West - rid_metadata_fetch.java - A single (possibly in-flight)
+ * fetch of basic RID metadata, as held by [rid_metadata_cache]. Wrapping
+ * the fetch as a [FutureTask] lets concurrent lookups of the same RID
+ * wait on one API request, and the completion time drives cache expiry.
+ */
+public class rid_metadata_fetch implements Callable<metadata>{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Task performing the fetch. Run by whichever thread created this
+	 * object; others need only call [task.get()] on it.
+	 */
+	public final FutureTask<metadata> task;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Revision-ID (RID) whose metadata is being fetched.
+	 */
+	private final long rid;
+	
+	/**
+	 * DB-handler so that edit source (country) can be determined.
+	 */
+	private final db_geolocation db_geo;
+	
+	/**
+	 * UNIX millisecond at which the fetch completed; zero until then.
+	 */
+	private volatile long msec_done = 0;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [rid_metadata_fetch] object. The fetch is not started.
+	 * @param rid Revision-ID (RID) of the edit of interest
+	 * @param db_geo DB-handler so that edit source (country) can be found
+	 */
+	public rid_metadata_fetch(long rid, db_geolocation db_geo){
+		this.rid = rid;
+		this.db_geo = db_geo;
+		this.task = new FutureTask<metadata>(this);
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Perform the fetch (invoked via [task.run()]).
+	 */
+	public metadata call() throws Exception{
+		try{return(api_retrieve.process_basic_rid(rid, db_geo));
+		} finally{msec_done = System.currentTimeMillis();}
+	}
+	
+	/**
+	 * Determine if this fetch has completed, and some TTL since elapsed.
+	 * @param ttl_msecs Time-to-live (msecs) of a completed fetch
+	 * @return TRUE if this fetch is expired; FALSE, otherwise
+	 */
+	public boolean is_expired(long ttl_msecs){
+		return(msec_done != 0 && 
+				msec_done + ttl_msecs < System.currentTimeMillis());
+	}
+
+}
@@ -22,6 +22,8 @@ public class rid_queue_elem implements Delayed{
 	/**
 	 * The default insertion-delay to be associated with this object (i.e.,
 	 * this object cannot be popped before [ELEMENT_DELAY] time units pass).
+	 * The actual delay is now set adaptively by [rid_delay_scheduler], and
+	 * this value serves as the upper bound on (and start of) that delay.
 	 * 
 	 * Currently set to 10 seconds. 
 	 * 
@@ -37,7 +39,8 @@ public class rid_queue_elem implements Delayed{
 	public static final long ELEMENT_DELAY = 10000;
 	
 	/**
-	 * The time-unit which is applied to variable [ELEMENT_DELAY].
+	 * The time-unit which is applied to variable [ELEMENT_DELAY], and to
+	 * all delays handled by [rid_delay_scheduler].
 	 */
 	public static final TimeUnit DELAY_UNIT = TimeUnit.MILLISECONDS;
 	
@@ -45,10 +48,17 @@ public class rid_queue_elem implements Delayed{
 	// **************************** PRIVATE FIELDS ***************************
 	
 	/**
-	 * Due to data-distribution lag, attempts to query for new RID data
-	 * sometimes fail. This variable contains the number of reattempts.
+	 * Number of query attempts made (or, when popped, being made) for this
+	 * RID. Due to data-distribution lag, attempts to query for new RID data
+	 * sometimes fail, and a new element is queued to re-attempt.
 	 */
-	private int reattempts = edit_process_thread.NEW_RID_ATTEMPTS;
+	private int attempts;
+	
+	/**
+	 * The UNIX millisecond at which this RID was first seen (i.e., on IRC).
+	 * This is carried across re-attempts, so total latency can be measured.
+	 */
+	private long msec_seen;
 	
 	/**
 	 * This variable contains the UNIX millisecond at which this element
@@ -60,25 +70,56 @@ public class rid_queue_elem implements Delayed{
 	// ***************************** CONSTRUCTORS ****************************
 	
 	/**
-	 * Construct a [rid_queue_elem] by providing the revision-ID.
+	 * Construct a [rid_queue_elem] by providing the revision-ID. The delay 
+	 * is that currently recommended by [rid_delay_scheduler].
 	 * @param rid Revision-ID which this queue-element should wrap
 	 */
 	public rid_queue_elem(long rid){
+		this(rid, rid_delay_scheduler.initial_delay());
+	}
+	
+	/**
+	 * Construct a [rid_queue_elem] by providing the revision-ID, and an
+	 * explicit delay (i.e., a scaled one, when replaying captured edits).
+	 * @param rid Revision-ID which this queue-element should wrap
+	 * @param delay Delay (msecs) before the first query attempt
+	 */
+	public rid_queue_elem(long rid, long delay){
 		this.RID = rid;
-		this.msec_exp = System.currentTimeMillis() + ELEMENT_DELAY;
+		this.attempts = 1;
+		this.msec_seen = System.currentTimeMillis();
+		this.msec_exp = this.msec_seen + delay;
+	}
+	
+	/**
+	 * Construct a [rid_queue_elem] to re-attempt a query which failed.
+	 * @param prior Element whose query failed
+	 * @param delay Delay (in [DELAY_UNIT]) before the re-attempt is made
+	 */
+	public rid_queue_elem(rid_queue_elem prior, long delay){
+		this.RID = prior.RID;
+		this.attempts = prior.attempts + 1;
+		this.msec_seen = prior.msec_seen;
+		this.msec_exp = System.currentTimeMillis() + delay;
 	}
 	
 	
 	// **************************** PUBLIC METHODS ***************************
 	
 	/**
-	 * Return the num. of re-attempts remaining, then decrement that variable.
-	 * @return Number of query-attempts remaining for this RID.
+	 * Return the number of query-attempts made for this RID, this included.
+	 * @return Number of query-attempts made for this RID, this included
+	 */
+	public int get_attempts(){
+		return(this.attempts);	
+	}
+	
+	/**
+	 * Return the time elapsed since this RID was first seen.
+	 * @return Milliseconds elapsed since this RID was first seen
 	 */
-	public int get_decr_reattempts(){
-		int old_reattempts = this.reattempts;
-		this.reattempts--;
-		return(old_reattempts);	
+	public long msec_since_seen(){
+		return(System.currentTimeMillis() - this.msec_seen);
 	}
 	
 	/**
@@ -92,11 +133,16 @@ public class rid_queue_elem implements Delayed{
 
 	/**
 	 * Overriding: Compare this [rid_queue_elem] object to another. Comparison
-	 * is done based on the RID field, solely.
+	 * is done by expiration time, then RID. Ordering by expiration is needed
+	 * now that delays vary; the [DelayQueue] head must be the next to expire.
 	 */
 	public int compareTo(Delayed other){
 		rid_queue_elem rid_other = (rid_queue_elem) other;
-		if(this.RID == rid_other.RID)
+		if(this.msec_exp < rid_other.msec_exp)
+			return(-1);
+		else if(this.msec_exp > rid_other.msec_exp)
+			return(1);
+		else if(this.RID == rid_other.RID)
 			return(0);
 		else if(this.RID < rid_other.RID)
 			return(-1);
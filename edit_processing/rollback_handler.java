@@ -1,9 +1,13 @@
 package edit_processing;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 import mediawiki_api.api_retrieve;
 import mediawiki_api.api_xml_user_perm;
 import core_objects.metadata;
 import core_objects.pair;
+import core_objects.stiki_utils;
 import db_server.db_country;
 import db_server.db_edits;
 import db_server.db_features;
@@ -63,7 +67,29 @@ public class rollback_handler{
 	 * If this is not the case, we search backwards until [x-SEARCH_DEPTH].
 	 */
 	public static final int SEARCH_DEPTH = 10;
-
+	
+	/**
+	 * Time (in seconds) for which a user's rollback-permission status
+	 * may be cached. Rollbacks are made by a comparatively small set of
+	 * users, so this saves many [process_user_perm()] calls.
+	 */
+	public static final int PERM_CACHE_TTL = 60*60;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Maximum number of users held by [perm_cache], before it is cleared.
+	 */
+	private static final int PERM_CACHE_MAX = 10000;
+	
+	/**
+	 * Cache mapping users to (1) whether they hold rollback rights, and
+	 * (2) the UNIX timestamp at which that was determined.
+	 */
+	private static ConcurrentHashMap<String,pair<Boolean,Long>> perm_cache = 
+			new ConcurrentHashMap<String,pair<Boolean,Long>>();
+	
 	
 	// **************************** PUBLIC METHODS ***************************
 	
@@ -82,20 +108,20 @@ public class rollback_handler{
 			db_geolocation db_geo, db_edits db_edits, db_features db_feat, 
 			db_country db_country, db_hyperlinks db_links) throws Exception{
 
-		pair<Long, RB_TYPE> oe_result = find_oe(cur_rev_md);
-		if(oe_result.fst == -1){
+		pair<metadata, RB_TYPE> oe_result = find_oe(cur_rev_md);
+		if(oe_result == null){
 			cur_rev_md.set_is_rb(false);
 			return; 
 		} // RB-detection or offender-location failed
 
-			// Now that we have RB, flag and store accordingly
+			// Now that we have RB, flag and store accordingly. The search
+			// returned full metadata, only geolocation need be added.
 		cur_rev_md.set_is_rb(true);
-		metadata guilty_md;
-		guilty_md = api_retrieve.process_basic_rid(oe_result.fst, db_geo);
-		if(guilty_md != null && cur_rev_md.rid != guilty_md.rid){ 
+		metadata guilty_md = new metadata(oe_result.fst, db_geo);
+		if(cur_rev_md.rid != guilty_md.rid){ 
 			db_oe.new_oe(guilty_md, cur_rev_md.rid, oe_result.snd, db_edits, 
 					db_feat, db_country, db_links);
-		} // If no error getting guilty edit, and not self-identifying
+		} // If not self-identifying
 	}
 
 	
@@ -104,99 +130,65 @@ public class rollback_handler{
 	/**
 	 * Determine if an edit is a rollback (and the offending-edit, if so)
 	 * @param cur_rev_md Metadata of edit under examination
-	 * @return A pair. The first element is the RID of the offending-edit (OE), 
-	 * or -1 if the OE could not be located (or may not exist), for any reason.
-	 * The second element is an RB_TYPE object encoding whether the the RB
-	 * was located via human-validated, or autonomous (bot) means.
+	 * @return NULL if the OE could not be located (or may not exist), for 
+	 * any reason. Otherwise, a pair. The first element is the metadata of
+	 * the offending-edit (OE), sans geolocation. The second element is an 
+	 * RB_TYPE object encoding whether the the RB was located via 
+	 * human-validated, or autonomous (bot) means.
 	 */
-	private static pair<Long, RB_TYPE> find_oe(metadata cur_rev_md) 
+	private static pair<metadata, RB_TYPE> find_oe(metadata cur_rev_md) 
 			throws Exception{
 		
-			// Failure to match an RB-regex is instant rejection
-		RB_TYPE rb_type = RB_TYPE.NONE;
-		boolean potential_rb = false;;
+			// Failure to match an RB-regex is instant rejection. Note
+			// that the classifier also parses out the offender.
 		String uc_comment = cur_rev_md.comment.toUpperCase();
-		for(int i=0; i < RB_REGEX.length; i++){
-			if(uc_comment.matches(RB_REGEX[i])){
-				rb_type = REGEX_TYPE[i];
-				potential_rb = true;
-				break; // No need to keep searching
-			} // Check for REGEX matching
-		} // Iterate over all OE-REGEXes
-			
-		if(!potential_rb) // If no REGEX was matched, abandon
-			return (new pair<Long, RB_TYPE>(-1L, RB_TYPE.NONE));
+		pair<RB_TYPE,String> rb_class = 
+				rb_comment_classifier.classify(uc_comment);
+		if(rb_class == null) // If no REGEX was matched, abandon
+			return(null);
+		RB_TYPE rb_type = rb_class.fst;
 	
 		if(!rb_type.equals(RB_TYPE.BOT)){
-			boolean rb_perm = api_xml_user_perm.has_rollback(
-					api_retrieve.process_user_perm(cur_rev_md.user));
-			if(!rb_perm) // If user not permissioned, abandon
-				return (new pair<Long, RB_TYPE>(-1L, RB_TYPE.NONE));
+			if(!has_rollback(cur_rev_md.user)) // If not permissioned
+				return(null);
 		} // Check rollback permissions of flagging user (but not bots)
 		
-			// Next parse out the offender (and check for self-RB)
-		String uc_offender = parse_offender(uc_comment);
+			// Next check the offender (and check for self-RB)
+		String uc_offender = rb_class.snd;
 		if(uc_offender.equals("") || uc_offender.equals(cur_rev_md.user))
-			return (new pair<Long, RB_TYPE>(-1L, RB_TYPE.NONE));
-		
-			// Having offender, search for offending edit RID
-		long oe_rid = api_retrieve.process_offender_search(uc_offender, 
-				cur_rev_md.pid, cur_rev_md.rid, SEARCH_DEPTH);
-		if(oe_rid == -1) // If offender-location fails, abandon
-			return (new pair<Long, RB_TYPE>(-1L, RB_TYPE.NONE)); 
+			return(null);
 		
-			// If successful, return RID and type of offending-edit
-		return (new pair<Long, RB_TYPE>(oe_rid, rb_type)); 
+			// Having offender, search for offending edit. A single query
+			// returns metadata for all candidates, so that the OE does 
+			// not require a second query once located.
+		List<metadata> candidates = api_retrieve.process_page_prev_meta(
+				cur_rev_md.pid, cur_rev_md.rid, SEARCH_DEPTH+1, null);
+		for(int i=0; i < candidates.size(); i++){
+			if(candidates.get(i).user.toUpperCase().equals(uc_offender))
+				return(new pair<metadata, RB_TYPE>(candidates.get(i), rb_type));
+		} // Most recent matching edit (by offender) is the OE
+		return(null); // If offender-location fails, abandon
 	}
-
+	
 	/**
-	 * Given a comment string of rollback form, return the offending user.
-	 * @param comment Full (escaped, uppercase) comment of a Wikipedia edit
-	 * @return The username/IP of the offending user, or the empty string
-	 * if the process failed for any reason (ill-formed format).
+	 * Determine if a user has rollback rights, consulting [perm_cache].
+	 * @param user User whose rights are being examined
+	 * @return TRUE if 'user' has rollback rights; FALSE, otherwise
 	 */
-	private static String parse_offender(String comment) throws Exception{
-	
-		try{
-				// Relatively easily to get "offender" portion given 
-				// the fixed (starting) structure of the REGEXs
-				// Must be careful not to be to forgiving, else one of these
-				// split-words could appear inside of a user-name
-			String[] comm = comment.split(" BY | TO LAST |" +
-					" TO VERSION | IDENTIFIED ");
-			String offend = comm[1].trim();
-			
-				// End of comment may contain misc. parenthetical data; remove
-				// BUT, we don't want to affect those with '(',')' in username
-			if(offend.matches(".*\\(.*\\)")){
-				if(offend.matches("\\[\\[.*\\]\\].*\\(.*\\)")){
-					offend = offend.split("\\]\\]")[0];
-					offend += "]]";                 
-				} // The common-case can be explitly handled	
-				else offend = offend.substring(0, offend.indexOf('(')).trim();
-			} // If not common-case, make a best guess
-			
-				// Handle specially formed offender strings
-			String re_sp1 = "\\[\\[.*\\|.*\\]\\]";
-			String re_sp2 = "\\[\\[USER:.*\\]\\]";
-			String re_sp3 = "\\[\\[.*\\]\\]";
-			String re_sp4 = ".* (TALK)";
-			
-			if(offend.matches(re_sp1)) // [[Special:Contributions/bob|bob]]
-				return(offend.split("\\||\\]\\]")[1].trim());	
-			else if(offend.matches(re_sp2)) // [[User:bob]]
-				return(offend.substring(7, offend.length()-2));
-			else if(offend.matches(re_sp3)) // [[bob]]
-				return(offend.substring(2, offend.length()-2));
-			else if(offend.matches(re_sp4)) // bob (talk)
-				return(offend.substring(0, offend.length()-7));
-	
-			return (offend); // If no regex matched, assume simple case
-			
-		} catch(Exception e){
-			System.out.println("Offender-parse failed: " + comment);
-			return ("");
-		} // If reg-ex successful parsing fails, report	
+	private static boolean has_rollback(String user) throws Exception{
+		
+		pair<Boolean,Long> cached = perm_cache.get(user);
+		if(cached != null && 
+				cached.snd + PERM_CACHE_TTL > stiki_utils.cur_unix_time())
+			return(cached.fst);
+		
+		boolean rb_perm = api_xml_user_perm.has_rollback(
+				api_retrieve.process_user_perm(user));
+		if(perm_cache.size() >= PERM_CACHE_MAX)
+			perm_cache.clear(); // Crude, but bound is rarely reached
+		perm_cache.put(user, new pair<Boolean,Long>(
+				rb_perm, stiki_utils.cur_unix_time()));
+		return(rb_perm);
 	}
 	
 }
@@ -3,6 +3,7 @@ package executables;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import core_objects.stiki_utils;
@@ -12,8 +13,13 @@ import learn_frontend.feature_hyperlinks;
 import learn_frontend.learn_interface;
 import learn_frontend.train_sets;
 
+import replay.replay_capture;
+
 import irc_work.irc_listener;
 import irc_work.irc_output;
+import irc_work.irc_prefilter;
+
+import metrics.metrics_http_server;
 
 import db_server.db_category;
 import db_server.db_country;
@@ -24,9 +30,12 @@ import db_server.db_hyperlinks;
 import db_server.db_oe_migrate;
 import db_server.db_off_edits;
 import db_server.db_status;
+import db_server.feature_archive;
 import db_server.qmanager_server;
 import db_server.stiki_con_server;
 import edit_processing.edit_process_thread;
+import edit_processing.rid_delay_scheduler;
+import edit_processing.rid_metadata_cache;
 import edit_processing.rid_queue_elem;
 import edit_processing.thread_manager;
 import ext_queues.cluebotng_irc;
@@ -58,6 +67,30 @@ public class stiki_backend_driver{
 	 */
 	private static final int NUM_REVS_MIGRATE_RB = 100000;
 	
+	/**
+	 * Maximum number of rows moved per chunk of RB migration. May be set
+	 * by "-migrate_chunk [rows]".
+	 */
+	private static int MIGRATE_CHUNK_SIZE = db_oe_migrate.DEFAULT_CHUNK_SIZE;
+	
+	/**
+	 * Pause (in milliseconds) between chunks of RB migration. May be set
+	 * by "-migrate_pause [ms]".
+	 */
+	private static long MIGRATE_CHUNK_PAUSE = 
+			db_oe_migrate.DEFAULT_CHUNK_PAUSE;
+	
+	/**
+	 * Interval (in seconds) at which RID delay histograms are written out.
+	 */
+	private static final int HIST_LOG_INTERVAL = 60*60;
+	
+	/**
+	 * Local (loopback) port at which processing metrics are served. May be
+	 * set by "-metrics_port [port]"; zero (or less) disables the endpoint.
+	 */
+	private static int METRICS_PORT = 9310;
+	
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
@@ -76,23 +109,64 @@ public class stiki_backend_driver{
 	 */
 	private static ExecutorService WORKER_THREADS; 
 	
+	/**
+	 * Scheduler for background maintenance (i.e., RB migration). This is 
+	 * a single thread, so such tasks never compete with one another.
+	 */
+	private static ScheduledExecutorService PERIODIC_TASKS;
+	
 	/**
 	 * By flipping this flag, the STiki processing would cleanly shutdown
 	 * and exit (currently not implemented). 
 	 */
 	private static boolean break_proc = false;
+	
+	/**
+	 * Columnar archive written in parallel with the [features] table, and
+	 * preferred for re-training; NULL unless "-archive" is given.
+	 */
+	private static feature_archive FEATURE_ARCHIVE = null;
 
 	
 	// **************************** PUBLIC METHODS ***************************
 	
 	/**
 	 * Driver method. Start IRC listener and all back-end processing.
-	 * @param args No arguments are required by this method.
+	 * @param args No arguments are required by this method. Optionally,
+	 * "-capture [file]" records seen RIDs and API responses to 'file', 
+	 * for later replay by [stiki_replay_driver]; and "-archive [dir]"
+	 * writes features to a columnar archive at 'dir' (see [feature_archive]).
+	 * RB migration is paced by "-migrate_chunk [rows]" (rows per chunk) and
+	 * "-migrate_pause [ms]" (pause between chunks). Metrics are served at
+	 * "-metrics_port [port]" (default 9310, zero to disable); if the port
+	 * cannot be bound, processing continues without them.
 	 */
 	public static void main(String[] args) throws Exception{
 		
-			// Startup the IRC feeds which STiki writes
+		for(int i=0; i + 1 < args.length; i += 2){
+			if(args[i].equals("-capture"))
+				replay_capture.start(args[i+1]);
+			else if(args[i].equals("-archive"))
+				FEATURE_ARCHIVE = new feature_archive(args[i+1]);
+			else if(args[i].equals("-migrate_chunk"))
+				MIGRATE_CHUNK_SIZE = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-migrate_pause"))
+				MIGRATE_CHUNK_PAUSE = Long.parseLong(args[i+1]);
+			else if(args[i].equals("-metrics_port"))
+				METRICS_PORT = Integer.parseInt(args[i+1]);
+		} // Optional flags, each with a single argument
+		
+			// Startup the IRC feeds which STiki writes, and metrics endpoint
 		irc_output irc_out = new irc_output();
+		metrics_http_server metrics_http = null;
+		if(METRICS_PORT > 0){
+			try{metrics_http = new metrics_http_server(METRICS_PORT);
+			} catch(Exception e){
+				System.out.println("Unable to serve metrics at port " +
+						METRICS_PORT + "; continuing without them:");
+				e.printStackTrace();
+			} // Port in use (i.e., a second back-end) must not stop us
+		} // Metrics are an aid to, not a part of, processing
 		
 			// Database handlers have connections; must be instantiated
 		stiki_con_server server_con = new stiki_con_server();
@@ -100,6 +174,7 @@ public class stiki_backend_driver{
 		db_off_edits db_oe = new db_off_edits(server_con);
 		db_geolocation db_geo = new db_geolocation(server_con);
 		db_features db_features = new db_features(server_con);
+		db_features.set_archive(FEATURE_ARCHIVE);
 		db_category db_cat = new db_category(server_con);
 		db_country db_country = new db_country(server_con);
 		db_hyperlinks db_links = new db_hyperlinks(server_con, irc_out);
@@ -109,13 +184,25 @@ public class stiki_backend_driver{
 		thread_manager tm = new thread_manager();
 		WORKER_THREADS = Executors.newFixedThreadPool(NUM_RID_THREADS, tm);
 		
-			// Wrap edit queues, start population of external queues.
+			// Background maintenance; RB migration runs chunk-by-chunk,
+			// and will resume any pass interrupted by a prior shutdown
+		PERIODIC_TASKS = Executors.newSingleThreadScheduledExecutor();
+		db_oe_migrate oe_migrator = new db_oe_migrate(MIGRATE_CHUNK_SIZE);
+		PERIODIC_TASKS.scheduleWithFixedDelay(oe_migrator, 
+				MIGRATE_CHUNK_PAUSE, MIGRATE_CHUNK_PAUSE, 
+				TimeUnit.MILLISECONDS);
+		
+			// Wrap edit queues, start population of external queues. The
+			// metadata cache lets CBNG and STiki share RID API fetches.
 		qmanager_server qmanager = new qmanager_server(server_con, irc_out);
-		cluebotng_irc cbng_irc = new cluebotng_irc(WORKER_THREADS, qmanager);
+		rid_metadata_cache md_cache = new rid_metadata_cache(db_geo);
+		cluebotng_irc cbng_irc = new cluebotng_irc(
+				WORKER_THREADS, qmanager, md_cache);
 		
 			// Create STiki produce-consume queue, and start IRC listening
 		rid_queue = new DelayQueue<rid_queue_elem>();
-		irc_listener irc_rc = new irc_listener(rid_queue);
+		irc_prefilter rc_filter = new irc_prefilter();
+		irc_listener irc_rc = new irc_listener(rid_queue, rc_filter);
 		
 			// A couple of RID trackers for periodic tasks, and statistics
 		rid_queue_elem cur_element; // RID-element currently being handled.
@@ -123,6 +210,7 @@ public class stiki_backend_driver{
 		long rid_last_mig = 0;		// RID which triggered last RB-migration
 		long edits_processed = 0;
 		long ts_status_updated = stiki_utils.cur_unix_time();
+		long ts_hist_logged = stiki_utils.cur_unix_time();
 		
 		while(!break_proc){
 			if(rid_queue.peek() != null && // Peek can see unexpired entries
@@ -140,29 +228,39 @@ public class stiki_backend_driver{
 				WORKER_THREADS.submit(new edit_process_thread(
 						db_edits, db_oe, db_geo, db_features, db_cat, 
 						db_country, db_links, qmanager, LEARNER, 
-						cur_element, rid_queue));	
+						md_cache, cur_element, rid_queue));	
 				edits_processed++;
 				
 					// See if any periodic tasks need performed
 				rid_last_t = retrain(server_con, cur_element.RID, rid_last_t);
-				rid_last_mig = migrate_rb(cur_element.RID, rid_last_mig);
+				rid_last_mig = migrate_rb(cur_element.RID, rid_last_mig, 
+						oe_migrator);
 				
 			} else{ // If element in P-C queue, pop-and-process
 			
 				if(ts_status_updated + 10 < stiki_utils.cur_unix_time()){
 					update_status_vars(db_status_vars, rid_queue.size(), 
 							tm.num_threads_created(), edits_processed, 
-							cbng_irc.num_edits_processed(), irc_out.isUp());
+							cbng_irc.num_edits_processed(), irc_out.isUp(),
+							rc_filter, md_cache);
 					ts_status_updated = stiki_utils.cur_unix_time();
+					rc_filter.refresh_if_stale();
+					
+					if(ts_hist_logged + HIST_LOG_INTERVAL < 
+							stiki_utils.cur_unix_time()){
+						System.out.print(rid_delay_scheduler.histogram_string());
+						ts_hist_logged = stiki_utils.cur_unix_time();
+					} // Export RID visibility/latency histograms
 					
 					if(!cbng_irc.is_alive()){
 						System.out.println("CBNG IRC conn reporting down at " + 
 								stiki_utils.cur_unix_time());
-						cbng_irc = new cluebotng_irc(WORKER_THREADS, qmanager);
+						cbng_irc = new cluebotng_irc(
+								WORKER_THREADS, qmanager, md_cache);
 					} if(!irc_rc.is_alive()){
 						System.out.println("RC IRC conn reporting down at " + 
 								stiki_utils.cur_unix_time());
-						irc_rc = new irc_listener(rid_queue);
+						irc_rc = new irc_listener(rid_queue, rc_filter);
 					}
 						
 				} // Update status vars on a thirty second interval
@@ -175,10 +273,14 @@ public class stiki_backend_driver{
 		
 			// Shut-down all database connections, stmts, and IRC-listener
 		WORKER_THREADS.shutdownNow();
+		PERIODIC_TASKS.shutdownNow();
+		oe_migrator.shutdown();
 		db_edits.shutdown();
 		db_oe.shutdown();
 		db_geo.shutdown();
 		db_features.shutdown();
+		if(FEATURE_ARCHIVE != null)
+			FEATURE_ARCHIVE.close();
 		db_cat.shutdown();
 		db_country.shutdown();
 		db_links.shutdown();
@@ -187,6 +289,9 @@ public class stiki_backend_driver{
 		qmanager.shutdown();
 		irc_rc.shutdown();
 		irc_out.shutdown();
+		if(metrics_http != null)
+			metrics_http.shutdown();
+		replay_capture.stop();
 		server_con.con.close();
 	}
 	
@@ -210,8 +315,15 @@ public class stiki_backend_driver{
 			return(rid_last_retrain); // Not needed; yet
 			
 			// Else, train over a "smart" training set -- note this is 
-			// hard-coded option and different strategies are available
-		LEARNER.train(train_sets.get_smart_set(con_server, cur_rid));
+			// hard-coded option and different strategies are available.
+			// The archive (if any) is preferred, as it avoids scanning
+			// the DB; its labels are refreshed from the DB first. It is
+			// used only once it holds the whole training window.
+		if(FEATURE_ARCHIVE != null && 
+				train_sets.archive_covers(FEATURE_ARCHIVE, cur_rid))
+			LEARNER.train(train_sets.get_smart_set(
+					FEATURE_ARCHIVE, con_server, cur_rid));
+		else LEARNER.train(train_sets.get_smart_set(con_server, cur_rid));
 		return(cur_rid);
 	}
 	
@@ -219,17 +331,19 @@ public class stiki_backend_driver{
 	 * Examine if RB migration should occur. If yes, initiate migration.
 	 * @param cur_rid RID which was last processed into the STiki system
 	 * @param rid_last_migrate RID at which last migration occured
+	 * @param oe_migrator Migration task, already on the [PERIODIC_TASKS]
+	 * scheduler; initiation only sets the cutoff for its next pass.
 	 * @return IF this class actually initiates migrartion, then 'cur_rid'
 	 * will be returned. ELSE, variable 'rid_last_migration' will be returned.
 	 */
-	private static long migrate_rb(long cur_rid, long rid_last_migrate)
-			throws Exception{
+	private static long migrate_rb(long cur_rid, long rid_last_migrate, 
+			db_oe_migrate oe_migrator) throws Exception{
 		
 			// If migration not needed, break and exit immediately
 		if((cur_rid - rid_last_migrate) < NUM_REVS_MIGRATE_RB)
 			return(rid_last_migrate);
-		else // Else, perform migration (in own thread)
-			new db_oe_migrate();
+		else // Else, begin a pass (moved in chunks, by the scheduler)
+			oe_migrator.request_pass();
 		return(cur_rid);
 	}
 	
@@ -243,10 +357,14 @@ public class stiki_backend_driver{
 	 * assigned, note this includes edits not in name-space zero (NS0))
 	 * @param cbng_edits_processed Number of edits processed by CBNG in session
 	 * @param irc_up Whether or not the output IRC connection is active
+	 * @param rc_filter RC pre-filter, whose discard counters are reported
+	 * @param md_cache RID metadata cache, whose hit counters are reported
 	 */
 	private static void update_status_vars(db_status db_status_vars, 
 			int q_size, int num_threads_created, long stiki_edits_processed,
-			long cbng_edits_processed, boolean irc_up) throws Exception{
+			long cbng_edits_processed, boolean irc_up, 
+			irc_prefilter rc_filter, rid_metadata_cache md_cache) 
+			throws Exception{
 		
 		db_status_vars.update_status_var(
 				db_status.BE_QUEUE_SIZE, q_size);
@@ -261,6 +379,18 @@ public class stiki_backend_driver{
 		db_status_vars.update_status_var(
 				db_status.LINK_PARSE_ACC, 
 				Math.round(100 * feature_hyperlinks.parse_success()));
+		db_status_vars.update_status_var(
+				db_status.RC_FILTERED_NS, rc_filter.num_filtered_ns());
+		db_status_vars.update_status_var(
+				db_status.RC_FILTERED_BOT, rc_filter.num_filtered_bot());
+		db_status_vars.update_status_var(
+				db_status.RID_DELAY_MS, rid_delay_scheduler.current_delay());
+		db_status_vars.update_status_var(
+				db_status.RID_ABANDONED, rid_delay_scheduler.num_abandoned());
+		db_status_vars.update_status_var(db_status.MD_CACHE_HITS, 
+				md_cache.num_hits() + md_cache.num_merged());
+		db_status_vars.update_status_var(
+				db_status.MD_CACHE_MISSES, md_cache.num_misses());
 	}
 	
 }
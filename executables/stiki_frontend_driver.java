@@ -9,6 +9,7 @@ import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -24,6 +25,7 @@ import core_objects.stiki_utils.QUEUE_TYPE;
 import core_objects.stiki_utils.SCORE_SYS;
 import db_client.client_interface;
 import gui_edit_queue.edit_queue;
+import gui_edit_queue.edit_queue_pacer;
 import gui_edit_queue.gui_display_pkg;
 import gui_menus.gui_menu_bar;
 import gui_panels.gui_button_panel;
@@ -35,10 +37,12 @@ import gui_panels.gui_revert_panel;
 import gui_panels.gui_comment_panel.COMMENT_TAB;
 import gui_support.gui_agf_dialogue;
 import gui_support.gui_fb_handler;
+import gui_support.gui_fb_outbox;
 import gui_support.gui_filesys_images;
 import gui_support.gui_globals;
 import gui_support.gui_ping_server;
 import gui_support.gui_settings;
+import gui_support.gui_warn_prefetch;
 
 /**
  * Andrew G. West - stiki_frontend_driver.java - This class is a driver
@@ -116,6 +120,11 @@ public class stiki_frontend_driver extends JFrame{
 	 */
 	public client_interface client_interface;
 	
+	/**
+	 * Outbox through which classification feedback is written to backend.
+	 */
+	public gui_fb_outbox fb_outbox;
+	
 	/**
 	 * Object managing which edits get shown to end users (via [queue]).
 	 */
@@ -128,15 +137,37 @@ public class stiki_frontend_driver extends JFrame{
 	 * Number of threads to use in back-end support. (i.e., non-GUI items such
 	 * as writing to database, fetching data from MediaWiki). INCLUDED IN THIS
 	 * NUMBER SHOULD ALSO BE THE STATIC ALLOCATION THREADS (i.e., the thread
-	 * that pings the DB, and that which keeps RID cache full/maintained).
+	 * that pings the DB, that which keeps RID cache full/maintained, and
+	 * that writing the feedback outbox), as well as up to 
+	 * [edit_queue_pacer.MAX_IN_FLIGHT] edit fetches.
 	 */
-	private static final int NUM_NON_GUI_THREADS = 10;
+	private static final int NUM_NON_GUI_THREADS = 
+			5 + edit_queue_pacer.MAX_IN_FLIGHT;
 	
 	/**
 	 * Service dispatching work to available threads.
 	 */
 	private static ExecutorService WORKER_THREADS; 
 	
+	/**
+	 * Number of threads reserved for classification tasks (feedback 
+	 * handlers, and the reverts/warnings they start). These are kept apart
+	 * from [WORKER_THREADS], so that reverts never wait behind edit fetches.
+	 * One more carries the warning prefetch of the edit on display.
+	 */
+	private static final int NUM_PRIORITY_THREADS = 4;
+	
+	/**
+	 * Service dispatching classification tasks to the reserved threads.
+	 */
+	private static ExecutorService PRIORITY_THREADS;
+	
+	/**
+	 * Longest time (ms.) to wait at exit for pending feedback to be written.
+	 * Any not written by then is written at the next start.
+	 */
+	private static final long FB_EXIT_WAIT_MS = 5000;
+	
 	/**
 	 * Queue "type" used to make the *last* classification. By comparing
 	 * this to the *current* classification values, it is possible to
@@ -159,6 +190,12 @@ public class stiki_frontend_driver extends JFrame{
 	 */
 	private static boolean secondary_review = false;
 	
+	/**
+	 * Prefetch of what reverting-and-warning the displayed edit would need.
+	 * Abandoned (if not yet started) when the next edit is displayed.
+	 */
+	private static gui_warn_prefetch warn_prefetch = null;
+	
 	/**
 	 * Tracking use of the "PASS" button to monitor over-use. Note that 
 	 * this is a value that will be pulled from persistent settings at
@@ -232,7 +269,10 @@ public class stiki_frontend_driver extends JFrame{
 		QUEUE_TYPE default_type = stiki_utils.queue_to_type(default_queue);
 		last_q_type = default_type;
 		WORKER_THREADS = Executors.newFixedThreadPool(NUM_NON_GUI_THREADS);
+		PRIORITY_THREADS = Executors.newFixedThreadPool(NUM_PRIORITY_THREADS);
 		WORKER_THREADS.submit(new gui_ping_server(this));
+		fb_outbox = new gui_fb_outbox(this);
+		WORKER_THREADS.submit(fb_outbox);
 		edit_queue = new edit_queue(this, WORKER_THREADS, 
 				client_interface, default_queue);
 		
@@ -283,6 +323,10 @@ public class stiki_frontend_driver extends JFrame{
 		
 		try{ // Shutdown cleanly terminates all DB cons/structs
 			WORKER_THREADS.shutdown();
+			PRIORITY_THREADS.shutdown(); // Reverts in progress finish
+			PRIORITY_THREADS.awaitTermination(
+					FB_EXIT_WAIT_MS, TimeUnit.MILLISECONDS);
+			fb_outbox.shutdown(FB_EXIT_WAIT_MS);
 			edit_queue.shutdown();
 			client_interface.shutdown();
 			WORKER_THREADS.shutdownNow(); // Kill infinite loops
@@ -306,8 +350,7 @@ public class stiki_frontend_driver extends JFrame{
 	 */
 	public void reset_connection(boolean show_message) 
 			throws Exception{
-		this.client_interface = new client_interface();
-		if(this.client_interface.con_client.con == null){
+		if(!try_reset_connection()){
 			JOptionPane.showMessageDialog(this,
 					"Unable to connect to the STiki back-end:\n" +
 	       		 	"The program will now exit. Try to restart STiki.\n" +
@@ -323,6 +366,22 @@ public class stiki_frontend_driver extends JFrame{
 	       		    JOptionPane.WARNING_MESSAGE);
 	}
 	
+	/**
+	 * Attempt to obtain a new connection to the server, as does
+	 * [reset_connection()], but without any dialog and without exiting on
+	 * failure. For background threads (e.g., the [gui_fb_outbox] writer)
+	 * which can simply wait and try again.
+	 * @return TRUE if a new connection was obtained (and is now in use);
+	 * FALSE, otherwise, in which case the existing connection is kept
+	 */
+	public boolean try_reset_connection() throws Exception{
+		client_interface fresh = new client_interface();
+		if(fresh.con_client.con == null)
+			return(false);
+		this.client_interface = fresh;
+		return(true);
+	}
+	
 	/**
 	 * Map a user-classification to DB and on-Wikipedia events.
 	 * @param fb_type Type of feedback being left
@@ -371,7 +430,7 @@ public class stiki_frontend_driver extends JFrame{
 			
 		if(last_classification.snd == md.rid && fb_type.equals(FB_TYPE.PASS) &&
 				last_classification.fst.equals(FB_TYPE.INNOCENT)){
-			client_interface.queues.queue_resurrect(md.rid, md.pid);
+			fb_outbox.queue_resurrect(md.rid, md.pid); // After the FB
 		} // If above criteria are met, we have an INNOCENT->PASS class
 		  // change via "back", the lone problematic case.
 		
@@ -411,8 +470,8 @@ public class stiki_frontend_driver extends JFrame{
 				login_panel.watchlist_combobox(),
 				comment_panel.get_warn_status(ct),
 				usr_talk_msg,
-				revert_panel, WORKER_THREADS);
-		WORKER_THREADS.submit(fb_task); // GIVE THE FB-TASK TO A THREAD
+				revert_panel, PRIORITY_THREADS);
+		PRIORITY_THREADS.submit(fb_task); // GIVE THE FB-TASK TO A THREAD
 		
 			// Configure functionality of the "back" button
 		if(fb_type.equals(FB_TYPE.GUILTY) || fb_type.equals(FB_TYPE.GUILTY_4IM) 
@@ -493,6 +552,26 @@ public class stiki_frontend_driver extends JFrame{
 				menu_bar.selected_queue(), previous, false);
 		diff_browser.display_content(edit_queue.get_cur_edit());
 		metadata_panel.set_displayed_rid(edit_queue.get_cur_edit());
+		prefetch_warning(edit_queue.get_cur_edit());
+	}
+	
+	/**
+	 * Begin prefetching what a revert-and-warn of the displayed edit would
+	 * need, so that were it reverted, the warning could follow immediately.
+	 * Warning inputs are fetched only if the warning option is on.
+	 * @param edit_pkg Edit now on display
+	 */
+	private void prefetch_warning(gui_display_pkg edit_pkg){
+		if(warn_prefetch != null)
+			warn_prefetch.abandon(); // Reviewer has moved on
+		COMMENT_TAB ct = COMMENT_TAB.VAND;
+		if(stiki_utils.queue_to_type(edit_pkg.source_queue).equals(
+				QUEUE_TYPE.LINK_SPAM))
+			ct = COMMENT_TAB.SPAM;
+		warn_prefetch = new gui_warn_prefetch(edit_pkg, 
+				login_panel.editor_using_native_rb(), 
+				comment_panel.get_warn_status(ct));
+		PRIORITY_THREADS.submit(warn_prefetch);
 	}
 	
 	/**
@@ -0,0 +1,201 @@
+package executables;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import core_objects.pair;
+
+import learn_adtree.adtree_frontend;
+import learn_frontend.learn_interface;
+
+import db_server.db_category;
+import db_server.db_country;
+import db_server.db_edits;
+import db_server.db_features;
+import db_server.db_geolocation;
+import db_server.db_hyperlinks;
+import db_server.db_metrics;
+import db_server.db_off_edits;
+import db_server.qmanager_server;
+import db_server.stiki_con_server;
+import edit_processing.edit_process_thread;
+import edit_processing.rid_delay_scheduler;
+import edit_processing.rid_metadata_cache;
+import edit_processing.rid_queue_elem;
+import ext_queues.wikitrust_api;
+import mediawiki_api.api_retrieve;
+import metrics.metrics_histogram;
+import metrics.metrics_registry;
+import replay.replay_corpus;
+import replay.replay_http_server;
+
+/**
+ * Andrew G. West - stiki_replay_driver.java - Load-testing harness for the
+ * back-end pipeline. A capture file (see [replay_capture]; produced by
+ * running the back-end with "-capture [file]") is replayed: its API
+ * responses are served from a local stub ([replay_http_server]) via
+ * [api_retrieve.BASE_URL_OVERRIDE], and its RIDs are fed to the real
+ * [edit_process_thread] pipeline at some multiple of real-time.
+ *
+ * Nothing leaves the machine: scores and links are not published to the
+ * IRC feeds, and WikiTrust is never contacted (its queue simply has the
+ * edits' PIDs removed, as when that service is down).
+ *
+ * Results are WRITTEN TO THE DATABASE, exactly as by the back-end, so
+ * [stiki_con_server] must be configured for a local test database (loaded
+ * with [db_schema.sql]) before this is run. On completion, throughput,
+ * latency percentiles, DB write rates, and all metrics are reported.
+ *
+ * Usage: java executables.stiki_replay_driver [capture_file] [speed] [threads]
+ * Where 'speed' is the multiple of real-time (default 1.0), and 'threads'
+ * the number of worker threads (default as the back-end).
+ */
+public class stiki_replay_driver{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Default number of threads to use for parallel RID processing.
+	 */
+	private static final int NUM_RID_THREADS = 128;
+	
+	/**
+	 * Learning module/strategy being applied.
+	 */
+	private static final learn_interface LEARNER = new adtree_frontend();
+	
+	/**
+	 * Quantiles of per-edit latency which are reported.
+	 */
+	private static final double[] REPORT_QUANTILES = {0.5, 0.9, 0.99};
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. Replay a capture file through the back-end pipeline.
+	 * @param args See class description
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		if(args.length < 1){
+			System.out.println("Usage: java executables.stiki_replay_driver" +
+					" [capture_file] [speed] [threads]");
+			return;
+		} // Capture file is required
+		double speed = (args.length > 1) ? Double.parseDouble(args[1]) : 1.0;
+		int num_threads = (args.length > 2) ? Integer.parseInt(args[2]) :
+				NUM_RID_THREADS;
+			
+			// Load the capture, and point the API at the stub
+		replay_corpus corpus = new replay_corpus(args[0]);
+		replay_http_server stub = new replay_http_server(corpus, 0,
+				num_threads);
+		api_retrieve.BASE_URL_OVERRIDE = stub.base_url();
+		wikitrust_api.WIKITRUST_ACTIVATED = false;
+		System.out.println("Loaded " + corpus.edits.size() + " edits and " +
+				corpus.responses.size() + " API responses");
+			
+			// Database handlers, as in [stiki_backend_driver], except
+			// that nothing is published to IRC (a NULL handler)
+		stiki_con_server server_con = new stiki_con_server();
+		db_edits db_edits = new db_edits(server_con);
+		db_off_edits db_oe = new db_off_edits(server_con);
+		db_geolocation db_geo = new db_geolocation(server_con);
+		db_features db_features = new db_features(server_con);
+		db_category db_cat = new db_category(server_con);
+		db_country db_country = new db_country(server_con);
+		db_hyperlinks db_links = new db_hyperlinks(server_con, null);
+		qmanager_server qmanager = new qmanager_server(server_con, null);
+		rid_metadata_cache md_cache = new rid_metadata_cache(db_geo);
+		
+		ThreadPoolExecutor workers = (ThreadPoolExecutor)
+				Executors.newFixedThreadPool(num_threads);
+		DelayQueue<rid_queue_elem> rid_queue = new DelayQueue<rid_queue_elem>();
+		
+			// Feed RIDs at their (scaled) capture offsets, and process
+			// them as they come due. Ends when all fed and processed.
+		long msec_start = System.currentTimeMillis();
+		int next_edit = 0;
+		long submitted = 0;
+		while(next_edit < corpus.edits.size() || rid_queue.size() > 0 ||
+				workers.getCompletedTaskCount() < submitted){
+			
+			long msec_elapsed = System.currentTimeMillis() - msec_start;
+			while(next_edit < corpus.edits.size()){
+				pair<Long,Long> edit = corpus.edits.get(next_edit);
+				if(edit.snd / speed > msec_elapsed)
+					break;
+				rid_queue.offer(new rid_queue_elem(edit.fst, (long)
+						(rid_delay_scheduler.initial_delay() / speed)));
+				next_edit++;
+			} // Feed all RIDs now due
+			
+			rid_queue_elem cur_element = rid_queue.poll();
+			while(cur_element != null){
+				workers.submit(new edit_process_thread(db_edits, db_oe,
+						db_geo, db_features, db_cat, db_country, db_links,
+						qmanager, LEARNER, md_cache, cur_element, rid_queue));
+				submitted++;
+				cur_element = rid_queue.poll();
+			} // Process all RIDs whose delay has expired
+			Thread.sleep(1);
+		}
+		double secs = (System.currentTimeMillis() - msec_start) / 1000.0;
+		
+		report(corpus, stub, speed, secs, submitted);
+		
+		workers.shutdownNow();
+		workers.awaitTermination(10, TimeUnit.SECONDS);
+		db_edits.shutdown();
+		db_oe.shutdown();
+		db_geo.shutdown();
+		db_features.shutdown();
+		db_cat.shutdown();
+		db_country.shutdown();
+		db_links.shutdown();
+		qmanager.shutdown();
+		stub.shutdown();
+		server_con.con.close();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Output the results of a replay.
+	 * @param corpus Corpus which was replayed
+	 * @param stub API stub which served the replay
+	 * @param speed Multiple of real-time at which replay was run
+	 * @param secs Duration of the replay (wall-clock seconds)
+	 * @param submitted Number of processing attempts (includes retries)
+	 */
+	private static void report(replay_corpus corpus, replay_http_server stub,
+			double speed, double secs, long submitted){
+		
+		metrics_histogram edit_hist = metrics_registry.histogram(
+				edit_process_thread.EDIT_SECONDS);
+		long db_writes = metrics_registry.counter_total(db_metrics.DB_WRITES);
+		
+		System.out.println();
+		System.out.println("Replayed " + corpus.edits.size() + " edits at " +
+				speed + "x real-time, in " + secs + " secs");
+		System.out.println(String.format("Throughput: %.2f edits/sec " +
+				"(%d processing attempts)", corpus.edits.size() / secs,
+				submitted));
+		for(int i=0; i < REPORT_QUANTILES.length; i++){
+			System.out.println(String.format("Edit latency p%.0f: %.1f ms",
+					REPORT_QUANTILES[i] * 100,
+					edit_hist.quantile_usecs(REPORT_QUANTILES[i]) / 1000.0));
+		} // Per-edit processing latency
+		System.out.println(String.format("DB rows written: %d (%.2f/sec)",
+				db_writes, db_writes / secs));
+		System.out.println("API responses served: " + stub.num_served() +
+				", not in capture: " + stub.num_missing());
+		System.out.println();
+		System.out.print(metrics_registry.text_exposition());
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.concurrent.ExecutorService;
 import org.schwering.irc.lib.IRCConnection;
 
 import db_server.qmanager_server;
+import edit_processing.rid_metadata_cache;
 
 /**
  * Andrew G. West - cluebotng_irc.java - Connect to the Cluebot-NG scoring
@@ -44,9 +45,10 @@ public class cluebotng_irc extends Thread{
 	 * @param threads Executor to be given individual RIDs to process
 	 * @param qmanager Queue manager, so that the parse of the IRC feed
 	 * can be used to update the "Cluebot-NG" specific queue.
+	 * @param md_cache RID->metadata cache shared with the STiki back-end
 	 */
-	public cluebotng_irc(ExecutorService threads, qmanager_server qmanager) 
-			throws Exception{
+	public cluebotng_irc(ExecutorService threads, qmanager_server qmanager, 
+			rid_metadata_cache md_cache) throws Exception{
 		
 			// Connection and username settings
 		String host = "chat.freenode.net";
@@ -57,7 +59,8 @@ public class cluebotng_irc extends Thread{
 
 			// Prepare connection, event-handler, and basic-settings
 		con_irc = new IRCConnection(host, p_min, p_max, pass, user, user, user);
-		irc_listener = new cluebotng_listener(con_irc, threads, qmanager);
+		irc_listener = new cluebotng_listener(
+				con_irc, threads, qmanager, md_cache);
 		con_irc.addIRCEventListener(irc_listener);
 		con_irc.setDaemon(true);
 		con_irc.setColors(false); 
@@ -8,6 +8,7 @@ import org.schwering.irc.lib.IRCModeParser;
 import org.schwering.irc.lib.IRCUser;
 
 import db_server.qmanager_server;
+import edit_processing.rid_metadata_cache;
 
 /**
  * Andrew G. West - cluebotng_listener.java - This class implements an
@@ -34,6 +35,11 @@ public class cluebotng_listener implements IRCEventListener{
 	 */
 	private qmanager_server qmanager;
 	
+	/**
+	 * RID->metadata cache shared with the STiki back-end.
+	 */
+	private rid_metadata_cache md_cache;
+	
 	/**
 	 * Counter tracking number of IRC lines processed in this session.
 	 */
@@ -53,12 +59,14 @@ public class cluebotng_listener implements IRCEventListener{
 	 * @param threads Executor to be given individual RIDs to process
 	 * @param qmanager Queue manager, so that the parse of the IRC feed
 	 * can be used to update the "Cluebot-NG" specific queue.
+	 * @param md_cache RID->metadata cache shared with the STiki back-end
 	 */
 	public cluebotng_listener(IRCConnection con_irc, ExecutorService threads, 
-			qmanager_server qmanager){
+			qmanager_server qmanager, rid_metadata_cache md_cache){
 		this.con_irc = con_irc;
 		this.threads = threads;
 		this.qmanager = qmanager;
+		this.md_cache = md_cache;
 	}
 	
 	
@@ -79,7 +87,7 @@ public class cluebotng_listener implements IRCEventListener{
 	 * Overriding: This is the main CBNG feed processing method.
 	 */
 	public void onPrivmsg(String chan, IRCUser u, String msg){
-		threads.execute(new cluebotng_process(qmanager, msg));
+		threads.execute(new cluebotng_process(qmanager, md_cache, msg));
 		edits_processed++;
 	}
 	
@@ -1,10 +1,10 @@
 package ext_queues;
 
-import mediawiki_api.api_retrieve;
 import core_objects.metadata;
 import core_objects.stiki_utils;
 import core_objects.stiki_utils.SCORE_SYS;
 import db_server.qmanager_server;
+import edit_processing.rid_metadata_cache;
 
 /**
  * Andrew G. West - cluebotng_process.java - Given a line from the CBNG feed,
@@ -20,6 +20,12 @@ public class cluebotng_process implements Runnable{
 	 */
 	private qmanager_server qmanager;
 	
+	/**
+	 * RID->metadata cache shared with the STiki back-end. The back-end
+	 * fetches the same RIDs within seconds, so one API call serves both.
+	 */
+	private rid_metadata_cache md_cache;
+	
 	/**
 	 * A line from the CBNG feed, describing the scoring of some RID.
 	 */
@@ -36,10 +42,13 @@ public class cluebotng_process implements Runnable{
 	/**
 	 * Process a single line from the CBNG feed, in threaded fashion. 
 	 * @param qmanager Queue mananger -- to update the CBNG edit queue
+	 * @param md_cache RID->metadata cache shared with the STiki back-end
 	 * @param msg A line from the CBNG feed, describing the scoring of some RID
 	 */
-	public cluebotng_process(qmanager_server qmanager, String msg){
+	public cluebotng_process(qmanager_server qmanager, 
+			rid_metadata_cache md_cache, String msg){
 		this.qmanager = qmanager;
+		this.md_cache = md_cache;
 		this.msg = msg;	
 	}
 	
@@ -93,9 +102,10 @@ public class cluebotng_process implements Runnable{
 			String username = wiki_portion.split("\\*")[1].trim();
 			
 				// Parse out the RID and PID. Page-ID requires a MW-API call;
-				// the primary reason this class is threaded.
+				// the primary reason this class is threaded. The call is
+				// shared (via cache) with the STiki back-end, however.
 			long rid = Long.parseLong(rid_str.replace("diff=", ""));
-			metadata md = api_retrieve.process_basic_rid(rid);
+			metadata md = md_cache.get(rid);
 			if(md == null)
 				return;
 			long pid = md.pid;
@@ -0,0 +1,44 @@
+package gui_edit_queue;
+
+import java.util.concurrent.Callable;
+
+import mediawiki_api.api_retrieve;
+import core_objects.diff_text;
+
+/**
+ * Andrew G. West - diff_fetch.java - Fetches the diff between an RID and
+ * the current version of its page, as a task; so [gui_display_pkg] can
+ * have it in flight while making its other API requests.
+ */
+public class diff_fetch implements Callable<diff_text>{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Revision-ID that should be compared to "current".
+	 */
+	private long rid;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [diff_fetch] object.
+	 * @param rid Revision-ID that should be compared to "current"
+	 */
+	public diff_fetch(long rid){
+		this.rid = rid;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Fetch the diff.
+	 * @return HTML-marked up diff text, per [process_diff_current()]
+	 */
+	public diff_text call() throws Exception{
+		return(api_retrieve.process_diff_current(rid));
+	}
+
+}
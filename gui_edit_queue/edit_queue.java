@@ -6,6 +6,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import core_objects.pair;
 import core_objects.stiki_utils.SCORE_SYS;
@@ -23,6 +24,14 @@ public class edit_queue{
 
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Longest (ms.) a single blocking wait on the queue lasts. The GUI wakes
+	 * the moment an edit is enqueued; this only bounds each wait, so an
+	 * interrupted or abandoned wait is simply re-entered.
+	 */
+	private static final long TAKE_TIMEOUT_MS = 1000;
+	
+	
 	// *********** VARIABLE PROPERTIES **********
 	
 	/**
@@ -71,6 +80,17 @@ public class edit_queue{
 	 * Helps maintain the "only shown most recent edits on page" condition.
 	 */
 	private edit_queue_maintain queue_maintainer;
+	
+	/**
+	 * Recent-changes subscription reporting superseded edits to the
+	 * [queue_maintainer]; NULL if not enabled (see [set_rc_eviction()]).
+	 */
+	private edit_queue_rc_listener rc_listener;
+	
+	/**
+	 * Available threads for work (i.e., connecting [rc_listener]).
+	 */
+	private ExecutorService threads;
 
 	
 	// ************** ACTIVE & SHOWN ************
@@ -113,6 +133,7 @@ public class edit_queue{
 	
 			// First the structures are init'ed. Note where concurrent
 			// security is ensured over [inactive_rids] struct.
+		this.threads = threads;
 		this.back_helper = new pair<Boolean, gui_display_pkg>(false, null);
 		this.edits_shown = new TreeSet<Long>();
 		this.rid_queue_cache = new LinkedBlockingQueue<gui_display_pkg>();
@@ -123,8 +144,8 @@ public class edit_queue{
 		this.queue_in_use = default_queue;
 		this.queue_filler = new edit_queue_filler(
 				parent, rid_queue_cache, default_queue, threads);
-		this.queue_maintainer = new edit_queue_maintain(
-				rid_queue_cache, inactive_rids, client_interface);
+		this.queue_maintainer = new edit_queue_maintain(rid_queue_cache, 
+				inactive_rids, client_interface, queue_filler);
 		threads.submit(queue_filler); // Start population
 		threads.submit(queue_maintainer); // Start maintenance
 	}
@@ -137,13 +158,13 @@ public class edit_queue{
 	 * @param stiki_user STiki user who is obtaining the RID
 	 * @param using_native_rb Is the 'stiki_user' using the native rollback
 	 * functionality to undo edits? (precondition: they have the privilege)
-	 * @param using_native_rb Is the 'stiki_user' using the native rollback
-	 * functionality to undo edits? (precondition: they have the privilege)
 	 * @param queue Queue from which next edit should be fetched
 	 * @param prev If TRUE, instruct the queue to re-show the previous
 	 * edit, rather than advancing onward (the FALSE case).
-	 * @param reattempt If TRUE, this is a first attempt to get a revision.
-	 * If FALSE, it indicates the failure of the immediately prior attempt.
+	 * @param reattempt If FALSE, this is a first attempt to get a revision,
+	 * and the current edit is saved as the "back" edit. If TRUE, it follows
+	 * the failure of the immediately prior attempt, and the current edit
+	 * is not saved (it is no longer the one that was displayed).
 	 */
 	public void next_rid(String stiki_user, 
 			boolean using_native_rb, SCORE_SYS queue, boolean prev, 
@@ -169,21 +190,15 @@ public class edit_queue{
 				cur_edit = swap;
 			} else{ // If the back button was used, queue is not needed
 			
-					// Once the queue is non-empty, we can pop an edit.
-				while(rid_queue_cache.peek() == null){
-					try{Thread.sleep(10);} 
-					catch(Exception e) {}
-				} // Ensure we do not spin to death while waiting
-				
 					// Do not display an edit that has been shown before.
 					// Do not display if became inactive while enqueued.
 				if(!reattempt)
 					this.back_helper.snd = cur_edit; // Save as "back"
-				cur_edit = rid_queue_cache.poll();
-				if(edits_shown.contains(cur_edit.metadata.rid) || 
-						!queue_maintainer.active(cur_edit.metadata.rid, true)){
-					next_rid(stiki_user, using_native_rb, queue, prev, true);
-				} else edits_shown.add(cur_edit.metadata.rid);
+				do{cur_edit = take_edit();
+				} while(edits_shown.contains(cur_edit.metadata.rid) || 
+						!queue_maintainer.active(cur_edit.metadata.rid, true));
+				edits_shown.add(cur_edit.metadata.rid);
+				this.queue_filler.edit_shown(); // Measures reviewer's pace
 				
 			} // If back button not involved, advance normally queue
 			
@@ -221,11 +236,66 @@ public class edit_queue{
 		return (this.cur_edit);
 	}
 	
+	/**
+	 * Determine whether eviction per the recent-changes IRC feed can be
+	 * enabled: the IRC library is needed, and is not part of every build.
+	 * This must be checked before [edit_queue_rc_listener] is loaded, as
+	 * that class cannot be loaded without the library.
+	 * @return TRUE if the IRC library is on the class-path; else FALSE
+	 */
+	public static boolean rc_eviction_available(){
+		try{Class.forName("org.schwering.irc.lib.IRCConnection", false,
+					edit_queue.class.getClassLoader());
+			return(true);
+		} catch(Throwable t){
+			return(false);
+		} // ClassNotFoundException, or a LinkageError
+	}
+	
+	/**
+	 * Enable or disable eviction of superseded edits per the recent-changes
+	 * IRC feed. Without it, they are still found by periodic polling.
+	 * @param enable TRUE if the feed should be subscribed to. Else, FALSE.
+	 * If the feed is not available (see [rc_eviction_available()]), this
+	 * is treated as FALSE.
+	 */
+	public synchronized void set_rc_eviction(boolean enable){
+		if(enable && !rc_eviction_available())
+			enable = false;
+		if(enable && this.rc_listener == null){
+			this.rc_listener = new edit_queue_rc_listener(queue_maintainer);
+			threads.submit(this.rc_listener); // Connects off the EDT
+		} else if(!enable && this.rc_listener != null){
+			this.rc_listener.shutdown();
+			this.rc_listener = null;
+		} // Otherwise, nothing has changed
+	}
+	
 	/**
 	 * Shutdown this class, and all those backing it
 	 */
 	public void shutdown(){
+		this.set_rc_eviction(false);
 		this.queue_filler.shutdown();
 	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Pop an edit from the queue, blocking until one is available, and 
+	 * notify the filler so that it may be replaced.
+	 * @return Edit popped from the head of [rid_queue_cache]
+	 */
+	private gui_display_pkg take_edit(){
+		gui_display_pkg edit = null;
+		while(edit == null){
+			try{edit = rid_queue_cache.poll(
+					TAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e){}
+		} // Blocks (no spinning) until the filler hands over an edit
+		this.queue_filler.edit_taken(edit);
+		return(edit);
+	}
 
 }
@@ -1,7 +1,5 @@
 package gui_edit_queue;
 
-import java.util.concurrent.LinkedBlockingQueue;
-
 import core_objects.stiki_utils.SCORE_SYS;
 
 import executables.stiki_frontend_driver;
@@ -13,23 +11,31 @@ import executables.stiki_frontend_driver;
  */
 public class edit_queue_fetcher implements Runnable{
 	
-	//**************************** PRIVATE FIELDS ***************************
-
-	/**
-	 * GUI root class -- manages DB connections and handlers.
-	 */
-	private stiki_frontend_driver parent;
+	//***************************** PUBLIC FIELDS ***************************
 	
 	/**
 	 * Revision-ID whose display data should be obtained.
 	 */
-	private long rid;
+	public final long rid;
 	
 	/**
 	 * The page-ID (article-ID) on which revision 'rid' resides. Used to 
 	 * ensure the 'rid' is the most recent edit on the page.
 	 */
-	private long pid;
+	public final long pid;
+	
+	/**
+	 * Reservation ID under which 'rid' was obtained from the server.
+	 */
+	public final long resid;
+	
+	
+	//**************************** PRIVATE FIELDS ***************************
+
+	/**
+	 * GUI root class -- manages DB connections and handlers.
+	 */
+	private stiki_frontend_driver parent;
 	
 	/**
 	 * Whether or not an edit token should be obtained. Users using 
@@ -43,10 +49,11 @@ public class edit_queue_fetcher implements Runnable{
 	private SCORE_SYS source_queue;
 	
 	/**
-	 * Cache/queue object, s.t. if this class is succesful in obtaining
-	 * data for the RID, it should be added to this structure.
+	 * Filler which submitted this object. It is called back on completion,
+	 * and if this class is succesful in obtaining data for the RID, will
+	 * add it to the cache/queue.
 	 */
-	private LinkedBlockingQueue<gui_display_pkg> shared_queue;
+	private edit_queue_filler filler;
 	
 	
 	//***************************** CONSTRUCTORS ****************************
@@ -55,16 +62,17 @@ public class edit_queue_fetcher implements Runnable{
 	 * Construct an [edit_queue_fetcher]. The arguments to this constructor
 	 * have already been described, as they are the private vars of this class.
 	 */
-	public edit_queue_fetcher(stiki_frontend_driver parent, long rid, long pid,
-			boolean using_native_rb, SCORE_SYS source_queue,
-			LinkedBlockingQueue<gui_display_pkg> shared_queue){
+	public edit_queue_fetcher(stiki_frontend_driver parent, 
+			edit_queue_filler filler, long rid, long pid,
+			boolean using_native_rb, SCORE_SYS source_queue, long resid){
 		
 		this.parent = parent;
+		this.filler = filler;
 		this.rid = rid;
 		this.pid = pid;
 		this.using_native_rb = using_native_rb;
 		this.source_queue = source_queue;
-		this.shared_queue = shared_queue;
+		this.resid = resid;
 	}
 	
 	
@@ -76,9 +84,11 @@ public class edit_queue_fetcher implements Runnable{
 	 */
 	public void run(){
 		
+		long start_ms = System.currentTimeMillis();
+		gui_display_pkg cur_edit = null;
 		try{
 				// Fetch the data, a simple call to a static method
-			gui_display_pkg cur_edit = gui_display_pkg.create_if_most_recent(
+			cur_edit = gui_display_pkg.create_if_most_recent(
 					parent, rid, pid, using_native_rb, source_queue);
 			
 				// Having obtained all data, we can also check the edit
@@ -104,14 +114,16 @@ public class edit_queue_fetcher implements Runnable{
 						rid, parent.login_panel.get_editing_user());
 			}
 				
+		} catch(Exception e){ 	// Things could go wrong. But given that 
+			cur_edit = null;	// thread-pool will ignore and start another,
+								// we just call this RID dead and ignore
+		} finally{
 				// If RID was most recent on page, we got data, and the diff
-				// was non-zero -- then add it to the cache/queue.
-			if(cur_edit != null)
-				shared_queue.offer(cur_edit);
-
-		} catch(Exception e){} // Things could go wrong. But given that 
-							   // thread-pool will ignore and start another,
-							   // we just call this RID dead and ignore
+				// was non-zero -- then the filler adds it to the cache/queue.
+				// Either way, it learns this fetch is no longer in flight.
+			filler.fetch_done(this, cur_edit, 
+					System.currentTimeMillis() - start_ms);
+		}
 	}
 	
 }
@@ -1,7 +1,11 @@
 package gui_edit_queue;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
@@ -18,31 +22,27 @@ import executables.stiki_frontend_driver;
  * to the GUI client. Ultimately, edit RIDs are fetched from the DB, the
  * associated content/metadata is fetched from MediaWiki, and then stored.
  * When one is popped, a new one is obtained.
+ * 
+ * Nothing here polls. The filler waits on this object's monitor, and is
+ * notified when a fetch completes (via [fetch_done()]), when an edit is
+ * taken by the GUI (via [edit_taken()]), or when user settings change.
+ * 
+ * How many edits are kept ready or in flight is decided by an
+ * [edit_queue_pacer], per the reviewer's pace and measured build latency.
+ * Reserved RIDs the reviewer will not reach before their reservation
+ * expires are trimmed, rather than fetched and shown late.
  */
 public class edit_queue_filler implements Runnable{
 
 	// ***************************** PUBLIC FIELDS ***************************
 	
-	/**
-	 * CRTICAL variable setting. We add elements to the queue/cache until it
-	 * is at LEAST this size (as latency permits). Given multi-threading 
-	 * considerations, the  MAXIMUM SIZE will be this number plus the number 
-	 * of available threads in the thread pool.
-	 * 
-	 * A high-value will always ensure a user does not have to wait on the
-	 * network for an edit to display. However, too high a number will mean
-	 * the edit-tokens will be "old" by the time an edit gets displayed,
-	 * increasing the chance of a conflicting edit, and a failed reversion.
-	 */
-	public static final int MIN_QUEUE_SIZE = 10;
-
 	/**
 	 * Number of prior reservation IDs to remember (and clear, if req'd).
-	 * This should be calculated based on [MIN_QUEUE_SIZE] and the default
-	 * queue pop size (per that stored procedure). Given random generation
-	 * of IDs, a little bit of conservativeness does no harm.
+	 * This should be calculated based on [edit_queue_pacer.MAX_DEPTH] and 
+	 * the default queue pop size (per that stored procedure). Given random 
+	 * generation of IDs, a little bit of conservativeness does no harm.
 	 */
-	public static final int RES_HIST_SIZE = 3;
+	public static final int RES_HIST_SIZE = 4;
 	
 	
 	// **************************** PRIVATE FIELDS ***************************
@@ -87,9 +87,38 @@ public class edit_queue_filler implements Runnable{
 	private SCORE_SYS queue_in_use;
 	
 	/**
-	 * Data structure tracking work-in-progress by threads.
+	 * Fetches in progress, mapped to their Future (so they can be cancelled).
+	 * A fetcher removes itself upon completion. Guarded by this object's
+	 * monitor. A fetcher no longer present when it completes was cancelled
+	 * by a settings change, and its result is discarded.
+	 */
+	private Map<edit_queue_fetcher,Future<?>> in_flight;
+	
+	/**
+	 * Reservation ID under which the RIDs in [server_q] are held, and the 
+	 * time (ms.) at which that reservation was made.
+	 */
+	private long server_q_resid, server_q_ms;
+	
+	/**
+	 * Reservation ID of each edit in [rid_queue_cache], so that it is known
+	 * whether a reservation still has edits outstanding. Guarded by this 
+	 * object's monitor.
 	 */
-	private List<pair<Future<?>,Long>> futures;
+	private Map<gui_display_pkg,Long> cached_resids;
+	
+	/**
+	 * Reservation ID of the edit last taken by the GUI (zero if unknown).
+	 * That edit is on display until the next is taken, i.e., until it has
+	 * been classified; so its reservation must not be released. Guarded
+	 * by this object's monitor.
+	 */
+	private long displayed_resid = 0;
+	
+	/**
+	 * Object sizing the queue, per the reviewer's pace and build latency.
+	 */
+	private edit_queue_pacer pacer;
 	
 	/**
 	 * Reservations are made distinct through the use of a random key, which
@@ -98,6 +127,11 @@ public class edit_queue_filler implements Runnable{
 	 */
 	private List<Long> resid_history;
 	
+	/**
+	 * Longest (ms.) the filler sleeps without re-examining its reservation.
+	 */
+	private static final long TRIM_INTERVAL_MS = 30 * 1000;
+	
 
 	// ***************************** CONSTRUCTORS ****************************
 	
@@ -115,8 +149,10 @@ public class edit_queue_filler implements Runnable{
 		this.parent = parent;
 		this.rid_queue_cache = rid_queue_cache;
 		this.threads = threads;
-		this.futures = new LinkedList<pair<Future<?>,Long>>();
+		this.in_flight = new HashMap<edit_queue_fetcher,Future<?>>();
 		this.resid_history = new LinkedList<Long>();
+		this.cached_resids = new IdentityHashMap<gui_display_pkg,Long>();
+		this.pacer = new edit_queue_pacer();
 		
 			// Initialize all queue-determinant fields to default criteria
 		this.stiki_user = "";
@@ -132,33 +168,46 @@ public class edit_queue_filler implements Runnable{
 	 */
 	public void run(){
 		long resid;
+		int block;
 		try{
 			pair<Long,Long> rid_pid_pair;
+			edit_queue_fetcher fetcher;
 			while(true){
 				
-				if(futures.size() + rid_queue_cache.size() < MIN_QUEUE_SIZE){
+				trim_reservation();
+				synchronized(this){
+					if(in_flight.size() >= edit_queue_pacer.MAX_IN_FLIGHT || 
+							in_flight.size() + rid_queue_cache.size() >= 
+							pacer.target_depth()){
+						this.wait(TRIM_INTERVAL_MS);
+						continue;
+					} // Sleep until a fetch completes or an edit is taken
+				} // (or periodically, so that trimming keeps pace)
 
-					while(this.server_q == null || this.server_q.isEmpty()){
-						resid = Math.abs(new Random().nextInt());
-						this.server_q = parent.client_interface.queues.
-								queue_fetch(queue_in_use, stiki_user, resid);
-						this.add_resid_to_hist(resid);
-					}	// While the queue has not reached the minimum size, 
-						// Keep popping RIDs from the server, obtaining data
-						// and caching it (in threaded fashion).
-					
-					rid_pid_pair = this.server_q.poll();
-					futures.add(new pair<Future<?>,Long>(
-							threads.submit(new edit_queue_fetcher(
-							parent, rid_pid_pair.fst, rid_pid_pair.snd, 
-							using_native_rb, queue_in_use, 
-							rid_queue_cache)), rid_pid_pair.fst));				
-				} else
-					Thread.sleep(10); // Prevent over-spinning if full queue
-
-					// Pop finished tasks from the 'futures' list, so
-					// that it only contains tasks still in computation
-				futures = remove_done(futures);
+				while(this.server_q == null || this.server_q.isEmpty()){
+					resid = Math.abs(new Random().nextInt());
+					synchronized(this){
+						block = pacer.reservation_block(
+								in_flight.size() + rid_queue_cache.size());
+					} // Reserve only what will be reached in time
+					this.server_q = parent.client_interface.queues.
+							queue_fetch(queue_in_use, stiki_user, resid, block);
+					this.server_q_resid = resid;
+					this.server_q_ms = System.currentTimeMillis();
+					this.add_resid_to_hist(resid);
+				}	// While the queue has not reached the minimum size, 
+					// Keep popping RIDs from the server, obtaining data
+					// and caching it (in threaded fashion).
+				
+				rid_pid_pair = this.server_q.poll();
+				if(rid_pid_pair == null)
+					continue; // Cleared by a settings change
+				synchronized(this){
+					fetcher = new edit_queue_fetcher(parent, this, 
+							rid_pid_pair.fst, rid_pid_pair.snd, 
+							using_native_rb, queue_in_use, server_q_resid);
+					in_flight.put(fetcher, threads.submit(fetcher));
+				} // Submit under lock, so [fetch_done()] finds the entry
 			
 			} // Populate the queue until interrupted by shutdown
 
@@ -191,14 +240,110 @@ public class edit_queue_filler implements Runnable{
 		wipe_recent_res();
 		
 			// Now, there might be enqeued/in-progress edits fetched under
-			// old params. Cancel all tasks currently in progress, wipe the
-			// queue, and then throw away the top of the queue (as this may
-			// be old, but not yet been in future-list when we cleared it).
-		this.server_q.clear(); // Don't forget there are TWO queues
-		cancel_all(futures);
-		rid_queue_cache.clear();
-		while(rid_queue_cache.poll() == null){};
-		rid_queue_cache.poll(); // Throw away one once available
+			// old params. Cancel all tasks currently in progress and wipe
+			// the queue. A fetch which completes regardless will not find 
+			// itself in [in_flight], and so its edit is thrown away.
+		if(this.server_q != null)
+			this.server_q.clear(); // Don't forget there are TWO queues
+		synchronized(this){
+			cancel_all(in_flight);
+			in_flight.clear();
+			rid_queue_cache.clear();
+			cached_resids.clear();
+			pacer.reset_rate();
+			this.notifyAll();
+		} // Filler wakes to re-populate under the new settings
+	}
+	
+	/**
+	 * Callback from an [edit_queue_fetcher] upon completion, successful
+	 * or not. The edit is enqueued only if the fetch was not cancelled.
+	 * @param fetcher Fetcher which has completed
+	 * @param edit Edit the fetcher produced, or NULL if there is none
+	 * (not most recent, filtered out, failure, etc.)
+	 * @param ms Time (ms.) the fetch took
+	 */
+	public synchronized void fetch_done(edit_queue_fetcher fetcher, 
+			gui_display_pkg edit, long ms){
+		pacer.record_build(ms, edit != null);
+		if(in_flight.remove(fetcher) != null && edit != null){
+			cached_resids.put(edit, fetcher.resid);
+			rid_queue_cache.offer(edit);
+		} // Results of cancelled fetches are discarded
+		this.notifyAll();
+	}
+	
+	/**
+	 * Notify the filler that the GUI has taken an edit from the queue, so 
+	 * it may be replaced.
+	 * @param edit Edit taken from the queue
+	 */
+	public synchronized void edit_taken(gui_display_pkg edit){
+		Long resid = cached_resids.remove(edit);
+		displayed_resid = (resid == null) ? 0 : resid;
+		this.notifyAll();
+	}
+	
+	/**
+	 * Return the edits currently being fetched, so that their currency
+	 * can be checked alongside those already enqueued.
+	 * @return Map from page-ID to RID, of all fetches in flight
+	 */
+	public synchronized Map<Long,Long> in_flight_pairs(){
+		Map<Long,Long> pairs = new HashMap<Long,Long>();
+		Iterator<edit_queue_fetcher> iter = in_flight.keySet().iterator();
+		edit_queue_fetcher fetcher;
+		while(iter.hasNext()){
+			fetcher = iter.next();
+			pairs.put(fetcher.pid, fetcher.rid);
+		} // Fetchers are immutable; copy out their identifiers
+		return(pairs);
+	}
+	
+	/**
+	 * Evict an edit which is no longer most recent on its page, whether
+	 * it is being fetched (the fetch is cancelled) or enqueued (it is
+	 * removed). Either way, the filler wakes to replace it.
+	 * @param rid Revision-ID of the edit to be evicted
+	 * @return TRUE if 'rid' was found in flight or enqueued; else FALSE.
+	 * If FALSE, the edit may already have been popped by the GUI.
+	 */
+	public synchronized boolean evict(long rid){
+		boolean found = false;
+		Iterator<Map.Entry<edit_queue_fetcher,Future<?>>> fetch_iter = 
+				in_flight.entrySet().iterator();
+		Map.Entry<edit_queue_fetcher,Future<?>> entry;
+		while(fetch_iter.hasNext()){
+			entry = fetch_iter.next();
+			if(entry.getKey().rid == rid){
+				entry.getValue().cancel(true);
+				fetch_iter.remove(); // So any result is discarded
+				found = true;
+			} // Cancel, as with a settings change
+		} // First, fetches in flight
+		
+		Iterator<gui_display_pkg> cache_iter = rid_queue_cache.iterator();
+		gui_display_pkg pkg;
+		while(cache_iter.hasNext()){
+			pkg = cache_iter.next();
+			if(pkg.metadata.rid == rid){
+				cache_iter.remove(); // Iterator of queue is thread-safe
+				cached_resids.remove(pkg);
+				found = true;
+			} // Remove from queue, as if popped
+		} // Then, those enqueued
+		
+		if(found)
+			this.notifyAll();
+		return(found);
+	}
+	
+	/**
+	 * Notify the filler that an edit has been displayed to the reviewer, 
+	 * so that their pace can be measured.
+	 */
+	public void edit_shown(){
+		pacer.record_classification();
 	}
 	
 	/**
@@ -213,6 +358,44 @@ public class edit_queue_filler implements Runnable{
 	
 	// *************************** PRIVATE METHODS ***************************
 	
+	/**
+	 * Drop those RIDs in [server_q] which the reviewer, at their current
+	 * pace, will not reach before the reservation holding them expires. If 
+	 * that is all of them, and no edit of the reservation remains in flight,
+	 * in the queue, or on display, the reservation is released for other
+	 * clients.
+	 */
+	private void trim_reservation(){
+		Queue<pair<Long,Long>> trimmed = new LinkedList<pair<Long,Long>>();
+		boolean outstanding = false;
+		long resid;
+		synchronized(this){
+			if(this.server_q == null || this.server_q.isEmpty())
+				return;
+			int ahead = in_flight.size() + rid_queue_cache.size();
+			long keep = (long) pacer.reachable(server_q_ms) - ahead;
+			if(keep >= this.server_q.size())
+				return;
+			for(long i=0; i < keep; i++)
+				trimmed.offer(this.server_q.poll());
+			this.server_q = trimmed;
+			if(!trimmed.isEmpty())
+				return;
+			
+			resid = server_q_resid;
+			Iterator<edit_queue_fetcher> iter = in_flight.keySet().iterator();
+			while(iter.hasNext())
+				outstanding |= (iter.next().resid == resid);
+			outstanding |= cached_resids.containsValue(resid);
+			outstanding |= (displayed_resid == resid); // Not yet classified
+		} // Decide under lock, but release outside it (network call)
+		
+		if(!outstanding){
+			try{parent.client_interface.queues.queue_wipe(resid);}
+			catch(Exception e){};
+		} // Otherwise, the trimmed RIDs are released at expiry
+	}
+	
 	/**
 	 * Wipe recently held reservations.
 	 */
@@ -238,32 +421,14 @@ public class edit_queue_filler implements Runnable{
 	}
 
 	/**
-	 * Given a list of Future objects, remove all that have completed.
-	 * @param futures_in List of future objects
-	 * @return List 'futures_in', without all entries mapping to 'done' tasks
-	 */
-	private synchronized static List<pair<Future<?>,Long>> remove_done(
-			List<pair<Future<?>,Long>> futures_in){
-		
-		List<pair<Future<?>,Long>> futures_live = 
-				new LinkedList<pair<Future<?>,Long>>();
-		for(int i=0; i < futures_in.size(); i++){	
-			if(!futures_in.get(i).fst.isDone())
-				futures_live.add(futures_in.get(i));
-			// else System.out.println(futures_in.get(i).snd + " not done");
-		} // Iterate over all tasks, checking "done" status
-		return(futures_live);
-	}
-	
-	/**
-	 * Given a list of Future objects (submitted tasks), cancel/kill
+	 * Given a map of Future objects (submitted tasks), cancel/kill
 	 * all those tasks which have no yet completed.
-	 * @param futures List of Future objects
+	 * @param futures Map whose values are Future objects
 	 */
-	private synchronized static void cancel_all(
-			List<pair<Future<?>,Long>> futures){
-		for(int i=0; i < futures.size(); i++)
-			futures.get(i).fst.cancel(true); // Cancel via interrupt if needed
+	private static void cancel_all(Map<edit_queue_fetcher,Future<?>> futures){
+		Iterator<Future<?>> iter = futures.values().iterator();
+		while(iter.hasNext())
+			iter.next().cancel(true); // Cancel via interrupt if needed
 	}
 	
 }
@@ -24,6 +24,11 @@ import mediawiki_api.api_retrieve;
  * (enabling inspection past the head). In this manner, it can inspect all
  * queue elements and store their status. Then, just before [edit_queue.java]
  * pops an element to the client, it can check its status against this class.
+ * 
+ * Edits still being fetched are checked too, and those found inactive are
+ * evicted from the filler outright. Server-side deletions are batched. If
+ * an [edit_queue_rc_listener] is running, it reports superseded edits via 
+ * [superseded()], so they are evicted without waiting for the next check.
  */
 public class edit_queue_maintain implements Runnable{
 	
@@ -56,6 +61,18 @@ public class edit_queue_maintain implements Runnable{
 	 */
 	private client_interface client_iface;
 	
+	/**
+	 * Filler populating [rid_queue_cache], whose in-flight fetches are
+	 * also checked, and from which inactive edits are evicted.
+	 */
+	private edit_queue_filler queue_filler;
+	
+	/**
+	 * RIDs evicted per the recent-changes feed, awaiting deletion from the 
+	 * server-side queues (done in batch, by the maintenance thread).
+	 */
+	private List<Long> pending_deletes;
+	
 	/**
 	 * Timestamp at which queue currency was last examined.
 	 */
@@ -71,13 +88,16 @@ public class edit_queue_maintain implements Runnable{
 	 * @param inactive_rids Structure to which RIDs discovered to be 
 	 * inactive will be written.
 	 * @param client_interface Access to client stored procedures
+	 * @param queue_filler Filler populating 'rid_queue_cache'
 	 */
 	public edit_queue_maintain(LinkedBlockingQueue<gui_display_pkg> 
 			rid_queue_cache, SortedSet<Long> inactive_rids, 
-			client_interface client_iface){
+			client_interface client_iface, edit_queue_filler queue_filler){
 		this.rid_queue_cache = rid_queue_cache;
 		this.inactive_rids = inactive_rids;
 		this.client_iface = client_iface;
+		this.queue_filler = queue_filler;
+		this.pending_deletes = new ArrayList<Long>();
 		this.ts_last_check = stiki_utils.cur_unix_time();
 	}
 
@@ -100,6 +120,7 @@ public class edit_queue_maintain implements Runnable{
 		
 		while(true){
 			
+			flush_pending_deletes(); // Those found via recent-changes
 			if(stiki_utils.cur_unix_time() >= 
 				(ts_last_check + SECS_REFRESH_CURRENCY)){
 			
@@ -110,6 +131,7 @@ public class edit_queue_maintain implements Runnable{
 						queued_pairs.put(cur_pkg.metadata.pid, 
 								cur_pkg.metadata.rid);
 					} // Get pids/rids of enqueued edits (iter is thread safe)
+					queued_pairs.putAll(queue_filler.in_flight_pairs());
 				
 						// Query API for actual most recent on PIDs
 					actual_pairs = api_retrieve.process_latest_page(
@@ -125,15 +147,16 @@ public class edit_queue_maintain implements Runnable{
 						if((pot_del_pid != actual_pairs.get(compare_pid).
 								longValue()) && 
 								!inactive_rids.contains(pot_del_pid)){
-							inactive_rids.add(pot_del_pid); // Insert
+							if(!queue_filler.evict(pot_del_pid))
+								inactive_rids.add(pot_del_pid); // Insert
 							new_inactives.add(pot_del_pid);
-						} // If new inactive, add to reject lists
+						} // If new inactive, evict; else add to reject list
 					} // Compare actual and enqueued sets
 					
 						// Now delete inactives back on server. Note that this
 						// was not done in-loop for latency reasons.
-					for(int i=0; i < new_inactives.size(); i++)
-						client_iface.queues.queue_delete(new_inactives.get(i));
+					if(!new_inactives.isEmpty())
+						client_iface.queues.queue_delete(new_inactives);
 				
 				} catch(Exception e){}; // If something goes wrong (likely the 
 										// Wiki-API call). Just ignore, and 
@@ -145,6 +168,20 @@ public class edit_queue_maintain implements Runnable{
 		} // Do queue maintenance until interrupted at shutdown
 	}
 	
+	/**
+	 * Notification (from the recent-changes feed) that an edit has been made
+	 * on top of another; so the latter is no longer most recent on its page.
+	 * If the latter is enqueued or being fetched, it is evicted.
+	 * @param parent_rid Revision-ID of the edit which has been superseded
+	 */
+	public void superseded(long parent_rid){
+		if(queue_filler.evict(parent_rid)){
+			synchronized(pending_deletes){
+				pending_deletes.add(parent_rid);
+			} // Deleted server-side by the maintenance thread
+		} // Nearly all RC edits concern pages not enqueued here
+	}
+	
 	/**
 	 * This method will determine whether or not an edit is most recent on 
 	 * an article (within some error window -- per inf. loop above).
@@ -167,5 +204,24 @@ public class edit_queue_maintain implements Runnable{
 			return(!inactive_rids.remove(rid));
 		else return(!inactive_rids.contains(rid));
 	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Delete, from the server-side queues, all RIDs evicted per the 
+	 * recent-changes feed since the last call; in a single batch.
+	 */
+	private void flush_pending_deletes(){
+		List<Long> deletes;
+		synchronized(pending_deletes){
+			if(pending_deletes.isEmpty())
+				return;
+			deletes = new ArrayList<Long>(pending_deletes);
+			pending_deletes.clear();
+		} // Copy out, so the RC thread is not held on the DB call
+		try{client_iface.queues.queue_delete(deletes);}
+		catch(Exception e){} // Best effort, as in [run()]
+	}
 
 }
@@ -0,0 +1,198 @@
+package gui_edit_queue;
+
+/**
+ * Andrew G. West - edit_queue_pacer.java - Decides how deep the edit queue
+ * should be. It tracks (1) how quickly the reviewer classifies, and (2) how
+ * long [gui_display_pkg] objects take to build, and how many builds yield a
+ * displayable edit. The ready-plus-in-flight buffer is then sized to cover
+ * the build latency at the current classification rate. A fast reviewer
+ * gets a deep buffer, and so does not stall on the network. A slow one gets
+ * a shallow buffer, and so does not hold reservations until they expire.
+ */
+public class edit_queue_pacer{
+
+	// ***************************** PUBLIC FIELDS ***************************
+	
+	/**
+	 * Depth used until both the classification rate and build latency have
+	 * been measured (the depth formerly used at all times).
+	 */
+	public static final int DEFAULT_DEPTH = 10;
+	
+	/**
+	 * Bounds on the depth of the ready-plus-in-flight buffer.
+	 */
+	public static final int MIN_DEPTH = 2, MAX_DEPTH = 20;
+	
+	/**
+	 * Maximum number of builds in flight at once. The GUI's thread pool
+	 * is sized to accommodate this many fetch tasks.
+	 */
+	public static final int MAX_IN_FLIGHT = 8;
+	
+	/**
+	 * Time-to-live of a reservation (secs.). This must agree with the "ttl"
+	 * of the [client_queue_fetch_*] stored procedures.
+	 */
+	public static final long RES_TTL_SECS = 1200;
+	
+	/**
+	 * Size of a reservation block until the reviewer's pace is measured
+	 * (the size formerly used at all times), and bounds upon that size.
+	 * The upper bound must agree with that of [client_queue_fetch_*].
+	 */
+	public static final int DEFAULT_BLOCK = 10, MIN_BLOCK = 2, MAX_BLOCK = 50;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Weight given to each new observation, in moving averages.
+	 */
+	private static final double ALPHA = 0.2;
+	
+	/**
+	 * Builds of margin kept above that needed to cover measured latency.
+	 */
+	private static final int MARGIN = 2;
+	
+	/**
+	 * Longest gap (ms.) between classifications which is taken at face
+	 * value. Longer ones are breaks from reviewing, not its pace.
+	 */
+	private static final long MAX_GAP_MS = 5 * 60 * 1000;
+	
+	/**
+	 * Time (ms.) before reservation expiry at which an edit is of no use;
+	 * it must also be displayed and classified in that time.
+	 */
+	private static final long EXPIRY_MARGIN_MS = 60 * 1000;
+	
+	/**
+	 * Moving average of the time (ms.) between classifications. Zero until
+	 * first measured.
+	 */
+	private double interval_ms = 0.0;
+	
+	/**
+	 * Moving average of the time (ms.) taken by a build. Zero until
+	 * first measured.
+	 */
+	private double build_ms = 0.0;
+	
+	/**
+	 * Moving average of the fraction of builds which yield a displayable
+	 * edit (others are not most recent on page, filtered, failures, etc.)
+	 */
+	private double yield = 1.0;
+	
+	/**
+	 * Time (ms.) at which the last classification was recorded, or zero.
+	 */
+	private long last_class_ms = 0;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Record that an edit was displayed to the reviewer (i.e., that the
+	 * previous one has been classified).
+	 */
+	public synchronized void record_classification(){
+		long now = System.currentTimeMillis();
+		if(last_class_ms > 0){
+			long gap = Math.min(now - last_class_ms, MAX_GAP_MS);
+			interval_ms = ewma(interval_ms, gap);
+		} // First edit of a session establishes no rate
+		last_class_ms = now;
+	}
+	
+	/**
+	 * Record the completion of a build.
+	 * @param ms Time (ms.) the build took
+	 * @param success Whether or not the build produced a displayable edit
+	 */
+	public synchronized void record_build(long ms, boolean success){
+		build_ms = ewma(build_ms, ms);
+		yield = (1.0 - ALPHA) * yield + (success ? ALPHA : 0.0);
+	}
+	
+	/**
+	 * Forget the classification rate; e.g., at a change of user or queue.
+	 * Build statistics are retained, being properties of the network.
+	 */
+	public synchronized void reset_rate(){
+		interval_ms = 0.0;
+		last_class_ms = 0;
+	}
+	
+	/**
+	 * Return the number of edits that should be ready or in flight.
+	 * @return Number of edits that should be ready or in flight, so that the
+	 * reviewer is not kept waiting; on [MIN_DEPTH, MAX_DEPTH]
+	 */
+	public synchronized int target_depth(){
+		if(interval_ms <= 0.0 || build_ms <= 0.0)
+			return(DEFAULT_DEPTH);
+			
+			// Edits consumed during one build, inflated by those
+			// builds which produce nothing; but no more than could
+			// be consumed while a reservation lives.
+		int depth = (int) Math.ceil(build_ms / interval_ms /
+				Math.max(yield, 0.1)) + MARGIN;
+		depth = Math.min(depth, (int) ((RES_TTL_SECS * 1000 -
+				EXPIRY_MARGIN_MS) / interval_ms));
+		return(Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, depth)));
+	}
+	
+	/**
+	 * Return how many edits, queued in order, the reviewer is expected to
+	 * reach before a reservation expires.
+	 * @param reserved_ms Time (ms.) at which the reservation was made
+	 * @return Number of leading edits (counting those ready, in flight, and
+	 * not yet fetched) which can be built and classified before the
+	 * reservation made at 'reserved_ms' expires
+	 */
+	public synchronized int reachable(long reserved_ms){
+		if(interval_ms <= 0.0)
+			return(Integer.MAX_VALUE);
+		double ms_left = (reserved_ms + RES_TTL_SECS * 1000 -
+				EXPIRY_MARGIN_MS) - System.currentTimeMillis() - build_ms;
+		if(ms_left <= 0.0)
+			return(0);
+		return((int) Math.min(Integer.MAX_VALUE,
+				ms_left / interval_ms / Math.max(yield, 0.1)));
+	}
+	
+	/**
+	 * Return the number of edits a new reservation should hold: as many as
+	 * the reviewer will reach before it expires. A fast reviewer then makes
+	 * fewer reservation round-trips; a slow one does not hold edits which
+	 * other reviewers could be classifying.
+	 * @param ahead Number of edits ready or in flight, which the reviewer
+	 * will reach before any of the new reservation
+	 * @return Number of edits to reserve; on [MIN_BLOCK, MAX_BLOCK]
+	 */
+	public synchronized int reservation_block(int ahead){
+		if(interval_ms <= 0.0)
+			return(DEFAULT_BLOCK);
+		long block = (long) reachable(System.currentTimeMillis()) - ahead;
+		return((int) Math.max(MIN_BLOCK, Math.min(MAX_BLOCK, block)));
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Fold an observation into an exponentially weighted moving average.
+	 * @param avg Current average, or zero if there have been no observations
+	 * @param obs New observation
+	 * @return Average 'avg' updated with 'obs'
+	 */
+	private static double ewma(double avg, double obs){
+		if(avg <= 0.0)
+			return(obs);
+		return((1.0 - ALPHA) * avg + ALPHA * obs);
+	}
+
+}
@@ -0,0 +1,157 @@
+package gui_edit_queue;
+
+import java.util.Random;
+
+import org.schwering.irc.lib.IRCConnection;
+import org.schwering.irc.lib.IRCEventListener;
+import org.schwering.irc.lib.IRCModeParser;
+import org.schwering.irc.lib.IRCUser;
+
+/**
+ * Andrew G. West - edit_queue_rc_listener.java - Subscribes the GUI client
+ * to the same `Recent Changes' IRC feed the back-end listens to. Every edit
+ * on that feed names its parent revision ("oldid"); once it is published,
+ * the parent is no longer most recent on its page. Parents are reported to
+ * [edit_queue_maintain], so a superseded edit leaves the queue within a
+ * second, rather than at the next (polled) currency check.
+ */
+public class edit_queue_rc_listener implements Runnable, IRCEventListener{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Marker preceding the parent-RID in a diff-URL (i.e., that in
+	 * "index.php?diff=343070556&oldid=343070456").
+	 */
+	private static final String OLDID_MARK = "&oldid=";
+	
+	/**
+	 * Maintainer to which superseded RIDs are reported.
+	 */
+	private edit_queue_maintain queue_maintainer;
+	
+	/**
+	 * Connection to the IRC server; NULL until connected.
+	 */
+	private IRCConnection con_irc;
+	
+	/**
+	 * Whether [shutdown()] has been called (perhaps before connection).
+	 */
+	private volatile boolean shut_down = false;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct an [edit_queue_rc_listener]. No connection is made until
+	 * the object is run (connecting is slow, and should be off the EDT).
+	 * @param queue_maintainer Maintainer to which superseded RIDs are reported
+	 */
+	public edit_queue_rc_listener(edit_queue_maintain queue_maintainer){
+		this.queue_maintainer = queue_maintainer;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Connect to the IRC server and join the RC channel. Events
+	 * are thereafter handled by the connection's own (daemon) thread.
+	 */
+	public void run(){
+	
+			// As in [irc_listener], but many clients may be connected
+			// at once; so each needs a distinct nickname.
+		String host = "irc.wikimedia.org";
+		int p_min = 6667; // Port-range minimum
+		int p_max = 6669; // Port-range maximum
+		String user = "STikiClient" + (new Random().nextInt(900000) + 100000);
+		
+		IRCConnection con = new IRCConnection(
+				host, p_min, p_max, null, user, user, user);
+		con.addIRCEventListener(this);
+		con.setDaemon(true);
+		con.setColors(false);
+		con.setPong(true);
+		try{con.connect();
+		} catch(Exception e){
+			System.out.println("Error establishing RC IRC connection " +
+					"(stale edits will be found by polling only):");
+			e.printStackTrace();
+			return;
+		} // The periodic currency check remains, so this is not fatal
+		
+		synchronized(this){
+			con_irc = con;
+			if(shut_down){
+				con_irc.close();
+				return;
+			} // Shutdown may have come while connecting
+		}
+		con_irc.doJoin("#en.wikipedia");
+	}
+	
+	/**
+	 * Close the connection to the IRC server (now, or once connected).
+	 */
+	public synchronized void shutdown(){
+		shut_down = true;
+		if(con_irc != null)
+			con_irc.close();
+	}
+	
+	/**
+	 * Overriding: Called for each RC message. Parse out the parent-RID of
+	 * the edit announced, if there is one, and report it as superseded.
+	 */
+	public void onPrivmsg(String chan, IRCUser u, String msg){
+	
+		// Example IRC output line (see [irc_events]):
+		//
+		// #en.wikipedia> rc: [[Fittonia verschaffeltii]]  http://en.wikipedia.org
+		//	  w/index.php?diff=343070556&oldid=343070456 * ShadowKinght * (+3)
+		
+		int pos = msg.indexOf(OLDID_MARK);
+		if(pos < 0)
+			return; // New pages and log actions supersede nothing
+		pos += OLDID_MARK.length();
+		
+		long parent_rid = 0;
+		int digits = 0;
+		char c;
+		while(pos < msg.length() && digits < 18){
+			c = msg.charAt(pos++);
+			if(c < '0' || c > '9')
+				break;
+			parent_rid = (parent_rid * 10) + (c - '0');
+			digits++;
+		} // Digits directly follow the marker; no regex (this is hot)
+		
+		if(digits > 0 && parent_rid > 0)
+			queue_maintainer.superseded(parent_rid);
+	}
+	
+	/**
+	 * There are a host of methods required for interface compliance (all
+	 * those below). These event-handlers simply ignore their input.
+	 */
+	public void onRegistered() {}
+	public void onDisconnected() {}
+	public void onError(String msg) {}
+	public void onError(int num, String msg) {}
+	public void onInvite(String chan, IRCUser u, String nickPass) {}
+	public void onJoin(String chan, IRCUser u) {}
+	public void onKick(String chan, IRCUser u, String nickPass, String msg) {}
+	public void onMode(IRCUser u, String nickPass, String mode) {}
+	public void onMode(String chan, IRCUser u, IRCModeParser mp) {}
+	public void onNick(IRCUser u, String nickNew) {}
+	public void onNotice(String target, IRCUser u, String msg) {}
+	public void onPart(String chan, IRCUser u, String msg) {}
+	public void onQuit(IRCUser u, String msg) {}
+	public void onReply(int num, String value, String msg) {}
+	public void onTopic(String chan, IRCUser u, String topic) {}
+	public void onPing(String p) {}
+	public void unknown(String a, String b, String c, String d) {}
+
+}
@@ -5,18 +5,28 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.mysql.jdbc.CommunicationsException;
 
 import learn_frontend.feature_language;
 import mediawiki_api.api_retrieve;
+import mediawiki_api.api_xml_edit_token;
+import mediawiki_api.api_xml_multiple_rids;
+import mediawiki_api.api_xml_page_cats;
+import mediawiki_api.api_xml_page_missing;
+import mediawiki_api.api_xml_pages_missing;
+import mediawiki_api.api_xml_user_edits_ever;
+import mediawiki_api.api_xml_user_perm;
+import core_objects.diff_text;
 import core_objects.metadata;
 import core_objects.pair;
 import core_objects.stiki_utils;
 import core_objects.stiki_utils.SCORE_SYS;
 import executables.stiki_frontend_driver;
-import gui_support.diff_markup;
-import gui_support.diff_whitespace;
+import gui_support.diff_render;
 
 /**
  * Andrew G. West - gui_display_pkg.java - This encapsulates all the items
@@ -48,11 +58,6 @@ public class gui_display_pkg{
 	 */
 	public final metadata metadata;
 	
-	/**
-	 * The raw diff text for the wrapped revision; as provided by API.
-	 */
-	public final String raw_diff;
-	
 	/**
 	 * Colored HTML diff, which will be displayed in the diff-browser. 
 	 */
@@ -105,6 +110,13 @@ public class gui_display_pkg{
 	
 	// **************************** PRIVATE FIELDS ***************************
 	
+	/**
+	 * Threads on which parts of package assembly run in parallel (i.e.,
+	 * the diff fetch). Shared by all packages; idle threads expire.
+	 */
+	private static final ExecutorService FETCH_THREADS = 
+			Executors.newCachedThreadPool();
+	
 	/**
 	 * Edit token to detect conflicting edits and map edit to Wiki-user. 
 	 * Edit token may need refreshed, thus it is private and non-final.
@@ -133,9 +145,11 @@ public class gui_display_pkg{
 	/**
 	 * Construct a [gui_display_pkg] by providing all fields. Field
 	 * descriptions are not java doc'ed -- are identical to private vars.
+	 * The 'raw_diff' (as provided by the API) is used only to populate
+	 * the added/removed lists; it is not retained.
 	 */
 	public gui_display_pkg(List<metadata> page_hist, 
-			pair<String,String> edit_token, String raw_diff, String content, 
+			pair<String,String> edit_token, diff_text raw_diff, String content, 
 			String content_linked, SCORE_SYS source_queue, 
 			int rb_depth, Set<String> user_perms, boolean user_has_talkpage,
 			boolean user_has_userpage, boolean title_has_talkpage, 
@@ -144,7 +158,6 @@ public class gui_display_pkg{
 		this.page_hist = page_hist;
 		this.metadata = page_hist.get(0);
 		this.edit_token = edit_token;
-		this.raw_diff = raw_diff;
 		this.content = content;
 		this.content_linked = content_linked;
 		this.rb_depth = rb_depth;
@@ -205,18 +218,14 @@ public class gui_display_pkg{
 			boolean title_has_talkpage = !titles_missing.contains("Talk:" + md.title);
 			
 				// And manipulate the diff-content as needed
-			String diff = api_retrieve.process_diff_prev(rid);
-			String content = diff_markup.beautify_markup(
-					diff, md.title, "", "", false); 
-			content = diff_whitespace.whitespace_diff_html(content);
-			String con_link = diff_markup.beautify_markup(
-					diff, md.title, "", "", true); 
-			con_link = diff_whitespace.whitespace_diff_html(con_link);	
+			diff_text diff = api_retrieve.process_diff_prev(rid);
+			pair<String,String> html = diff_render.render(
+					diff.toString(), md.title, "", "", true);
 			
 			List<metadata> meta_list = new ArrayList<metadata>(1);
 			meta_list.add(md); // Just create a one element list
-			return(new gui_display_pkg(meta_list, null, diff, content, 
-					con_link, null, 0, perms, user_has_talkpage, 
+			return(new gui_display_pkg(meta_list, null, diff, html.fst, 
+					html.snd, null, 0, perms, user_has_talkpage, 
 					user_has_userpage, title_has_talkpage, null));
 			
 		} catch(Exception e){
@@ -241,13 +250,32 @@ public class gui_display_pkg{
 			stiki_frontend_driver parent, long rid, long pid,
 			boolean using_native_rb, SCORE_SYS source_queue) throws Exception{
 			
-		try{	// Begin by fetching recent page metadata
-				// Multiple RIDs are returned to determine rollback-depth
-			List<metadata> page_hist = api_retrieve.process_page_hist_meta(
-					pid, gui_display_pkg.HIST_DEPTH, parent.client_interface);
+		try{	// One request for recent page metadata (multiple RIDs are
+				// returned to determine rollback-depth), along with the
+				// edit token and categories, as those are wanted
+			api_xml_multiple_rids hist_handler = 
+					new api_xml_multiple_rids(parent.client_interface);
+			api_xml_page_missing missing_handler = new api_xml_page_missing();
+			api_xml_edit_token token_handler = null;
+			if(!using_native_rb) // Fetch edit token, if not using native RB
+				token_handler = new api_xml_edit_token();
+			Set<String> cats = null;
+			api_xml_page_cats cats_handler = null;
+			if(parent.menu_bar.get_options_menu().get_title_csd_policy()){
+				cats = gui_fact_cache.PAGE_CATS.get(pid);
+				if(cats == null)
+					cats_handler = new api_xml_page_cats(null, true);
+			} // Categories are requested only if not recently seen
+			api_retrieve.process_page_bundle(pid, gui_display_pkg.HIST_DEPTH, 
+					hist_handler, missing_handler, token_handler, cats_handler);
+			List<metadata> page_hist = hist_handler.get_result();
+			if(cats_handler != null){
+				cats = cats_handler.get_result();
+				gui_fact_cache.PAGE_CATS.put(pid, cats);
+			} // Store what was fetched for later edits on the page
 			
-			if((page_hist.size() == 0 && (api_retrieve.process_badrevid(rid) ||  
-					api_retrieve.process_page_missing(pid))) || 
+			if((page_hist.size() == 0 && (missing_handler.get_result() ||  
+					api_retrieve.process_badrevid(rid))) || 
 					rid != page_hist.get(0).rid){
 				parent.client_interface.queues.queue_delete(rid);
 				return null;
@@ -256,10 +284,9 @@ public class gui_display_pkg{
 				// ... or it is no longer most recent on the page ...
 				// Delete from queues and abandon in GUI
 				
-			pair<String,String> edit_token;
-			if(!using_native_rb) // Fetch edit token, if not using native RB
-				edit_token = api_retrieve.process_edit_token(pid);
-			else edit_token = null;
+			pair<String,String> edit_token = null;
+			if(token_handler != null)
+				edit_token = token_handler.get_result();
 						
 			int edits_to_rb = 0;
 			long rid_to_diff = 0;
@@ -277,6 +304,12 @@ public class gui_display_pkg{
 				return(null);
 			} // If page-hist only has one author, RB will fail
 			
+				// The diff is fetched in parallel with the second request.
+				// On the API call, note that we already know at least part
+				// of the rollback is current, making the "diff_current" safe
+			Future<diff_text> diff_future = FETCH_THREADS.submit(
+					new diff_fetch(rid_to_diff));
+			
 			String note1 = "";
 			if(edits_to_rb > 1){
 				note1 = "Below is displayed a combined diff for " + 
@@ -291,9 +324,7 @@ public class gui_display_pkg{
 			  // to make visual note of this (just below title)
 
 			String note2 = "";
-			if(parent.menu_bar.get_options_menu().get_title_csd_policy()){				
-				Set<String> cats = api_retrieve.process_page_cats(
-						meta.title, true, null);
+			if(cats != null){				
 				boolean title_csd = cats.contains(
 						"Category:Candidates for speedy deletion");
 				if(title_csd){
@@ -301,44 +332,72 @@ public class gui_display_pkg{
 				} // If CSD; make visual note atop diff
 			} // Check to see if title is CSD (per menu option)
 			
-				// And manipulate the diff-content as needed
-				// On the API call, note that we already know at least part
-				// of the rollback is current, making the "diff_current" safe			
-			String diff = api_retrieve.process_diff_current(rid_to_diff);
+				// Second request: existence of user/talk pages, plus
+				// permissions and edit count of registered users. Only
+				// those facts not recently seen (cached) are requested.
+			String[] titles = {"User_talk:" + meta.user, "User:" + meta.user, 
+					"Talk:" + meta.title};
+			Boolean[] exists = new Boolean[titles.length];
+			Set<String> titles_missing = new HashSet<String>();
+			for(int i=0; i < titles.length; i++){
+				exists[i] = gui_fact_cache.PAGE_EXISTS.get(
+						gui_fact_cache.title_key(titles[i]));
+				if(exists[i] == null)
+					titles_missing.add(titles[i]);
+			} // Existence of each page, if cached
 			
-			String content = diff_markup.beautify_markup(
-					diff, page_hist.get(0).title, note1, note2, false); 
-			content = diff_whitespace.whitespace_diff_html(content);
-			String con_link = diff_markup.beautify_markup(
-					diff, page_hist.get(0).title, note1, note2, true); 
-			con_link = diff_whitespace.whitespace_diff_html(con_link);
+			Set<String> perms = null;
+			Integer edit_count = null;
+			api_xml_user_perm perm_handler = null;
+			api_xml_user_edits_ever edits_handler = null;
+			if(!meta.user_is_ipv4_or_ipv6){ // IPs have no permissions
+				perms = gui_fact_cache.USER_PERMS.get(meta.user);
+				if(perms == null)
+					perm_handler = new api_xml_user_perm(meta.user);
+				if(parent.menu_bar.get_options_menu().get_dttr_policy()){
+					edit_count = gui_fact_cache.USER_EDITS.get(meta.user);
+					if(edit_count == null)
+						edits_handler = new api_xml_user_edits_ever();
+				} // Only take the edit count if expected to be used in DTTR
+			} else edit_count = -1;
 			
-			Set<String> perms;
-			if(!meta.user_is_ipv4_or_ipv6) // IPs have no permissions
-				perms = api_retrieve.process_user_perm(meta.user);
-			else perms = new HashSet<String>(0);
+			if(!titles_missing.isEmpty() || perm_handler != null || 
+					edits_handler != null){
+				api_xml_pages_missing titles_handler = 
+						new api_xml_pages_missing();
+				api_retrieve.process_user_bundle(meta.user, titles_missing, 
+						titles_handler, perm_handler, edits_handler);
+				
+				Set<String> missing_result = titles_handler.get_result();
+				for(int i=0; i < titles.length; i++){
+					if(exists[i] == null){
+						exists[i] = !missing_result.contains(titles[i]);
+						gui_fact_cache.PAGE_EXISTS.put(
+								gui_fact_cache.title_key(titles[i]), exists[i]);
+					} // Only those requested have a fresh answer
+				} // Existence of each page, as requested
+				if(perm_handler != null){
+					perms = perm_handler.get_result();
+					gui_fact_cache.USER_PERMS.put(meta.user, perms);
+				} if(edits_handler != null){
+					edit_count = (int) edits_handler.get_result();
+					gui_fact_cache.USER_EDITS.put(meta.user, edit_count);
+				} // Store what was fetched for later edits by the user
+			} // No request at all, if every fact was cached
 			
-				// Determine existence of user/talk pages
-			Set<String> titles_missing = new HashSet<String>();
-			titles_missing.add("User_talk:" + meta.user);
-			titles_missing.add("User:" + meta.user);
-			titles_missing.add("Talk:" + meta.title);
-			titles_missing = api_retrieve.process_pages_missing(titles_missing);
-			boolean user_has_talkpage = !titles_missing.contains("User_talk:" + meta.user);
-			boolean user_has_userpage = !titles_missing.contains("User:" + meta.user);
-			boolean title_has_talkpage = !titles_missing.contains("Talk:" + meta.title);
+			boolean user_has_talkpage = exists[0];
+			boolean user_has_userpage = exists[1];
+			boolean title_has_talkpage = exists[2];
+			if(perms == null)
+				perms = new HashSet<String>(0);
 			
-			Integer edit_count = null;
-			if(meta.user_is_ipv4_or_ipv6)
-				edit_count = -1;
-			else if(parent.menu_bar.get_options_menu().get_dttr_policy()){
-				edit_count = (int) api_retrieve.process_user_edits(meta.user);
-			} // If user is registered (i.e., possibly a "regular", compute
-			  // his/her edit count. But only take this performance
-			  // penalty if we expected this to be used in DTTR warning
+				// One pass renders both linked and link-free versions
+			diff_text diff = diff_future.get();
+			pair<String,String> html = diff_render.render(diff.toString(), 
+					page_hist.get(0).title, note1, note2, true);
 
-			return(new gui_display_pkg(page_hist, edit_token, diff, content, 
-					con_link, source_queue, edits_to_rb, perms, 
+			return(new gui_display_pkg(page_hist, edit_token, diff, html.fst, 
+					html.snd, source_queue, edits_to_rb, perms, 
 					user_has_talkpage, user_has_userpage, 
 					title_has_talkpage, edit_count));
 			
@@ -413,9 +472,16 @@ public class gui_display_pkg{
 			if(this.metadata.user_is_ipv4_or_ipv6)
 				return(-1);
 			else{
-				this.user_edit_count = (int) api_retrieve.process_user_edits(
-						this.metadata.user, 0, stiki_utils.cur_unix_time(), 
-						0, 50, null, 50);
+				this.user_edit_count = gui_fact_cache.USER_NS0_EDITS.get(
+						this.metadata.user);
+				if(this.user_edit_count == null){
+					this.user_edit_count = (int) api_retrieve.
+							process_user_edits(this.metadata.user, 0, 
+							stiki_utils.cur_unix_time(), 0, 50, null, 50);
+					gui_fact_cache.USER_NS0_EDITS.put(
+							this.metadata.user, this.user_edit_count);
+				} // Another edit by this user may have needed it already
+				  // (NOT the lifetime count of [USER_EDITS]; see there)
 				return(this.user_edit_count);
 			} // If we do have to compute, store persistently
 					
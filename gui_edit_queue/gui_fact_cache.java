@@ -0,0 +1,195 @@
+package gui_edit_queue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import core_objects.pair;
+
+/**
+ * Andrew G. West - gui_fact_cache.java - While reviewing, the same editors
+ * and pages come up again and again across queued edits. This caches facts
+ * about them (permissions, edit counts, page existence, etc.) for a short
+ * time, so each need not be re-fetched from the API for every edit.
+ *
+ * Entries expire after a per-cache TTL; kept short, as the facts can change
+ * on-wiki at any time. Those which change because of our own edits (e.g.,
+ * posting a warning creates or alters a talk page) are invalidated by the
+ * code making those edits. The caches themselves are static fields here.
+ */
+public class gui_fact_cache<K,V>{
+
+	// ***************************** PUBLIC FIELDS ***************************
+	
+	/**
+	 * Permissions (groups) held by a registered editor, by username.
+	 */
+	public static final gui_fact_cache<String,Set<String>> USER_PERMS =
+			new gui_fact_cache<String,Set<String>>("User permissions", 600);
+	
+	/**
+	 * Number of edits made by a registered editor (lifetime, all
+	 * namespaces, per the "editcount" user property), by username.
+	 */
+	public static final gui_fact_cache<String,Integer> USER_EDITS =
+			new gui_fact_cache<String,Integer>("User edit counts", 600);
+	
+	/**
+	 * Number of article (NS0) edits made by a registered editor, capped at
+	 * 50, by username. A different quantity than [USER_EDITS], used only
+	 * where that was not fetched.
+	 */
+	public static final gui_fact_cache<String,Integer> USER_NS0_EDITS =
+			new gui_fact_cache<String,Integer>("User NS0 edit counts", 600);
+	
+	/**
+	 * Whether or not a user is currently blocked, by username.
+	 */
+	public static final gui_fact_cache<String,Boolean> USER_BLOCKED =
+			new gui_fact_cache<String,Boolean>("User block status", 60);
+	
+	/**
+	 * Whether or not a page exists, by title (see [title_key()]).
+	 */
+	public static final gui_fact_cache<String,Boolean> PAGE_EXISTS =
+			new gui_fact_cache<String,Boolean>("Page existence", 300);
+	
+	/**
+	 * Current content of a page, by title (see [title_key()]). Used only
+	 * for user talk pages, when deciding the level of a warning. Other
+	 * tools warn too, so this is kept very short-lived.
+	 */
+	public static final gui_fact_cache<String,String> PAGE_CONTENT =
+			new gui_fact_cache<String,String>("Talk page content", 20);
+	
+	/**
+	 * Categories (incl. hidden) of an article, by page-ID.
+	 */
+	public static final gui_fact_cache<Long,Set<String>> PAGE_CATS =
+			new gui_fact_cache<Long,Set<String>>("Article categories", 120);
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Maximum number of entries held by any one cache. Least-recently used
+	 * entries are dropped beyond this.
+	 */
+	private static final int MAX_ENTRIES = 2000;
+	
+	/**
+	 * Name of this cache, for reporting.
+	 */
+	private final String name;
+	
+	/**
+	 * Time (ms.) for which an entry is valid after insertion.
+	 */
+	private final long ttl_ms;
+	
+	/**
+	 * Mapping from key to (value, expiry time in ms.). Access-ordered, so
+	 * that it is LRU when trimmed. Guarded by this object's monitor.
+	 */
+	private final Map<K,pair<V,Long>> map;
+	
+	/**
+	 * Lookups which found a valid entry, and those which did not.
+	 */
+	private long hits = 0, misses = 0;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [gui_fact_cache].
+	 * @param name Name of this cache, for reporting
+	 * @param ttl_secs Time (secs.) for which an entry is valid
+	 */
+	@SuppressWarnings("serial")
+	private gui_fact_cache(String name, long ttl_secs){
+		this.name = name;
+		this.ttl_ms = ttl_secs * 1000;
+		this.map = new LinkedHashMap<K,pair<V,Long>>(64, 0.75f, true){
+			protected boolean removeEldestEntry(
+					Map.Entry<K,pair<V,Long>> eldest){
+				return(size() > MAX_ENTRIES);
+			} // Bound memory over long sessions
+		};
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Look up a fact.
+	 * @param key Key of the fact
+	 * @return Value associated with 'key', or NULL if there is none, or
+	 * the one there has expired
+	 */
+	public synchronized V get(K key){
+		pair<V,Long> entry = map.get(key);
+		if(entry == null || entry.snd < System.currentTimeMillis()){
+			if(entry != null)
+				map.remove(key);
+			misses++;
+			return(null);
+		} // Expired entries are dropped upon discovery
+		hits++;
+		return(entry.fst);
+	}
+	
+	/**
+	 * Store a fact, replacing any prior value.
+	 * @param key Key of the fact
+	 * @param value Value of the fact (non-NULL)
+	 */
+	public synchronized void put(K key, V value){
+		map.put(key, new pair<V,Long>(value,
+				System.currentTimeMillis() + ttl_ms));
+	}
+	
+	/**
+	 * Discard a fact; i.e., because we have just changed it on-wiki.
+	 * @param key Key of the fact to be discarded
+	 */
+	public synchronized void invalidate(K key){
+		map.remove(key);
+	}
+	
+	/**
+	 * Return a one-line summary of this cache's effectiveness.
+	 * @return Summary of lookups, hits, and entries of this cache
+	 */
+	public synchronized String stats(){
+		long lookups = hits + misses;
+		String pct = (lookups == 0) ? "-" :
+				(Math.round(100.0 * hits / lookups) + "%");
+		return(name + ": " + hits + " hits of " + lookups + " lookups (" +
+				pct + "), " + map.size() + " entries");
+	}
+	
+	/**
+	 * Return summaries of all caches, one per line.
+	 * @return Summaries of all caches, per [stats()], newline separated
+	 */
+	public static String all_stats(){
+		gui_fact_cache<?,?>[] all = {USER_PERMS, USER_EDITS, USER_NS0_EDITS,
+				USER_BLOCKED, PAGE_EXISTS, PAGE_CONTENT, PAGE_CATS};
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i < all.length; i++)
+			sb.append(all[i].stats()).append("\n");
+		return(sb.toString());
+	}
+	
+	/**
+	 * Produce the key under which facts about a page title are stored. The
+	 * API and our own code are inconsistent in the use of underscores.
+	 * @param title Page title (with namespace)
+	 * @return Key for 'title', with underscores as spaces
+	 */
+	public static String title_key(String title){
+		return(title.replace('_', ' '));
+	}
+
+}
@@ -1,5 +1,6 @@
 package gui_menus;
 
+import gui_edit_queue.gui_fact_cache;
 import gui_support.gui_filesys_images;
 import gui_support.gui_globals;
 
@@ -17,6 +18,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.border.BevelBorder;
 
@@ -48,6 +50,11 @@ public class gui_menu_about extends JMenu implements ActionListener{
 	 * Menu item "Visit Website" -- launches browser with STiki website.  
 	 */
 	private JMenuItem item_website;
+	
+	/**
+	 * Menu item "Cache Statistics" -- shows hit rates of client caches.
+	 */
+	private JMenuItem item_cache_stats;
 
 	
 	// ***************************** CONSTRUCTORS ****************************
@@ -70,10 +77,14 @@ public class gui_menu_about extends JMenu implements ActionListener{
 		item_website = gui_menu_bar.create_menu_item(
 				"Visit Website", KeyEvent.VK_W);
 		item_website.addActionListener(this);
+		item_cache_stats = gui_menu_bar.create_menu_item(
+				"Cache Statistics", KeyEvent.VK_C);
+		item_cache_stats.addActionListener(this);
 		
 			// Then add the menu-items to this menu
 		this.add(item_about);
 		this.add(item_website);
+		this.add(item_cache_stats);
 	}
 
 	
@@ -89,6 +100,12 @@ public class gui_menu_about extends JMenu implements ActionListener{
 		}else if(event.getSource().equals(item_website)){
 			String url = "https://en.wikipedia.org/wiki/Wikipedia:STiki";
 			gui_globals.open_url(this, url);
+		} else if(event.getSource().equals(item_cache_stats)){
+			JOptionPane.showMessageDialog(this, 
+					"Facts about editors and pages are cached briefly,\n" +
+					"as the same ones recur across queued edits:\n\n" + 
+					gui_fact_cache.all_stats(), "Cache Statistics", 
+					JOptionPane.INFORMATION_MESSAGE);
 		} // Simple action-event handlers
 	}
 	
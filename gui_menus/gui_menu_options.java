@@ -2,6 +2,7 @@ package gui_menus;
 
 import executables.stiki_frontend_driver;
 import gui_panels.gui_diff_panel;
+import gui_edit_queue.edit_queue;
 import gui_support.diff_markup;
 import gui_support.gui_colorpicker;
 import gui_support.gui_globals;
@@ -64,6 +65,7 @@ public class gui_menu_options extends JMenu implements ActionListener{
 	private JCheckBoxMenuItem title_csd_cb;
 	private JCheckBoxMenuItem aiv_popup_cb;
 	private JCheckBoxMenuItem verify_session_cb;
+	private JCheckBoxMenuItem rc_eviction_cb;
 	
 
 	// ***************************** CONSTRUCTORS ****************************
@@ -94,6 +96,7 @@ public class gui_menu_options extends JMenu implements ActionListener{
 		this.add(title_csd_cb);
 		this.add(aiv_popup_cb);
 		this.add(verify_session_cb);
+		this.add(rc_eviction_cb);
 		
 			// Set default menu selections (per persistent settings)
 		this.selected_browser_font_size(gui_settings.get_int_def(
@@ -115,6 +118,8 @@ public class gui_menu_options extends JMenu implements ActionListener{
 				gui_settings.SETTINGS_BOOL.options_aiv_popup, false));
 		this.set_verify_session_policy(gui_settings.get_bool_def(
 				gui_settings.SETTINGS_BOOL.options_verify_session, false));
+		this.set_rc_eviction_policy(gui_settings.get_bool_def(
+				gui_settings.SETTINGS_BOOL.options_rc_eviction, false));
 	}
 	
 	
@@ -148,6 +153,8 @@ public class gui_menu_options extends JMenu implements ActionListener{
 			
 			// Do nothing
 				
+		} else if(event.getSource().equals(rc_eviction_cb)){
+			set_rc_eviction_policy(rc_eviction_cb.isSelected());
 		} else if(event.getSource().equals(browser_font_10) || 
 				event.getSource().equals(browser_font_12) || 
 				event.getSource().equals(browser_font_14) || 
@@ -402,6 +409,27 @@ public class gui_menu_options extends JMenu implements ActionListener{
 		return(verify_session_cb.isSelected());
 	}
 	
+	/**
+	 * Set the 'RC eviction' policy in the menu (and edit queue)
+	 * @param enable TRUE if superseded edits should be evicted from the
+	 * queue per the recent-changes IRC feed. Else, false. If this build
+	 * lacks the IRC library, the option stays off (and disabled).
+	 */
+	public void set_rc_eviction_policy(boolean enable){
+		if(!edit_queue.rc_eviction_available())
+			enable = false;
+		rc_eviction_cb.setSelected(enable);
+		parent.edit_queue.set_rc_eviction(enable);
+	}
+	
+	/**
+	 * Return whether the 'RC eviction' checkbox is selected.
+	 * @return whether the 'RC eviction' checkbox is selected
+	 */
+	public boolean get_rc_eviction_policy(){
+		return(rc_eviction_cb.isSelected());
+	}
+	
 
 	// **************************** PRIVATE FIELDS ***************************
 	
@@ -483,6 +511,12 @@ public class gui_menu_options extends JMenu implements ActionListener{
 		title_csd_cb = create_cb_item("CSD check on articles", KeyEvent.VK_S);
 		aiv_popup_cb = create_cb_item("Explicit notify on AIV post", KeyEvent.VK_V);
 		verify_session_cb = create_cb_item("Verify session at login", KeyEvent.VK_Y);
+		rc_eviction_cb = create_cb_item("Live stale-edit removal", KeyEvent.VK_R);
+		if(!edit_queue.rc_eviction_available()){
+			rc_eviction_cb.setEnabled(false);
+			rc_eviction_cb.setToolTipText("Not available in this build " +
+					"(IRC library not included)");
+		} // Greyed out, rather than failing when selected
 	}
 	
 	/**
@@ -12,9 +12,12 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.event.HyperlinkListener;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
 
 import gui_edit_queue.gui_display_pkg;
 import gui_support.gui_globals;
+import gui_support.html_async_loader;
 
 /**
  * Andrew G. West - gui_giff_panel.java - This class implements the 
@@ -55,6 +58,17 @@ public class gui_diff_panel extends JPanel implements HyperlinkListener,
 	 */
 	private boolean activate_hyperlinks = false;
 	
+	/**
+	 * Diffs longer than this (chars.) are parsed outside the event thread,
+	 * and displayed progressively. Shorter ones are parsed in place.
+	 */
+	private static final int ASYNC_LOAD_CHARS = 64 * 1024;
+	
+	/**
+	 * Loader of the content currently displayed; NULL if none is active.
+	 */
+	private html_async_loader loader = null;
+	
 	
 	// ***************************** CONSTRUCTORS ****************************
 	
@@ -95,9 +109,8 @@ public class gui_diff_panel extends JPanel implements HyperlinkListener,
 	public void display_content(gui_display_pkg content) throws Exception{
 	
 		if(activate_hyperlinks) // Add links if necessary
-			browser.setText(content.content_linked);
-		else browser.setText(content.content);
-		browser.setCaretPosition(0); // Scroll to top of pane
+			show_html(content.content_linked);
+		else show_html(content.content);
 		this.cur_content = content;
 	}
 	
@@ -126,8 +139,8 @@ public class gui_diff_panel extends JPanel implements HyperlinkListener,
 				// browser might not have content; leading to null exception.
 				// Here that exception is caught and ignored.
 			try{if(activate) // Refresh currently displayed diff
-					browser.setText(cur_content.content_linked);
-				else browser.setText(cur_content.content);
+					show_html(cur_content.content_linked);
+				else show_html(cur_content.content);
 			} catch(NullPointerException e){}
 		} // only refresh/change if policy is different from previous
 	}
@@ -196,4 +209,54 @@ public class gui_diff_panel extends JPanel implements HyperlinkListener,
 	public void keyReleased(KeyEvent ke){}
 	public void keyTyped(KeyEvent ke){}
 	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Display some HTML in the browser window, scrolled to the top. Large
+	 * documents are displayed as they are parsed, so that the event thread
+	 * (and with it, the GUI) is not frozen while a huge diff is parsed.
+	 * @param html HTML to be displayed
+	 */
+	private void show_html(String html){
+		
+		boolean was_async = (loader != null);
+		if(was_async){
+			loader.cancel();
+			loader = null;
+		} // Abandon any load in progress
+		
+		if(html.length() <= ASYNC_LOAD_CHARS){
+			if(was_async) // Old loader may yet write to its document
+				browser.setDocument(fresh_document());
+			browser.setText(html);
+			browser.setCaretPosition(0); // Scroll to top of pane
+			return;
+		} // Small documents parse quickly in place
+		
+			// Large ones are displayed empty, and fill in as the 
+			// loader flushes content into them
+		HTMLDocument doc = fresh_document();
+		doc.setAsynchronousLoadPriority(Thread.MIN_PRIORITY);
+		doc.setTokenThreshold(100); // Grows as the load proceeds
+		browser.setDocument(doc);
+		browser.setCaretPosition(0);
+		
+		loader = new html_async_loader(
+				(HTMLEditorKit) browser.getEditorKit(), doc, html);
+		loader.start();
+	}
+	
+	/**
+	 * Create an empty document for the browser window.
+	 * @return Empty document sharing the style-sheet (and so, the font 
+	 * rules) and parser of that currently in the browser window
+	 */
+	private HTMLDocument fresh_document(){
+		HTMLDocument cur_doc = (HTMLDocument) browser.getDocument();
+		HTMLDocument doc = new HTMLDocument(cur_doc.getStyleSheet());
+		doc.setParser(cur_doc.getParser());
+		return(doc);
+	}
+	
 }
@@ -0,0 +1,493 @@
+package gui_support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import core_objects.pair;
+import core_objects.xlink_parser;
+
+/**
+ * Andrew G. West - diff_render.java - Renders the raw HTML of a diff (per
+ * the MediaWiki API) into the form displayed by the diff-browser, in a
+ * single pass over the input. This does all the work formerly done by
+ * [diff_markup] (table styling, removal of unnecessary tags, hyperlink
+ * activation) and [diff_whitespace] (ZWS insertion), but as the input is
+ * read, rather than in a series of whole-document replacements.
+ *
+ * Both the hyperlinked and link-free versions of the diff are written at
+ * once; they differ only in the anchor tags placed around URLs.
+ *
+ * The input is handled in two layers. The first reads tags and text,
+ * dropping/rewriting tags, and deferring whitespace (so runs of blank
+ * lines, and empty table rows, can be removed). The second collects
+ * visible text into "runs" -- text uninterrupted by anything but word-level
+ * change formatting -- and, at the end of each, finds and activates the
+ * URLs within before writing it to output.
+ *
+ * Linking therefore differs from that of the old [diff_markup]. It parsed
+ * URLs from the whole document, then linked every occurrence of each one
+ * anywhere in the diff; text was linked wherever the same string had been
+ * recognized as a URL elsewhere. Here, a URL is linked only in a run whose
+ * own text the parser recognizes it in.
+ */
+public class diff_render{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Tags which open a word-level change (the first the pre-2014 form).
+	 */
+	private static final String[] CHANGE_OPEN_TAGS = {
+			"<span class=\"diffchange diffchange-inline\">",
+			"<del class=\"diffchange diffchange-inline\">",
+			"<ins class=\"diffchange diffchange-inline\">"};
+	
+	/**
+	 * Tags which close a word-level change (and any other <span>).
+	 */
+	private static final String[] CHANGE_CLOSE_TAGS = {
+			"</span>", "</del>", "</ins>"};
+	
+	/**
+	 * Start of a 'diff-marker' (i.e., plus/minus) cell, which is removed.
+	 */
+	private static final String MARKER_CELL = "<td class=\"diff-marker\"";
+	
+	/**
+	 * Attributes of table cells which are replaced (removed, or replaced by
+	 * the equivalent shading; see [td_repl]).
+	 */
+	private static final String[] TD_ATTRS = {
+			" colspan=\"2\"", "class=\"diff-lineno\"",
+			"class=\"diff-context\"", "class=\"diff-deletedline\"",
+			"class=\"diff-addedline\""};
+	
+	/**
+	 * Should ZWS characters be inserted into visible text?
+	 */
+	private final boolean zws;
+	
+	/**
+	 * Output: the link-free and hyperlinked versions of the diff.
+	 */
+	private final StringBuilder out, out_linked;
+	
+	/**
+	 * Whitespace read, but not yet written (see [flush_ws()]).
+	 */
+	private final StringBuilder ws = new StringBuilder();
+	
+	/**
+	 * Position in [ws] at which an empty-so-far <tr> was read; -1 if none.
+	 */
+	private int tr_at = -1;
+	
+	/**
+	 * The current run, as both (1) text and change-tags, and (2) just the
+	 * visible text (over which URLs are parsed).
+	 */
+	private final StringBuilder run = new StringBuilder();
+	private final StringBuilder run_text = new StringBuilder();
+	
+	/**
+	 * Number of visible characters written since the last whitespace one.
+	 */
+	private int chars_wo_space = 0;
+	
+	/**
+	 * Replacements for the [TD_ATTRS], and the tag opening changed words.
+	 */
+	private final String[] td_repl;
+	private final String change_open;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [diff_render] object. These hold the state of one
+	 * rendering, and are used only via [render()].
+	 * @param size_hint Approximate size of the input
+	 * @param zws Should ZWS characters be inserted into visible text?
+	 */
+	private diff_render(int size_hint, boolean zws){
+		this.zws = zws;
+		this.out = new StringBuilder(size_hint + size_hint / 4 + 512);
+		this.out_linked = new StringBuilder(size_hint + size_hint / 4 + 512);
+		this.td_repl = new String[]{"", "",
+				"bgcolor=" + diff_markup.COLOR_DIFF_CONT,
+				"bgcolor=" + diff_markup.COLOR_DIFF_DEL,
+				"bgcolor=" + diff_markup.COLOR_DIFF_ADD};
+		this.change_open = "<font color=" +
+				diff_markup.COLOR_DIFF_WORDS + "><b>";
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Render the HTML diff per the MediaWiki API for JEditorPane display.
+	 * @param raw_html Raw-diff HTML per the MediaWiki API
+	 * @param page_title Title of the Wiki-article whose diff is in 'raw_html'
+	 * @param note1 Note to appear in diff, just below the title. This is
+	 * optional, pass in an empty String if no "note" is desired.
+	 * @param note2 Additional note option; different color than note #1
+	 * @param zws If TRUE, insert ZWS characters such that there are no more
+	 * than [diff_whitespace.MAX_CHARS_WO_SPACE] visible characters without
+	 * whitespace (see [diff_whitespace]); if FALSE, insert none.
+	 * @return Pair whose first element is the link-free version of the
+	 * diff, and second, that with clickable external links
+	 */
+	public static pair<String,String> render(String raw_html,
+			String page_title, String note1, String note2, boolean zws){
+		
+		diff_render r = new diff_render(raw_html.length(), zws);
+		
+			// Header/title/footer around the diff-table complete the HTML
+		r.read("<html><body bgcolor=" + diff_markup.COLOR_DIFF_BG + ">");
+		r.read("<font color=" + diff_markup.COLOR_DIFF_TEXT + ">");
+		r.read("<center><br><b><u><font color=" +
+				diff_markup.COLOR_DIFF_TEXT + ">");
+		r.read(page_title);
+		r.read("</font></u></b>");
+		if(note1.length() > 0){
+			r.read("<br><font color=" + diff_markup.COLOR_DIFF_NOTE1 + ">");
+			r.read(note1);
+			r.read("</font>");
+		} // Notes are optional
+		if(note2.length() > 0){
+			r.read("<br><font color=" + diff_markup.COLOR_DIFF_NOTE2 + ">");
+			r.read(note2);
+			r.read("</font>");
+		} // And may be displayed in different colors
+		r.read("<br><br><table border=\"0\" cellspacing=\"5\">");
+		r.read(raw_html);
+		r.read("</center></table></font></body></html>");
+		r.flush_ws();
+		r.end_run();
+		return(new pair<String,String>(r.out.toString(),
+				r.out_linked.toString()));
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	// ********* LAYER 1: TAGS AND WHITESPACE *********
+	
+	/**
+	 * Read a piece of HTML, passing it (tag-by-tag, character-by-character)
+	 * to the second layer, after rewriting/removing tags as needed.
+	 * @param html HTML to be read. Tags should not span pieces.
+	 */
+	private void read(String html){
+	
+		int len = html.length();
+		int i = 0, end;
+		char c;
+		while(i < len){
+			c = html.charAt(i);
+			if(c != '<'){
+				if(Character.isWhitespace(c))
+					ws.append(c);
+				else{flush_ws();
+					text(c);
+				} // Whitespace is deferred, see [flush_ws()]
+				i++;
+				continue;
+			} // Visible text
+			
+			end = html.indexOf('>', i);
+			end = (end < 0) ? len : end + 1; // Tag is [i, end)
+			
+			if(html.startsWith(MARKER_CELL, i)){
+				int line_end = html.indexOf('\n', end);
+				if(line_end < 0)
+					line_end = len;
+				int close = html.lastIndexOf("</td>", line_end - 5);
+				if(close >= end){
+					i = close + 5;
+					continue;
+				} // Remove cell through the last close on its line
+			} // We remove the 'diff-marker' cells (i.e., plus/minus)
+			
+			if(html.startsWith("<div>", i) || html.startsWith("</div>", i)){
+				i = end;
+				continue;
+			} // <div> blocks are dropped, their content kept
+			
+			if(html.startsWith("<tr>", i)){
+				if(tr_at >= 0)
+					flush_ws();
+				tr_at = ws.length();
+				i = end;
+				continue;
+			} else if(html.startsWith("</tr>", i) && tr_at >= 0){
+				ws.setLength(tr_at);
+				tr_at = -1;
+				i = end;
+				continue;
+			} // Rows are written only once they have content
+			
+			flush_ws();
+			if(starts_with_any(html, i, CHANGE_OPEN_TAGS))
+				change_tag(change_open);
+			else if(starts_with_any(html, i, CHANGE_CLOSE_TAGS))
+				change_tag("</b></font>");
+			else if(html.startsWith("<td", i))
+				td_tag(html, i, end);
+			else tag(html, i, end);
+			i = end;
+		} // Proceed through the input, one tag or character at a time
+	}
+	
+	/**
+	 * Write whitespace which has been deferred, along with any <tr> tag
+	 * deferred with it. Any stretch of whitespace which spans several
+	 * line-breaks is reduced to just one line-break.
+	 */
+	private void flush_ws(){
+		if(tr_at >= 0){
+			collapse_ws(0, tr_at);
+			tag("<tr>", 0, 4);
+			collapse_ws(tr_at, ws.length());
+			tr_at = -1;
+		} else collapse_ws(0, ws.length());
+		ws.setLength(0);
+	}
+	
+	/**
+	 * Write a stretch of deferred whitespace, reducing those that span
+	 * multiple line-breaks to just one line-break.
+	 * @param start Index in [ws] of the start of the stretch (inclusive)
+	 * @param end Index in [ws] of the end of the stretch (exclusive)
+	 */
+	private void collapse_ws(int start, int end){
+		int first_nl = -1, last_nl = -1;
+		for(int i=start; i < end; i++){
+			if(ws.charAt(i) == '\n'){
+				if(first_nl < 0)
+					first_nl = i;
+				last_nl = i;
+			} // Find the bounding line-breaks
+		} // Everything between two line-breaks is blank
+		
+		for(int i=start; i < end; i++){
+			if(i > first_nl && i <= last_nl)
+				continue;
+			text(ws.charAt(i));
+		} // Keep the first line-break; drop all through the last
+	}
+	
+	/**
+	 * Write a table cell tag, replacing WMF style references with
+	 * pure-HTML equivalents, and occupying 50% of the available width.
+	 * @param html HTML containing the tag
+	 * @param start Index in 'html' of the tag start (inclusive)
+	 * @param end Index in 'html' of the tag end (exclusive)
+	 */
+	private void td_tag(String html, int start, int end){
+		end_run();
+		out.append("<td width=\"50%\"");
+		out_linked.append("<td width=\"50%\"");
+		
+		int i = start + 3; // Past "<td"
+		int attr;
+		while(i < end){
+			attr = -1;
+			for(int j=0; j < TD_ATTRS.length && attr < 0; j++){
+				if(html.startsWith(TD_ATTRS[j], i))
+					attr = j;
+			} // Does a replaced attribute start here?
+			if(attr >= 0){
+				out.append(td_repl[attr]);
+				out_linked.append(td_repl[attr]);
+				i += TD_ATTRS[attr].length();
+			} else{
+				out.append(html.charAt(i));
+				out_linked.append(html.charAt(i));
+				i++;
+			} // Else copy the character
+		} // Copy the rest of the tag, with replacement
+	}
+	
+	/**
+	 * Determine if a String contains any of several others at some index.
+	 * @param str String to be examined
+	 * @param index Index in 'str' to be examined
+	 * @param prefixes Strings which might appear in 'str' at 'index'
+	 * @return TRUE if any of 'prefixes' appear in 'str' at 'index'
+	 */
+	private static boolean starts_with_any(String str, int index,
+			String[] prefixes){
+		for(int i=0; i < prefixes.length; i++){
+			if(str.startsWith(prefixes[i], index))
+				return(true);
+		} // Check each in turn
+		return(false);
+	}
+	
+	
+	// ********* LAYER 2: RUNS AND OUTPUT *********
+	
+	/**
+	 * Add a visible character to the current run.
+	 * @param c Character to be added. It may not be '<'.
+	 */
+	private void text(char c){
+		run.append(c);
+		run_text.append(c);
+	}
+	
+	/**
+	 * Add a word-level change tag to the current run. URLs are not
+	 * interrupted by these, as a change may be inside a URL.
+	 * @param tag Tag to be added
+	 */
+	private void change_tag(String tag){
+		run.append(tag);
+	}
+	
+	/**
+	 * Write a tag (other than change-tags) to both outputs, ending the
+	 * current run.
+	 * @param html HTML containing the tag
+	 * @param start Index in 'html' of the tag start (inclusive)
+	 * @param end Index in 'html' of the tag end (exclusive)
+	 */
+	private void tag(String html, int start, int end){
+		end_run();
+		out.append(html, start, end);
+		out_linked.append(html, start, end);
+	}
+	
+	/**
+	 * Write the current run to both outputs. External links are located
+	 * in its visible text; anchors are written around them in the
+	 * hyperlinked output. ZWS characters are inserted as needed.
+	 */
+	private void end_run(){
+	
+		if(run.length() == 0)
+			return;
+			
+			// Link targets by the visible index at which they open, and
+			// whether one closes after each index. NULL if no links.
+		String[] opens = null;
+		boolean[] closes = null;
+		if(run_text.indexOf(":") >= 0){ // All protocols have a colon
+			List<String> urls = xlink_parser.parse_xlinks(run_text.toString());
+			if(!urls.isEmpty()){
+				opens = new String[run_text.length()];
+				closes = new boolean[run_text.length()];
+				locate_urls(urls, opens, closes);
+			} // Only now are these necessary
+		} // Parse links only where they are possible
+		
+		int v = 0; // Index into visible text
+		int len = run.length(), unit, tag_end;
+		boolean close;
+		char c;
+		for(int i=0; i < len; ){
+			c = run.charAt(i);
+			if(c == '<'){
+				tag_end = run.indexOf(">", i) + 1;
+				out.append(run, i, tag_end);
+				out_linked.append(run, i, tag_end);
+				i = tag_end;
+				continue;
+			} // Change tags are copied as they are
+			
+				// Entities are one visible character, and never split
+			unit = (c == '&') ? Math.max(1,
+					diff_whitespace.entity_length(run, i)) : 1;
+			close = false;
+			if(opens != null){
+				for(int j=v; j < v + unit; j++){
+					if(opens[j] != null){
+						out_linked.append("<A HREF=\"").append(opens[j]);
+						out_linked.append("\">");
+						break;
+					} // There is at most one per unit
+				} // Open a link at its first character
+				for(int j=v; j < v + unit; j++)
+					close |= closes[j];
+			} // Links are opened/closed only in the linked output
+			
+			out.append(run, i, i + unit);
+			out_linked.append(run, i, i + unit);
+			if(zws){
+				chars_wo_space++;
+				if(Character.isWhitespace(c))
+					chars_wo_space = 0; // A hard-space resets counter
+				if(chars_wo_space == diff_whitespace.MAX_CHARS_WO_SPACE){
+					out.append(gui_globals.ZWS_CHAR);
+					out_linked.append(gui_globals.ZWS_CHAR);
+					chars_wo_space = 0;
+				} // If upper bound reached, insert space; reset
+			} // ZWS follow visible characters (entities count as one)
+			if(close)
+				out_linked.append("</A>");
+			
+			i += unit;
+			v += unit;
+		} // Copy run to output, one visible character at a time
+		
+		run.setLength(0);
+		run_text.setLength(0);
+	}
+	
+	/**
+	 * Locate the URLs parsed from the current run in its visible text.
+	 * Longer URLs are located first, so that a shorter one does not steal
+	 * part of a longer one (e.g., "www.google.com" of "www.google.com/bla").
+	 * Located URLs do not overlap. Only URLs parsed from this run are
+	 * located (see the class description).
+	 * @param parsed URLs parsed from [run_text]
+	 * @param opens Output: indexed by visible character, the URL which
+	 * opens at each (where one does)
+	 * @param closes Output: indexed by visible character, whether a URL
+	 * closes after each
+	 */
+	private void locate_urls(List<String> parsed, String[] opens,
+			boolean[] closes){
+		
+		List<String> urls = new ArrayList<String>(new TreeSet<String>(parsed));
+		Collections.sort(urls, new Comparator<String>(){
+			public int compare(String str1, String str2){
+				return(str2.length() - str1.length());
+			} // Sort from longest to shortest URL
+		});
+		
+		boolean[] claimed = new boolean[opens.length];
+		String url, found;
+		int pos;
+		boolean free;
+		for(int i=0; i < urls.size(); i++){
+			url = urls.get(i);
+			
+				// The parser un-escapes ampersands; the text does not
+			found = url;
+			pos = run_text.indexOf(found);
+			if(pos < 0 && url.indexOf('&') >= 0){
+				found = url.replace("&", "&amp;");
+				pos = run_text.indexOf(found);
+			} // If not found as parsed, try as it would appear in text
+			
+			while(pos >= 0){
+				free = true;
+				for(int j=pos; j < pos + found.length() && free; j++)
+					free = !claimed[j];
+				if(free){
+					opens[pos] = url;
+					closes[pos + found.length() - 1] = true;
+					for(int j=pos; j < pos + found.length(); j++)
+						claimed[j] = true;
+				} // Claim every instance not overlapping another URL
+				pos = run_text.indexOf(found, pos + 1);
+			} // Find all instances of the URL
+		} // Iterate over URLs, longest first
+	}
+
+}
@@ -1,18 +1,17 @@
 package gui_support;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Andrew G. West - diff_spacer.java - Revision diffs are rendered as HTML
  * in a JPane. This works well in the average case -- but lengthy URLs and 
  * formatting sometimes cause this Pane to become unnacceptably wide. 
- * This class examines the visible text in a diff-html-snippet, and inserts
- * whitespace where necessary to facilitate orderly line breaking.
+ * Whitespace is inserted into the visible text of a diff where necessary
+ * to facilitate orderly line breaking; [diff_render] does so as it renders,
+ * using the limit and entity handling here.
  * 
  * Particularly troublesome is/was the fact that we don't want ZWS to 
  * exist inside HTML formatting tags, but that these tags sometime separate
- * visible text which has no whitespace between it.
+ * visible text which has no whitespace between it. Similarly, a ZWS must
+ * not split an HTML entity (e.g., "&amp;"); each is one visible character.
  */
 public class diff_whitespace{
 	
@@ -27,59 +26,24 @@ public class diff_whitespace{
 	// **************************** PUBLIC METHODS ***************************
 	
 	/**
-	 * Given the html of a diff-page, process the visible text to ensure that
-	 * is acceptably whitespaced (as defined by a global param). 
-	 * @param html diff-HTML over which to perform whitespace processing
-	 * @return A modified version of 'html', such that there is no more than
-	 * [MAX_CHARS_WO_SPACE] characters without a whitespace one. This applies
-	 * only to -visible- text, that outside of HTML brackets.
+	 * Determine the length of the HTML entity (e.g., "&amp;", "&#160;")
+	 * starting at some index.
+	 * @param text Text which may contain entities
+	 * @param index Index in 'text' of an '&' character
+	 * @return Length of the entity starting at 'index', including both
+	 * the '&' and ';' characters. Zero, if there is no entity there.
 	 */
-	public static String whitespace_diff_html(String html) throws Exception{
-		
-			// The input will be re-constructed (with spaces), in a character-
-			// by-character fashion into the following array
-		List<Character> char_list = new ArrayList<Character>();
-		
-		boolean in_bracket = false;	// Are we currently inside an HTML tag?
-		int chars_wo_space = 0;		// How many characters without a space?
-		char cur_char;				// Current input character
-		
-		for(int i=0; i < html.length(); i++){
-			cur_char = html.charAt(i);
-			if(cur_char == '<') // Beginning of HTML tag, turn off ZWS insert
-				in_bracket = true;
-			
-			if(!in_bracket){
-				chars_wo_space++;
-				if(Character.isWhitespace(cur_char))
-					chars_wo_space = 0; // A hard-space resets counter
-				if(chars_wo_space == MAX_CHARS_WO_SPACE){
-					char_list.add(cur_char);
-					char_list.add(gui_globals.ZWS_CHAR);
-					chars_wo_space = 0;
-				} else  // If upper bound reached, insert space; reset
-					char_list.add(cur_char);
-			} else // If not in-tag, ZWS, else ignore the procedure
-				char_list.add(cur_char);
-			
-			if(cur_char == '>') // End of HTML tag, renable ZWS insertion
-				in_bracket = false;
-		} // Proceed character-by-character through input string
-
-			// Convert character-Collection into char-Array, which enables
-			// us to convert the structure back into a string
-		char[] char_array = new char[char_list.size()];
-		for(int i=0; i < char_list.size(); i++)
-			char_array[i] = char_list.get(i);		
-		String spaced = String.copyValueOf(char_array);
-
-			// Final cleanup: HTML escape chars. are multi-character. The
-			// insertion of a ZWS internally breaks them, thus correct.
-		spaced = spaced.replaceAll("\\&[\u200B]*l[\u200B]*t[\u200B]*;|" + 
-				"\\&[\u200B]*l[\u200B]*;[\u200B]*t[\u200B]*;", "\\&lt;");
-		spaced = spaced.replaceAll("\\&[\u200B]*g[\u200B]*t[\u200B]*;|" + 
-				"\\&[\u200B]*g[\u200B]*;[\u200B]*t[\u200B]*;", "\\&gt;");
-		return(spaced);
+	public static int entity_length(CharSequence text, int index){
+		int max = Math.min(text.length(), index + 10);
+		char c;
+		for(int i=index+1; i < max; i++){
+			c = text.charAt(i);
+			if(c == ';')
+				return(i > index + 1 ? i - index + 1 : 0);
+			if(!Character.isLetterOrDigit(c) && c != '#')
+				return(0);
+		} // Entities are alphanumeric (or '#'), and ';' terminated
+		return(0);
 	}
 	
 	/**
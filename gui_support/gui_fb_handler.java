@@ -2,8 +2,6 @@ package gui_support;
 
 import java.util.concurrent.ExecutorService;
 
-import com.mysql.jdbc.CommunicationsException;
-
 import gui_edit_queue.gui_display_pkg;
 import gui_panels.gui_login_panel.STIKI_WATCHLIST_OPTS;
 import gui_panels.gui_revert_panel;
@@ -25,10 +23,10 @@ import executables.stiki_frontend_driver.FB_TYPE;
  * CRITICALLY, this class executes all these operations in their own thread
  * (thus the large number of private variables).
  * 
- * Note that all DB-actions are wrapped in try-catch blocks such that the
- * parent class can be notified, and in the connection reset. Then, the
- * class will fetch its freshly-connected counterpart, and re-attempt. The
- * error caught is always indicative of a Connection failure.
+ * DB-actions are placed in the feedback outbox [gui_fb_outbox], which 
+ * writes them to the server (surviving connection failures, and restarts).
+ * Reverts and warnings are given their own thread, from a pool reserved 
+ * for them, so they are never held up by the database.
  */
 public class gui_fb_handler implements Runnable{
 
@@ -99,7 +97,7 @@ public class gui_fb_handler implements Runnable{
 	private gui_revert_panel gui_revert_panel;
 	
 	/**
-	 * Executor service, should additional threads be needed to hasten tasks.
+	 * Executor service reserved for reverts/warnings (and this handler).
 	 */
 	private ExecutorService threads;
 
@@ -159,14 +157,11 @@ public class gui_fb_handler implements Runnable{
 	 * Classify an edit as 'innocent' (i.e., not vandalism)
 	 */
 	private void submit_innocent() throws Exception{
-		try{parent.client_interface.feedback_insert( // RID delete internal
+		try{parent.fb_outbox.feedback_insert( // RID delete internal
 					md.rid, fb_constant(fb, edit_pkg.source_queue), user);
-		} catch(CommunicationsException e1){
-			parent.reset_connection(false);
-			submit_innocent(); // If con failure - reconnect - reattempt
-		} catch(Exception e2){
+		} catch(Exception e){
 			System.out.println("Error internal to \"innocent\" handler");
-			e2.printStackTrace();
+			e.printStackTrace();
 		} // Catch and/or report errors as appropriate
 	}
 	
@@ -175,13 +170,10 @@ public class gui_fb_handler implements Runnable{
 	 * the passing user will never see the edit in question again. 
 	 */
 	private void submit_pass() throws Exception{
-		try{parent.client_interface.queues.queue_ignore(md.rid, user);
-		} catch(CommunicationsException e){
-			parent.reset_connection(false);
-			submit_pass(); // If con failure - reconnect - reattempt
-		} catch(Exception e2){
+		try{parent.fb_outbox.queue_ignore(md.rid, user);
+		} catch(Exception e){
 			System.out.println("Error internal to \"pass\" handler");
-			e2.printStackTrace();
+			e.printStackTrace();
 		} // Catch and/or report errors as appropriate
 	}
 	
@@ -194,16 +186,13 @@ public class gui_fb_handler implements Runnable{
 			// Should be a straightforward rollback w/o warning
 		threads.submit(new gui_revert_and_warn(FB_TYPE.AGF, edit_pkg, summary, 
 				user_has_native_rb, rollback, watchlist_opt, warn, 
-				usr_talk_msg, gui_revert_panel));
+				usr_talk_msg, gui_revert_panel, threads));
 		
-		try{parent.client_interface.feedback_insert( // RID delete internal
+		try{parent.fb_outbox.feedback_insert( // RID delete internal
 					md.rid, fb_constant(fb, edit_pkg.source_queue), user);
-		} catch(CommunicationsException e){
-			parent.reset_connection(false);
-			submit_agf(); // If con failure - reconnect - reattempt
-		} catch(Exception e2){
+		} catch(Exception e){
 			System.out.println("Error internal to \"AGF\" handler");
-			e2.printStackTrace();
+			e.printStackTrace();
 		} // Catch and/or report errors as appropriate
 	}
 	
@@ -220,18 +209,15 @@ public class gui_fb_handler implements Runnable{
 			//
 		threads.submit(new gui_revert_and_warn(fb, edit_pkg, 
 			summary, user_has_native_rb, rollback, 
-			watchlist_opt, warn, usr_talk_msg, gui_revert_panel));
+			watchlist_opt, warn, usr_talk_msg, gui_revert_panel, threads));
 		
-		try{parent.client_interface.feedback_insert( // RID delete internal
+		try{parent.fb_outbox.feedback_insert( // RID delete internal
 					md.rid, fb_constant(fb, edit_pkg.source_queue), user);
-			parent.client_interface.oe_insert(
+			parent.fb_outbox.oe_insert(
 					md, db_off_edits.FLAG_RID_CLIENT, RB_TYPE.HUMAN);
-		} catch(CommunicationsException e){
-			parent.reset_connection(false);
-			submit_vandalism(); // If con failure - reconnect - reattempt
-		} catch(Exception e2){
+		} catch(Exception e){
 			System.out.println("Error internal to \"vandalism\" handler");
-			e2.printStackTrace();
+			e.printStackTrace();
 		} // Catch and/or report errors as appropriate
 	}
 	
@@ -0,0 +1,404 @@
+package gui_support;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.mysql.jdbc.CommunicationsException;
+
+import core_objects.metadata;
+import core_objects.pair;
+import db_client.client_interface;
+import edit_processing.rollback_handler.RB_TYPE;
+import executables.stiki_frontend_driver;
+
+/**
+ * Andrew G. West - gui_fb_outbox.java - Classification feedback which must
+ * reach the STiki server (feedback, offending-edit, and queue-ignore rows)
+ * is placed in this "outbox", rather than written directly. A single thread
+ * writes it to the server, in order, a batch at a time; should the
+ * connection fail, it is reset and the write retried (with back-off) until
+ * it succeeds. The GUI is never held up by the database.
+ *
+ * The outbox is journalled to a local file. Each entry is appended as it
+ * is made, and marked done once written; entries not marked done when
+ * STiki exits (or crashes) are written when it next starts.
+ */
+public class gui_fb_outbox implements Runnable{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Operations which may be placed in the outbox, as they are named in
+	 * the journal. Each corresponds to a stored-procedure call.
+	 */
+	private static final String OP_FEEDBACK = "FB", OP_OE = "OE",
+			OP_IGNORE = "IGN", OP_RESURRECT = "RES", OP_DONE = "DONE";
+	
+	/**
+	 * Journal representation of a NULL string field.
+	 */
+	private static final String NULL_FIELD = "\\N";
+	
+	/**
+	 * Maximum number of entries written per batch.
+	 */
+	private static final int MAX_BATCH = 25;
+	
+	/**
+	 * Bounds on the time (ms.) waited before retrying after a failure. The
+	 * wait doubles with each consecutive failure.
+	 */
+	private static final long MIN_RETRY_MS = 1000, MAX_RETRY_MS = 60000;
+	
+	/**
+	 * Size (bytes) beyond which the journal is truncated, once empty.
+	 */
+	private static final long MAX_JOURNAL_BYTES = 64 * 1024;
+	
+	/**
+	 * Root GUI class. Holds the (current) connection to the server, and
+	 * is able to reset that connection.
+	 */
+	private stiki_frontend_driver parent;
+	
+	/**
+	 * Journal file, and the writer appending to it. The journal is only
+	 * ever rewritten by writing the temporary file, then renaming it.
+	 */
+	private final File journal, journal_tmp;
+	private Writer journal_out;
+	
+	/**
+	 * Entries not yet written, in order, as (sequence number, entry).
+	 */
+	private final LinkedList<pair<Long,String>> pending =
+			new LinkedList<pair<Long,String>>();
+	
+	/**
+	 * Sequence number to be given to the next entry.
+	 */
+	private long next_seq = 0;
+	
+	/**
+	 * Whether [shutdown()] has been called.
+	 */
+	private boolean shut_down = false;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [gui_fb_outbox]. Entries left in the journal by a previous
+	 * session are made pending. Nothing is written until the object is run.
+	 * @param parent Root GUI class, holding the connection to the server
+	 */
+	public gui_fb_outbox(stiki_frontend_driver parent) throws Exception{
+		this.parent = parent;
+		String user_home = System.getProperty("user.home");
+		File home_dir = null;
+		if(user_home != null)
+			home_dir = new File(user_home);
+		this.journal = new File(home_dir, ".STiki.outbox.txt");
+		this.journal_tmp = new File(home_dir, ".STiki.outbox.txt.tmp");
+		
+		List<String> left = read_journal();
+		if(left.size() > 0)
+			System.out.println("Resubmitting " + left.size() +
+					" feedback entries left by a previous session");
+		rewrite_journal(left); // With just those left, made pending
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Place a classification (feedback) in the outbox.
+	 * See [client_interface.feedback_insert()].
+	 */
+	public void feedback_insert(long rid, int label, String user)
+			throws Exception{
+		enqueue(OP_FEEDBACK + "\t" + rid + "\t" + label + "\t" + field(user));
+	}
+	
+	/**
+	 * Place an "offending edit" in the outbox.
+	 * See [client_interface.oe_insert()].
+	 */
+	public void oe_insert(metadata md, long flag_rid, RB_TYPE rbtype)
+			throws Exception{
+		enqueue(OP_OE + "\t" + md.rid + "\t" + md.pid + "\t" + md.timestamp +
+				"\t" + md.namespace + "\t" + field(md.user) + "\t" +
+				flag_rid + "\t" + field(md.country) + "\t" + rbtype);
+	}
+	
+	/**
+	 * Place a queue-ignore (i.e., a "pass") in the outbox.
+	 * See [qmanager_client.queue_ignore()].
+	 */
+	public void queue_ignore(long rid, String user) throws Exception{
+		enqueue(OP_IGNORE + "\t" + rid + "\t" + field(user));
+	}
+	
+	/**
+	 * Place a queue resurrection in the outbox. This must follow the
+	 * feedback it undoes, so it too goes via the outbox.
+	 * See [qmanager_client.queue_resurrect()].
+	 */
+	public void queue_resurrect(long rid, long pid) throws Exception{
+		enqueue(OP_RESURRECT + "\t" + rid + "\t" + pid);
+	}
+	
+	/**
+	 * Overriding: Write pending entries to the server, until shutdown.
+	 */
+	public void run(){
+	
+		long retry_ms = MIN_RETRY_MS;
+		List<pair<Long,String>> batch = new ArrayList<pair<Long,String>>();
+		while(true){
+		
+			synchronized(this){
+				while(pending.isEmpty() && !shut_down){
+					try{this.wait();
+					} catch(InterruptedException e){
+						return;
+					} // Interrupted at shutdown
+				} // Wait for something to write
+				if(shut_down && pending.isEmpty())
+					return;
+				batch.clear();
+				for(int i=0; i < pending.size() && i < MAX_BATCH; i++)
+					batch.add(pending.get(i));
+			} // Entries are left pending until they have been written
+			
+			int written = 0;
+			boolean failed = false;
+			for(int i=0; i < batch.size() && !failed; i++){
+				try{execute(batch.get(i).snd);
+					written++;
+				} catch(CommunicationsException e){
+					failed = true;
+					try{parent.try_reset_connection();
+					} catch(Exception e2){}
+				} catch(Exception e){
+					if(is_shut_down()){
+						failed = true;
+					} else{
+						System.out.println("Error writing feedback " +
+								"(entry dropped): " + batch.get(i).snd);
+						e.printStackTrace();
+						written++;
+					} // Errors other than connection ones will recur
+				} // Connection failure: the rest of the batch waits
+			} // Write the batch in order
+			
+			done(batch.subList(0, written));
+			if(is_shut_down())
+				return; // Stop after the batch in progress. The journal
+						// is closed, so what it holds (even if written
+						// just now) is resubmitted by the next session.
+			if(!failed){
+				retry_ms = MIN_RETRY_MS;
+				continue;
+			} // Else, a connection failure
+			
+			try{Thread.sleep(retry_ms);
+			} catch(InterruptedException e){
+				return;
+			} // Back off before retrying
+			retry_ms = Math.min(retry_ms * 2, MAX_RETRY_MS);
+		} // Write until shutdown
+	}
+	
+	/**
+	 * Stop writing, after waiting (briefly) for pending entries to be
+	 * written. Any not written remain in the journal.
+	 * @param wait_ms Longest time (ms.) to wait for pending entries
+	 */
+	public synchronized void shutdown(long wait_ms) throws Exception{
+		long until = System.currentTimeMillis() + wait_ms;
+		long now = System.currentTimeMillis();
+		while(!pending.isEmpty() && now < until){
+			this.wait(until - now);
+			now = System.currentTimeMillis();
+		} // [done()] notifies as entries are written
+		shut_down = true;
+		this.notifyAll();
+		journal_out.close();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Add an entry to the journal, and make it pending.
+	 * @param entry Entry, as it is represented in the journal
+	 */
+	private synchronized void enqueue(String entry) throws Exception{
+		long seq = next_seq++;
+		journal_out.write(seq + "\t" + entry + "\n");
+		journal_out.flush();
+		pending.add(new pair<Long,String>(seq, entry));
+		this.notifyAll();
+	}
+	
+	/**
+	 * Mark entries as written; they are removed from the head of the
+	 * pending list, and marked done in the journal.
+	 * @param written Entries written, which are at the head of [pending]
+	 */
+	private synchronized void done(List<pair<Long,String>> written){
+		if(written.isEmpty() || shut_down)
+			return;
+		try{for(int i=0; i < written.size(); i++){
+				pending.removeFirst();
+				journal_out.write(written.get(i).fst + "\t" + OP_DONE + "\n");
+			} // Entries are written in the order pending
+			journal_out.flush();
+			
+			if(pending.isEmpty() && journal.length() > MAX_JOURNAL_BYTES){
+				journal_out.close();
+				rewrite_journal(new ArrayList<String>(0));
+			} // Truncate the journal, when nothing is in it
+		} catch(Exception e){
+			System.out.println("Error updating feedback journal:");
+			e.printStackTrace();
+		} // The entries were written; at worst, they are written again
+		this.notifyAll();
+	}
+	
+	/**
+	 * Write an entry to the server.
+	 * @param entry Entry, as it is represented in the journal
+	 */
+	private void execute(String entry) throws Exception{
+		client_interface ci = parent.client_interface; // Current con.
+		String[] f = entry.split("\t", -1);
+		if(f[0].equals(OP_FEEDBACK))
+			ci.feedback_insert(Long.parseLong(f[1]),
+					Integer.parseInt(f[2]), unfield(f[3]));
+		else if(f[0].equals(OP_OE))
+			ci.oe_insert(Long.parseLong(f[1]), Long.parseLong(f[2]),
+					Long.parseLong(f[3]), Integer.parseInt(f[4]),
+					unfield(f[5]), Long.parseLong(f[6]), unfield(f[7]),
+					RB_TYPE.valueOf(f[8]));
+		else if(f[0].equals(OP_IGNORE))
+			ci.queues.queue_ignore(Long.parseLong(f[1]), unfield(f[2]));
+		else if(f[0].equals(OP_RESURRECT))
+			ci.queues.queue_resurrect(Long.parseLong(f[1]),
+					Long.parseLong(f[2]));
+		else throw new Exception("Unknown outbox operation: " + f[0]);
+	}
+	
+	/**
+	 * Read the journal, returning those entries not marked done.
+	 * @return Entries (without sequence numbers) not marked as done in
+	 * the journal, in the order they were made
+	 */
+	private List<String> read_journal() throws Exception{
+		Map<Long,String> entries = new LinkedHashMap<Long,String>();
+		File source = journal;
+		if(!source.exists())
+			source = journal_tmp; // Crash mid-rename (see [replace()])
+		if(!source.exists())
+			return(new ArrayList<String>(0));
+		
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(source), "UTF-8"));
+		String line;
+		int tab;
+		while((line = in.readLine()) != null){
+			tab = line.indexOf('\t');
+			if(tab <= 0)
+				continue;
+			try{long seq = Long.parseLong(line.substring(0, tab));
+				String entry = line.substring(tab + 1);
+				if(entry.equals(OP_DONE))
+					entries.remove(seq);
+				else entries.put(seq, entry);
+			} catch(NumberFormatException e){}
+		} // A line cut short by a crash is ignored (or fails later)
+		in.close();
+		return(new ArrayList<String>(entries.values()));
+	}
+	
+	/**
+	 * Replace the journal with one holding just some entries, which are
+	 * made pending, and open it for appending. The new journal is written
+	 * in full to the temporary file before it replaces the old, so that a
+	 * crash at any point leaves the entries in one file or the other.
+	 * @param entries Entries (without sequence numbers) to be journalled
+	 */
+	private void rewrite_journal(List<String> entries) throws Exception{
+		Writer out = new OutputStreamWriter(
+				new FileOutputStream(journal_tmp, false), "UTF-8");
+		List<pair<Long,String>> numbered = new ArrayList<pair<Long,String>>();
+		for(int i=0; i < entries.size(); i++){
+			long seq = next_seq++;
+			out.write(seq + "\t" + entries.get(i) + "\n");
+			numbered.add(new pair<Long,String>(seq, entries.get(i)));
+		} // Sequence numbers continue from any before
+		out.close();
+		replace();
+		
+		journal_out = new OutputStreamWriter(
+				new FileOutputStream(journal, true), "UTF-8");
+		pending.addAll(numbered); // Callers hold the lock, or precede [run()]
+	}
+	
+	/**
+	 * Rename the temporary journal over the journal. Where the platform
+	 * will not rename over an existing file (Windows), the journal is first
+	 * deleted; should a crash follow, [read_journal()] reads the temporary.
+	 */
+	private void replace() throws Exception{
+		if(journal_tmp.renameTo(journal))
+			return;
+		journal.delete();
+		if(!journal_tmp.renameTo(journal))
+			throw new Exception("Unable to replace feedback journal: " +
+					journal.getPath());
+	}
+	
+	/**
+	 * Return whether [shutdown()] has been called.
+	 * @return TRUE if [shutdown()] has been called; FALSE, otherwise
+	 */
+	private synchronized boolean is_shut_down(){
+		return(shut_down);
+	}
+	
+	/**
+	 * Represent a string field in the journal. Usernames cannot contain
+	 * tabs or line-breaks, so need no escaping.
+	 * @param str String field, possibly NULL
+	 * @return Journal representation of 'str'
+	 */
+	private static String field(String str){
+		if(str == null)
+			return(NULL_FIELD);
+		return(str);
+	}
+	
+	/**
+	 * Inverse of [field()].
+	 * @param str Journal representation of a string field
+	 * @return String field represented by 'str'
+	 */
+	private static String unfield(String str){
+		if(str.equals(NULL_FIELD))
+			return(null);
+		return(str);
+	}
+
+}
@@ -2,6 +2,7 @@ package gui_support;
 
 import executables.stiki_frontend_driver.FB_TYPE;
 import gui_edit_queue.gui_display_pkg;
+import gui_edit_queue.gui_fact_cache;
 import gui_panels.gui_login_panel.STIKI_WATCHLIST_OPTS;
 import gui_panels.gui_revert_panel;
 
@@ -10,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
 
 import javax.swing.JOptionPane;
 
@@ -19,6 +21,7 @@ import mediawiki_api.api_post.EDIT_WATCHLIST;
 import mediawiki_api.api_retrieve;
 
 import core_objects.metadata;
+import core_objects.pair;
 import core_objects.stiki_utils;
 import core_objects.stiki_utils.QUEUE_TYPE;
 
@@ -34,7 +37,10 @@ import core_objects.stiki_utils.QUEUE_TYPE;
  * 
  * The warning of users is non-trivial. In particular, warning-messages 
  * escalate if a user is caught multiple times. Thus, one must check for
- * previous warnings before issuance.
+ * previous warnings before issuance. What this needs (block status, talk
+ * page content) is prefetched while the edit is on display, and refreshed
+ * in parallel with the revert (see [gui_warn_prefetch]); so the warning is
+ * posted as soon as the revert succeeds.
  */
 public class gui_revert_and_warn implements Runnable{
 	
@@ -117,6 +123,11 @@ public class gui_revert_and_warn implements Runnable{
 	 */
 	private QUEUE_TYPE queue_type;
 	
+	/**
+	 * Threads on which the warning inputs are fetched, during the revert.
+	 */
+	private ExecutorService threads;
+	
 	
 	// ********** CONSTANTS ***********
 
@@ -125,7 +136,7 @@ public class gui_revert_and_warn implements Runnable{
 	 * However, especially with IP edits, it may be inappropriate to warn
 	 * someone for actions they took long ago. This var. sets the warn-window.
 	 */
-	private final long WARN_WINDOW_SECS = (60 * 60 * 24);
+	static final long WARN_WINDOW_SECS = (60 * 60 * 24);
 	
 	
 	// ***************************** CONSTRUCTORS ****************************
@@ -143,11 +154,14 @@ public class gui_revert_and_warn implements Runnable{
 	 * talk page. Presumably should not be used in conjuction with 
 	 * 'warn = true'. NULL may be passed to leave no message.
 	 * @param gui_revert_panel GUI object displaying revert/warning result
+	 * @param threads Threads on which warning inputs may be fetched, in
+	 * parallel with the revert
 	 */
 	public gui_revert_and_warn(FB_TYPE fb_type, gui_display_pkg edit_pkg, 
 			String revert_comment, boolean user_has_native_rb, 
 			boolean rollback, STIKI_WATCHLIST_OPTS watchlist_opt, boolean warn, 
-			String usr_talk_msg, gui_revert_panel gui_revert_panel){
+			String usr_talk_msg, gui_revert_panel gui_revert_panel,
+			ExecutorService threads){
 		
 		this.fb_type = fb_type;
 		this.edit_pkg = edit_pkg;
@@ -159,6 +173,7 @@ public class gui_revert_and_warn implements Runnable{
 		this.usr_talk_msg = usr_talk_msg;
 		this.gui_revert_panel = gui_revert_panel;
 		this.queue_type = stiki_utils.queue_to_type(edit_pkg.source_queue);
+		this.threads = threads;
 	}
 	
 	
@@ -173,6 +188,18 @@ public class gui_revert_and_warn implements Runnable{
 	 */
 	public void run(){
 		try{
+				// If the type of revert is "4im" we override the warn option
+			if(fb_type.equals(FB_TYPE.GUILTY_4IM))
+				warn = true;
+			
+				// Bring the warning inputs up to date while the revert
+				// POST is outstanding; usually they are already cached
+			gui_warn_prefetch prefetch = null;
+			if(warn){
+				prefetch = new gui_warn_prefetch(edit_pkg, false, true);
+				threads.execute(prefetch);
+			} // Tokens are handled below; the revert needs them first
+			
 			RV_STYLE revert_type;
 			EDIT_OUTCOME revert_outcome;
 			if(user_has_native_rb && (fb_type.equals(FB_TYPE.GUILTY) || 
@@ -258,9 +285,12 @@ public class gui_revert_and_warn implements Runnable{
 				in.close();
 			} // Decide between undo paths */
 			
-				// If the type of revert is "4im" we override the warn option
-			if(fb_type.equals(FB_TYPE.GUILTY_4IM))
-				warn = true;
+				// The revert may have changed the article's categories
+				// (i.e., undoing a CSD tag); don't trust the cached ones
+			gui_fact_cache.PAGE_CATS.invalidate(metadata.pid);
+			
+			if(prefetch != null)
+				prefetch.finish_or_abandon();
 			
 				// If reversion successful, warn user if requested
 				// No matter the case, set final outcome variable
@@ -314,30 +344,21 @@ public class gui_revert_and_warn implements Runnable{
 		
 			// If old vandalism BY AN IP, do not warn_offender
 			// Always warn for edits made by registered users
-		long time_elapsed = (stiki_utils.cur_unix_time() - metadata.timestamp);
-		if(time_elapsed > WARN_WINDOW_SECS && metadata.user_is_ipv4_or_ipv6)
+		if(gui_warn_prefetch.too_old(metadata))
 			return(WARNING.NO_EDIT_TOO_OLD); 
 		
 			// If blocked already, do not warn offender
-		if(api_retrieve.process_block_status(
-				metadata.user, metadata.user_is_ipv4_or_ipv6))
+			// (all below is normally prefetched, so nothing is fetched)
+		if(gui_warn_prefetch.user_blocked(metadata))
 			return(WARNING.NO_USER_BLOCK);
 		
-		String sec_content = "";
-		String talk_content = "";
+			// Go to offending-user's Talk page, get month's content
 		String date_header = cur_utc_month_year();
-		String talk_page = "User talk:" + metadata.user;
-		if(edit_pkg.user_has_talkpage){ 
-			talk_content = api_retrieve.process_page_content(talk_page);
-			if(talk_content.startsWith("#REDIRECT ")){
-				talk_page = stiki_utils.first_match_within("\\[\\[.*?\\]\\]", 
-						talk_content).replace("[[", "").replace("]]", "");
-				talk_content = api_retrieve.process_page_content(talk_page);
-			} // Accomodate possibility of user-page redirect
-			  // No plans to accomodate redirects of nested depth.
-			sec_content = get_section_content(talk_content, date_header);
-		} // Go to offending-user's Talk page, get month's content
-		  // We know from package building whether usertalk exists
+		pair<String,String> talk = gui_warn_prefetch.talk_page(edit_pkg);
+		String talk_page = talk.fst;
+		String sec_content = "";
+		if(!talk.snd.equals(""))
+			sec_content = get_section_content(talk.snd, date_header);
 
 			// We now know a warning will likely be placed; need edit token
 			// Can re-use one from the main article if we have it(?)
@@ -364,6 +385,7 @@ public class gui_revert_and_warn implements Runnable{
 					metadata.user, metadata.rid, !metadata.user_is_ipv4_or_ipv6), 
 					aiv_msg, false, this.edit_pkg.get_token(), true, 
 					EDIT_WATCHLIST.NOCHANGE, true, true); // Don't watchlist AIV
+			gui_fact_cache.USER_BLOCKED.invalidate(metadata.user);
 			
 			if(imm_non_van_warn)
 				return(WARNING.YES_AIV_4IM);
@@ -388,6 +410,7 @@ public class gui_revert_and_warn implements Runnable{
 			api_post.edit_append_text(talk_page, warning_comment(queue_type), 
 					warning, false, this.edit_pkg.get_token(),
 					true, api_post.convert_wl(watchlist_opt, true), true, true);
+			talk_page_changed(talk_page);
 			
 				// Output which warning level was issued
 			if (warning_level == 1) return(WARNING.YES_UW1);
@@ -746,6 +769,17 @@ public class gui_revert_and_warn implements Runnable{
 		api_post.edit_append_text(talkpage, comment, message, false, 
 				this.edit_pkg.get_token(), true, 
 				api_post.convert_wl(watchlist_opt, true), true, true);
+		talk_page_changed(talkpage);
+	}
+	
+	/**
+	 * Invalidate cached facts about a talk page we have just posted to.
+	 * @param talk_page Title of the talk page posted to
+	 */
+	private static void talk_page_changed(String talk_page){
+		String key = gui_fact_cache.title_key(talk_page);
+		gui_fact_cache.PAGE_CONTENT.invalidate(key);
+		gui_fact_cache.PAGE_EXISTS.put(key, true); // It does now
 	}
 	
 	/**
@@ -79,6 +79,7 @@ public class gui_settings extends Properties{
 		options_title_csd,		// Whether to check if a title is CSD
 		options_aiv_popup,		// Whether to pop-up notify on AIV post
 		options_verify_session,	// Whether to confirm session tokens at login
+		options_rc_eviction,	// Whether to evict stale edits per IRC feed
 		filter_privileged,      // Show edits by privileged editors?
 		filter_numerical};      // Show small numerical edits?
 		
@@ -337,6 +338,9 @@ public class gui_settings extends Properties{
 		props.setProperty(SETTINGS_BOOL.options_verify_session.toString(),
 				String.valueOf(parent.menu_bar.
 				get_options_menu().get_verify_session_policy()));
+		props.setProperty(SETTINGS_BOOL.options_rc_eviction.toString(),
+				String.valueOf(parent.menu_bar.
+				get_options_menu().get_rc_eviction_policy()));
 		
 		
 			// Custom AGF messages internal to that dialog
@@ -0,0 +1,197 @@
+package gui_support;
+
+import gui_edit_queue.gui_display_pkg;
+import gui_edit_queue.gui_fact_cache;
+import mediawiki_api.api_retrieve;
+import core_objects.metadata;
+import core_objects.pair;
+import core_objects.stiki_utils;
+
+/**
+ * Andrew G. West - gui_warn_prefetch.java - Speculatively fetches what a
+ * revert-and-warn of an edit will need: the edit/rollback tokens, whether
+ * the offending user is blocked, and the content of their talk page. It is
+ * run when an edit is displayed, while the reviewer is still looking at the
+ * diff; if the edit is reverted, the warning can then be placed the moment
+ * the revert succeeds, with a single POST.
+ *
+ * Facts fetched are placed in the [gui_fact_cache] (tokens, in the edit
+ * itself), so they expire as any other would. Talk page content is kept
+ * only briefly, so the revert itself runs a second prefetch, in parallel
+ * with its POST; that one fetches only what has expired in the meantime.
+ *
+ * A prefetch which has not yet started may be abandoned (i.e., when the
+ * reviewer has moved on), whereupon it does nothing when run.
+ */
+public class gui_warn_prefetch implements Runnable{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Edit whose revert-and-warn is being prepared.
+	 */
+	private final gui_display_pkg edit_pkg;
+	
+	/**
+	 * Whether the revert will be a native rollback (needing a RB token).
+	 */
+	private final boolean native_rb;
+	
+	/**
+	 * Whether a warning is likely, so that its inputs should be fetched.
+	 * If not, only the tokens are.
+	 */
+	private final boolean warn;
+	
+	/**
+	 * State of the prefetch, guarded by this object's monitor.
+	 */
+	private boolean started = false, finished = false, abandoned = false;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [gui_warn_prefetch]. Nothing is fetched until it is run.
+	 * @param edit_pkg Edit whose revert-and-warn is being prepared
+	 * @param native_rb Whether the revert would be a native rollback
+	 * @param warn Whether a warning is likely (if not, fetch tokens only)
+	 */
+	public gui_warn_prefetch(gui_display_pkg edit_pkg, boolean native_rb,
+			boolean warn){
+		this.edit_pkg = edit_pkg;
+		this.native_rb = native_rb;
+		this.warn = warn;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Fetch the tokens, and the warning inputs, not already
+	 * held. Failures are not reported; the revert-and-warn will simply
+	 * fetch anything missing itself.
+	 */
+	public void run(){
+		synchronized(this){
+			if(abandoned)
+				return;
+			started = true;
+		} // Once started, the prefetch always runs to completion
+		
+		try{metadata md = edit_pkg.page_hist.get(0);
+			if(edit_pkg.get_token() == null)
+				edit_pkg.refresh_edit_token();
+			if(native_rb && md.rb_token == null)
+				edit_pkg.refresh_rb_token();
+			
+			if(warn && !too_old(md) && !user_blocked(md))
+				talk_page(edit_pkg);
+		} catch(Exception e){
+		} finally{
+			synchronized(this){
+				finished = true;
+				this.notifyAll();
+			}
+		} // Speculative; nothing depends on this succeeding
+	}
+	
+	/**
+	 * Abandon the prefetch, if it has not yet started.
+	 */
+	public synchronized void abandon(){
+		if(!started)
+			abandoned = true;
+	}
+	
+	/**
+	 * Wait for the prefetch to finish if it has started; otherwise, abandon
+	 * it. Either way, all it would fetch is then either cached, or left for
+	 * the caller to fetch. This never waits on a prefetch stuck behind the
+	 * caller in a thread-pool.
+	 */
+	public synchronized void finish_or_abandon() throws InterruptedException{
+		abandon();
+		while(started && !finished)
+			this.wait();
+	}
+	
+	/**
+	 * Determine whether an edit is too old for its (IP) author to be warned.
+	 * Registered users are always warned.
+	 * @param md Metadata of the offending edit
+	 * @return TRUE if the author should not be warned for age reasons
+	 */
+	public static boolean too_old(metadata md){
+		long time_elapsed = (stiki_utils.cur_unix_time() - md.timestamp);
+		return(time_elapsed > gui_revert_and_warn.WARN_WINDOW_SECS &&
+				md.user_is_ipv4_or_ipv6);
+	}
+	
+	/**
+	 * Determine whether the author of an edit is blocked, from the cache
+	 * if possible; otherwise via the API, caching the result.
+	 * @param md Metadata of the offending edit
+	 * @return TRUE if the author of the edit is blocked; FALSE otherwise
+	 */
+	public static boolean user_blocked(metadata md) throws Exception{
+		Boolean blocked = gui_fact_cache.USER_BLOCKED.get(md.user);
+		if(blocked == null){
+			blocked = api_retrieve.process_block_status(
+					md.user, md.user_is_ipv4_or_ipv6);
+			gui_fact_cache.USER_BLOCKED.put(md.user, blocked);
+		} // Repeat offenders are often reverted several times in a row
+		return(blocked);
+	}
+	
+	/**
+	 * Determine the talk page of the author of an edit, and its content,
+	 * following a redirect (to a depth of one). Content comes from the
+	 * cache if possible; otherwise via the API, caching the result.
+	 * @param edit_pkg Edit whose author's talk page is wanted
+	 * @return Pair whose first element is the title of the talk page, and
+	 * whose second is its content (empty if the page does not exist)
+	 */
+	public static pair<String,String> talk_page(gui_display_pkg edit_pkg)
+			throws Exception{
+		
+		String talk_page = "User talk:" + edit_pkg.page_hist.get(0).user;
+		Boolean talk_exists = gui_fact_cache.PAGE_EXISTS.get(
+				gui_fact_cache.title_key(talk_page));
+		if(talk_exists == null)
+			talk_exists = edit_pkg.user_has_talkpage;
+		if(!talk_exists)
+			return(new pair<String,String>(talk_page, ""));
+			// We know from package building (or our own posting since)
+			// whether usertalk exists
+		
+		String talk_content = talk_page_content(talk_page);
+		if(talk_content.startsWith("#REDIRECT ")){
+			talk_page = stiki_utils.first_match_within("\\[\\[.*?\\]\\]",
+					talk_content).replace("[[", "").replace("]]", "");
+			talk_content = talk_page_content(talk_page);
+		} // Accomodate possibility of user-page redirect
+		  // No plans to accomodate redirects of nested depth.
+		return(new pair<String,String>(talk_page, talk_content));
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Return the current content of a talk page, from the cache if possible.
+	 * @param talk_page Title of the talk page
+	 * @return Current (wiki-text) content of 'talk_page'
+	 */
+	private static String talk_page_content(String talk_page)
+			throws Exception{
+		String key = gui_fact_cache.title_key(talk_page);
+		String content = gui_fact_cache.PAGE_CONTENT.get(key);
+		if(content == null){
+			content = api_retrieve.process_page_content(talk_page);
+			gui_fact_cache.PAGE_CONTENT.put(key, content);
+		} // Kept only briefly; see [gui_fact_cache.PAGE_CONTENT]
+		return(content);
+	}
+
+}
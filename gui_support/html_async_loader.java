@@ -0,0 +1,111 @@
+package gui_support;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+
+/**
+ * Andrew G. West - html_async_loader.java - Parses an HTML string into an
+ * [HTMLDocument] outside of the Swing event thread. The document should
+ * already be on display; as the reader flushes content into it (at the
+ * document's token threshold), the display fills in progressively. This
+ * is how JEditorPane itself loads pages from URLs asynchronously.
+ *
+ * A load may be cancelled (i.e., because other content is now on display),
+ * whereupon the parser sees the end of its input, and finishes quickly.
+ */
+public class html_async_loader extends Reader implements Runnable{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Editor-kit which should parse the HTML.
+	 */
+	private final HTMLEditorKit kit;
+	
+	/**
+	 * Document into which the HTML should be parsed.
+	 */
+	private final HTMLDocument doc;
+	
+	/**
+	 * HTML which should be parsed.
+	 */
+	private final String html;
+	
+	/**
+	 * Index in [html] of the next character to be read by the parser.
+	 */
+	private int pos = 0;
+	
+	/**
+	 * Whether or not the load has been cancelled.
+	 */
+	private volatile boolean cancelled = false;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [html_async_loader]. Loading begins when it is run.
+	 * @param kit Editor-kit which should parse the HTML
+	 * @param doc Document into which the HTML should be parsed
+	 * @param html HTML which should be parsed
+	 */
+	public html_async_loader(HTMLEditorKit kit, HTMLDocument doc, String html){
+		this.kit = kit;
+		this.doc = doc;
+		this.html = html;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Start loading, in a new (daemon) thread.
+	 */
+	public void start(){
+		Thread thread = new Thread(this, "html_async_loader");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+	
+	/**
+	 * Cancel loading; what has been loaded so far remains in the document.
+	 */
+	public void cancel(){
+		this.cancelled = true;
+	}
+	
+	/**
+	 * Overriding: Parse the HTML into the document.
+	 */
+	public void run(){
+		try{kit.read(this, doc, 0);
+		} catch(Exception e){
+			System.err.println("Error loading HTML asynchronously:");
+			e.printStackTrace();
+		} // Content loaded to this point remains displayed
+	}
+	
+	/**
+	 * Overriding: Provide the parser with characters of the HTML.
+	 */
+	public int read(char[] cbuf, int off, int len) throws IOException{
+		if(cancelled || pos >= html.length())
+			return(-1);
+		int count = Math.min(len, html.length() - pos);
+		html.getChars(pos, pos + count, cbuf, off);
+		pos += count;
+		return(count);
+	}
+	
+	/**
+	 * Overriding: Nothing need be released.
+	 */
+	public void close(){}
+
+}
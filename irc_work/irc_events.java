@@ -5,6 +5,7 @@ import java.util.concurrent.DelayQueue;
 import org.schwering.irc.lib.*;
 
 import edit_processing.rid_queue_elem;
+import replay.replay_capture;
 
 /**
  * Andrew G. West - irc_events.java - This class is the event-handler for
@@ -30,6 +31,12 @@ public class irc_events implements IRCEventListener{
 	 */
 	private DelayQueue<rid_queue_elem> rid_queue;
 	
+	/**
+	 * Pre-filter which discards edits not in NS0 or by bot accounts, before
+	 * they are written to the queue (and cost an API call to process).
+	 */
+	private irc_prefilter prefilter;
+	
 	
 	// ***************************** CONSTRUCTORS ****************************
 	
@@ -37,9 +44,12 @@ public class irc_events implements IRCEventListener{
 	 * Construct an [irc_events] object. 
 	 * @param rid_queue Producer-consumer queue to which RIDs in need
 	 * of processing should be written (the IRC channel is the producer).
+	 * @param prefilter Pre-filter deciding which RC edits merit processing
 	 */
-	public irc_events(DelayQueue<rid_queue_elem> rid_queue){
+	public irc_events(DelayQueue<rid_queue_elem> rid_queue, 
+			irc_prefilter prefilter){
 		this.rid_queue = rid_queue;
+		this.prefilter = prefilter;
 	}
 	
 	
@@ -58,7 +68,9 @@ public class irc_events implements IRCEventListener{
 		// Seemingly, we could parse some interesting data out of the message
 		// to do pre-processing prior to full API-lookup. Without a 
 		// standardized format though, we simply look for the diff-url, parse
-		// out the new revision-id (R_ID) and pass it off.
+		// out the new revision-id (R_ID) and pass it off. The exception is
+		// the title and user, which [irc_prefilter] uses to discard edits
+		// outside NS0 or by bots without making an API call.
 		
 		long new_rid;
 		String[] tokens = msg.split(" ");
@@ -68,8 +80,11 @@ public class irc_events implements IRCEventListener{
 				new_rid = rid_from_diff_url(tokens[i]);	
 				if(new_rid == -1)
 					continue; // If parse error, don't attempt API
+				if(!prefilter.should_process(msg, tokens[i]))
+					continue; // Non-article or bot; don't attempt API
 			
 				rid_queue.offer(new rid_queue_elem(new_rid));
+				replay_capture.record_edit(new_rid); // If capturing
 				
 			} // If a new edit is countered, parse and add to queue
 		} // Iterate over all message tokens, looking for diff-URL
@@ -40,8 +40,11 @@ public class irc_listener extends Thread{
 	 * to the server and implements a listener/event-handler on top of it,
 	 * to signal all the necessary back-end processsing.
 	 * @param rid_queue Queue to which new RIDs should be added
+	 * @param prefilter Pre-filter deciding which RC edits merit processing.
+	 * This is passed in so its state survives IRC re-connections.
 	 */
-	public irc_listener(DelayQueue<rid_queue_elem> rid_queue){
+	public irc_listener(DelayQueue<rid_queue_elem> rid_queue, 
+			irc_prefilter prefilter){
 		
 			// IRC settings perceived as static/inconsequentail
 		String host = "irc.wikimedia.org";
@@ -52,7 +55,7 @@ public class irc_listener extends Thread{
 
 			// Prepare connection, event-handler, and basic-settings
 		con_irc = new IRCConnection(host, p_min, p_max, pass, user, user, user);
-		con_irc.addIRCEventListener(new irc_events(rid_queue)); 
+		con_irc.addIRCEventListener(new irc_events(rid_queue, prefilter)); 
 		con_irc.setDaemon(true);
 		con_irc.setColors(false); 
 		con_irc.setPong(true);
@@ -0,0 +1,232 @@
+package irc_work;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import core_objects.stiki_utils;
+import edit_processing.rb_comment_classifier;
+import mediawiki_api.api_retrieve;
+
+/**
+ * Andrew G. West - irc_prefilter.java - Lines on the `Recent Changes' IRC
+ * feed already carry the title (with any namespace prefix) and the editing
+ * user. This class inspects those fields so that edits outside of the
+ * article namespace (NS0), or by known bot accounts, can be discarded
+ * BEFORE they enter the RID-queue and cost an API call to process.
+ *
+ * Bot edits whose comment is of rollback form are NOT discarded: reverts
+ * by ClueBot (NG) are the source of BOT-type offending-edit labels, and
+ * must still reach [rollback_handler].
+ */
+public class irc_prefilter{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Interval, in seconds, at which the bot-account list should be
+	 * refreshed from the MediaWiki API. Bot flags change rarely.
+	 */
+	public static final int BOT_REFRESH_INTERVAL = 60*60*6;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Namespace prefixes (English Wikipedia, canonical form as written by
+	 * the IRC feed) of all namespaces other than NS0. A title whose text
+	 * before the first colon is in this set is not an article.
+	 */
+	private static final Set<String> NON_ARTICLE_NS = new HashSet<String>(
+			Arrays.asList("Talk", "User", "User talk", "Wikipedia",
+			"Wikipedia talk", "File", "File talk", "MediaWiki",
+			"MediaWiki talk", "Template", "Template talk", "Help",
+			"Help talk", "Category", "Category talk", "Portal",
+			"Portal talk", "Draft", "Draft talk", "TimedText",
+			"TimedText talk", "Module", "Module talk", "Book", "Book talk",
+			"Education Program", "Education Program talk", "Gadget",
+			"Gadget talk", "Gadget definition", "Gadget definition talk",
+			"Topic", "Special", "Media"));
+	
+	/**
+	 * User-names of all accounts holding the "bot" flag. The reference
+	 * is replaced wholesale on refresh (never modified in place), so
+	 * the IRC thread can read it without synchronization.
+	 */
+	private volatile Set<String> bot_users;
+	
+	/**
+	 * UNIX timestamp at which 'bot_users' was last (successfully) refreshed.
+	 */
+	private volatile long ts_bots_refreshed = 0;
+	
+	/**
+	 * Counters for the number of RC edits discarded for each of the
+	 * filter reasons.
+	 */
+	private AtomicLong num_filtered_ns = new AtomicLong(0);
+	private AtomicLong num_filtered_bot = new AtomicLong(0);
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct an [irc_prefilter] object, populating the bot-account
+	 * list. Should that fail, an empty list is used until next refresh.
+	 */
+	public irc_prefilter(){
+		this.bot_users = new HashSet<String>();
+		this.refresh_bot_users();
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Given a line from the RC feed, determine whether the edit it
+	 * describes should be queued for full (API-backed) processing.
+	 * @param msg Complete line from the `Recent Changes' IRC feed
+	 * @param diff_url The diff-URL token, already located within 'msg'
+	 * @return TRUE if the edit should be processed. FALSE if the edit is
+	 * outside NS0, or was made by a bot account and is not a rollback
+	 * (rollbacks label the edit they revert). Where 'msg' cannot be
+	 * parsed, TRUE is returned and the full processing path decides.
+	 */
+	public boolean should_process(String msg, String diff_url){
+	
+			// Example (see also [irc_events.java]):
+			// [[Talk:Foo]]  https://en.wikipedia.org/w/index.php?diff=
+			//		343070556&oldid=343070456 * ShadowKinght * (+3) comment
+		
+		String title = parse_title(msg);
+		if(title != null && !is_article(title)){
+			num_filtered_ns.incrementAndGet();
+			return(false);
+		} // Namespace check requires only the title
+		
+		String user = parse_user(msg, diff_url);
+		if(user != null && bot_users.contains(user) &&
+				!rb_comment_classifier.is_rollback(parse_comment(msg,
+				diff_url).toUpperCase())){
+			num_filtered_bot.incrementAndGet();
+			return(false);
+		} // Then consult the bot-list, if a user was found
+		
+		return(true);
+	}
+	
+	/**
+	 * Refresh the bot-account list, if the last refresh is older than
+	 * [BOT_REFRESH_INTERVAL]. Intended to be called periodically.
+	 */
+	public void refresh_if_stale(){
+		if(ts_bots_refreshed + BOT_REFRESH_INTERVAL <
+				stiki_utils.cur_unix_time())
+			refresh_bot_users();
+	}
+	
+	/**
+	 * Return the number of RC edits discarded as being outside NS0.
+	 * @return the number of RC edits discarded as being outside NS0
+	 */
+	public long num_filtered_ns(){
+		return(num_filtered_ns.get());
+	}
+	
+	/**
+	 * Return the number of RC edits discarded as made by a bot account.
+	 * @return the number of RC edits discarded as made by a bot account
+	 */
+	public long num_filtered_bot(){
+		return(num_filtered_bot.get());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Re-populate the bot-account list from the MediaWiki API. If this
+	 * fails, the previous list remains in place.
+	 */
+	private void refresh_bot_users(){
+		try{Set<String> bots = api_retrieve.process_group_members("bot", null);
+			if(!bots.isEmpty()){
+				this.bot_users = bots;
+				this.ts_bots_refreshed = stiki_utils.cur_unix_time();
+			} // An empty return is more likely error than truth
+		} catch(Exception e){
+			System.out.println("Failed to refresh RC bot-account list:");
+			e.printStackTrace();
+		} // Keep old list; we will try again at next interval
+	}
+	
+	/**
+	 * Determine if a title (as written by the RC feed) is in NS0.
+	 * @param title Page title, possibly with a namespace prefix
+	 * @return TRUE if 'title' resides in the article namespace
+	 */
+	private static boolean is_article(String title){
+		int colon = title.indexOf(':');
+		if(colon == -1)
+			return(true);
+		return(!NON_ARTICLE_NS.contains(title.substring(0, colon)));
+	}
+	
+	/**
+	 * Parse the title out of an RC feed line.
+	 * @param msg Complete line from the `Recent Changes' IRC feed
+	 * @return Title of the page edited, or NULL if not found
+	 */
+	private static String parse_title(String msg){
+		int beg = msg.indexOf("[[");
+		int end = msg.indexOf("]]", beg+2);
+		if(beg == -1 || end == -1)
+			return(null);
+		return(msg.substring(beg+2, end));
+	}
+	
+	/**
+	 * Parse the editing user out of an RC feed line. The user is the
+	 * asterisk-delimited field immediately following the diff-URL.
+	 * @param msg Complete line from the `Recent Changes' IRC feed
+	 * @param diff_url The diff-URL token, already located within 'msg'
+	 * @return User-name or IP of the editor, or NULL if not found
+	 */
+	private static String parse_user(String msg, String diff_url){
+		int url_pos = msg.indexOf(diff_url);
+		if(url_pos == -1)
+			return(null);
+		int beg = msg.indexOf("* ", url_pos + diff_url.length());
+		if(beg == -1)
+			return(null);
+		int end = msg.indexOf(" *", beg+2);
+		if(end == -1)
+			return(null);
+		return(msg.substring(beg+2, end).trim());
+	}
+	
+	/**
+	 * Parse the edit comment out of an RC feed line. The comment follows
+	 * the parenthesized size-change, which follows the user field.
+	 * @param msg Complete line from the `Recent Changes' IRC feed
+	 * @param diff_url The diff-URL token, already located within 'msg'
+	 * @return Comment of the edit, or the empty string if not found
+	 */
+	private static String parse_comment(String msg, String diff_url){
+		int url_pos = msg.indexOf(diff_url);
+		if(url_pos == -1)
+			return("");
+		int user_beg = msg.indexOf("* ", url_pos + diff_url.length());
+		if(user_beg == -1)
+			return("");
+		int user_end = msg.indexOf(" *", user_beg+2);
+		if(user_end == -1)
+			return("");
+		int size_end = msg.indexOf(") ", user_end+2);
+		if(size_end == -1)
+			return("");
+		return(msg.substring(size_end+2).trim());
+	}
+
+}
@@ -1,8 +1,6 @@
 package learn_frontend;
 
-import java.util.Calendar;
 import java.util.Iterator;
-import java.util.TimeZone;
 
 import mediawiki_api.api_retrieve;
 
@@ -61,18 +59,19 @@ public class feature_builder{
 			// Handle geo-location based features
 		float tod; int dow; double rep_country;
 		if(md.user_is_ipv4){
-			double gmt_offset = db_geo.get_gmt_offset(
-					stiki_utils.ip_to_long(md.user));
+			double gmt_offset = db_geo.get_gmt_offset(md.user_ipv4_int);
 			if(Double.isNaN(gmt_offset))
 				gmt_offset = 0.0; // Ugly hack: should map to own grouping
-			Calendar cal = get_unix_set_cal(md.timestamp, gmt_offset);
-			tod = time_of_day(cal); 
-			dow = day_of_week(cal);
+			tod = stiki_utils.time_of_day(md.timestamp, gmt_offset); 
+			dow = stiki_utils.day_of_week(md.timestamp, gmt_offset);
 			rep_country = db_country.cur_country_rep(md.country);
 			db_country.increment_all(md.country, md.timestamp);
 		} else{ // Reg'd users ineligible, take on error values 
 			tod = -1.0F; dow = -1; rep_country = -1.0;
-		}
+			if(md.user_ipv6 != null)
+				db_country.increment_all(md.country, md.timestamp);
+		} // IPv6 OEs are counted against their country (by [db_off_edits]),
+		  // so their edits must be too, else country reputations skew
 		
 			// Next handle features of the 'time since' form
 		long ts_r = (md.timestamp - 
@@ -106,44 +105,6 @@ public class feature_builder{
 	
 	// *************************** PRIVATE METHODS ***************************
 	
-	/**
-	 * Return a Calendar object initialized to a Unix time, with offset
-	 * @param unix_ts Unix timestamp of time (GMT) to be interpreted
-	 * @param offset Offset from GMT, in locality, in hours
-	 * @return Calendar object encoding 'unix_ts' offset by 'offset' hours
-	 */
-	private static Calendar get_unix_set_cal(long unix_ts, double offset){
-		Calendar cal = Calendar.getInstance();
-		cal.clear();
-		cal.setTimeZone(TimeZone.getTimeZone("GMT+0000"));
-		cal.setTimeInMillis((long) ((unix_ts + 60*60*offset) * 1000));
-		return(cal);
-	}
-
-	/**
-	 * Return the time-of-day per a Calendar object. Time-of-day is represented 
-	 * as a floating point number, [0,24). The integer portion is the hour on
-	 * a 24-hour clock. The decimal portion corresponds to (minute/60).
-	 * @param cal Calendar object initialized to a particular date/time
-	 * @return Time-of-day represented by 'cal', per format described above.
-	 */
-	private static float time_of_day(Calendar cal){
-		float time_of_day = cal.get(Calendar.HOUR_OF_DAY);
-		time_of_day += (cal.get(Calendar.MINUTE) / 60.0);
-		time_of_day += (cal.get(Calendar.SECOND) / 3600.0);		
-		return(time_of_day);
-	}
-	
-	/**
-	 * Return the day-of-week which a Calendar object encodes.
-	 * @param cal Calendar object initialized to a particular date/time
-	 * @return Integer [1,7] describing day-of-week encoded by Cal. Java's
-	 * date format is s.t. SATURDAY=7 and SUNDAY=1.
-	 */
-	private static int day_of_week(Calendar cal){
-		return (cal.get(Calendar.DAY_OF_WEEK));
-	}
-	
 	/**
 	 * Calculate the raw-reputation of a user at timestamp 'now'.
 	 * @param user Identifier of user whose reputation is being valuted
@@ -5,6 +5,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import core_objects.diff_text;
 import core_objects.pair;
 import core_objects.stiki_utils;
 
@@ -44,7 +45,7 @@ public class feature_language{
 	 * edit on the same page. This text contains HTML-table formatting, as
 	 * well as contextual data, and should be further processed.
 	 */
-	private String raw_diff_text;
+	private diff_text raw_diff_text;
 	
 	/**
 	 * Reduction from field [raw_diff_text] such that we have only edit-text
@@ -97,8 +98,25 @@ public class feature_language{
 	 * @param rid Revision-ID whose language-based features will be calc'ed
 	 */
 	public feature_language(long rid) throws Exception{
+		this(api_retrieve.process_diff_prev(rid));
+	}
+	
+	/**
+	 * Construct a [feature_language] over diff-text already in hand (for
+	 * example, a diff from a capture corpus; see [text_benchmark]).
+	 * @param raw_diff_text Diff-text, as returned by the MediaWiki API
+	 */
+	public feature_language(String raw_diff_text){
+		this(new diff_text(raw_diff_text));
+	}
+	
+	/**
+	 * Construct a [feature_language] over diff-text already in hand.
+	 * @param raw_diff_text Diff-text, as returned by the MediaWiki API
+	 */
+	public feature_language(diff_text raw_diff_text){
 		
-		this.raw_diff_text = api_retrieve.process_diff_prev(rid);
+		this.raw_diff_text = raw_diff_text;
 		
 		pair<List<String>,List<String>> additions = 
 				only_added_text(this.raw_diff_text);
@@ -288,47 +306,28 @@ public class feature_language{
 	 * first element tracks. 
 	 */
 	public static pair<List<String>,List<String>> only_added_text(
-			String raw_diff_text){
+			diff_text raw_diff_text){
 		
 			// The return sets
 		List<String> added_tokens = new ArrayList<String>();
 		List<String> added_blocks = new ArrayList<String>();
 		
-			// Get some working-text, remove stupid tags
-		String working_text = raw_diff_text;
-		working_text = working_text.replaceAll("<div>|</div>", "");
-
-			// Extract table cells relevant to addition/deletion of content
-		String regex = "<td class=\"diff-(addedline|deletedline)\">([^<]*" +
-				"<(span|del|ins) class=\"(diffchange|diffchange diffchange-inline)\">" +
-				"[^<]*</(span|del|ins)>[^<]*|[^<]*)*</td>";
-		List<String> changes = stiki_utils.
-				all_pattern_matches_within(regex, working_text);
-		
-			// Initalize variables for cell-processing loop
-		String content_cell, temp;
+			// Cells relevant to addition/deletion of content are located
+			// by [diff_text]; only their text is copied out
+		String temp;
 		boolean has_deleted = false;
-		Iterator<String> iter = changes.iterator();
-		String span_regex = "<(span|del|ins) class=\"(diffchange|" +
-				"diffchange diffchange-inline)\">[^<]*</(span|del|ins)>";
+		int num_cells = raw_diff_text.num_cells();
 		
-		while(iter.hasNext()){
-			content_cell = iter.next();	
-			if(content_cell.startsWith("<td class=\"diff-deletedline\">")){
+		for(int i=0; i < num_cells; i++){
+			if(raw_diff_text.cell_is_deleted(i)){
 				has_deleted = true; // Mark 'deleted' cell un-processed
-			} else if(content_cell.startsWith("<td class=\"diff-addedline\">")){
+			} else if(raw_diff_text.cell_is_added(i)){
 				
-				temp = content_cell.replaceAll("<[^<]*>", "");
+				temp = raw_diff_text.cell_text(i);
 				added_blocks.add(temp);
-				if(has_deleted){ // If addition has deletion partner (spans)
-					Iterator<String> spans;
-					spans = stiki_utils.all_pattern_matches_within(
-							span_regex, content_cell).iterator();
-					while(spans.hasNext())
-						added_tokens.add(spans.next().replaceAll(
-								"<(span|del|ins) class=\"(diffchange|" +
-								"diffchange diffchange-inline)\">|</(span|del|ins)>", ""));
-				} else // If addition stands-alone
+				if(has_deleted) // If addition has deletion partner (spans)
+					added_tokens.addAll(raw_diff_text.cell_spans(i));
+				else // If addition stands-alone
 					added_tokens.add(temp);
 
 				has_deleted = false;
@@ -339,6 +338,14 @@ public class feature_language{
 		return(new pair<List<String>,List<String>>(added_tokens, added_blocks));
 	}
 	
+	/**
+	 * Convenience form of [only_added_text()] for diff-text in a String.
+	 */
+	public static pair<List<String>,List<String>> only_added_text(
+			String raw_diff_text){
+		return(only_added_text(new diff_text(raw_diff_text)));
+	}
+	
 	/**
 	 * This method is the complement of [only_added_text()].
 	 * 
@@ -348,58 +355,39 @@ public class feature_language{
 	 * version in-code to reduct network traffic.
 	 */
 	public static pair<List<String>,List<String>> only_removed_text(
-			String raw_diff_text){
+			diff_text raw_diff_text){
 		
 			// The return sets
 		List<String> removed_tokens = new ArrayList<String>();
 		List<String> removed_blocks = new ArrayList<String>();
-			
-			// Get some working-text, remove stupid tags
-		String working_text = raw_diff_text;
-		working_text = working_text.replaceAll("<div>|</div>", "");
-
-			// Extract table cells relevant to addition/deletion of content
-		String regex = "<td class=\"diff-(addedline|deletedline)\">([^<]*" +
-				"<(span|del|ins) class=\"(diffchange|diffchange diffchange-inline)\">" +
-				"[^<]*</(span|del|ins)>[^<]*|[^<]*)*</td>";
-		List<String> changes = stiki_utils.
-				all_pattern_matches_within(regex, working_text);
 		
 			// Initalize variables for cell-processing loop
-		String content_cell, deleted_cell="", temp;
+		String temp;
+		int deleted_cell = -1;
 		boolean has_deleted = false;
-		Iterator<String> iter = changes.iterator();
-		String span_regex = "<(span|del|ins) class=\"(diffchange|" +
-				"diffchange diffchange-inline)\">[^<]*</(span|del|ins)>";
+		int num_cells = raw_diff_text.num_cells();
 		
-		while(iter.hasNext()){
-			content_cell = iter.next();		
+		for(int i=0; i < num_cells; i++){
 			if(has_deleted){
 				has_deleted = false;
-				temp = deleted_cell.replaceAll("<[^<]*>", "");
+				temp = raw_diff_text.cell_text(deleted_cell);
 				removed_blocks.add(temp);
-				if(content_cell.startsWith("<td class=\"diff-addedline\">")){
-					Iterator<String> spans;
-					spans = stiki_utils.all_pattern_matches_within(
-							span_regex, deleted_cell).iterator();
-					while(spans.hasNext())
-						removed_tokens.add(spans.next().replaceAll(
-								"<(span|del|ins) class=\"(diffchange|" +
-								"diffchange diffchange-inline)\">|</(span|del|ins)>", ""));
-				} else 	// ^ If addition line, just parse out red text
+				if(raw_diff_text.cell_is_added(i))
+					removed_tokens.addAll(raw_diff_text.cell_spans(deleted_cell));
+				else 	// ^ If addition line, just parse out red text
 						// \/ If not, all cell text was removed
 					removed_tokens.add(temp);					
 			} // Need to read-ahead one cell to determine handling
 												
-			if(content_cell.startsWith("<td class=\"diff-deletedline\">")){
-				deleted_cell = content_cell;
+			if(raw_diff_text.cell_is_deleted(i)){
+				deleted_cell = i;
 				has_deleted = true;
 			} // If deleted cell, save content and look ahead
 			
 		} // Process over all cells containing added/deleted content 
 		
 		if(has_deleted){ 
-			temp = deleted_cell.replaceAll("<[^<]*>", "");
+			temp = raw_diff_text.cell_text(deleted_cell);
 			removed_tokens.add(temp);
 			removed_blocks.add(temp);
 		} // Edge-condition, if last del-cell in isolation (no look ahead)
@@ -408,4 +396,12 @@ public class feature_language{
 				removed_tokens, removed_blocks));
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Convenience form of [only_removed_text()] for diff-text in a String.
+	 */
+	public static pair<List<String>,List<String>> only_removed_text(
+			String raw_diff_text){
+		return(only_removed_text(new diff_text(raw_diff_text)));
+	}
+	
+}
@@ -1,5 +1,6 @@
 package learn_frontend;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -8,6 +9,8 @@ import java.util.Random;
 import core_objects.feature_set;
 
 import db_server.db_features;
+import db_server.feature_archive;
+import db_server.feature_partition;
 import db_server.stiki_con_server;
 
 /**
@@ -100,5 +103,99 @@ public class train_sets{
 		long DEF_SIZE = 25000;
 		return(get_smart_set(con_server, last_rid_proc, DEF_WINDOW , DEF_SIZE));
 	}
+	
+	/**
+	 * Determine whether a feature archive covers the (default) window of
+	 * [get_smart_set()], so that it may be used instead of the DB. Training
+	 * over a partly filled archive would replace the model with one trained
+	 * on very few examples.
+	 * @param archive Feature archive (kept in parallel to the DB)
+	 * @param last_rid_proc Last RID processed. Upper bound of training set
+	 * @return TRUE if 'archive' holds the whole default training window
+	 */
+	public static boolean archive_covers(feature_archive archive, 
+			long last_rid_proc) throws Exception{
+		long DEF_WINDOW = (IP_EDITS_PER_DAY * 14);
+		return(archive.covers(last_rid_proc - DEF_WINDOW, last_rid_proc));
+	}
+	
+	/**
+	 * Identical to the DB version of [get_seq_set()], but reading from a
+	 * columnar feature archive, rather than the STiki database.
+	 * @param archive Feature archive (kept in parallel to the DB)
+	 * @param start_rid RID at which training set should begin
+	 * @param end_rid RID at which training set should conclude
+	 * @return A list of all 'feature_sets' between 'start_rid' and
+	 * 'end_rid' for which the archive has data
+	 */
+	public static List<feature_set> get_seq_set(feature_archive archive, 
+			long start_rid, long end_rid) throws Exception{
+		return(archive.get_features_in_interval(start_rid, end_rid));
+	}
+	
+	/**
+	 * Identical to the DB version of [get_smart_set()], but reading from a
+	 * columnar feature archive. Only the R_ID column is scanned to size
+	 * and sample the set; only sampled rows are materialized.
+	 * 
+	 * Labels are first refreshed from the DB, over the whole window. Those
+	 * set by the GUI (stored procedures) never otherwise reach the archive.
+	 * @param archive Feature archive (kept in parallel to the DB)
+	 * @param con_server Connection to the STiki database (full privs.)
+	 * @param last_rid_proc Last RID processed. Upper bound of training set
+	 * @param hist_window How many RIDs to consider back into the past
+	 * @param set_size Approximation of how large returned set shoudl be
+	 * @return List of [feature_set] objects, encoding training examples
+	 */
+	public static List<feature_set> get_smart_set(feature_archive archive, 
+			stiki_con_server con_server, long last_rid_proc, 
+			long hist_window, long set_size) throws Exception{
+		
+		long start_rid = (last_rid_proc - hist_window);
+		db_features db_feat = new db_features(con_server);
+		archive.refresh_labels(start_rid, last_rid_proc, 
+				db_feat.get_guilty_rids_in_interval(start_rid, last_rid_proc));
+		db_feat.shutdown(); // A single indexed query; few RIDs are guilty
+		
+		List<feature_partition> parts = archive.partitions(
+				start_rid, last_rid_proc);
+		
+			// Count eligible RIDs in interval, to set the probability
+		long eligible = 0;
+		for(feature_partition part : parts){
+			ByteBuffer rids = part.column(feature_partition.COL_R_ID);
+			for(int row=0; row < part.num_rows(); row++){
+				long rid = rids.getLong(row * 8);
+				if(rid >= start_rid && rid <= last_rid_proc)
+					eligible++;
+			} // Scan the R_ID column only
+		} // Over every overlapping partition
+		
+		double prob = ((set_size * 1.0) / (eligible * 1.0));
+		Random rand = new Random();
+		List<feature_set> train_set = new ArrayList<feature_set>();
+		for(feature_partition part : parts){
+			ByteBuffer rids = part.column(feature_partition.COL_R_ID);
+			for(int row=0; row < part.num_rows(); row++){
+				long rid = rids.getLong(row * 8);
+				if(rid >= start_rid && rid <= last_rid_proc && 
+						rand.nextDouble() <= prob)
+					train_set.add(part.row(row));
+			} // Based on probability, build the training set
+		} // Over every overlapping partition
+		return(train_set);
+	}
+	
+	/**
+	 * This method is identical to its longer version. This one, however,
+	 * provides reasonable default values for the missing parameters.
+	 */
+	public static List<feature_set> get_smart_set(feature_archive archive, 
+			stiki_con_server con_server, long last_rid_proc) throws Exception{
+		long DEF_WINDOW = (IP_EDITS_PER_DAY * 14);
+		long DEF_SIZE = 25000;
+		return(get_smart_set(archive, con_server, last_rid_proc, 
+				DEF_WINDOW , DEF_SIZE));
+	}
 		
 }
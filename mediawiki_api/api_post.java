@@ -8,9 +8,6 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.helpers.DefaultHandler;
 
 import core_objects.pair;
@@ -508,10 +505,7 @@ public class api_post{
 	 */
 	private static void do_parse_work(InputStream in, DefaultHandler handler) 
 			throws Exception{
-		SAXParserFactory factory = SAXParserFactory.newInstance();
-		SAXParser parser = factory.newSAXParser();
-		parser.parse(in, handler); // Parse
-		in.close(); // Close up the URL-connection
+		api_xml_parser.parse(in, handler); // Also closes URL-connection
 	}
 
 }
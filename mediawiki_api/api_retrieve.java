@@ -1,5 +1,6 @@
 package mediawiki_api;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
@@ -9,17 +10,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xml.sax.helpers.DefaultHandler;
 
+import core_objects.diff_text;
 import core_objects.metadata;
 import core_objects.pair;
 import core_objects.stiki_utils;
 import db_client.client_interface;
 import db_server.db_geolocation;
+import metrics.edit_trace;
+import metrics.metrics_histogram;
+import metrics.metrics_registry;
+import replay.replay_capture;
 
 /**
  * Andrew G. West - api_retrieve.java - This class takes in a simple
@@ -35,6 +39,8 @@ import db_server.db_geolocation;
  * 			  is less lightweight than the singular version above.
  * 		[x]:  "offender search" -- given a RB-ID, the name of the offender,
  * 			  and the page of offense -- we look for the guilty edit RID.
+ * 		[x]:  "prior [n] from rid" -- get data for the [n] page edits prior
+ * 			  to some RID; used to locate (and describe) the guilty edit.
  * 		[x]:  "user perms" -- given a user name, we check to see if the
  * 			  permissions that user has above the norm
  * 		[x]:  "user first edit ts" -- given a user, we determine the timestamp
@@ -79,6 +85,8 @@ import db_server.db_geolocation;
  *  		  some user. Not this is not RevDelete.
  *  	[xx]: "page cats" -- produce the category memberships of a page.
  *  	[xx]: "size at time" -- size of a page in bytes at some timestamp
+ *  	[xx]: "group members" -- produce all user-names in some user-group
+ *  		  (i.e., "bot"), used to maintain a bot-account list.
  *  
  */
 public class api_retrieve{
@@ -99,6 +107,25 @@ public class api_retrieve{
 	 */
 	public static String BASE_URL_OVERRIDE = null;
 	
+	/**
+	 * Names of the per-call API latency histograms and error counters
+	 * (see [metrics_registry]); labeled by the XML-handler class.
+	 */
+	public static final String API_SECONDS = "stiki_api_seconds";
+	public static final String API_ERRORS = "stiki_api_errors_total";
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Per-call [edit_trace] span name ("api:[handler]") and latency
+	 * histogram, by XML-handler class. Each is computed on the first call
+	 * of its type, so later calls allocate nothing to time themselves.
+	 */
+	private static final ConcurrentHashMap<Class<?>,
+			pair<String,metrics_histogram>> CALL_METRICS =
+			new ConcurrentHashMap<Class<?>,pair<String,metrics_histogram>>();
+	
 	
 	// **************************** PUBLIC METHODS ***************************
 
@@ -249,23 +276,23 @@ public class api_retrieve{
 	/**
 	 * Return the diff-text between and a revision and that previous. 
 	 * @param rid Revision-ID that should be compared against previous edit
-	 * @return HTML-marked up diff text, as a String.
+	 * @return HTML-marked up diff text
 	 */
-	public static String process_diff_prev(long rid) throws Exception{
+	public static diff_text process_diff_prev(long rid) throws Exception{
 		api_xml_diff_text handler = new api_xml_diff_text();
 		do_parse_work(new URL(url_diff_prev(rid)), handler);
-		return(handler.get_result()); // Return result from parser	
+		return(handler.get_diff()); // Return result from parser	
 	}
 	
 	/**
 	 * Return the diff between and an RID and the current one on same page. 
 	 * @param rid Revision-ID that should be compared to "current"
-	 * @return HTML-marked up diff text, as a String.
+	 * @return HTML-marked up diff text
 	 */
-	public static String process_diff_current(long rid) throws Exception{		
+	public static diff_text process_diff_current(long rid) throws Exception{		
 		api_xml_diff_text handler = new api_xml_diff_text();
 		do_parse_work(new URL(url_diff_current(rid)), handler);
-		return(handler.get_result()); // Return result from parser	
+		return(handler.get_diff()); // Return result from parser	
 	}
 	
 	/**
@@ -432,6 +459,22 @@ public class api_retrieve{
 		return(handler.get_result());
 	}
 	
+	/**
+	 * Get metadata for the [n] edits made to an article, prior to some RID
+	 * @param pid Unique ID identifying the article of interest
+	 * @param rid RID (on PID) at which to begin enumerating edits (inclusive)
+	 * @param n Maximum number of prior edits to return
+	 * @param db_geo DB-handler so edit source can be determined
+	 * @return List of up to 'n' metadata objects, from most recent to 
+	 * least recent, beginning at 'rid', from the history of article 'pid'
+	 */
+	public static List<metadata> process_page_prev_meta(long pid, long rid, 
+			int n, db_geolocation db_geo) throws Exception{
+		api_xml_multiple_rids handler = new api_xml_multiple_rids(db_geo);
+		do_parse_work(new URL(url_prev_n_page_meta(pid, rid, n)), handler);
+		return(handler.get_result());
+	}
+	
 	/**
 	 * Get metadata for the last [n] edits made to an article
 	 * @param pid Unique ID which identifies a particular article
@@ -447,6 +490,47 @@ public class api_retrieve{
 		return(handler.get_result());
 	}
 	
+	/**
+	 * In a single request, get what is needed to display the most recent
+	 * edit(s) on a page: the metadata of its last [n] edits (as per
+	 * [process_page_hist_meta()]) and whether it is missing; optionally,
+	 * also an edit token and its hidden categories. Results are left in
+	 * the handlers provided; each parses the combined response as it 
+	 * would its own.
+	 * @param pid Unique ID which identifies a particular article
+	 * @param n Depth-of-search into article history
+	 * @param hist Handler for the page history
+	 * @param missing Handler determining if 'pid' is missing
+	 * @param token Handler for an edit token, or NULL if none is wanted
+	 * @param hidden_cats Handler for hidden categories, or NULL if those 
+	 * are not wanted
+	 */
+	public static void process_page_bundle(long pid, int n, 
+			api_xml_multiple_rids hist, api_xml_page_missing missing, 
+			api_xml_edit_token token, api_xml_page_cats hidden_cats) 
+			throws Exception{
+		do_parse_work(new URL(url_page_bundle(pid, n, token != null, 
+				hidden_cats != null)), new api_xml_multi(
+				hist, missing, token, hidden_cats));
+	}
+	
+	/**
+	 * In a single request, determine which of some pages are missing (as
+	 * per [process_pages_missing()]), and optionally, the permissions and
+	 * edit count of a user. Results are left in the handlers provided.
+	 * @param user User whose permissions/edit-count may be desired
+	 * @param page_list List of pages. List size should be at most 50.
+	 * @param missing Handler determining which of 'page_list' are missing
+	 * @param perm Handler for the permissions of 'user', or NULL
+	 * @param edits Handler for the edit count of 'user', or NULL
+	 */
+	public static void process_user_bundle(String user, Set<String> page_list,
+			api_xml_pages_missing missing, api_xml_user_perm perm, 
+			api_xml_user_edits_ever edits) throws Exception{
+		do_parse_work(new URL(url_user_bundle(user, page_list, perm != null, 
+				edits != null)), new api_xml_multi(missing, perm, edits));
+	}
+	
 	/**
 	 * Given an RID, determine if it is a "badrevid"
 	 * @param rid Revision-ID (RID) of the edit of interest
@@ -681,16 +765,73 @@ public class api_retrieve{
 		return(handler.get_result()); // Return result from parser	
 	}
 	
+	/**
+	 * Given a user-group, produce the user-names of all group members.
+	 * @param group User-group of interest (i.e., "bot" or "sysop")
+	 * @param continue_key This key exists for pagination purposes. If one 
+	 * wishes to start a new query, pass NULL for this value.
+	 * @return Set containing the user-names of all members of 'group'
+	 */
+	public static Set<String> process_group_members(String group, 
+			String continue_key) throws Exception{
+		api_xml_group_members handler = new api_xml_group_members(group);
+		do_parse_work(new URL(url_group_members(
+				group, continue_key)), handler);
+		return(handler.get_result()); // Return result from parser
+	}
+	
 	
 	// *************************** PRIVATE METHODS ***************************
 	
 	/**
 	 * Handle the XML parsing of a document, given a URL and XML-handler.
+	 * Each call is timed into [metrics_registry], by handler class (which
+	 * corresponds to the [process_*()] method making the call).
 	 * @param url URL of the MediaWiki XML that needs to be parsed
 	 * @param dh XML handler for data contained in 'url'
 	 */
 	private static void do_parse_work(URL url,
 			DefaultHandler handler) throws Exception{
+		
+		pair<String,metrics_histogram> call = call_metrics(handler);
+		long start = System.nanoTime();
+		try{fetch_and_parse(url, handler);
+		} catch(Exception e){
+			metrics_registry.counter(API_ERRORS, "call",
+					handler.getClass().getSimpleName()).incrementAndGet();
+			throw e;
+		} finally{
+			call.snd.record_since(start);
+			edit_trace.span(call.fst, start);
+		} // Failures are timed, as well as counted
+	}
+	
+	/**
+	 * Return the span name and latency histogram of a call type,
+	 * registering them on its first call (see [CALL_METRICS]).
+	 * @param handler XML-handler of the call
+	 * @return Pair: the [edit_trace] span name, and latency histogram
+	 */
+	private static pair<String,metrics_histogram> call_metrics(
+			DefaultHandler handler){
+		pair<String,metrics_histogram> call =
+				CALL_METRICS.get(handler.getClass());
+		if(call == null){
+			String name = handler.getClass().getSimpleName();
+			call = new pair<String,metrics_histogram>("api:" + name,
+					metrics_registry.histogram(API_SECONDS, "call", name));
+			CALL_METRICS.putIfAbsent(handler.getClass(), call);
+		} // Racing first calls compute equal values; either may be kept
+		return(call);
+	}
+	
+	/**
+	 * Fetch a document, and have it parsed by an XML-handler.
+	 * @param url URL of the MediaWiki XML that needs to be parsed
+	 * @param dh XML handler for data contained in 'url'
+	 */
+	private static void fetch_and_parse(URL url,
+			DefaultHandler handler) throws Exception{
 	
 			// Get connection, insert cookie header data (if applicable)
 		URLConnection conn = url.openConnection();
@@ -711,11 +852,17 @@ public class api_retrieve{
 		//InputStream in2 = stream_from_url(conn2, api_retrieve.NUM_HTTP_RETRIES);
 		//System.out.println(stiki_utils.capture_stream(in2));
 		
+			// If capturing for later replay, record the body before parsing
+		if(replay_capture.is_active()){
+			byte[] body = replay_capture.read_fully(in);
+			in.close();
+			replay_capture.record_response(url.toExternalForm(), 
+					base_url(), body);
+			in = new ByteArrayInputStream(body);
+		} // Parsing is then from the in-memory copy
+		
 			// Having an InputStream, parse the XML it contains
-		SAXParserFactory factory = SAXParserFactory.newInstance();
-		SAXParser parser = factory.newSAXParser();
-		parser.parse(in, handler); // Parse
-		in.close(); // Close up the URL-connection
+		api_xml_parser.parse(in, handler); // Also closes URL-connection
 	}
 	
 	/**
@@ -1005,6 +1152,53 @@ public class api_retrieve{
 		return(url);
 	}
 	
+	/**
+	 * Produce the URL for [process_page_bundle()]. This is the union of 
+	 * the page history, edit token, and page categories queries.
+	 * @param pid Page-identifier of article of interest
+	 * @param n Number of edits in the past to retrieve (if available)
+	 * @param token Whether an edit token should be requested
+	 * @param hidden_cats Whether hidden categories should be requested
+	 * @return MediaWiki URL to obtain, containing relevant data
+	 */
+	private static String url_page_bundle(long pid, int n, boolean token, 
+			boolean hidden_cats){
+		String url = base_url() + "&prop=revisions|info";
+		if(hidden_cats)
+			url += "|categories&clshow=hidden&cllimit=500";
+		url += "&pageids=" + pid + "&rvlimit=" + n;
+		url += "&rvtoken=rollback";
+		url += "&rvprop=ids|timestamp|user|comment|tags&rvdir=older";
+		if(token)
+			url += "&intoken=edit";
+		url += "&format=xml";
+		url += "&rawcontinue=1"; // Continuation as [api_xml_page_cats] expects
+		return(url);
+	}
+	
+	/**
+	 * Produce the URL for [process_user_bundle()]. This is the union of 
+	 * the pages missing, user permission, and user edit-count queries.
+	 * @param user User whose permissions/edit-count may be desired
+	 * @param page_list List of (possible) page titles. Length 50 at maximum.
+	 * @param perm Whether the permissions of 'user' should be requested
+	 * @param edits Whether the edit count of 'user' should be requested
+	 * @return MediaWiki URL to obtain, containing relevant data
+	 */
+	private static String url_user_bundle(String user, Set<String> page_list,
+			boolean perm, boolean edits) throws Exception{
+		String url = url_pages_missing(page_list);
+		if(perm || edits){
+			url += "&list=users&ususers=" + URLEncoder.encode(user, "UTF-8");
+			if(perm && edits)
+				url += "&usprop=groups|editcount";
+			else if(perm)
+				url += "&usprop=groups";
+			else url += "&usprop=editcount";
+		} // Users list is independent of the titles
+		return(url);
+	}
+	
 	/**
 	 * Prooduce the URL necessary to obtain metadata for the next [n] edits 
 	 * to some particular page, from a particular RID
@@ -1022,6 +1216,23 @@ public class api_retrieve{
 		return(url);		
 	}
 	
+	/**
+	 * Produce the URL necessary to obtain metadata for the [n] edits
+	 * to some particular page, prior to (and including) a particular RID
+	 * @param pid Page-identifier of article of interest
+	 * @param rid RID at which to start backward enumeration (will be included)
+	 * @param n Number of edits in the past to retrieve (if available)
+	 * @return MediaWiki URL to obtain, containing relevant data
+	 */
+	private static String url_prev_n_page_meta(long pid, long rid, int n){
+		String url = base_url() + "&prop=revisions&pageids=" + pid; 
+		url += "&rvlimit=" + n;
+		url += "&rvstartid=" + rid;
+		url += "&rvtoken=rollback"; // Not pertinent, but allows parser re-use 
+		url += "&rvprop=ids|timestamp|user|comment|tags&rvdir=older&format=xml";
+		return(url);		
+	}
+	
 	/**
 	 * Produce the URL necessary to obtain a list of external links on a page.
 	 * @param pid Page-ID whose external links are of interest
@@ -1235,5 +1446,25 @@ public class api_retrieve{
 		url += "&format=xml";
 		return(url);	
 	}
+	
+	/**
+	 * Produce the URL to list the members of some user-group.
+	 * @param group User-group whose members are desired (i.e., "bot")
+	 * @param continue_key This key exists for pagination purposes. If one 
+	 * wishes to start a new query, pass NULL for this value
+	 * @return URL to obtain, containing relevant data.
+	 */
+	private static String url_group_members(String group, 
+			String continue_key) throws Exception{
+		
+		String url = base_url() + "&list=allusers";
+		url += "&augroup=" + URLEncoder.encode(group, "UTF-8");
+		if(continue_key != null)
+			url += "&aufrom=" + URLEncoder.encode(continue_key, "UTF-8");
+		url += "&aulimit=500";
+		url += "&format=xml";
+		url += "&rawcontinue=1"; // 2015-JUL: Needed if continuation
+		return(url);
+	}
 		
 }
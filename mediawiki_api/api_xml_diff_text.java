@@ -4,6 +4,8 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import core_objects.diff_text;
+
 /**
  * Andrew G. West - api_xml_diff_textjava - The SAX-XML parse handler, which
  * outputs the HTML-marked-up DIFF between edit(s).
@@ -17,7 +19,7 @@ public class api_xml_diff_text extends DefaultHandler{
 	 * return objects as we'd like. Instead, we store the result and
 	 * then make an explicit method call to retrieve it.
 	 */
-	private StringBuilder diff_string_result = new StringBuilder();
+	private diff_text diff_result = new diff_text();
 	
 	/**
 	 * All interesting data lies between <diff> and </diff> tags, this
@@ -46,7 +48,7 @@ public class api_xml_diff_text extends DefaultHandler{
 			throws SAXException{
 	
 		if(diff_active) // Only interested in <diff> text
-			diff_string_result.append(String.valueOf(ch, start, length));
+			diff_result.append(ch, start, length);
 	}
 	
 	/**
@@ -64,7 +66,16 @@ public class api_xml_diff_text extends DefaultHandler{
 	 * @return HTML-marked-up diff-text
 	 */
 	public String get_result(){
-		return(diff_string_result.toString());
+		return(diff_result.toString());
+	}
+	
+	/**
+	 * Assuming the XML parse has been completed, this returns the result,
+	 * without it having been copied into a String.
+	 * @return HTML-marked-up diff-text
+	 */
+	public diff_text get_diff(){
+		return(diff_result);
 	}
 	
 }
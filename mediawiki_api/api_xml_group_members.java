@@ -0,0 +1,69 @@
+package mediawiki_api;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Andrew G. West - api_xml_group_members.java - The SAX-XML parse handler,
+ * which for a provided user-group (i.e., "bot"), produces the user-names
+ * of all accounts that are a member of that group, in set form.
+ */
+public class api_xml_group_members extends DefaultHandler{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * User-group whose members are desired.
+	 */
+	private String group;
+	
+	/**
+	 * Set containing the user-names of all members of 'group'. Where
+	 * pagination is required, this is built recursively.
+	 */
+	private Set<String> members;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [api_xml_group_members] object.
+	 * @param group User-group whose members are desired
+	 */
+	public api_xml_group_members(String group){
+		this.group = group;
+		this.members = new HashSet<String>();
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Called whenever an opening tag is encountered.
+	 */
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException{
+		
+		if(qName.equals("u"))
+			members.add(attributes.getValue("name"));
+		else if(qName.equals("allusers") &&
+				attributes.getValue("aufrom") != null){
+			try{ members.addAll(api_retrieve.process_group_members(
+					this.group, attributes.getValue("aufrom")));
+			} catch(Exception e){e.printStackTrace();}
+		} // Latter is the recursive (continuation) case
+	}
+	
+	/**
+	 * Assuming the XML parse has been completed, this returns the result.
+	 * @return Set containing the user-names of all members of 'group'
+	 */
+	public Set<String> get_result(){
+		return(members);
+	}
+
+}
@@ -0,0 +1,72 @@
+package mediawiki_api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Andrew G. West - api_xml_multi.java - A SAX-XML parse handler which
+ * passes every event to several other handlers. When one API request is
+ * made to answer several questions at once (i.e., "prop=a|b|c"), the
+ * handlers written for each single question can then parse the combined
+ * response, each picking out the elements it has always looked for.
+ */
+public class api_xml_multi extends DefaultHandler{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Handlers to which events are passed, in order.
+	 */
+	private List<DefaultHandler> handlers;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [api_xml_multi] object.
+	 * @param handlers Handlers to which events should be passed. NULL
+	 * entries are permitted, and skipped.
+	 */
+	public api_xml_multi(DefaultHandler... handlers){
+		this.handlers = new ArrayList<DefaultHandler>(handlers.length);
+		for(int i=0; i < handlers.length; i++){
+			if(handlers[i] != null)
+				this.handlers.add(handlers[i]);
+		} // Null entries (i.e., optional parts not requested) are skipped
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Called whenever an opening tag is encountered.
+	 */
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException{
+		for(int i=0; i < handlers.size(); i++)
+			handlers.get(i).startElement(uri, localName, qName, attributes);
+	}
+	
+	/**
+	 * Overriding: Called whenever a closing tag is encountered.
+	 */
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException{
+		for(int i=0; i < handlers.size(); i++)
+			handlers.get(i).endElement(uri, localName, qName);
+	}
+	
+	/**
+	 * Overriding: Called upon encountering character data.
+	 */
+	public void characters(char[] ch, int start, int length)
+			throws SAXException{
+		for(int i=0; i < handlers.size(); i++)
+			handlers.get(i).characters(ch, start, length);
+	}
+
+}
@@ -36,7 +36,8 @@ public class api_xml_page_cats extends DefaultHandler{
 	
 	/**
 	 * Construct a [api_xml_page_cats] object.
-	 * @param page Page whose memberships are desired
+	 * @param page Page whose memberships are desired. If NULL, this is
+	 * taken from the response (i.e., when part of a combined request).
 	 * @param hidden Whether we are looking at "hidden" or "visible" 
 	 * categories, note that these options are mutually exclusive.
 	 */
@@ -57,6 +58,8 @@ public class api_xml_page_cats extends DefaultHandler{
 		
 		if(qName.equals("cl")){
 			memberships.add(attributes.getValue("title"));
+		} else if(qName.equals("page") && page == null){
+			page = attributes.getValue("title");
 		} else if(qName.equals("categories") && 
 				attributes.getValue("clcontinue") != null){
 			try{memberships.addAll(api_retrieve.process_page_cats(
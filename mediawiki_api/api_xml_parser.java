@@ -0,0 +1,255 @@
+package mediawiki_api;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Andrew G. West - api_xml_parser.java - Runs the SAX parse of every API
+ * response (for [api_retrieve] and [api_post]). Historically, a parser
+ * factory and parser were built for every call; they can instead be built
+ * once per thread and reset between documents. Which is done is
+ * selectable per call type (the XML-handler class) at runtime, so the
+ * faster may be chosen given measurement ([xml_parse_benchmark]). A third
+ * mode pulls the document through StAX (javax.xml.stream, part of Java 6
+ * like the rest of the tree) and drives the same handlers, so that no
+ * handler need be rewritten to compare it. JSON responses (format=json)
+ * are not offered: the tree ships no JSON library, and every handler
+ * would need a second implementation.
+ *
+ * The default mode may be set by the system property "stiki.xml_parse"
+ * ("FRESH", "REUSED", or "STAX"; default REUSED). Per-call modes may be
+ * loaded from a file named by the property "stiki.xml_parse_modes", with
+ * lines of the form "[handler_class] [mode]".
+ */
+public class api_xml_parser{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Ways in which a parser can be obtained. FRESH creates a new factory
+	 * and parser for each document. REUSED keeps one parser per thread.
+	 * STAX pulls events from a StAX reader and feeds them to the handler.
+	 */
+	public enum PARSE_MODE{FRESH, REUSED, STAX};
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Mode used for call types with no specific setting.
+	 */
+	private static volatile PARSE_MODE default_mode = PARSE_MODE.valueOf(
+			System.getProperty("stiki.xml_parse", "REUSED"));
+	
+	/**
+	 * Per-call type settings, keyed by XML-handler class (simple) name.
+	 */
+	private static Map<String,PARSE_MODE> call_modes =
+			new ConcurrentHashMap<String,PARSE_MODE>();
+	
+	/**
+	 * Factory shared by all reused parsers (only parser creation, which
+	 * is synchronized here, touches it).
+	 */
+	private static final SAXParserFactory FACTORY =
+			SAXParserFactory.newInstance();
+	
+	/**
+	 * Factory for StAX readers, for the STAX mode. Once configured, the
+	 * factory is thread-safe for reader creation. As with the SAX parsers,
+	 * names are not namespace-resolved (handlers match on qualified names)
+	 * and no DTD is ever fetched.
+	 */
+	private static final XMLInputFactory STAX_FACTORY = new_stax_factory();
+	
+	/**
+	 * Per-thread parser, for the REUSED mode. SAX parsers are not
+	 * thread-safe, but may be reset and reused by the same thread.
+	 */
+	private static ThreadLocal<SAXParser> thread_parser =
+			new ThreadLocal<SAXParser>();
+	
+	static{
+		String modes_file = System.getProperty("stiki.xml_parse_modes");
+		if(modes_file != null)
+			load_modes(modes_file);
+	} // Per-call modes, if configured
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Parse an XML document, in the mode set for the handler's call type.
+	 * The stream is closed on completion.
+	 * @param in InputStream operating over XML content
+	 * @param handler XML handler designed for data from 'in'
+	 */
+	public static void parse(InputStream in, DefaultHandler handler)
+			throws Exception{
+		parse(in, handler, get_mode(handler.getClass().getSimpleName()));
+	}
+	
+	/**
+	 * Parse an XML document in a specific mode. The stream is closed on
+	 * completion.
+	 * @param in InputStream operating over XML content
+	 * @param handler XML handler designed for data from 'in'
+	 * @param mode Manner in which the parser should be obtained
+	 */
+	public static void parse(InputStream in, DefaultHandler handler,
+			PARSE_MODE mode) throws Exception{
+		
+		try{if(mode == PARSE_MODE.FRESH){
+				SAXParserFactory factory = SAXParserFactory.newInstance();
+				factory.newSAXParser().parse(in, handler);
+				return;
+			} else if(mode == PARSE_MODE.STAX){
+				parse_stax(in, handler);
+				return;
+			} // Historical behavior, or the pull parser
+			
+			SAXParser parser = thread_parser.get();
+			if(parser == null)
+				parser = new_parser();
+			thread_parser.set(null); // Held only while not in use
+			parser.parse(in, handler);
+			parser.reset();
+			thread_parser.set(parser);
+		} finally{
+			in.close();
+		} // A parser that failed mid-document is discarded, not reused
+	}
+	
+	/**
+	 * Return the mode in which a call type's responses are parsed.
+	 * @param call XML-handler class (simple) name
+	 * @return the mode in which a call type's responses are parsed
+	 */
+	public static PARSE_MODE get_mode(String call){
+		PARSE_MODE mode = call_modes.get(call);
+		if(mode == null)
+			return(default_mode);
+		return(mode);
+	}
+	
+	/**
+	 * Set the mode in which a call type's responses are parsed.
+	 * @param call XML-handler class (simple) name; NULL sets the default
+	 * @param mode Mode to be used for 'call'
+	 */
+	public static void set_mode(String call, PARSE_MODE mode){
+		if(call == null)
+			default_mode = mode;
+		else call_modes.put(call, mode);
+	}
+	
+	/**
+	 * Load per-call modes from a file (as by [xml_parse_benchmark]). Errors
+	 * are reported, but leave the default mode in effect.
+	 * @param path File with lines of the form "[handler_class] [mode]"
+	 */
+	public static void load_modes(String path){
+		try{BufferedReader in = new BufferedReader(new FileReader(path));
+			String line = in.readLine();
+			while(line != null){
+				String[] parts = line.trim().split("\\s+");
+				if(parts.length == 2)
+					set_mode(parts[0], PARSE_MODE.valueOf(parts[1]));
+				line = in.readLine();
+			} // Blank or malformed lines are skipped
+			in.close();
+		} catch(Exception e){
+			System.out.println("Error: Unable to load XML parse modes: " +
+					path);
+			e.printStackTrace();
+		} // Misconfiguration must not prevent start-up
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Create a parser from the shared factory.
+	 * @return A new SAX parser
+	 */
+	private static synchronized SAXParser new_parser() throws Exception{
+		return(FACTORY.newSAXParser());
+	}
+	
+	/**
+	 * Create and configure the factory for StAX readers.
+	 * @return A StAX input factory, as described at [STAX_FACTORY]
+	 */
+	private static XMLInputFactory new_stax_factory(){
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		return(factory);
+	}
+	
+	/**
+	 * Parse an XML document by pulling its events through a StAX reader,
+	 * reporting each to a SAX handler as a SAX parser would have.
+	 * @param in InputStream operating over XML content
+	 * @param handler XML handler designed for data from 'in'
+	 */
+	private static void parse_stax(InputStream in, DefaultHandler handler)
+			throws Exception{
+		
+		XMLStreamReader reader = STAX_FACTORY.createXMLStreamReader(in);
+		try{handler.startDocument();
+			while(reader.hasNext()){
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT){
+					AttributesImpl attrs = new AttributesImpl();
+					for(int i=0; i < reader.getAttributeCount(); i++){
+						String name = qualified(reader.getAttributePrefix(i),
+								reader.getAttributeLocalName(i));
+						attrs.addAttribute("", name, name, "CDATA",
+								reader.getAttributeValue(i));
+					} // Attributes addressed by qualified name, as in SAX
+					String name = qualified(reader.getPrefix(),
+							reader.getLocalName());
+					handler.startElement("", name, name, attrs);
+				} else if(event == XMLStreamConstants.END_ELEMENT){
+					String name = qualified(reader.getPrefix(),
+							reader.getLocalName());
+					handler.endElement("", name, name);
+				} else if(event == XMLStreamConstants.CHARACTERS ||
+						event == XMLStreamConstants.CDATA ||
+						event == XMLStreamConstants.SPACE){
+					handler.characters(reader.getTextCharacters(),
+							reader.getTextStart(), reader.getTextLength());
+				} // Comments and processing instructions are not reported
+			} // Handlers may see text in several chunks, as with SAX
+			handler.endDocument();
+		} finally{
+			reader.close(); // Does not close the underlying stream
+		}
+	}
+	
+	/**
+	 * Join a prefix and local name as they appear in the document.
+	 * @param prefix Namespace prefix, possibly NULL or empty
+	 * @param local Local part of the name
+	 * @return The name as written, "prefix:local" or just "local"
+	 */
+	private static String qualified(String prefix, String local){
+		if(prefix == null || prefix.isEmpty())
+			return(local);
+		return(prefix + ":" + local);
+	}
+
+}
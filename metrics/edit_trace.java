@@ -0,0 +1,236 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Andrew G. West - edit_trace.java - A per-RID processing trace: the timing
+ * of each stage and sub-call (API fetch, DB statement) made while one edit
+ * was processed. Traces live in a ring buffer of [RING_SIZE] objects which
+ * are allocated once and re-used, so recording a span allocates nothing.
+ *
+ * A worker thread calls [begin()] before processing an edit and [end()]
+ * after. In between, any instrumented code on that thread may call [span()],
+ * which is a no-op when the thread has no active trace (i.e., front-end use
+ * of [api_retrieve]). Edits whose total time exceeds [SLOW_THRESHOLD] have
+ * their trace written in full to [trace_log].
+ */
+public class edit_trace{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Number of traces held by the ring buffer.
+	 */
+	public static final int RING_SIZE = 1024;
+	
+	/**
+	 * Maximum number of spans recorded per trace. Further spans are dropped
+	 * (but counted), so that each trace has a fixed footprint.
+	 */
+	public static final int MAX_SPANS = 64;
+	
+	/**
+	 * Edits whose processing takes longer than this (msecs) are logged.
+	 */
+	public static final long SLOW_THRESHOLD = 5000;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * The ring buffer of (re-used) traces.
+	 */
+	private static final edit_trace[] RING = new edit_trace[RING_SIZE];
+	static{
+		for(int i=0; i < RING_SIZE; i++)
+			RING[i] = new edit_trace();
+	} // Allocated once, at class-load
+	
+	/**
+	 * Sequence number of the most recently begun trace.
+	 */
+	private static AtomicLong next_seq = new AtomicLong(0);
+	
+	/**
+	 * Sequence number of the trace (if any) active on each thread. The
+	 * trace itself is found in the ring at the corresponding index.
+	 */
+	private static ThreadLocal<Long> active = new ThreadLocal<Long>();
+	
+	/**
+	 * Log to which slow traces are written.
+	 */
+	private static trace_log slow_log = new trace_log();
+	
+	/**
+	 * Sequence number of the edit this trace currently describes. Checked
+	 * on each write, in case the ring has wrapped onto an in-use trace.
+	 */
+	private long seq;
+	
+	/**
+	 * RID of the edit this trace describes.
+	 */
+	private long rid;
+	
+	/**
+	 * Wall-clock (UNIX, msecs) and monotonic (nanos) starts of the trace.
+	 */
+	private long start_millis;
+	private long start_nanos;
+	
+	/**
+	 * Total duration of the trace (usecs), or -1 if still in progress.
+	 */
+	private long total_usecs;
+	
+	/**
+	 * The spans: name, offset from trace start (usecs), and duration (usecs).
+	 */
+	private String[] span_names = new String[MAX_SPANS];
+	private long[] span_offsets = new long[MAX_SPANS];
+	private long[] span_usecs = new long[MAX_SPANS];
+	
+	/**
+	 * Number of spans recorded, and number dropped for lack of space.
+	 */
+	private int num_spans;
+	private int num_dropped;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Begin a trace for an edit, on the calling thread.
+	 * @param rid RID of the edit being processed
+	 */
+	public static void begin(long rid){
+		long seq = next_seq.incrementAndGet();
+		RING[(int) (seq % RING_SIZE)].reset(seq, rid);
+		active.set(seq);
+	}
+	
+	/**
+	 * Record a span on the calling thread's trace (if one is active).
+	 * @param name Name of the stage or sub-call
+	 * @param start_nanos Value of [System.nanoTime()] when it began
+	 */
+	public static void span(String name, long start_nanos){
+		Long seq = active.get();
+		if(seq != null){
+			RING[(int) (seq % RING_SIZE)].add_span(seq, name, 
+					start_nanos, System.nanoTime());
+		} // No active trace, no work
+	}
+	
+	/**
+	 * End the calling thread's trace, logging it if it was slow.
+	 */
+	public static void end(){
+		Long seq = active.get();
+		if(seq == null)
+			return;
+		active.remove();
+		String slow = RING[(int) (seq % RING_SIZE)].finish(seq);
+		if(slow != null)
+			slow_log.write(slow);
+	}
+	
+	/**
+	 * Render all completed traces in the ring buffer (oldest first), in
+	 * the same form used by the slow-edit log.
+	 * @return Text rendering of all completed traces held in memory
+	 */
+	public static String dump_ring(){
+		StringBuilder sb = new StringBuilder();
+		long newest = next_seq.get();
+		for(long s=Math.max(1, newest - RING_SIZE + 1); s <= newest; s++){
+			String rendered = RING[(int) (s % RING_SIZE)].render_if(s);
+			if(rendered != null)
+				sb.append(rendered);
+		} // Traces still in progress (or over-written) are skipped
+		return(sb.toString());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Re-initialize this trace for a new edit.
+	 * @param seq Sequence number of the new trace
+	 * @param rid RID of the edit being processed
+	 */
+	private synchronized void reset(long seq, long rid){
+		this.seq = seq;
+		this.rid = rid;
+		this.start_millis = System.currentTimeMillis();
+		this.start_nanos = System.nanoTime();
+		this.total_usecs = -1;
+		this.num_spans = 0;
+		this.num_dropped = 0;
+	}
+	
+	/**
+	 * Add a span to this trace.
+	 * @param expected_seq Sequence number of the trace the caller began
+	 * @param name Name of the stage or sub-call
+	 * @param beg_nanos Value of [System.nanoTime()] when it began
+	 * @param end_nanos Value of [System.nanoTime()] when it ended
+	 */
+	private synchronized void add_span(long expected_seq, String name, 
+			long beg_nanos, long end_nanos){
+		if(seq != expected_seq || total_usecs != -1)
+			return; // Trace finished, or ring wrapped onto it
+		if(num_spans == MAX_SPANS){
+			num_dropped++;
+			return;
+		} // Trace is full
+		span_names[num_spans] = name;
+		span_offsets[num_spans] = (beg_nanos - start_nanos) / 1000;
+		span_usecs[num_spans] = (end_nanos - beg_nanos) / 1000;
+		num_spans++;
+	}
+	
+	/**
+	 * Complete this trace.
+	 * @param expected_seq Sequence number of the trace the caller began
+	 * @return Rendering of this trace if it exceeded [SLOW_THRESHOLD],
+	 * otherwise NULL (also if the trace was re-used by another edit)
+	 */
+	private synchronized String finish(long expected_seq){
+		if(seq != expected_seq)
+			return(null);
+		this.total_usecs = (System.nanoTime() - start_nanos) / 1000;
+		if(total_usecs < SLOW_THRESHOLD * 1000)
+			return(null);
+		return(render());
+	}
+	
+	/**
+	 * Render this trace, provided it is complete and still describes
+	 * the trace with some sequence number.
+	 * @param expected_seq Sequence number the caller expects
+	 * @return Rendering of this trace, or NULL if in progress or re-used
+	 */
+	private synchronized String render_if(long expected_seq){
+		if(seq != expected_seq || total_usecs == -1)
+			return(null);
+		return(render());
+	}
+	
+	/**
+	 * Render this trace as text; see [trace_log] for the format.
+	 * @return Text rendering of this trace
+	 */
+	private String render(){
+		StringBuilder sb = new StringBuilder();
+		sb.append("TRACE " + start_millis + " " + rid + " " + total_usecs +
+				" " + num_dropped + "\n");
+		for(int i=0; i < num_spans; i++){
+			sb.append("SPAN " + span_names[i] + " " + span_offsets[i] +
+					" " + span_usecs[i] + "\n");
+		} // One line per span
+		return(sb.toString());
+	}
+
+}
@@ -0,0 +1,150 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Andrew G. West - metrics_histogram.java - A lock-free latency histogram
+ * in the style of HDR-histograms. Values (microseconds) are placed into
+ * log-linear buckets: each power-of-two range is split into [SUB_BUCKETS]
+ * equal-width buckets, so any recorded value is known to within ~6%. All
+ * counters are atomic, so recording never blocks; a reader may see a
+ * histogram that is mid-update, which is of no consequence for monitoring.
+ */
+public class metrics_histogram{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Number of bits of sub-bucket resolution (per power-of-two).
+	 */
+	private static final int SUB_BITS = 4;
+	
+	/**
+	 * Number of buckets per power-of-two range.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	/**
+	 * Largest power-of-two tracked exactly; 2^36 usecs is ~19 hours, and
+	 * values beyond are counted in the final bucket.
+	 */
+	private static final int MAX_EXP = 36;
+	
+	/**
+	 * Total number of buckets. Values below [SUB_BUCKETS] map directly
+	 * onto a bucket; thereafter there are [SUB_BUCKETS] per exponent.
+	 */
+	private static final int NUM_BUCKETS =
+			SUB_BUCKETS + (MAX_EXP - SUB_BITS + 1) * SUB_BUCKETS;
+	
+	/**
+	 * Per-bucket counts of recorded values.
+	 */
+	private AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	
+	/**
+	 * Number of values recorded, and their sum (in microseconds).
+	 */
+	private AtomicLong num_values = new AtomicLong(0);
+	private AtomicLong sum_usecs = new AtomicLong(0);
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Record a value into this histogram.
+	 * @param usecs Value (duration, in microseconds) to be recorded
+	 */
+	public void record(long usecs){
+		if(usecs < 0)
+			usecs = 0;
+		counts.incrementAndGet(bucket(usecs));
+		num_values.incrementAndGet();
+		sum_usecs.addAndGet(usecs);
+	}
+	
+	/**
+	 * Record the time elapsed since some instant.
+	 * @param start_nanos Value of [System.nanoTime()] at start of timing
+	 */
+	public void record_since(long start_nanos){
+		record((System.nanoTime() - start_nanos) / 1000);
+	}
+	
+	/**
+	 * Return the number of values recorded.
+	 * @return the number of values recorded
+	 */
+	public long count(){
+		return(num_values.get());
+	}
+	
+	/**
+	 * Return the sum of all values recorded (microseconds).
+	 * @return the sum of all values recorded (microseconds)
+	 */
+	public long sum_usecs(){
+		return(sum_usecs.get());
+	}
+	
+	/**
+	 * Estimate a quantile over all values recorded.
+	 * @param q Quantile of interest, in [0,1]
+	 * @return Upper bound (microseconds) of the bucket in which the 'q'-th
+	 * quantile falls, or zero if no values have been recorded
+	 */
+	public long quantile_usecs(double q){
+		long[] snapshot = new long[NUM_BUCKETS];
+		long total = 0;
+		for(int i=0; i < NUM_BUCKETS; i++){
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		} // Totals from the snapshot, so they are self-consistent
+		if(total == 0)
+			return(0);
+		
+		long target = (long) Math.ceil(q * total);
+		if(target < 1)
+			target = 1;
+		long seen = 0;
+		for(int i=0; i < NUM_BUCKETS; i++){
+			seen += snapshot[i];
+			if(seen >= target)
+				return(bucket_upper(i));
+		} // Walk cumulative counts to the target rank
+		return(bucket_upper(NUM_BUCKETS - 1));
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Map a value onto its bucket index.
+	 * @param usecs Value being recorded (non-negative)
+	 * @return Index of the bucket covering 'usecs'
+	 */
+	private static int bucket(long usecs){
+		if(usecs < SUB_BUCKETS)
+			return((int) usecs);
+		int exp = 63 - Long.numberOfLeadingZeros(usecs);
+		if(exp > MAX_EXP)
+			return(NUM_BUCKETS - 1);
+		int sub = (int) (usecs >>> (exp - SUB_BITS)) - SUB_BUCKETS;
+		return(SUB_BUCKETS + (exp - SUB_BITS) * SUB_BUCKETS + sub);
+	}
+	
+	/**
+	 * Determine the largest value which maps onto a bucket.
+	 * @param index Bucket index
+	 * @return Largest value (microseconds) covered by bucket 'index'
+	 */
+	private static long bucket_upper(int index){
+		if(index < SUB_BUCKETS)
+			return(index);
+		int exp = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+		int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return(((long) (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1);
+	}
+
+}
@@ -0,0 +1,123 @@
+package metrics;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Andrew G. West - metrics_http_server.java - A minimal HTTP server which
+ * answers every request with the [metrics_registry] text exposition; this
+ * is all a Prometheus-style scraper requires. The one exception is the path
+ * [TRACES_PATH], answered with the processing traces of recent edits (see
+ * [edit_trace.dump_ring()]). It binds only to the loopback interface, and
+ * serves one request at a time in its own (daemon) thread.
+ */
+public class metrics_http_server implements Runnable{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Path at which the traces of recent edits are served.
+	 */
+	public static final String TRACES_PATH = "/traces";
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Milliseconds a client may take to send its request.
+	 */
+	private static final int READ_TIMEOUT = 2000;
+	
+	/**
+	 * Socket on which scrape requests are accepted.
+	 */
+	private ServerSocket server_sock;
+	
+	/**
+	 * Set when [shutdown()] is called, so the accept loop exits quietly.
+	 */
+	private volatile boolean stopped = false;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [metrics_http_server], binding to a local port, and
+	 * beginning to serve in a new thread.
+	 * @param port Port (on 127.0.0.1) at which metrics should be served
+	 */
+	public metrics_http_server(int port) throws Exception{
+		this.server_sock = new ServerSocket(port, 8,
+				InetAddress.getByName("127.0.0.1"));
+		Thread thread = new Thread(this, "metrics_http_server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Accept and answer requests until shutdown.
+	 */
+	public void run(){
+		while(!stopped){
+			try{Socket client = server_sock.accept();
+				try{serve(client);
+				} finally{client.close();}
+			} catch(Exception e){
+				if(!stopped){
+					System.out.println("Metrics endpoint request failed:");
+					e.printStackTrace();
+				} // Closing the socket at shutdown also lands here
+			} // A failed request should not stop the server
+		}
+	}
+	
+	/**
+	 * Stop serving, and release the port.
+	 */
+	public void shutdown() throws Exception{
+		stopped = true;
+		server_sock.close();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Answer a single request with the current metrics (or traces).
+	 * @param client Socket of the connecting client
+	 */
+	private void serve(Socket client) throws Exception{
+	
+			// Only the path is of interest (all others are answered
+			// identically), but read headers so the client sees a response
+		client.setSoTimeout(READ_TIMEOUT);
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				client.getInputStream(), "US-ASCII"));
+		String line = in.readLine();
+		boolean traces = (line != null && 
+				line.startsWith("GET " + TRACES_PATH + " "));
+		while(line != null && !line.equals(""))
+			line = in.readLine();
+		
+		String text;
+		if(traces)
+			text = edit_trace.dump_ring();
+		else text = metrics_registry.text_exposition();
+		byte[] body = text.getBytes("UTF-8");
+		String header = "HTTP/1.0 200 OK\r\n";
+		header += "Content-Type: text/plain; version=0.0.4\r\n";
+		header += "Content-Length: " + body.length + "\r\n\r\n";
+		OutputStream out = client.getOutputStream();
+		out.write(header.getBytes("US-ASCII"));
+		out.write(body);
+		out.flush();
+	}
+
+}
@@ -0,0 +1,245 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Andrew G. West - metrics_registry.java - Process-wide registry of
+ * counters, gauges, and latency histograms. Instrumented code obtains a
+ * metric once (ideally into a static field) and updates it lock-free
+ * thereafter.
+ * The registry can be rendered in the Prometheus text exposition format,
+ * which is how [metrics_http_server] serves it.
+ *
+ * Metrics are named in Prometheus style: a base name, plus at most one
+ * label (i.e., stiki_api_seconds{call="api_xml_basic_rid"}). Histograms
+ * are exposed as summaries, with durations converted to seconds.
+ */
+public class metrics_registry{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Quantiles reported for each histogram.
+	 */
+	public static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * All counters, keyed by full name (base name and label).
+	 */
+	private static ConcurrentHashMap<String,AtomicLong> counters =
+			new ConcurrentHashMap<String,AtomicLong>();
+	
+	/**
+	 * All gauges (values which may go down, as well as up), by full name.
+	 */
+	private static ConcurrentHashMap<String,AtomicLong> gauges =
+			new ConcurrentHashMap<String,AtomicLong>();
+	
+	/**
+	 * All histograms, keyed by full name (base name and label).
+	 */
+	private static ConcurrentHashMap<String,metrics_histogram> histograms =
+			new ConcurrentHashMap<String,metrics_histogram>();
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Obtain (creating if needed) a counter, with no label.
+	 * @param name Base name of the counter
+	 * @return Counter registered under 'name'
+	 */
+	public static AtomicLong counter(String name){
+		return(counter_by_key(name));
+	}
+	
+	/**
+	 * Obtain (creating if needed) a labeled counter.
+	 * @param name Base name of the counter
+	 * @param label Label name
+	 * @param value Label value
+	 * @return Counter registered under 'name' with 'label'='value'
+	 */
+	public static AtomicLong counter(String name, String label, String value){
+		return(counter_by_key(key(name, label, value)));
+	}
+	
+	/**
+	 * Obtain (creating if needed) a gauge, with no label.
+	 * @param name Base name of the gauge
+	 * @return Gauge registered under 'name'
+	 */
+	public static AtomicLong gauge(String name){
+		AtomicLong gauge = gauges.get(name);
+		if(gauge == null){
+			gauges.putIfAbsent(name, new AtomicLong(0));
+			gauge = gauges.get(name);
+		} // Racing creators will all receive the same object
+		return(gauge);
+	}
+	
+	/**
+	 * Obtain (creating if needed) a latency histogram, with no label.
+	 * @param name Base name of the histogram
+	 * @return Histogram registered under 'name'
+	 */
+	public static metrics_histogram histogram(String name){
+		return(histogram_by_key(name));
+	}
+	
+	/**
+	 * Obtain (creating if needed) a labeled latency histogram.
+	 * @param name Base name of the histogram
+	 * @param label Label name
+	 * @param value Label value
+	 * @return Histogram registered under 'name' with 'label'='value'
+	 */
+	public static metrics_histogram histogram(String name, String label,
+			String value){
+		return(histogram_by_key(key(name, label, value)));
+	}
+	
+	/**
+	 * Sum all counters sharing a base name (i.e., across all labels).
+	 * @param name Base name of the counters
+	 * @return Sum of all counters whose base name is 'name'
+	 */
+	public static long counter_total(String name){
+		long total = 0;
+		for(Map.Entry<String,AtomicLong> entry : counters.entrySet()){
+			if(base_name(entry.getKey()).equals(name))
+				total += entry.getValue().get();
+		} // Un-labeled and labeled counters alike
+		return(total);
+	}
+	
+	/**
+	 * Render all registered metrics in the Prometheus text format.
+	 * @return Text exposition of all metrics, one sample per line
+	 */
+	public static String text_exposition(){
+		StringBuilder sb = new StringBuilder();
+		String last_base = null;
+		
+		TreeMap<String,AtomicLong> sorted_c =
+				new TreeMap<String,AtomicLong>(counters);
+		for(Map.Entry<String,AtomicLong> entry : sorted_c.entrySet()){
+			String base = base_name(entry.getKey());
+			if(!base.equals(last_base))
+				sb.append("# TYPE " + base + " counter\n");
+			last_base = base;
+			sb.append(entry.getKey() + " " + entry.getValue().get() + "\n");
+		} // Counters are a single sample each
+		
+		TreeMap<String,AtomicLong> sorted_g =
+				new TreeMap<String,AtomicLong>(gauges);
+		for(Map.Entry<String,AtomicLong> entry : sorted_g.entrySet()){
+			sb.append("# TYPE " + entry.getKey() + " gauge\n");
+			sb.append(entry.getKey() + " " + entry.getValue().get() + "\n");
+		} // As are gauges (which are never labeled)
+		last_base = null;
+		
+		TreeMap<String,metrics_histogram> sorted_h =
+				new TreeMap<String,metrics_histogram>(histograms);
+		for(Map.Entry<String,metrics_histogram> entry : sorted_h.entrySet()){
+			String base = base_name(entry.getKey());
+			String labels = labels(entry.getKey());
+			metrics_histogram hist = entry.getValue();
+			if(!base.equals(last_base))
+				sb.append("# TYPE " + base + " summary\n");
+			last_base = base;
+			for(int i=0; i < QUANTILES.length; i++){
+				sb.append(base + "{" + labels + (labels.equals("") ? "" : ","));
+				sb.append("quantile=\"" + QUANTILES[i] + "\"} ");
+				sb.append(seconds(hist.quantile_usecs(QUANTILES[i])) + "\n");
+			} // One sample per quantile
+			String suffix = labels.equals("") ? "" : "{" + labels + "}";
+			sb.append(base + "_sum" + suffix + " " +
+					seconds(hist.sum_usecs()) + "\n");
+			sb.append(base + "_count" + suffix + " " + hist.count() + "\n");
+		} // Histograms are exposed as summaries
+		return(sb.toString());
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Build the full name of a labeled metric.
+	 * @param name Base name of the metric
+	 * @param label Label name
+	 * @param value Label value
+	 * @return Full metric name, i.e., name{label="value"}
+	 */
+	private static String key(String name, String label, String value){
+		return(name + "{" + label + "=\"" + value + "\"}");
+	}
+	
+	/**
+	 * Obtain (creating if needed) the counter with some full name.
+	 * @param key Full name of the counter
+	 * @return Counter registered under 'key'
+	 */
+	private static AtomicLong counter_by_key(String key){
+		AtomicLong counter = counters.get(key);
+		if(counter == null){
+			counters.putIfAbsent(key, new AtomicLong(0));
+			counter = counters.get(key);
+		} // Racing creators will all receive the same object
+		return(counter);
+	}
+	
+	/**
+	 * Obtain (creating if needed) the histogram with some full name.
+	 * @param key Full name of the histogram
+	 * @return Histogram registered under 'key'
+	 */
+	private static metrics_histogram histogram_by_key(String key){
+		metrics_histogram hist = histograms.get(key);
+		if(hist == null){
+			histograms.putIfAbsent(key, new metrics_histogram());
+			hist = histograms.get(key);
+		} // Racing creators will all receive the same object
+		return(hist);
+	}
+	
+	/**
+	 * Strip the label (if any) from a full metric name.
+	 * @param key Full metric name
+	 * @return Base name of 'key'
+	 */
+	private static String base_name(String key){
+		int brace = key.indexOf('{');
+		if(brace == -1)
+			return(key);
+		return(key.substring(0, brace));
+	}
+	
+	/**
+	 * Extract the label portion (sans braces) of a full metric name.
+	 * @param key Full metric name
+	 * @return Label portion of 'key', or the empty string if none
+	 */
+	private static String labels(String key){
+		int brace = key.indexOf('{');
+		if(brace == -1)
+			return("");
+		return(key.substring(brace + 1, key.length() - 1));
+	}
+	
+	/**
+	 * Convert microseconds to seconds.
+	 * @param usecs Duration in microseconds
+	 * @return 'usecs' expressed in seconds
+	 */
+	private static double seconds(long usecs){
+		return(usecs / 1000000.0);
+	}
+
+}
@@ -0,0 +1,104 @@
+package metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Andrew G. West - trace_log.java - Rotating log-file to which slow edit
+ * traces are written. When the current file exceeds [MAX_BYTES], it is
+ * renamed with suffix ".1" (existing ".1" to ".2", etc.), and the oldest
+ * beyond [NUM_FILES] is discarded. The format is line-oriented:
+ *
+ * 		TRACE [unix_ms] [rid] [total_usecs] [spans_dropped]
+ * 		SPAN [name] [offset_usecs] [duration_usecs]
+ *
+ * Each TRACE line is followed by the SPAN lines that belong to it. The
+ * utility [utilities.trace_summary] summarizes files in this format.
+ */
+public class trace_log{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Path of the current log-file; rotated files append ".1", ".2", etc.
+	 */
+	public static final String LOG_PATH = "slow_edits.log";
+	
+	/**
+	 * Size (bytes) beyond which the current log-file is rotated.
+	 */
+	public static final long MAX_BYTES = 10 * 1024 * 1024;
+	
+	/**
+	 * Number of rotated files retained (beyond the current one).
+	 */
+	public static final int NUM_FILES = 5;
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Writer over the current log-file, opened lazily.
+	 */
+	private Writer out = null;
+	
+	/**
+	 * Bytes written to the current log-file.
+	 */
+	private long bytes_written = 0;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Append a (rendered) trace to the log, rotating if needed. Failures
+	 * are reported, but never thrown to the (processing) caller.
+	 * @param trace Trace, as rendered by [edit_trace]
+	 */
+	public synchronized void write(String trace){
+		try{if(out == null)
+				open();
+			else if(bytes_written > MAX_BYTES){
+				out.close();
+				rotate();
+				open();
+			} // Rotate before writing, if over limit
+			out.write(trace);
+			out.flush();
+			bytes_written += trace.length();
+		} catch(Exception e){
+			System.out.println("Failed to write slow-edit trace:");
+			e.printStackTrace();
+			out = null;
+		} // Logging must not interrupt processing
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Open (in append mode) the current log-file.
+	 */
+	private void open() throws Exception{
+		File file = new File(LOG_PATH);
+		this.bytes_written = file.length();
+		this.out = new OutputStreamWriter(
+				new FileOutputStream(file, true), "UTF-8");
+	}
+	
+	/**
+	 * Shift each log-file one position down the rotation.
+	 */
+	private void rotate(){
+		new File(LOG_PATH + "." + NUM_FILES).delete();
+		for(int i=NUM_FILES-1; i >= 1; i--){
+			File older = new File(LOG_PATH + "." + i);
+			if(older.exists())
+				older.renameTo(new File(LOG_PATH + "." + (i+1)));
+		} // Work from oldest, so nothing is over-written
+		new File(LOG_PATH).renameTo(new File(LOG_PATH + ".1"));
+	}
+
+}
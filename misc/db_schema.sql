@@ -378,6 +378,24 @@ CREATE TABLE `geo_country` (
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `geo_country_v6`
+-- (ip_start is the high 64 bits of the range start, sign-bit flipped)
+--
+
+DROP TABLE IF EXISTS `geo_country_v6`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `geo_country_v6` (
+  `ip_start` bigint(20) NOT NULL,
+  `ip_cidr` varchar(48) NOT NULL,
+  `country_code` varchar(2) NOT NULL,
+  `country_name` varchar(64) NOT NULL,
+  UNIQUE KEY `ip_start` (`ip_start`),
+  KEY `country` (`country_code`)
+) ENGINE=MyISAM DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `hyperlinks`
 --
@@ -466,7 +484,6 @@ CREATE TABLE `queue_cbng` (
   `SCORE` double NOT NULL,
   `RES_EXP` int(10) unsigned NOT NULL DEFAULT '0',
   `RES_ID` int(10) unsigned NOT NULL DEFAULT '0',
-  `PASS` varchar(4096) NOT NULL DEFAULT '',
   PRIMARY KEY (`P_ID`),
   KEY `res_id_ind` (`RES_ID`) USING BTREE,
   KEY `score_ind` (`SCORE`),
@@ -474,6 +491,21 @@ CREATE TABLE `queue_cbng` (
 ) ENGINE=MyISAM DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `queue_pass`
+--
+
+DROP TABLE IF EXISTS `queue_pass`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `queue_pass` (
+  `R_ID` int(10) unsigned NOT NULL,
+  `USER` varchar(256) NOT NULL,
+  PRIMARY KEY (`USER`,`R_ID`),
+  KEY `rid_ind` (`R_ID`) USING BTREE
+) ENGINE=MyISAM DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `queue_spam`
 --
@@ -487,7 +519,6 @@ CREATE TABLE `queue_spam` (
   `SCORE` double NOT NULL,
   `RES_EXP` int(10) unsigned NOT NULL DEFAULT '0',
   `RES_ID` int(10) unsigned NOT NULL DEFAULT '0',
-  `PASS` varchar(4096) NOT NULL DEFAULT '',
   PRIMARY KEY (`P_ID`) USING BTREE,
   KEY `res_id_ind` (`RES_ID`) USING BTREE,
   KEY `score_ind` (`SCORE`),
@@ -508,7 +539,6 @@ CREATE TABLE `queue_stiki` (
   `SCORE` double NOT NULL,
   `RES_EXP` int(10) unsigned NOT NULL DEFAULT '0',
   `RES_ID` int(10) unsigned NOT NULL DEFAULT '0',
-  `PASS` varchar(4096) NOT NULL DEFAULT '',
   PRIMARY KEY (`P_ID`),
   KEY `res_id_ind` (`RES_ID`) USING BTREE,
   KEY `score_ind` (`SCORE`),
@@ -529,7 +559,6 @@ CREATE TABLE `queue_wt` (
   `SCORE` double NOT NULL,
   `RES_EXP` int(10) unsigned NOT NULL DEFAULT '0',
   `RES_ID` int(10) unsigned NOT NULL DEFAULT '0',
-  `PASS` varchar(4096) NOT NULL DEFAULT '',
   PRIMARY KEY (`P_ID`),
   KEY `res_id_ind` (`RES_ID`) USING BTREE,
   KEY `score_ind` (`SCORE`),
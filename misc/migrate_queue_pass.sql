@@ -0,0 +1,81 @@
+/**************************************************************************/
+/*                                                                        */
+/* Andrew G. West - migrate_queue_pass.sql - One-time migration of a live */
+/* database from per-queue PASS columns to the [queue_pass] table. The    */
+/* PASS columns held each passing user as "|user|", concatenated; every   */
+/* such user becomes a (R_ID, USER) row, so no reviewer is shown an edit  */
+/* they have already passed.                                              */
+/*                                                                        */
+/* Run this in the maintenance window in which the client procedures are  */
+/* reloaded: (1) this script, then (2) the [db_client] procedures. Until  */
+/* (2), the old fetch/ignore procedures fail for want of PASS. The script */
+/* may be re-run; passes already copied are ignored, but the final ALTERs */
+/* fail once the columns are gone (which is harmless).                    */
+/*                                                                        */
+/**************************************************************************/
+
+  /* The new table, exactly as in [db_schema.sql] */
+CREATE TABLE IF NOT EXISTS `queue_pass` (
+  `R_ID` int(10) unsigned NOT NULL,
+  `USER` varchar(256) NOT NULL,
+  PRIMARY KEY (`USER`,`R_ID`),
+  KEY `rid_ind` (`R_ID`) USING BTREE
+) ENGINE=MyISAM DEFAULT CHARSET=latin1;
+
+  /* Sequence 1..10000, used to split PASS strings. A PASS column is at  */
+  /* most 4096 characters, and each pass takes at least 3 of those. The  */
+  /* digits are not TEMPORARY, as MySQL cannot self-join such a table.   */
+CREATE TABLE pass_digit (D INT NOT NULL);
+INSERT INTO pass_digit VALUES (0),(1),(2),(3),(4),(5),(6),(7),(8),(9);
+CREATE TEMPORARY TABLE pass_seq (N INT NOT NULL PRIMARY KEY);
+INSERT INTO pass_seq
+  SELECT 1 + d1.D + 10*d2.D + 100*d3.D + 1000*d4.D
+    FROM pass_digit d1, pass_digit d2, pass_digit d3, pass_digit d4;
+
+  /* The N-th user of "|a||b||c|" is the N-th field of "a||b||c", as */
+  /* split on "||". User-names cannot contain "|".                   */
+INSERT IGNORE INTO queue_pass (R_ID,USER)
+  SELECT q.R_ID, SUBSTRING_INDEX(SUBSTRING_INDEX(
+      TRIM(BOTH '|' FROM q.PASS),'||',s.N),'||',-1)
+    FROM queue_stiki q JOIN pass_seq s
+      ON s.N <= 1 + (LENGTH(TRIM(BOTH '|' FROM q.PASS)) -
+        LENGTH(REPLACE(TRIM(BOTH '|' FROM q.PASS),'||',''))) / 2
+    WHERE q.PASS<>'';
+
+INSERT IGNORE INTO queue_pass (R_ID,USER)
+  SELECT q.R_ID, SUBSTRING_INDEX(SUBSTRING_INDEX(
+      TRIM(BOTH '|' FROM q.PASS),'||',s.N),'||',-1)
+    FROM queue_cbng q JOIN pass_seq s
+      ON s.N <= 1 + (LENGTH(TRIM(BOTH '|' FROM q.PASS)) -
+        LENGTH(REPLACE(TRIM(BOTH '|' FROM q.PASS),'||',''))) / 2
+    WHERE q.PASS<>'';
+
+INSERT IGNORE INTO queue_pass (R_ID,USER)
+  SELECT q.R_ID, SUBSTRING_INDEX(SUBSTRING_INDEX(
+      TRIM(BOTH '|' FROM q.PASS),'||',s.N),'||',-1)
+    FROM queue_wt q JOIN pass_seq s
+      ON s.N <= 1 + (LENGTH(TRIM(BOTH '|' FROM q.PASS)) -
+        LENGTH(REPLACE(TRIM(BOTH '|' FROM q.PASS),'||',''))) / 2
+    WHERE q.PASS<>'';
+
+INSERT IGNORE INTO queue_pass (R_ID,USER)
+  SELECT q.R_ID, SUBSTRING_INDEX(SUBSTRING_INDEX(
+      TRIM(BOTH '|' FROM q.PASS),'||',s.N),'||',-1)
+    FROM queue_spam q JOIN pass_seq s
+      ON s.N <= 1 + (LENGTH(TRIM(BOTH '|' FROM q.PASS)) -
+        LENGTH(REPLACE(TRIM(BOTH '|' FROM q.PASS),'||',''))) / 2
+    WHERE q.PASS<>'';
+
+  /* A pass of the empty-string user was never recorded; be safe */
+DELETE FROM queue_pass WHERE USER='';
+
+DROP TEMPORARY TABLE pass_seq;
+DROP TABLE pass_digit;
+
+  /* With passes copied, the old columns can go */
+ALTER TABLE queue_stiki DROP COLUMN PASS;
+ALTER TABLE queue_cbng DROP COLUMN PASS;
+ALTER TABLE queue_wt DROP COLUMN PASS;
+ALTER TABLE queue_spam DROP COLUMN PASS;
+
+/********************************** END ***********************************/
@@ -0,0 +1,120 @@
+package replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Andrew G. West - replay_capture.java - Records the inputs of back-end
+ * processing so that it can later be replayed ([stiki_replay_driver]):
+ * the RIDs seen on the RC feed (and when), and every MediaWiki API
+ * response received. All state is static; capture is off unless [start()]
+ * has been called. The capture file is a sequence of records:
+ *
+ * 		EDIT [rid] [msecs_since_capture_start]
+ * 		RESP [num_bytes] [url_after_base]
+ * 		[num_bytes of response body]
+ *
+ * Each record header is a single line. URLs are stored relative to
+ * [api_retrieve.base_url()], so that they can be served from any base.
+ */
+public class replay_capture{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Stream to which records are written; NULL when not capturing.
+	 */
+	private static OutputStream out = null;
+	
+	/**
+	 * Time (UNIX, msecs) at which capture was started.
+	 */
+	private static long msec_start;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Begin capturing to a file (appending, if it exists).
+	 * @param path Path of the capture file
+	 */
+	public static synchronized void start(String path) throws Exception{
+		out = new BufferedOutputStream(new FileOutputStream(path, true));
+		msec_start = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Stop capturing, and close the capture file.
+	 */
+	public static synchronized void stop() throws Exception{
+		if(out == null)
+			return;
+		out.close();
+		out = null;
+	}
+	
+	/**
+	 * Return whether capture is underway.
+	 * @return whether capture is underway
+	 */
+	public static boolean is_active(){
+		return(out != null);
+	}
+	
+	/**
+	 * Record that a RID was seen (queued for processing).
+	 * @param rid RID seen
+	 */
+	public static synchronized void record_edit(long rid){
+		if(out == null)
+			return;
+		long msec = System.currentTimeMillis() - msec_start;
+		try{out.write(("EDIT " + rid + " " + msec + "\n").getBytes("UTF-8"));
+			out.flush();
+		} catch(Exception e){
+			System.out.println("Replay capture failed; capture stopped:");
+			e.printStackTrace();
+			out = null;
+		} // Capture must never disrupt processing
+	}
+	
+	/**
+	 * Record an API response.
+	 * @param url Full URL of the request
+	 * @param base Base URL, which is stripped from 'url' before recording
+	 * @param body Complete body of the response
+	 */
+	public static synchronized void record_response(String url, String base,
+			byte[] body){
+		if(out == null || !url.startsWith(base))
+			return;
+		String rel_url = url.substring(base.length());
+		try{out.write(("RESP " + body.length + " " + rel_url + "\n").
+					getBytes("UTF-8"));
+			out.write(body);
+			out.flush();
+		} catch(Exception e){
+			System.out.println("Replay capture failed; capture stopped:");
+			e.printStackTrace();
+			out = null;
+		} // Capture must never disrupt processing
+	}
+	
+	/**
+	 * Read an InputStream to completion, as bytes.
+	 * @param in Stream to be read (it is not closed)
+	 * @return All remaining bytes of 'in'
+	 */
+	public static byte[] read_fully(InputStream in) throws Exception{
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int len;
+		while((len = in.read(chunk)) != -1)
+			buf.write(chunk, 0, len);
+		return(buf.toByteArray());
+	}
+
+}
@@ -0,0 +1,93 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core_objects.pair;
+
+/**
+ * Andrew G. West - replay_corpus.java - A capture file (see [replay_capture])
+ * loaded into memory: the RIDs to be replayed, in the order (and at the
+ * offsets) they were seen, and the API responses, keyed by relative URL.
+ * Where the same URL was captured more than once (i.e., an RID queried
+ * before, and again after it became visible) the latest response is kept.
+ */
+public class replay_corpus{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * RIDs to be replayed. First element is the RID, second the offset
+	 * (msecs, from start of capture) at which it was seen.
+	 */
+	public final List<pair<Long,Long>> edits;
+	
+	/**
+	 * API responses, keyed by URL (relative to the API base URL).
+	 */
+	public final Map<String,byte[]> responses;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [replay_corpus] by loading a capture file.
+	 * @param path Path of the capture file
+	 */
+	public replay_corpus(String path) throws Exception{
+		this.edits = new ArrayList<pair<Long,Long>>();
+		this.responses = new HashMap<String,byte[]>();
+		
+		InputStream in = new BufferedInputStream(new FileInputStream(path));
+		String header = read_line(in);
+		while(header != null){
+			if(header.startsWith("EDIT ")){
+				String[] parts = header.split(" ");
+				edits.add(new pair<Long,Long>(Long.parseLong(parts[1]),
+						Long.parseLong(parts[2])));
+			} else if(header.startsWith("RESP ")){
+				int space = header.indexOf(' ', 5);
+				int num_bytes = Integer.parseInt(header.substring(5, space));
+				byte[] body = new byte[num_bytes];
+				int read = 0;
+				while(read < num_bytes){
+					int len = in.read(body, read, num_bytes - read);
+					if(len == -1)
+						throw new Exception("Truncated capture: " + path);
+					read += len;
+				} // Body is raw bytes, of declared length
+				responses.put(header.substring(space + 1), body);
+			} else if(!header.equals(""))
+				throw new Exception("Malformed capture record: " + header);
+			header = read_line(in);
+		} // Read record-by-record
+		in.close();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Read a single (UTF-8, newline-terminated) line from a stream.
+	 * @param in Stream from which to read
+	 * @return The line (sans terminator), or NULL if at end-of-stream
+	 */
+	private static String read_line(InputStream in) throws Exception{
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		int b = in.read();
+		if(b == -1)
+			return(null);
+		while(b != -1 && b != '\n'){
+			buf.write(b);
+			b = in.read();
+		} // Byte-wise, so the following body is not consumed
+		return(buf.toString("UTF-8"));
+	}
+
+}
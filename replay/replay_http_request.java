@@ -0,0 +1,54 @@
+package replay;
+
+import java.net.Socket;
+
+/**
+ * Andrew G. West - replay_http_request.java - A single request made to a
+ * [replay_http_server], wrapped so that it can be answered in a thread
+ * of that server's pool.
+ */
+public class replay_http_request implements Runnable{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Server which accepted the request.
+	 */
+	private replay_http_server server;
+	
+	/**
+	 * Socket of the connecting client.
+	 */
+	private Socket client;
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [replay_http_request].
+	 * @param server Server which accepted the request
+	 * @param client Socket of the connecting client
+	 */
+	public replay_http_request(replay_http_server server, Socket client){
+		this.server = server;
+		this.client = client;
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Overriding: Answer the request, then close the connection.
+	 */
+	public void run(){
+		try{server.serve(client);
+		} catch(Exception e){
+			System.out.println("Replay stub request failed:");
+			e.printStackTrace();
+		} finally{
+			try{client.close();
+			} catch(Exception e){}
+		} // Always release the socket
+	}
+
+}
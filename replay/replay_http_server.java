@@ -0,0 +1,173 @@
+package replay;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Andrew G. West - replay_http_server.java - A stub of the MediaWiki API,
+ * serving the responses of a [replay_corpus] over HTTP on the loopback
+ * interface. Setting [api_retrieve.BASE_URL_OVERRIDE] to [base_url()]
+ * directs all API traffic here. Requests for URLs not in the corpus are
+ * answered "404", which the pipeline treats as an API failure.
+ */
+public class replay_http_server implements Runnable{
+
+	// **************************** PUBLIC FIELDS ****************************
+	
+	/**
+	 * Path (and fixed query) portion of the API base URL being stubbed.
+	 */
+	public static final String BASE_PATH = "/w/api.php?action=query";
+	
+	
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Milliseconds a client may take to send its request.
+	 */
+	private static final int READ_TIMEOUT = 5000;
+	
+	/**
+	 * Responses to be served.
+	 */
+	private replay_corpus corpus;
+	
+	/**
+	 * Socket on which requests are accepted.
+	 */
+	private ServerSocket server_sock;
+	
+	/**
+	 * Threads answering requests; the pipeline makes many in parallel.
+	 */
+	private ExecutorService handlers;
+	
+	/**
+	 * Set when [shutdown()] is called, so the accept loop exits quietly.
+	 */
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Number of requests answered from the corpus, and not found in it.
+	 */
+	private AtomicLong num_served = new AtomicLong(0);
+	private AtomicLong num_missing = new AtomicLong(0);
+	
+	
+	// ***************************** CONSTRUCTORS ****************************
+	
+	/**
+	 * Construct a [replay_http_server], and begin serving in a new thread.
+	 * @param corpus Corpus whose responses should be served
+	 * @param port Port (on 127.0.0.1) at which to serve; zero for any
+	 * @param num_threads Number of threads answering requests
+	 */
+	public replay_http_server(replay_corpus corpus, int port,
+			int num_threads) throws Exception{
+		this.corpus = corpus;
+		this.server_sock = new ServerSocket(port, 128,
+				InetAddress.getByName("127.0.0.1"));
+		this.handlers = Executors.newFixedThreadPool(num_threads);
+		Thread thread = new Thread(this, "replay_http_server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Return the API base URL served by this stub.
+	 * @return the API base URL served by this stub
+	 */
+	public String base_url(){
+		return("http://127.0.0.1:" + server_sock.getLocalPort() + BASE_PATH);
+	}
+	
+	/**
+	 * Overriding: Accept requests until shutdown, handing each to a thread.
+	 */
+	public void run(){
+		while(!stopped){
+			try{Socket client = server_sock.accept();
+				handlers.submit(new replay_http_request(this, client));
+			} catch(Exception e){
+				if(!stopped)
+					e.printStackTrace();
+			} // Closing the socket at shutdown also lands here
+		}
+	}
+	
+	/**
+	 * Answer a single request. Called by [replay_http_request].
+	 * @param client Socket of the connecting client
+	 */
+	public void serve(Socket client) throws Exception{
+	
+		client.setSoTimeout(READ_TIMEOUT);
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				client.getInputStream(), "UTF-8"));
+		String request = in.readLine();
+		String line = request;
+		while(line != null && !line.equals(""))
+			line = in.readLine();
+		if(request == null)
+			return;
+			
+			// Request line is "GET [target] HTTP/1.x"
+		String[] parts = request.split(" ");
+		byte[] body = null;
+		if(parts.length >= 2 && parts[1].startsWith(BASE_PATH))
+			body = corpus.responses.get(parts[1].substring(BASE_PATH.length()));
+		
+		String header;
+		if(body == null){
+			num_missing.incrementAndGet();
+			body = new byte[0];
+			header = "HTTP/1.0 404 Not Found\r\n";
+		} else{
+			num_served.incrementAndGet();
+			header = "HTTP/1.0 200 OK\r\n";
+			header += "Content-Type: text/xml; charset=utf-8\r\n";
+		} // Missing responses fail as the live API would on error
+		header += "Content-Length: " + body.length + "\r\n";
+		header += "Connection: close\r\n\r\n";
+		OutputStream out = client.getOutputStream();
+		out.write(header.getBytes("US-ASCII"));
+		out.write(body);
+		out.flush();
+	}
+	
+	/**
+	 * Return the number of requests answered from the corpus.
+	 * @return the number of requests answered from the corpus
+	 */
+	public long num_served(){
+		return(num_served.get());
+	}
+	
+	/**
+	 * Return the number of requests whose URL was not in the corpus.
+	 * @return the number of requests whose URL was not in the corpus
+	 */
+	public long num_missing(){
+		return(num_missing.get());
+	}
+	
+	/**
+	 * Stop serving, and release the port.
+	 */
+	public void shutdown() throws Exception{
+		stopped = true;
+		server_sock.close();
+		handlers.shutdownNow();
+	}
+
+}
@@ -0,0 +1,67 @@
+package utilities;
+
+import java.io.File;
+import java.util.List;
+
+import core_objects.feature_set;
+import db_server.db_features;
+import db_server.feature_archive;
+import db_server.stiki_con_server;
+
+/**
+ * Andrew G. West - feature_archive_build.java - Build (or rebuild) a
+ * columnar [feature_archive] from the [features] table. The back-end only
+ * archives edits processed while running with "-archive"; this back-fills
+ * history, or replaces an archive that is suspect.
+ */
+public class feature_archive_build{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Number of RIDs fetched from the DB per query.
+	 */
+	private static final long CHUNK_RIDS = 100000;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. Copy an RID interval of the [features] table.
+	 * @param args Three arguments are required: (1) the archive directory,
+	 * which must not already exist (so that no RID is archived twice), and
+	 * the (2) start and (3) end RIDs of the interval (inclusive). Build
+	 * into a new directory, and swap it for the back-end's when stopped.
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		if(new File(args[0]).exists()){
+			System.out.println("Error: Archive directory already exists");
+			return;
+		} // Do not interleave with an existing archive
+		
+		long start_rid = Long.parseLong(args[1]);
+		long end_rid = Long.parseLong(args[2]);
+		
+		stiki_con_server con_server = new stiki_con_server();
+		db_features db_feat = new db_features(con_server);
+		feature_archive archive = new feature_archive(args[0]);
+		
+		long num_rows = 0;
+		for(long beg=start_rid; beg <= end_rid; beg += CHUNK_RIDS){
+			List<feature_set> chunk = db_feat.get_features_in_interval(
+					beg, Math.min(end_rid, beg + CHUNK_RIDS - 1));
+			for(feature_set fs : chunk)
+				archive.append(fs);
+			num_rows += chunk.size();
+			System.out.println("Archived through RID " + Math.min(end_rid,
+					beg + CHUNK_RIDS - 1) + " (" + num_rows + " rows)");
+		} // Fetch and append the interval chunk-by-chunk
+		
+			// Shut everthing down cleanly
+		archive.close();
+		db_feat.shutdown();
+		con_server.con.close();
+	}
+
+}
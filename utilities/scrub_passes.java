@@ -3,8 +3,6 @@ package utilities;
 import java.sql.Statement;
 import java.sql.ResultSet;
 
-import core_objects.stiki_utils;
-
 import db_server.qmanager_server;
 import db_server.stiki_con_server;
 
@@ -13,6 +11,9 @@ import db_server.stiki_con_server;
  * de-queue edits that have too many "pass" classifications. It can/should
  * be run via a cron-script of some kind. If enough people decide to "pass"
  * an edit, it is presumably too borderline to be worth anothers time.
+ * 
+ * Passes are rows of [queue_pass]. Those of edits no longer in any queue
+ * (i.e., removed by the back-end as they were superseded) are purged here.
  */
 public class scrub_passes{
 
@@ -41,26 +42,32 @@ public class scrub_passes{
 		qmanager_server server_q = new qmanager_server(con, null);
 		Statement stmt = con.con.createStatement();
 		ResultSet rs = stmt.executeQuery(
-				"SELECT P_ID,PASS FROM queue_stiki WHERE LENGTH(PASS)!=0");
+				"SELECT q.P_ID FROM queue_stiki q JOIN " +
+				"(SELECT R_ID FROM queue_pass GROUP BY R_ID " +
+				"HAVING COUNT(*)>=" + DEQ_THRESHOLD + ") p " +
+				"ON p.R_ID=q.R_ID");
 		
 			// Note: On the assumption that the "STiki" queue is the most
 			// central to our processing, and should be most up to date.
 			// We only scan this queue, assuming that the cascading
 			// nature will appropriately update all other queues. 
 		
-		String passes; long pid;
 		while(rs.next()){
-			pid = rs.getLong(1);
-			passes = rs.getString(2);
-			if(stiki_utils.char_occurences('|', passes) >= DEQ_THRESHOLD*2){
-				server_q.delete_pid(pid);
-				//dqs++;
-			} // Block specific to dequeue actions	
-		} // Iterate over all queue entries with "pass" instances
+			server_q.delete_pid(rs.getLong(1));
+			//dqs++;
+		} // Iterate over all queue entries with enough "pass" instances
 
 		//System.out.println("Dequeue actions: " + dqs);
-		
 		rs.close();
+		
+			// Purge passes of edits no longer in any queue
+		stmt.executeUpdate("DELETE p FROM queue_pass p " +
+				"LEFT JOIN queue_stiki q1 ON q1.R_ID=p.R_ID " +
+				"LEFT JOIN queue_cbng q2 ON q2.R_ID=p.R_ID " +
+				"LEFT JOIN queue_wt q3 ON q3.R_ID=p.R_ID " +
+				"LEFT JOIN queue_spam q4 ON q4.R_ID=p.R_ID " +
+				"WHERE q1.R_ID IS NULL AND q2.R_ID IS NULL AND " +
+				"q3.R_ID IS NULL AND q4.R_ID IS NULL");
 		stmt.close();
 		con.con.close();
 	}
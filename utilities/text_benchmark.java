@@ -0,0 +1,397 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import core_objects.escape_string;
+import core_objects.feature_set;
+import core_objects.stiki_utils;
+import core_objects.xlink_parser;
+import gui_support.diff_markup;
+import gui_support.diff_render;
+import learn_adtree.adtree_frontend;
+import learn_frontend.feature_language;
+import mediawiki_api.api_xml_diff_text;
+import mediawiki_api.api_xml_page_content;
+import replay.replay_corpus;
+
+/**
+ * Andrew G. West - text_benchmark.java - Micro-benchmarks of the text
+ * processing run on every edit (back-end) or every displayed diff
+ * (front-end). Inputs are real: the diffs, page wikitext, comments, and
+ * timestamps contained in a capture file (see [replay_capture]).
+ *
+ * Each benchmark is warmed-up, then timed over several rounds; reported
+ * are the median nanoseconds per operation and (where the JVM supports
+ * per-thread allocation counters) the bytes allocated per operation.
+ * Results can be saved as a baseline, and later runs compared against
+ * it, failing (exit status 1) if any benchmark has regressed.
+ *
+ * Usage: java utilities.text_benchmark [capture_file]
+ * 		[-save baseline_file | -compare baseline_file]
+ */
+public class text_benchmark{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Names of the benchmarks, in the order run. The index of each is the
+	 * argument to [run_op()].
+	 */
+	private static final String[] BENCHMARKS = {
+		"feature_language.only_added_text",
+		"feature_language.only_removed_text",
+		"feature_language.dirty_regex_score",
+		"xlink_parser.parse_xlinks",
+		"escape_string.escape",
+		"diff_markup.beautify_markup",
+		"stiki_utils.wiki_ts_to_unix",
+		"adtree_frontend.classify",
+		"diff_render.render"};
+	
+	/**
+	 * Milliseconds of warm-up (so the JIT has settled) before timing.
+	 */
+	private static final int WARMUP_MSECS = 2000;
+	
+	/**
+	 * Number, and duration (msecs), of timed rounds per benchmark.
+	 */
+	private static final int ROUNDS = 5;
+	private static final int ROUND_MSECS = 1000;
+	
+	/**
+	 * Fractional slow-down (time or allocation) relative to the baseline
+	 * that is reported as a regression.
+	 */
+	private static final double REGRESSION_TOLERANCE = 0.10;
+	
+	/**
+	 * Patterns extracting timestamps and comments from API responses.
+	 */
+	private static final Pattern TS_ATTR = Pattern.compile(
+			"timestamp=\"([^\"]+)\"");
+	private static final Pattern COMMENT_ATTR = Pattern.compile(
+			"comment=\"([^\"]*)\"");
+	
+	/**
+	 * Inputs, as drawn from the capture file.
+	 */
+	private static List<String> diffs = new ArrayList<String>();
+	private static List<feature_language> lang_feats =
+			new ArrayList<feature_language>();
+	private static List<String> wikitext = new ArrayList<String>();
+	private static List<String> comments = new ArrayList<String>();
+	private static List<String> timestamps = new ArrayList<String>();
+	private static List<feature_set> feature_sets =
+			new ArrayList<feature_set>();
+	
+	/**
+	 * Classifier being benchmarked.
+	 */
+	private static final adtree_frontend LEARNER = new adtree_frontend();
+	
+	/**
+	 * Results of every operation are folded into this value, so the JIT
+	 * cannot eliminate the work being timed.
+	 */
+	private static volatile long sink = 0;
+	
+	/**
+	 * [com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)], and
+	 * the bean on which to call it; NULL where the JVM does not provide it.
+	 */
+	private static Method alloc_method = null;
+	private static Object thread_bean = null;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. See the class description for usage.
+	 * @param args See class description
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		if(args.length != 1 && args.length != 3){
+			System.out.println("Usage: java utilities.text_benchmark " +
+					"[capture_file] [-save baseline_file | " +
+					"-compare baseline_file]");
+			return;
+		} // Output usage, if arguments malformed
+		
+		load_inputs(new replay_corpus(args[0]));
+		init_alloc_counter();
+		System.out.println("Inputs: " + diffs.size() + " diffs, " +
+				wikitext.size() + " pages, " + comments.size() +
+				" comments, " + timestamps.size() + " timestamps");
+		if(alloc_method == null)
+			System.out.println("(JVM lacks allocation counters; " +
+					"bytes/op not measured)");
+		System.out.println();
+		
+		Map<String,double[]> results = new HashMap<String,double[]>();
+		for(int i=0; i < BENCHMARKS.length; i++){
+			if(num_inputs(i) == 0){
+				System.out.println(String.format("%-40s (no inputs)",
+						BENCHMARKS[i]));
+				continue;
+			} // Capture may lack some input types
+			double[] result = run_benchmark(i);
+			results.put(BENCHMARKS[i], result);
+			System.out.println(String.format("%-40s %12.1f ns/op %12.1f B/op",
+					BENCHMARKS[i], result[0], result[1]));
+		} // Run all benchmarks, in turn
+		
+		if(args.length == 3 && args[1].equals("-save"))
+			save_baseline(args[2], results);
+		else if(args.length == 3 && args[1].equals("-compare")){
+			if(!compare_baseline(args[2], results))
+				System.exit(1);
+		} // Baseline handling, if requested
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Populate the benchmark inputs from the responses of a capture.
+	 * @param corpus Corpus containing the captured API responses
+	 */
+	private static void load_inputs(replay_corpus corpus) throws Exception{
+	
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		Iterator<Map.Entry<String,byte[]>> iter =
+				corpus.responses.entrySet().iterator();
+		while(iter.hasNext()){
+			Map.Entry<String,byte[]> entry = iter.next();
+			String url = entry.getKey();
+			byte[] body = entry.getValue();
+			
+			if(url.contains("rvdiffto=")){
+				api_xml_diff_text handler = new api_xml_diff_text();
+				factory.newSAXParser().parse(
+						new ByteArrayInputStream(body), handler);
+				if(handler.get_result().length() > 0)
+					diffs.add(handler.get_result());
+			} else if(url.contains("rvprop=content")){
+				api_xml_page_content handler = new api_xml_page_content();
+				factory.newSAXParser().parse(
+						new ByteArrayInputStream(body), handler);
+				if(handler.get_result() != null)
+					wikitext.add(handler.get_result());
+			} // Diff and content responses are parsed as in production
+			
+			String xml = new String(body, "UTF-8");
+			Matcher ts_match = TS_ATTR.matcher(xml);
+			while(ts_match.find())
+				timestamps.add(ts_match.group(1));
+			Matcher comm_match = COMMENT_ATTR.matcher(xml);
+			while(comm_match.find())
+				comments.add(comm_match.group(1));
+		} // Every response may carry timestamps and comments
+		
+			// Language features (and from them, feature-vectors for the
+			// classifier) are built once; only their use is timed
+		for(int i=0; i < diffs.size(); i++){
+			feature_language lang = new feature_language(diffs.get(i));
+			lang_feats.add(lang);
+			feature_sets.add(new feature_set(false, i, (i % 2 == 0),
+					(i % 10) / 10.0, (i % 7) / 7.0, (float) (i % 24),
+					1 + (i % 7), 600 * (i % 50), 3600 * (i % 30),
+					(i % 3 == 0) ? -1 : 86400 * (i % 20),
+					(i % 80), lang.get_added_blocks().size() * 40,
+					(i % 5) / 5.0, lang.dirty_regex_score(),
+					lang.longest_char_repetition(),
+					lang.percentage_uppercase(), lang.percentage_alpha()));
+		} // Non-language features vary deterministically with index
+	}
+	
+	/**
+	 * Return the number of distinct inputs available to a benchmark.
+	 * @param bench Index (into [BENCHMARKS]) of the benchmark
+	 * @return the number of distinct inputs available to a benchmark
+	 */
+	private static int num_inputs(int bench){
+		switch(bench){
+			case 3: return(wikitext.size());
+			case 4: return(comments.size());
+			case 6: return(timestamps.size());
+			default: return(diffs.size());
+		} // Most benchmarks operate over diffs
+	}
+	
+	/**
+	 * Perform a single operation of a benchmark.
+	 * @param bench Index (into [BENCHMARKS]) of the benchmark
+	 * @param i Index of the input to be used
+	 * @return Some value derived from the result, for [sink]
+	 */
+	private static long run_op(int bench, int i) throws Exception{
+		switch(bench){
+			case 0: return(feature_language.only_added_text(
+					diffs.get(i)).fst.size());
+			case 1: return(feature_language.only_removed_text(
+					diffs.get(i)).fst.size());
+			case 2: return(lang_feats.get(i).dirty_regex_score());
+			case 3: return(xlink_parser.parse_xlinks(wikitext.get(i)).size());
+			case 4: return(escape_string.escape(comments.get(i)).length());
+			case 5: return(diff_markup.beautify_markup(diffs.get(i),
+					"Benchmark", "", "", true).length());
+			case 6: return(stiki_utils.wiki_ts_to_unix(timestamps.get(i)));
+			case 8: return(diff_render.render(diffs.get(i),
+					"Benchmark", "", "", true).snd.length());
+			default: return((long) (1000 * LEARNER.classify(
+					feature_sets.get(i))));
+		} // Dispatch on benchmark
+	}
+	
+	/**
+	 * Warm-up and time a single benchmark.
+	 * @param bench Index (into [BENCHMARKS]) of the benchmark
+	 * @return Two element array: median nanoseconds per operation, and
+	 * median bytes allocated per operation (-1 if not measured)
+	 */
+	private static double[] run_benchmark(int bench) throws Exception{
+	
+		int inputs = num_inputs(bench);
+		int next = 0;
+		long end = System.currentTimeMillis() + WARMUP_MSECS;
+		while(System.currentTimeMillis() < end){
+			sink += run_op(bench, next);
+			next = (next + 1) % inputs;
+		} // Warm-up; results are discarded
+		
+		double[] nanos = new double[ROUNDS];
+		double[] bytes = new double[ROUNDS];
+		for(int r=0; r < ROUNDS; r++){
+			long ops = 0;
+			long alloc_start = allocated_bytes();
+			long nano_start = System.nanoTime();
+			long nano_end = nano_start + ROUND_MSECS * 1000000L;
+			long now = nano_start;
+			while(now < nano_end){
+				sink += run_op(bench, next);
+				next = (next + 1) % inputs;
+				ops++;
+				now = System.nanoTime();
+			} // Cycle through inputs until the round has elapsed
+			nanos[r] = (double) (now - nano_start) / ops;
+			if(alloc_start == -1)
+				bytes[r] = -1;
+			else bytes[r] = (double) (allocated_bytes() - alloc_start) / ops;
+		} // Each round gives one sample; median is reported
+		
+		Arrays.sort(nanos);
+		Arrays.sort(bytes);
+		return(new double[]{nanos[ROUNDS / 2], bytes[ROUNDS / 2]});
+	}
+	
+	/**
+	 * Locate the per-thread allocation counter, if the JVM has one.
+	 */
+	private static void init_alloc_counter(){
+		try{Class<?> iface = Class.forName("com.sun.management.ThreadMXBean");
+			Object bean = ManagementFactory.getThreadMXBean();
+			if(!iface.isInstance(bean))
+				return;
+			alloc_method = iface.getMethod("getThreadAllocatedBytes",
+					long.class);
+			thread_bean = bean;
+			allocated_bytes(); // Ensure callable
+		} catch(Exception e){
+			alloc_method = null;
+		} // Not present in older, or non-HotSpot, JVMs
+	}
+	
+	/**
+	 * Return the bytes allocated, to date, by the current thread.
+	 * @return the bytes allocated, to date, by the current thread; or -1
+	 * if this cannot be measured on this JVM
+	 */
+	private static long allocated_bytes(){
+		if(alloc_method == null)
+			return(-1);
+		try{return((Long) alloc_method.invoke(thread_bean,
+					Thread.currentThread().getId()));
+		} catch(Exception e){
+			alloc_method = null;
+			return(-1);
+		} // Disable measurement on any failure
+	}
+	
+	/**
+	 * Write results to a baseline file; one "name ns_per_op bytes_per_op"
+	 * line per benchmark.
+	 * @param path Path of the baseline file
+	 * @param results Results, keyed by benchmark name
+	 */
+	private static void save_baseline(String path,
+			Map<String,double[]> results) throws Exception{
+		FileWriter out = new FileWriter(path);
+		for(int i=0; i < BENCHMARKS.length; i++){
+			double[] result = results.get(BENCHMARKS[i]);
+			if(result != null)
+				out.write(BENCHMARKS[i] + " " + result[0] + " " +
+						result[1] + "\n");
+		} // Benchmarks lacking inputs are omitted
+		out.close();
+		System.out.println("\nBaseline written to: " + path);
+	}
+	
+	/**
+	 * Compare results against a baseline file, reporting regressions.
+	 * @param path Path of the baseline file (see [save_baseline()])
+	 * @param results Results, keyed by benchmark name
+	 * @return TRUE if no benchmark regressed; FALSE, otherwise
+	 */
+	private static boolean compare_baseline(String path,
+			Map<String,double[]> results) throws Exception{
+		
+		boolean ok = true;
+		System.out.println("\nVersus baseline: " + path);
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		String line = in.readLine();
+		while(line != null){
+			String[] parts = line.trim().split(" ");
+			double[] result = results.get(parts[0]);
+			if(parts.length != 3 || result == null){
+				line = in.readLine();
+				continue;
+			} // Skip malformed lines, and benchmarks not run
+			
+			double base_ns = Double.parseDouble(parts[1]);
+			double base_bytes = Double.parseDouble(parts[2]);
+			boolean slower = (result[0] > base_ns *
+					(1.0 + REGRESSION_TOLERANCE));
+			boolean fatter = (base_bytes >= 0 && result[1] >= 0 &&
+					result[1] > base_bytes * (1.0 + REGRESSION_TOLERANCE));
+			System.out.println(String.format("%-40s %+7.1f%% time " +
+					"%+7.1f%% alloc %s", parts[0],
+					100.0 * (result[0] - base_ns) / base_ns,
+					(base_bytes > 0 && result[1] >= 0) ?
+					100.0 * (result[1] - base_bytes) / base_bytes : 0.0,
+					(slower || fatter) ? "REGRESSION" : ""));
+			if(slower || fatter)
+				ok = false;
+			line = in.readLine();
+		} // Compare line-by-line
+		in.close();
+		return(ok);
+	}
+
+}
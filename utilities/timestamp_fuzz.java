@@ -0,0 +1,161 @@
+package utilities;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import core_objects.stiki_utils;
+
+/**
+ * Andrew G. West - timestamp_fuzz.java - The timestamp routines of
+ * [stiki_utils] (wiki-timestamp parsing, time-of-day, day-of-week) are
+ * computed arithmetically. This fuzzes them against the Calendar-based
+ * implementations they replaced, which are retained here as reference.
+ */
+public class timestamp_fuzz{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * GMT offsets (hours) drawn upon; those of real zones, some fractional.
+	 */
+	private static final double[] OFFSETS = {-12.0, -9.5, -8.0, -3.5, 0.0,
+		1.0, 3.5, 4.5, 5.5, 5.75, 8.75, 9.5, 10.5, 12.75, 13.0, 14.0};
+	
+	/**
+	 * Number of mismatches found, over all trials.
+	 */
+	private static long mismatches = 0;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. Fuzz the timestamp routines.
+	 * @param args Optionally, (1) the number of trials per routine (default
+	 * one million) and (2) a random seed. Exits non-zero on any mismatch.
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		long trials = (args.length > 0) ? Long.parseLong(args[0]) : 1000000;
+		Random rand = (args.length > 1) ? new Random(Long.parseLong(args[1]))
+				: new Random();
+		
+		for(long i=0; i < trials; i++){
+		
+				// Wiki timestamps; mostly well-formed, in both formats
+			int y = 1601 + rand.nextInt(8399);
+			int mon = rand.nextInt(14), d = rand.nextInt(33);
+			int h = rand.nextInt(26), min = rand.nextInt(62);
+			int sec = rand.nextInt(62);
+			String wiki_ts;
+			if(rand.nextBoolean())
+				wiki_ts = y + "-" + pad(mon) + "-" + pad(d) + "T" + pad(h) +
+						":" + pad(min) + ":" + pad(sec) + "Z";
+			else wiki_ts = y + pad(mon) + pad(d) + pad(h) + pad(min) + pad(sec);
+			compare("wiki_ts_to_unix(" + wiki_ts + ")",
+					ref_wiki_ts_to_unix(wiki_ts),
+					stiki_utils.wiki_ts_to_unix(wiki_ts));
+				
+				// Time-of-day and day-of-week, around the present
+			long unix_ts = (rand.nextLong() >>> 33) - (1L << 29);
+			double offset = OFFSETS[rand.nextInt(OFFSETS.length)];
+			Calendar cal = ref_unix_set_cal(unix_ts, offset);
+			compare("time_of_day(" + unix_ts + "," + offset + ")",
+					ref_time_of_day(cal),
+					stiki_utils.time_of_day(unix_ts, offset));
+			compare("day_of_week(" + unix_ts + "," + offset + ")",
+					cal.get(Calendar.DAY_OF_WEEK),
+					stiki_utils.day_of_week(unix_ts, offset));
+		} // Compare over random inputs
+		
+		System.out.println(trials + " trials per routine; " + mismatches +
+				" mismatches");
+		if(mismatches > 0)
+			System.exit(1);
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Report a mismatch between a reference and a tested value.
+	 * @param what Description of the call made
+	 * @param ref Value produced by the reference implementation
+	 * @param tested Value produced by the tested implementation
+	 */
+	private static void compare(String what, double ref, double tested){
+		if(Double.compare(ref, tested) == 0)
+			return;
+		if(mismatches++ < 20)
+			System.out.println("MISMATCH: " + what + " ref=" + ref +
+					" tested=" + tested);
+	}
+	
+	/**
+	 * Zero-pad a value to two digits.
+	 * @param value Value on [0,99]
+	 * @return 'value' as two digits
+	 */
+	private static String pad(int value){
+		return((value < 10) ? ("0" + value) : ("" + value));
+	}
+	
+	/**
+	 * Reference: Convert a Wikipedia timestamp into a UNIX one, by Calendar.
+	 * @param wiki_ts Wikipedia timestamp, in string format
+	 * @return The same time as 'wiki_ts' expressed in UNIX format
+	 */
+	private static long ref_wiki_ts_to_unix(String wiki_ts){
+	
+		int year=0, month=0, day=0, hour=0, min=0, sec=0;
+		if(wiki_ts.contains("Z") || wiki_ts.contains("-")){
+			year = Integer.parseInt(wiki_ts.substring(0, 4));
+			month = Integer.parseInt(wiki_ts.substring(5,7));
+			day = Integer.parseInt(wiki_ts.substring(8, 10));
+			hour = Integer.parseInt(wiki_ts.substring(11, 13));
+			min = Integer.parseInt(wiki_ts.substring(14, 16));
+			sec = Integer.parseInt(wiki_ts.substring(17, 19));
+		} else{
+			year = Integer.parseInt(wiki_ts.substring(0, 4));
+			month = Integer.parseInt(wiki_ts.substring(4,6));
+			day = Integer.parseInt(wiki_ts.substring(6, 8));
+			hour = Integer.parseInt(wiki_ts.substring(8, 10));
+			min = Integer.parseInt(wiki_ts.substring(10, 12));
+			sec = Integer.parseInt(wiki_ts.substring(12, 14));
+		}
+		
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.setTimeZone(TimeZone.getTimeZone("GMT+0000"));
+		cal.set(year, (month-1), day, hour, min, sec);
+		return (cal.getTimeInMillis() / 1000);
+	}
+	
+	/**
+	 * Reference: Return a Calendar object initialized to a Unix time.
+	 * @param unix_ts Unix timestamp of time (GMT) to be interpreted
+	 * @param offset Offset from GMT, in locality, in hours
+	 * @return Calendar object encoding 'unix_ts' offset by 'offset' hours
+	 */
+	private static Calendar ref_unix_set_cal(long unix_ts, double offset){
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.setTimeZone(TimeZone.getTimeZone("GMT+0000"));
+		cal.setTimeInMillis((long) ((unix_ts + 60*60*offset) * 1000));
+		return(cal);
+	}
+	
+	/**
+	 * Reference: Return the time-of-day per a Calendar object.
+	 * @param cal Calendar object initialized to a particular date/time
+	 * @return Time-of-day represented by 'cal', on [0,24)
+	 */
+	private static float ref_time_of_day(Calendar cal){
+		float time_of_day = cal.get(Calendar.HOUR_OF_DAY);
+		time_of_day += (cal.get(Calendar.MINUTE) / 60.0);
+		time_of_day += (cal.get(Calendar.SECOND) / 3600.0);
+		return(time_of_day);
+	}
+
+}
@@ -0,0 +1,209 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import metrics.trace_log;
+
+/**
+ * Andrew G. West - trace_summary.java - Command-line summary of slow-edit
+ * traces, as written by the back-end to [trace_log]. For each span name
+ * (stage, API call, or DB handler) this reports how often it appeared, its
+ * total, median, 90th-percentile, and maximum time, and in how many traces
+ * it was the single slowest span. The slowest traces are also listed.
+ *
+ * Usage: java utilities.trace_summary [log_file ...]
+ * If no files are given, the current log and all rotations are read.
+ */
+public class trace_summary{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * Number of (individually) slowest traces to list.
+	 */
+	private static final int NUM_SLOWEST = 10;
+	
+	/**
+	 * Durations (usecs) of every span seen, by span name.
+	 */
+	private static Map<String,List<Long>> durations =
+			new HashMap<String,List<Long>>();
+	
+	/**
+	 * Number of traces in which each span name was the slowest span.
+	 */
+	private static Map<String,Integer> dominant = new HashMap<String,Integer>();
+	
+	/**
+	 * All traces seen; each is a (total_usecs, description) pair, where the
+	 * description is the RID and the slowest span of that trace.
+	 */
+	private static List<String> trace_lines = new ArrayList<String>();
+	private static List<Long> trace_totals = new ArrayList<Long>();
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. Summarize the provided (or default) trace logs.
+	 * @param args Paths of trace log-files; optional
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		List<String> files = new ArrayList<String>();
+		for(int i=0; i < args.length; i++)
+			files.add(args[i]);
+		if(files.isEmpty()){
+			files.add(trace_log.LOG_PATH);
+			for(int i=1; i <= trace_log.NUM_FILES; i++)
+				files.add(trace_log.LOG_PATH + "." + i);
+		} // Default to all rotations of the back-end log
+		
+		for(int i=0; i < files.size(); i++){
+			if(new File(files.get(i)).exists())
+				read_file(files.get(i));
+		} // Missing rotations are simply skipped
+		if(trace_totals.isEmpty()){
+			System.out.println("No traces found");
+			return;
+		} // Nothing to summarize
+		
+		print_span_table();
+		print_slowest();
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Read all traces from a log-file.
+	 * @param path Path of the log-file
+	 */
+	private static void read_file(String path) throws Exception{
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(path), "UTF-8"));
+		String rid = null;
+		long total = 0;
+		String slow_name = null;
+		long slow_usecs = -1;
+		
+		String line = in.readLine();
+		while(line != null){
+			String[] parts = line.split(" ");
+			if(parts[0].equals("TRACE") && parts.length >= 4){
+				if(rid != null)
+					end_trace(rid, total, slow_name);
+				rid = parts[2];
+				total = Long.parseLong(parts[3]);
+				slow_name = null;
+				slow_usecs = -1;
+			} else if(parts[0].equals("SPAN") && parts.length >= 4 &&
+					rid != null){
+				long usecs = Long.parseLong(parts[3]);
+				if(!durations.containsKey(parts[1]))
+					durations.put(parts[1], new ArrayList<Long>());
+				durations.get(parts[1]).add(usecs);
+				if(usecs > slow_usecs){
+					slow_usecs = usecs;
+					slow_name = parts[1];
+				} // Track slowest span in this trace
+			} // Ignore anything unrecognized (i.e., truncated lines)
+			line = in.readLine();
+		} // Read line-by-line
+		if(rid != null)
+			end_trace(rid, total, slow_name);
+		in.close();
+	}
+	
+	/**
+	 * Tally a completely-read trace.
+	 * @param rid RID described by the trace
+	 * @param total Total duration of the trace (usecs)
+	 * @param slow_name Name of its slowest span (NULL if it had none)
+	 */
+	private static void end_trace(String rid, long total, String slow_name){
+		if(slow_name != null){
+			Integer prior = dominant.get(slow_name);
+			dominant.put(slow_name, (prior == null) ? 1 : prior + 1);
+		} // Attribute the trace to its slowest span
+		trace_totals.add(total);
+		trace_lines.add("rid=" + rid + " slowest=" + slow_name);
+	}
+	
+	/**
+	 * Print per-span statistics, ordered by total time descending.
+	 */
+	private static void print_span_table(){
+		List<String> names = new ArrayList<String>(durations.keySet());
+		List<Long> sums = new ArrayList<Long>();
+		for(int i=0; i < names.size(); i++){
+			long sum = 0;
+			List<Long> list = durations.get(names.get(i));
+			for(int j=0; j < list.size(); j++)
+				sum += list.get(j);
+			sums.add(sum);
+		} // Compute totals for ordering
+		
+		System.out.println(trace_totals.size() + " traces");
+		System.out.println(String.format("%-36s %7s %10s %9s %9s %9s %8s",
+				"span", "count", "total_ms", "p50_ms", "p90_ms",
+				"max_ms", "slowest"));
+		while(!names.isEmpty()){
+			int best = 0;
+			for(int i=1; i < sums.size(); i++){
+				if(sums.get(i) > sums.get(best))
+					best = i;
+			} // Selection; the number of names is small
+			String name = names.remove(best);
+			long sum = sums.remove(best);
+			List<Long> list = durations.get(name);
+			Collections.sort(list);
+			Integer dom = dominant.get(name);
+			System.out.println(String.format(
+					"%-36s %7d %10.1f %9.1f %9.1f %9.1f %8d", name,
+					list.size(), sum / 1000.0, pct(list, 0.5) / 1000.0,
+					pct(list, 0.9) / 1000.0,
+					list.get(list.size()-1) / 1000.0,
+					(dom == null) ? 0 : dom));
+		} // Output, most total time first
+	}
+	
+	/**
+	 * Print the slowest individual traces.
+	 */
+	private static void print_slowest(){
+		System.out.println();
+		System.out.println("Slowest traces:");
+		List<Long> totals = new ArrayList<Long>(trace_totals);
+		List<String> lines = new ArrayList<String>(trace_lines);
+		for(int n=0; n < NUM_SLOWEST && !totals.isEmpty(); n++){
+			int best = 0;
+			for(int i=1; i < totals.size(); i++){
+				if(totals.get(i) > totals.get(best))
+					best = i;
+			} // Partial selection of the largest totals
+			System.out.println(String.format("  %9.1f ms  %s",
+					totals.remove(best) / 1000.0, lines.remove(best)));
+		}
+	}
+	
+	/**
+	 * Nearest-rank percentile of a sorted list.
+	 * @param sorted List of values, in ascending order (non-empty)
+	 * @param q Quantile of interest, in [0,1]
+	 * @return Value at quantile 'q' of 'sorted'
+	 */
+	private static long pct(List<Long> sorted, double q){
+		int rank = (int) Math.ceil(q * sorted.size()) - 1;
+		return(sorted.get(Math.max(0, rank)));
+	}
+
+}
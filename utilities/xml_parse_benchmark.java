@@ -0,0 +1,368 @@
+package utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xml.sax.helpers.DefaultHandler;
+
+import core_objects.metadata;
+import core_objects.pair;
+import mediawiki_api.api_xml_basic_rid;
+import mediawiki_api.api_xml_diff_text;
+import mediawiki_api.api_xml_joint_contribs;
+import mediawiki_api.api_xml_latest_page;
+import mediawiki_api.api_xml_multiple_rids;
+import mediawiki_api.api_xml_page_content;
+import mediawiki_api.api_xml_page_hist_meta;
+import mediawiki_api.api_xml_parser;
+import mediawiki_api.api_xml_parser.PARSE_MODE;
+import replay.replay_corpus;
+
+/**
+ * Andrew G. West - xml_parse_benchmark.java - Checks and times the parse of
+ * recorded API responses under each [api_xml_parser.PARSE_MODE]. The
+ * responses (the "fixtures") are those of a capture file (see
+ * [replay_capture]), grouped by the XML-handler that parses them, or those
+ * of a fixture directory. The latter holds one sub-directory per handler,
+ * named for its class, of response files; [misc/api_fixtures] is such a
+ * directory, committed so that parity can be checked without a capture.
+ *
+ * First, every fixture is parsed in every mode and the handler results
+ * compared; any disagreement is reported (exit status 1). Then each
+ * handler is timed in each mode, and the faster noted. With "-write", the
+ * faster modes are written to a file which [api_xml_parser] reads at
+ * start-up when named by the system property "stiki.xml_parse_modes".
+ *
+ * Usage: java utilities.xml_parse_benchmark [capture_file | fixture_dir]
+ *        [-write file]
+ */
+public class xml_parse_benchmark{
+
+	// **************************** PRIVATE FIELDS ***************************
+	
+	/**
+	 * XML-handlers exercised, by class name. The index of each is the
+	 * argument to [new_handler()] and [describe()].
+	 */
+	private static final String[] HANDLERS = {
+		"api_xml_diff_text",
+		"api_xml_page_content",
+		"api_xml_multiple_rids",
+		"api_xml_page_hist_meta",
+		"api_xml_latest_page",
+		"api_xml_basic_rid",
+		"api_xml_joint_contribs"};
+	
+	/**
+	 * Milliseconds of warm-up (so the JIT has settled) before timing.
+	 */
+	private static final int WARMUP_MSECS = 2000;
+	
+	/**
+	 * Number, and duration (msecs), of timed rounds per handler and mode.
+	 */
+	private static final int ROUNDS = 5;
+	private static final int ROUND_MSECS = 1000;
+	
+	/**
+	 * Results of every parse are folded into this value, so the JIT
+	 * cannot eliminate the work being timed.
+	 */
+	private static volatile long sink = 0;
+	
+	
+	// **************************** PUBLIC METHODS ***************************
+	
+	/**
+	 * Driver method. See the class description for usage.
+	 * @param args See class description
+	 */
+	public static void main(String[] args) throws Exception{
+	
+		if(args.length != 1 && !(args.length == 3 && args[1].equals("-write"))){
+			System.out.println("Usage: java utilities.xml_parse_benchmark " +
+					"[capture_file | fixture_dir] [-write file]");
+			return;
+		} // Output usage, if arguments malformed
+		
+			// Group the responses by the handler that parses them
+		List<List<byte[]>> fixtures;
+		if(new File(args[0]).isDirectory())
+			fixtures = load_fixture_dir(new File(args[0]));
+		else fixtures = load_capture(args[0]);
+		
+			// Parity: every mode must produce identical results
+		boolean parity = true;
+		PARSE_MODE[] modes = PARSE_MODE.values();
+		for(int h=0; h < HANDLERS.length; h++){
+			int mismatches = 0;
+			for(int f=0; f < fixtures.get(h).size(); f++){
+				byte[] xml = fixtures.get(h).get(f);
+				String expected = describe(h, parse(h, xml, modes[0]));
+				for(int m=1; m < modes.length; m++){
+					if(!expected.equals(describe(h, parse(h, xml, modes[m]))))
+						mismatches++;
+				} // Compare all modes against the first
+			} // Check every fixture of the handler
+			System.out.println(String.format("%-24s %6d fixtures %s",
+					HANDLERS[h], fixtures.get(h).size(),
+					(mismatches == 0) ? "parity OK" :
+					mismatches + " MISMATCHES"));
+			if(mismatches > 0)
+				parity = false;
+		} // Check all handlers
+		System.out.println();
+		if(!parity)
+			System.exit(1);
+			
+			// Timing: median microseconds per parse, by handler and mode
+		Map<String,PARSE_MODE> fastest = new TreeMap<String,PARSE_MODE>();
+		for(int h=0; h < HANDLERS.length; h++){
+			if(fixtures.get(h).size() == 0)
+				continue;
+			double best = Double.MAX_VALUE;
+			for(int m=0; m < modes.length; m++){
+				double usecs = time_parse(h, fixtures.get(h), modes[m]);
+				System.out.println(String.format("%-24s %-8s %10.2f usecs/parse",
+						HANDLERS[h], modes[m], usecs));
+				if(usecs < best){
+					best = usecs;
+					fastest.put(HANDLERS[h], modes[m]);
+				} // Track the fastest mode
+			} // Time each mode in turn
+		} // Time every handler with fixtures
+		
+		if(args.length == 3){
+			FileWriter out = new FileWriter(args[2]);
+			Iterator<Map.Entry<String,PARSE_MODE>> mode_iter =
+					fastest.entrySet().iterator();
+			while(mode_iter.hasNext()){
+				Map.Entry<String,PARSE_MODE> entry = mode_iter.next();
+				out.write(entry.getKey() + " " + entry.getValue() + "\n");
+			} // One "handler mode" line per handler
+			out.close();
+			System.out.println("\nParse modes written to: " + args[2]);
+		} // Persist choices, if requested
+	}
+	
+	
+	// *************************** PRIVATE METHODS ***************************
+	
+	/**
+	 * Load the responses of a capture file, grouped by handler.
+	 * @param path Path of the capture file
+	 * @return Fixtures, one list per handler (indexed as [HANDLERS])
+	 */
+	private static List<List<byte[]>> load_capture(String path)
+			throws Exception{
+		replay_corpus corpus = new replay_corpus(path);
+		List<List<byte[]>> fixtures = new ArrayList<List<byte[]>>();
+		for(int i=0; i < HANDLERS.length; i++)
+			fixtures.add(new ArrayList<byte[]>());
+		Iterator<Map.Entry<String,byte[]>> iter =
+				corpus.responses.entrySet().iterator();
+		while(iter.hasNext()){
+			Map.Entry<String,byte[]> entry = iter.next();
+			int handler = handler_for_url(entry.getKey());
+			if(handler >= 0)
+				fixtures.get(handler).add(entry.getValue());
+		} // Responses of other call types are ignored
+		return(fixtures);
+	}
+	
+	/**
+	 * Load the responses of a fixture directory, grouped by handler.
+	 * @param dir Directory with one sub-directory per handler class
+	 * @return Fixtures, one list per handler (indexed as [HANDLERS])
+	 */
+	private static List<List<byte[]>> load_fixture_dir(File dir)
+			throws Exception{
+		List<List<byte[]>> fixtures = new ArrayList<List<byte[]>>();
+		for(int h=0; h < HANDLERS.length; h++){
+			List<byte[]> xmls = new ArrayList<byte[]>();
+			File[] files = new File(dir, HANDLERS[h]).listFiles();
+			if(files != null){
+				Arrays.sort(files); // In name order, for stable output
+				for(int f=0; f < files.length; f++){
+					if(!files[f].isFile())
+						continue;
+					byte[] body = new byte[(int) files[f].length()];
+					DataInputStream in = new DataInputStream(
+							new FileInputStream(files[f]));
+					in.readFully(body);
+					in.close();
+					xmls.add(body);
+				} // Every file is one response
+			} // A handler may have no fixtures
+			fixtures.add(xmls);
+		} // Sub-directories named as in [HANDLERS]
+		return(fixtures);
+	}
+	
+	/**
+	 * Determine which handler parses the response to a URL.
+	 * @param url URL (relative to the API base) of the request
+	 * @return Index into [HANDLERS] of the handler, or -1 if none of them
+	 */
+	private static int handler_for_url(String url){
+		if(url.contains("rvdiffto="))
+			return(0);
+		if(url.contains("rvprop=content"))
+			return(1);
+		if(url.contains("rvprop=ids|timestamp|user|comment|tags")){
+			if(url.matches(".*&revids=[0-9]+&.*"))
+				return(5); // One RID; a list of one is parsed alike
+			if(url.contains("&revids="))
+				return(2);
+			if(url.contains("&pageids=") && url.contains("&rvlimit="))
+				return(3);
+		} // Metadata for specified RIDs, or a page's history
+		if(url.startsWith("&prop=info&pageids=") &&
+				url.endsWith("&format=xml") &&
+				!url.contains("intoken"))
+			return(4);
+		if(url.contains("&list=usercontribs&ucuser=") &&
+				url.contains("&ucprop=ids&"))
+			return(6);
+		return(-1);
+	}
+	
+	/**
+	 * Create a handler.
+	 * @param handler Index (into [HANDLERS]) of the handler type
+	 * @return A new handler of the specified type
+	 */
+	private static DefaultHandler new_handler(int handler){
+		switch(handler){
+			case 0: return(new api_xml_diff_text());
+			case 1: return(new api_xml_page_content());
+			case 2: return(new api_xml_multiple_rids());
+			case 3: return(new api_xml_page_hist_meta(null));
+			case 4: return(new api_xml_latest_page());
+			case 5: return(new api_xml_basic_rid(null));
+			default: return(new api_xml_joint_contribs(
+					new ArrayList<String>()));
+		} // No geolocation; it is not a parsing concern
+	}
+	
+	/**
+	 * Parse a fixture with a new handler.
+	 * @param handler Index (into [HANDLERS]) of the handler type
+	 * @param xml Fixture to be parsed
+	 * @param mode Manner in which the parser should be obtained
+	 * @return The handler, after parsing 'xml'
+	 */
+	private static DefaultHandler parse(int handler, byte[] xml,
+			PARSE_MODE mode) throws Exception{
+		DefaultHandler dh = new_handler(handler);
+		api_xml_parser.parse(new ByteArrayInputStream(xml), dh, mode);
+		return(dh);
+	}
+	
+	/**
+	 * Produce a canonical textual form of a handler's result.
+	 * @param handler Index (into [HANDLERS]) of the handler type
+	 * @param dh Handler, after parsing
+	 * @return Text which is equal for equal parse results
+	 */
+	private static String describe(int handler, DefaultHandler dh){
+		switch(handler){
+			case 0: return(((api_xml_diff_text) dh).get_result());
+			case 1: return(((api_xml_page_content) dh).get_result());
+			case 2: return(describe_md(((api_xml_multiple_rids) dh).
+					get_result()));
+			case 3: return(describe_md(((api_xml_page_hist_meta) dh).
+					get_result()));
+			case 4: return(new TreeMap<Long,Long>(
+					((api_xml_latest_page) dh).get_result()).toString());
+			case 5: return(describe_md(Arrays.asList(
+					((api_xml_basic_rid) dh).get_result())));
+			default: return(describe_contribs(((api_xml_joint_contribs) dh).
+					get_result()));
+		} // Collections are put in a canonical order
+	}
+	
+	/**
+	 * Produce a canonical textual form of a collection of [metadata].
+	 * @param md_set Collection of [metadata] objects
+	 * @return Text which is equal for equal collections
+	 */
+	private static String describe_md(Iterable<metadata> md_set){
+		List<String> md_strs = new ArrayList<String>();
+		Iterator<metadata> iter = md_set.iterator();
+		while(iter.hasNext()){
+			metadata md = iter.next();
+			if(md == null){
+				md_strs.add("null");
+				continue;
+			} // As when a [api_xml_basic_rid] meets a bad RID
+			md_strs.add(md.rid + "|" + md.pid + "|" + md.timestamp + "|" +
+					md.namespace + "|" + md.title + "|" + md.user + "|" +
+					md.comment + "|" + md.tags + "|" + md.rb_token);
+		} // Every parsed field
+		String[] sorted = md_strs.toArray(new String[0]);
+		Arrays.sort(sorted);
+		return(Arrays.toString(sorted));
+	}
+	
+	/**
+	 * Produce a canonical textual form of a contribution list. Order is
+	 * kept, as it is that of the API response.
+	 * @param contribs List of (RID, PID) pairs
+	 * @return Text which is equal for equal lists
+	 */
+	private static String describe_contribs(List<pair<Long,Long>> contribs){
+		StringBuilder sb = new StringBuilder();
+		Iterator<pair<Long,Long>> iter = contribs.iterator();
+		while(iter.hasNext()){
+			pair<Long,Long> contrib = iter.next();
+			sb.append(contrib.fst + "|" + contrib.snd + " ");
+		} // One "rid|pid" per contribution
+		return(sb.toString());
+	}
+	
+	/**
+	 * Time the parse of a handler's fixtures in some mode.
+	 * @param handler Index (into [HANDLERS]) of the handler type
+	 * @param xmls Fixtures of that handler
+	 * @param mode Manner in which the parser should be obtained
+	 * @return Median (over rounds) microseconds per parse
+	 */
+	private static double time_parse(int handler, List<byte[]> xmls,
+			PARSE_MODE mode) throws Exception{
+		
+		int next = 0;
+		long end = System.currentTimeMillis() + WARMUP_MSECS;
+		while(System.currentTimeMillis() < end){
+			sink += parse(handler, xmls.get(next), mode).hashCode();
+			next = (next + 1) % xmls.size();
+		} // Warm-up; results are discarded
+		
+		double[] usecs = new double[ROUNDS];
+		for(int r=0; r < ROUNDS; r++){
+			long ops = 0;
+			long nano_start = System.nanoTime();
+			long nano_end = nano_start + ROUND_MSECS * 1000000L;
+			long now = nano_start;
+			while(now < nano_end){
+				sink += parse(handler, xmls.get(next), mode).hashCode();
+				next = (next + 1) % xmls.size();
+				ops++;
+				now = System.nanoTime();
+			} // Cycle through fixtures until the round has elapsed
+			usecs[r] = (now - nano_start) / 1000.0 / ops;
+		} // Each round gives one sample; median is reported
+		Arrays.sort(usecs);
+		return(usecs[ROUNDS / 2]);
+	}
+
+}